@@ -0,0 +1,212 @@
+package com.example.android.newsapp;
+
+import android.app.Activity;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.rule.ActivityTestRule;
+import android.support.test.runner.AndroidJUnit4;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scrolls a list of 1,000 articles, once with the RecyclerView adapter and once with the previous
+ * ListView adapter, and reports the frame times of both.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleListJankTest {
+
+    private static final String LOG_TAG = ArticleListJankTest.class.getSimpleName();
+
+    private static final int ARTICLE_COUNT = 1000;
+    private static final int MEASURED_FRAMES = 300;
+    private static final int SCROLL_STEP_PX = 60;
+
+    /**
+     * A frame is janky when it takes longer than one and a half 60 Hz frames
+     */
+    private static final long JANK_THRESHOLD_NANOS = 25000000L;
+
+    @Rule
+    public ActivityTestRule<MainActivity> mActivityRule = new ActivityTestRule<>(MainActivity.class);
+
+    @Test
+    public void scrollThousandArticles() throws Throwable {
+        final Activity activity = mActivityRule.getActivity();
+        final List<Article> articles = createArticles();
+
+        final RecyclerView recyclerView = new RecyclerView(activity);
+        mActivityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                recyclerView.setLayoutManager(new LinearLayoutManager(activity));
+                ArticleAdapter adapter = new ArticleAdapter(activity, new ArticleAdapter.OnArticleClickListener() {
+                    @Override
+                    public void onArticleClick(Article article) {
+                    }
+                });
+                recyclerView.setAdapter(adapter);
+                adapter.submitList(articles);
+                activity.setContentView(recyclerView);
+            }
+        });
+        long[] recyclerFrames = measureScroll(new Scroller() {
+            @Override
+            public void scrollBy(int dy) {
+                recyclerView.scrollBy(0, dy);
+            }
+        });
+
+        final ListView listView = new ListView(activity);
+        mActivityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                listView.setAdapter(new LegacyArticleAdapter(activity, articles));
+                activity.setContentView(listView);
+            }
+        });
+        long[] listFrames = measureScroll(new Scroller() {
+            @Override
+            public void scrollBy(int dy) {
+                listView.scrollListBy(dy);
+            }
+        });
+
+        Bundle results = new Bundle();
+        report(results, "recycler", recyclerFrames);
+        report(results, "listview", listFrames);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, results);
+
+        assertTrue(recyclerFrames.length == MEASURED_FRAMES && listFrames.length == MEASURED_FRAMES);
+    }
+
+    /**
+     * Scroll by a fixed step on every frame and return the duration of each frame in nanoseconds.
+     */
+    private long[] measureScroll(final Scroller scroller) throws Throwable {
+        final long[] frames = new long[MEASURED_FRAMES];
+        final CountDownLatch done = new CountDownLatch(1);
+
+        mActivityRule.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private long mLastFrameNanos;
+                    private int mFrame = -1;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        if (mFrame >= 0) {
+                            frames[mFrame] = frameTimeNanos - mLastFrameNanos;
+                        }
+                        mLastFrameNanos = frameTimeNanos;
+                        mFrame++;
+                        if (mFrame == MEASURED_FRAMES) {
+                            done.countDown();
+                            return;
+                        }
+                        scroller.scrollBy(SCROLL_STEP_PX);
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                });
+            }
+        });
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        return frames;
+    }
+
+    private static void report(Bundle results, String name, long[] frames) {
+        long[] sorted = frames.clone();
+        Arrays.sort(sorted);
+        int janky = 0;
+        for (long frame : frames) {
+            if (frame > JANK_THRESHOLD_NANOS) {
+                janky++;
+            }
+        }
+        String summary = String.format("%s: p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, janky %d/%d",
+                name, sorted[sorted.length / 2] / 1e6, sorted[sorted.length * 9 / 10] / 1e6,
+                sorted[sorted.length * 99 / 100] / 1e6, janky, frames.length);
+        Log.i(LOG_TAG, summary);
+        results.putString(name, summary);
+    }
+
+    private static List<Article> createArticles() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < ARTICLE_COUNT; i++) {
+            articles.add(new Article("Article title number " + i + " about a long running story",
+                    "Technology", "2018-05-24T10:" + String.format("%02d", i % 60) + ":00Z",
+                    "Contributor " + (i % 40), "https://www.theguardian.com/technology/2018/may/24/article-" + i));
+        }
+        return articles;
+    }
+
+    private interface Scroller {
+        void scrollBy(int dy);
+    }
+
+    /**
+     * The ListView adapter before the RecyclerView migration, kept here as the baseline.
+     */
+    private static class LegacyArticleAdapter extends ArrayAdapter<Article> {
+
+        LegacyArticleAdapter(Activity context, List<Article> articles) {
+            super(context, 0, articles);
+        }
+
+        @NonNull
+        @Override
+        public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+            View listItemView = convertView;
+            if (listItemView == null) {
+                listItemView = LayoutInflater.from(getContext()).inflate(R.layout.list_item, parent, false);
+            }
+            Article currentArticle = getItem(position);
+
+            TextView sectionTextView = listItemView.findViewById(R.id.article_section);
+            sectionTextView.setText(currentArticle.getSection());
+            TextView dateTextView = listItemView.findViewById(R.id.article_date);
+            dateTextView.setText(formatDate(currentArticle.getDate()));
+            TextView titleTextView = listItemView.findViewById(R.id.article_title);
+            titleTextView.setText(currentArticle.getTitle());
+            TextView contributorTextView = listItemView.findViewById(R.id.article_contributor);
+            contributorTextView.setText(currentArticle.getAuthor());
+            return listItemView;
+        }
+
+        private String formatDate(String unformedDate) {
+            SimpleDateFormat resultDateFormater = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+            try {
+                Date jsonDateToParse = resultDateFormater.parse(unformedDate);
+                return new SimpleDateFormat("LLL dd, yyyy").format(jsonDateToParse);
+            } catch (ParseException e) {
+                return "";
+            }
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.android.newsapp;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The thread pools of the app. I/O work (network requests, disk caches) and CPU work (decoding the cache,
+ * searching the local index, merging lists) are sized separately, so requests blocked on a slow network
+ * don't hold back the work that only needs a core, and CPU work never runs more threads than there are cores.
+ * <p>
+ * Components that must not take the whole I/O pool (the feed requests, the images, the body prefetch) run on
+ * a limit() of it rather than on pools of their own, and delays and timeouts are scheduled on a single timer
+ * thread that hands the work over to the pools.
+ */
+public class AppExecutors {
+
+    /**
+     * Number of threads for blocking I/O, most of them wait on the network
+     */
+    private static final int IO_THREAD_COUNT = 8;
+
+    /**
+     * Shared instance used by the repository
+     */
+    private static AppExecutors sInstance;
+
+    /**
+     * Runs blocking network and disk work
+     */
+    private final Executor mIo;
+
+    /**
+     * Runs work that keeps a core busy
+     */
+    private final Executor mCpu;
+
+    /**
+     * Runs work on the main thread
+     */
+    private final Executor mMainThread;
+
+    /**
+     * Runs delays and timeouts, its tasks only hand work over to the other executors
+     */
+    private final ScheduledExecutorService mTimer;
+
+    /**
+     * Constructs a new AppExecutors, i.e. with direct executors in tests
+     *
+     * @param io         runs blocking network and disk work
+     * @param cpu        runs work that keeps a core busy
+     * @param mainThread runs work on the main thread
+     * @param timer      runs delays and timeouts, may be null if nothing is scheduled
+     */
+    public AppExecutors(Executor io, Executor cpu, Executor mainThread, ScheduledExecutorService timer) {
+        mIo = io;
+        mCpu = cpu;
+        mMainThread = mainThread;
+        mTimer = timer;
+    }
+
+    /**
+     * Returns the shared executors: IO_THREAD_COUNT I/O threads, one CPU thread per core, the main thread and
+     * a timer thread.
+     */
+    public static synchronized AppExecutors getInstance() {
+        if (sInstance == null) {
+            int cpuThreadCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+            final Handler mainHandler = new Handler(Looper.getMainLooper());
+            sInstance = new AppExecutors(newPool("io", IO_THREAD_COUNT), newPool("cpu", cpuThreadCount),
+                    new Executor() {
+                        @Override
+                        public void execute(@NonNull Runnable command) {
+                            mainHandler.post(command);
+                        }
+                    }, Executors.newSingleThreadScheduledExecutor(newThreadFactory("timer")));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the executor for blocking network and disk work.
+     */
+    public Executor io() {
+        return mIo;
+    }
+
+    /**
+     * Returns the executor for work that keeps a core busy, i.e. decoding and merging articles.
+     */
+    public Executor cpu() {
+        return mCpu;
+    }
+
+    /**
+     * Returns the executor that runs on the main thread.
+     */
+    public Executor mainThread() {
+        return mMainThread;
+    }
+
+    /**
+     * Returns the executor for delays and timeouts. Its tasks must be short, i.e. pass the work to io().
+     */
+    public ScheduledExecutorService timer() {
+        return mTimer;
+    }
+
+    /**
+     * Returns an executor that runs its tasks on the given one, at most maxConcurrent of them at a time and in
+     * the order they were submitted. The others wait in its own queue, without holding a thread.
+     */
+    public static Executor limit(Executor executor, int maxConcurrent) {
+        return new LimitedExecutor(executor, maxConcurrent);
+    }
+    /**
+     * Returns a pool of background priority threads, so they don't compete with the UI thread.
+     */
+    private static ExecutorService newPool(String name, int threadCount) {
+        return Executors.newFixedThreadPool(threadCount, newThreadFactory(name));
+    }
+
+    /**
+     * Returns a factory of background priority threads numbered after the given name.
+     */
+    private static ThreadFactory newThreadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, name + "-" + mCount.incrementAndGet());
+            }
+        };
+    }
+
+    /**
+     * Runs at most a number of tasks at a time on another executor.
+     */
+    private static class LimitedExecutor implements Executor {
+
+        /**
+         * Runs the tasks
+         */
+        private final Executor mExecutor;
+
+        /**
+         * Maximum number of tasks running at the same time
+         */
+        private final int mMaxConcurrent;
+
+        /**
+         * Tasks waiting for a running one to finish
+         */
+        private final Queue<Runnable> mQueue = new ArrayDeque<>();
+
+        /**
+         * Number of tasks passed to the executor and not finished
+         */
+        private int mRunningCount;
+
+        LimitedExecutor(Executor executor, int maxConcurrent) {
+            mExecutor = executor;
+            mMaxConcurrent = maxConcurrent;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull final Runnable command) {
+            mQueue.add(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        command.run();
+                    } finally {
+                        onFinished();
+                    }
+                }
+            });
+            if (mRunningCount < mMaxConcurrent) {
+                runNext();
+            }
+        }
+
+        private synchronized void onFinished() {
+            mRunningCount--;
+            runNext();
+        }
+
+        /**
+         * Pass the next waiting task to the executor. Called with the lock held.
+         */
+        private void runNext() {
+            Runnable next = mQueue.poll();
+            if (next != null) {
+                mRunningCount++;
+                mExecutor.execute(next);
+            }
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package com.example.android.newsapp;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class Article {
 
+    /**
+     * Contributor ids of the articles without contributors, shared by all of them
+     */
+    private static final int[] NO_CONTRIBUTORS = new int[0];
+
     /**
      * The title of the article
      */
     private String mTitle;
 
     /**
-     * The section of the article
+     * Id of the interned Section of the article
      */
-    private String mSection;
+    private int mSectionId;
 
     /**
      * The date of the article
@@ -18,9 +27,20 @@ public class Article {
     private String mDate;
 
     /**
-     * The author/contributor of the article
+     * The date of the article in milliseconds since epoch, or ArticleDates.UNKNOWN
      */
-    private String mAuthor;
+    private long mTimeInMillis;
+
+    /**
+     * The date of the article formatted for display (i.e. "Feb 02, 2018")
+     */
+    private String mDisplayDate;
+
+    /**
+     * Ids of the interned Contributors of the article, in byline order. Shared with other articles
+     * (i.e. by a single contributor, see Contributor.asIdArray()), so it is never modified.
+     */
+    private int[] mContributorIds;
 
     /**
      * Website URL of the article
@@ -28,20 +48,62 @@ public class Article {
     private String mUrl;
 
     /**
-     * Constructs a new Article object
+     * URL of the thumbnail image of the article, or null if it has none
+     */
+    private String mThumbnailUrl;
+
+    /**
+     * Constructs a new Article object.
+     * The date is parsed and formatted here, so the list never parses dates while binding rows.
      *
      * @param title   is the title of the article
      * @param section is the section of the article
      * @param date    is the date of the article
-     * @param author  is the author/contributor of the article
+     * @param author  is the name of the single contributor of the article, or null
      * @param url     is the website url of the article
      */
     public Article(String title, String section, String date, String author, String url) {
+        this(title, section, date, author, url, null);
+    }
+
+    /**
+     * Constructs a new Article object with a thumbnail.
+     *
+     * @param title        is the title of the article
+     * @param section      is the section of the article
+     * @param date         is the date of the article
+     * @param author       is the name of the single contributor of the article, or null
+     * @param url          is the website url of the article
+     * @param thumbnailUrl is the url of the thumbnail image of the article, or null
+     */
+    public Article(String title, String section, String date, String author, String url, String thumbnailUrl) {
+        this(title, Section.intern(section).getId(), date, ArticleDates.parseIsoDate(date),
+                author == null || author.isEmpty() ? null : Contributor.intern(author).asIdArray(), url, thumbnailUrl);
+    }
+
+    /**
+     * Constructs a new Article object from interned ids and a parsed date, i.e. when it is parsed or read from
+     * the cache.
+     *
+     * @param title          is the title of the article
+     * @param sectionId      is the id of the interned Section of the article
+     * @param date           is the date of the article
+     * @param timeInMillis   is the date of the article in milliseconds since epoch, or ArticleDates.UNKNOWN
+     * @param contributorIds are the ids of the interned Contributors of the article, or null if it has none.
+     *                       The array is kept, so it must not be modified afterwards.
+     * @param url            is the website url of the article
+     * @param thumbnailUrl   is the url of the thumbnail image of the article, or null
+     */
+    Article(String title, int sectionId, String date, long timeInMillis, int[] contributorIds, String url,
+            String thumbnailUrl) {
         mTitle = title;
-        mSection = section;
+        mSectionId = sectionId;
         mDate = date;
-        mAuthor = author;
+        mTimeInMillis = timeInMillis;
+        mDisplayDate = ArticleDates.formatDisplayDate(mTimeInMillis);
+        mContributorIds = contributorIds == null ? NO_CONTRIBUTORS : contributorIds;
         mUrl = url;
+        mThumbnailUrl = thumbnailUrl;
     }
 
     /**
@@ -52,10 +114,17 @@ public class Article {
     }
 
     /**
-     * Returns the section of the article.
+     * Returns the section name of the article.
      */
     public String getSection() {
-        return mSection;
+        return Section.forId(mSectionId).getName();
+    }
+
+    /**
+     * Returns the id of the section of the article, to group or filter articles by section.
+     */
+    public int getSectionId() {
+        return mSectionId;
     }
 
     /**
@@ -66,10 +135,78 @@ public class Article {
     }
 
     /**
-     * Returns the author/contributor of the article.
+     * Returns the date of the article in milliseconds since epoch, or ArticleDates.UNKNOWN.
+     */
+    public long getTimeInMillis() {
+        return mTimeInMillis;
+    }
+
+    /**
+     * Returns the date of the article formatted for display (i.e. "Feb 02, 2018").
+     */
+    public String getDisplayDate() {
+        return mDisplayDate;
+    }
+
+    /**
+     * Returns the names of the contributors of the article joined with " & ", or null if it has none.
      */
     public String getAuthor() {
-        return mAuthor;
+        if (mContributorIds.length == 0) {
+            return null;
+        }
+        if (mContributorIds.length == 1) {
+            return Contributor.forId(mContributorIds[0]).getName();
+        }
+        StringBuilder author = new StringBuilder();
+        for (int id : mContributorIds) {
+            author.append(author.length() == 0 ? "" : " & ").append(Contributor.forId(id).getName());
+        }
+        return author.toString();
+    }
+
+    /**
+     * Returns the contributors of the article, in byline order.
+     */
+    public List<Contributor> getContributors() {
+        List<Contributor> contributors = new ArrayList<>(mContributorIds.length);
+        for (int id : mContributorIds) {
+            contributors.add(Contributor.forId(id));
+        }
+        return contributors;
+    }
+
+    /**
+     * Returns the number of contributors of the article.
+     */
+    public int getContributorCount() {
+        return mContributorIds.length;
+    }
+
+    /**
+     * Returns the id of a contributor of the article, in byline order.
+     */
+    public int getContributorId(int index) {
+        return mContributorIds[index];
+    }
+
+    /**
+     * Returns true if the contributor with the id contributed to the article.
+     */
+    public boolean hasContributor(int contributorId) {
+        for (int id : mContributorIds) {
+            if (id == contributorId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the article has the same contributors as another, in the same order.
+     */
+    boolean hasSameContributors(Article article) {
+        return Arrays.equals(mContributorIds, article.mContributorIds);
     }
 
     /**
@@ -78,4 +215,11 @@ public class Article {
     public String getUrl() {
         return mUrl;
     }
+
+    /**
+     * Returns the url of the thumbnail image of the article, or null if it has none.
+     */
+    public String getThumbnailUrl() {
+        return mThumbnailUrl;
+    }
 }
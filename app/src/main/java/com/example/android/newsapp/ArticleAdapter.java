@@ -1,90 +1,216 @@
 package com.example.android.newsapp;
 
-import android.app.Activity;
+import android.content.Context;
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
-import android.util.Log;
+import android.support.v7.recyclerview.extensions.ListAdapter;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
+import java.util.List;
 
-public class ArticleAdapter extends ArrayAdapter<Article> {
+/**
+ * RecyclerView adapter for the list of articles.
+ * New lists are compared with the current one on a background thread, so only the rows that changed are rebound.
+ * Thumbnails are loaded by the ImageLoader at the size of the thumbnail view.
+ * Rows of the articles already read are dimmed.
+ */
+public class ArticleAdapter extends ListAdapter<Article, ArticleAdapter.ArticleViewHolder> {
 
     /**
      * Tag for the log messages
      */
     public static final String LOG_TAG = ArticleAdapter.class.getSimpleName();
 
+    /**
+     * Opacity of the rows of the articles already read
+     */
+    private static final float READ_ROW_ALPHA = 0.6f;
+
+    /**
+     * Payload of a change of the read state only, the rest of the row stays bound
+     */
+    private static final Object PAYLOAD_READ_STATE = new Object();
+
+    /**
+     * Compares articles by URL (identity) and by their displayed fields (content)
+     */
+    private static final DiffUtil.ItemCallback<Article> DIFF_CALLBACK = new DiffUtil.ItemCallback<Article>() {
+        @Override
+        public boolean areItemsTheSame(Article oldArticle, Article newArticle) {
+            return oldArticle.getUrl().equals(newArticle.getUrl());
+        }
+
+        @Override
+        public boolean areContentsTheSame(Article oldArticle, Article newArticle) {
+            return oldArticle.getTitle().equals(newArticle.getTitle())
+                    && oldArticle.getSectionId() == newArticle.getSectionId()
+                    && oldArticle.getDate().equals(newArticle.getDate())
+                    && oldArticle.hasSameContributors(newArticle)
+                    && TextUtils.equals(oldArticle.getThumbnailUrl(), newArticle.getThumbnailUrl());
+        }
+    };
+
+    /**
+     * Listener for clicks on the article rows.
+     */
+    public interface OnArticleClickListener {
+        void onArticleClick(Article article);
+    }
+
+    /**
+     * Receives the clicks on the rows
+     */
+    private final OnArticleClickListener mClickListener;
+
+    /**
+     * Loads the thumbnails
+     */
+    private final ImageLoader mImageLoader;
+
+    /**
+     * Tells the articles already read
+     */
+    private final ReadingHistory mReadingHistory;
+
+    /**
+     * Size of the thumbnail views in pixels, the size the thumbnails are decoded at
+     */
+    private final int mThumbnailWidth;
+    private final int mThumbnailHeight;
+
     /**
      * Constructs a new ArticleAdapter
      *
-     * @param context  of the app
-     * @param articles is the list of articles
+     * @param context       is used to size and load the thumbnails
+     * @param clickListener receives the clicks on the rows
      */
-    public ArticleAdapter(@NonNull Activity context, @NonNull ArrayList<Article> articles) {
-        super(context, 0, articles);
+    public ArticleAdapter(@NonNull Context context, @NonNull OnArticleClickListener clickListener) {
+        super(DIFF_CALLBACK);
+        mClickListener = clickListener;
+        mImageLoader = ImageLoader.getInstance(context);
+        mReadingHistory = ReadingHistory.getInstance(context);
+        mThumbnailWidth = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_width);
+        mThumbnailHeight = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_height);
     }
 
     @NonNull
     @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
+    public ArticleViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        long section = Metrics.beginSection("render.inflate");
+        try {
+            View listItemView = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+            return new ArticleViewHolder(listItemView);
+        } finally {
+            Metrics.endSection("render.inflate", section);
+        }
+    }
 
-        // Check if the existing view is being reused, otherwise inflate the view
-        View listItemView = convertView;
+    @Override
+    public void onBindViewHolder(@NonNull ArticleViewHolder holder, int position) {
+        long section = Metrics.beginSection("render.bind");
+        try {
+            // Find the article at the given position in the list of articles
+            Article currentArticle = getItem(position);
 
-        if (listItemView == null) {
-            listItemView = LayoutInflater.from(getContext()).inflate(R.layout.list_item, parent, false);
-        }
+            // Display the section of the current article
+            holder.mSectionTextView.setText(currentArticle.getSection());
 
-        // Find the article at the given position in the list of articles
-        Article currentArticle = getItem(position);
+            // Display the date of the current article, formatted when the article was parsed (i.e. "Feb 02, 2018")
+            holder.mDateTextView.setText(currentArticle.getDisplayDate());
 
-        // Find the TextView with view ID article_section
-        TextView sectionTextView = listItemView.findViewById(R.id.article_section);
-        // Display the section of the current article
-        sectionTextView.setText(currentArticle.getSection());
+            // Display the title of the current article
+            holder.mTitleTextView.setText(currentArticle.getTitle());
 
-        // Find the TextView with view ID article_date
-        TextView dateTextView = listItemView.findViewById(R.id.article_date);
-        // Format the date string (i.e. "Feb 2, 2018")
-        String formattedDate = formatDate(currentArticle.getDate());
-        // Display the formatted date of the current article
-        dateTextView.setText(formattedDate);
+            // Display the contributor of the current article
+            holder.mContributorTextView.setText(currentArticle.getAuthor());
 
-        // Find the TextView with view ID article_title
-        TextView titleTextView = listItemView.findViewById(R.id.article_title);
-        // Display the title of the current article
-        titleTextView.setText(currentArticle.getTitle());
+            // Display the thumbnail of the current article, articles without one get the whole row for the title
+            String thumbnailUrl = currentArticle.getThumbnailUrl();
+            holder.mThumbnailImageView.setVisibility(thumbnailUrl != null ? View.VISIBLE : View.GONE);
+            mImageLoader.load(thumbnailUrl, holder.mThumbnailImageView, mThumbnailWidth, mThumbnailHeight);
 
-        // Find the TextView with view ID article_contributor
-        TextView contributorTextView = listItemView.findViewById(R.id.article_contributor);
-        // Display the contributor of the current article
-        contributorTextView.setText(currentArticle.getAuthor());
+            bindReadState(holder, currentArticle);
+        } finally {
+            Metrics.endSection("render.bind", section);
+        }
+    }
 
-        return listItemView;
+    @Override
+    public void onBindViewHolder(@NonNull ArticleViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+        } else {
+            // Only the read state changed
+            bindReadState(holder, getItem(position));
+        }
     }
 
+    /**
+     * Dim the row if its article was read.
+     */
+    private void bindReadState(ArticleViewHolder holder, Article article) {
+        holder.itemView.setAlpha(mReadingHistory.isRead(article.getUrl()) ? READ_ROW_ALPHA : 1f);
+    }
 
     /**
-     * Return the formatted date string (i.e. "Mar 3, 1984") from a Date object.
+     * Update the dimming of the rows after articles were read, without binding the rest of the rows again.
      */
-    private String formatDate(String unformedDate) {
-        SimpleDateFormat resultDateFormater = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-        try {
-            Date jsonDateToParse = resultDateFormater.parse(unformedDate);
-            SimpleDateFormat appDateFormater = new SimpleDateFormat("LLL dd, yyyy");
-            return appDateFormater.format(jsonDateToParse);
-        } catch (ParseException e) {
-            Log.e(LOG_TAG, "Problem with the data formater");
-            return "";
+    public void onReadStateChanged() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_READ_STATE);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ArticleViewHolder holder) {
+        // The row scrolled away, stop loading its thumbnail and give its bitmap back
+        mImageLoader.cancel(holder.mThumbnailImageView);
+    }
+
+    /**
+     * Load in the background the thumbnails of the given rows, i.e. the ones just below the screen.
+     *
+     * @param fromPosition is the position of the first row
+     * @param count        is the number of rows
+     */
+    public void prefetchThumbnails(int fromPosition, int count) {
+        int toPosition = Math.min(getItemCount(), fromPosition + count);
+        for (int position = Math.max(0, fromPosition); position < toPosition; position++) {
+            mImageLoader.prefetch(getItem(position).getThumbnailUrl(), mThumbnailWidth, mThumbnailHeight);
         }
     }
 
+    /**
+     * Holds the views of a row, so they are looked up only when the row is created.
+     */
+    class ArticleViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
+
+        private final TextView mSectionTextView;
+        private final TextView mDateTextView;
+        private final TextView mTitleTextView;
+        private final TextView mContributorTextView;
+        private final ImageView mThumbnailImageView;
+
+        ArticleViewHolder(View itemView) {
+            super(itemView);
+            mSectionTextView = itemView.findViewById(R.id.article_section);
+            mDateTextView = itemView.findViewById(R.id.article_date);
+            mTitleTextView = itemView.findViewById(R.id.article_title);
+            mContributorTextView = itemView.findViewById(R.id.article_contributor);
+            mThumbnailImageView = itemView.findViewById(R.id.article_thumbnail);
+            itemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION) {
+                mClickListener.onArticleClick(getItem(position));
+            }
+        }
+    }
 }
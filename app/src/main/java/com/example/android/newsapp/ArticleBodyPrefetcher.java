@@ -0,0 +1,202 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fetches the bodies of the articles at the top of the list in the background and keeps them in the
+ * ArticleBodyStore, so the reader opens them at once, offline too. The bodies of up to a page of articles
+ * are fetched with a single show-fields=body request.
+ */
+public class ArticleBodyPrefetcher {
+
+    /**
+     * Number of articles whose bodies are fetched for each prefetch
+     */
+    public static final int PREFETCH_COUNT = 10;
+
+    /**
+     * Shared instance used by the list and the reader
+     */
+    private static ArticleBodyPrefetcher sInstance;
+
+    /**
+     * Loads the bodies of articles.
+     */
+    public interface Source {
+        /**
+         * Returns the bodies of the articles keyed by article URL, or null if the request failed.
+         * Articles without a body are left out.
+         */
+        Map<String, String> fetch(List<String> urls, CancellationToken cancellationToken);
+    }
+
+    /**
+     * Where the bodies are stored
+     */
+    private final ArticleBodyStore mStore;
+
+    /**
+     * Runs the prefetch requests, one at a time
+     */
+    private final Executor mExecutor;
+
+    /**
+     * Loads the bodies
+     */
+    private final Source mSource;
+
+    /**
+     * URLs of the articles whose bodies are being fetched
+     */
+    private final Set<String> mPendingUrls = new HashSet<>();
+
+    /**
+     * Number of bodies stored by the prefetch
+     */
+    private final AtomicLong mPrefetchedCount = new AtomicLong();
+
+    /**
+     * Constructs a new ArticleBodyPrefetcher
+     *
+     * @param store    is where the bodies are stored
+     * @param executor runs the requests in the background
+     * @param source   loads the bodies
+     */
+    public ArticleBodyPrefetcher(ArticleBodyStore store, Executor executor, Source source) {
+        mStore = store;
+        mExecutor = executor;
+        mSource = source;
+    }
+
+    /**
+     * Returns the shared prefetcher, which fetches the bodies from the Guardian API.
+     */
+    public static synchronized ArticleBodyPrefetcher getInstance(Context context) {
+        if (sInstance == null) {
+            final String apiKey = context.getString(R.string.uri_api_key_value);
+            sInstance = new ArticleBodyPrefetcher(ArticleBodyStore.getInstance(context),
+                    AppExecutors.limit(AppExecutors.getInstance().io(), 1), new Source() {
+                @Override
+                public Map<String, String> fetch(List<String> urls, CancellationToken cancellationToken) {
+                    return QueryUtils.fetchArticleBodies(getBodiesUrl(urls, apiKey), cancellationToken);
+                }
+            });
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the URL of a query for the bodies of the given articles.
+     */
+    static String getBodiesUrl(List<String> urls, String apiKey) {
+        List<String> ids = new ArrayList<>();
+        for (String url : urls) {
+            String id = GuardianQuery.idOf(url);
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return GuardianQuery.newBuilder()
+                .ids(ids)
+                .fields(GuardianQuery.Field.BODY)
+                .pageSize(Math.max(1, ids.size()))
+                .apiKey(apiKey)
+                .build()
+                .toUrl();
+    }
+
+    /**
+     * Fetch in the background the bodies of the first PREFETCH_COUNT articles that aren't stored yet.
+     * Called on the main thread: the store is only checked in the background, as it may read its directory
+     * and waits for the bodies being written.
+     *
+     * @param articles are the articles from the top of the list, in order
+     */
+    public void prefetch(List<Article> articles) {
+        final List<String> candidateUrls = new ArrayList<>();
+        synchronized (mPendingUrls) {
+            for (Article article : articles) {
+                String url = article.getUrl();
+                if (GuardianQuery.idOf(url) != null && !mPendingUrls.contains(url)) {
+                    candidateUrls.add(url);
+                }
+            }
+            mPendingUrls.addAll(candidateUrls);
+        }
+        if (candidateUrls.isEmpty()) {
+            return;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    List<String> urls = new ArrayList<>();
+                    for (String url : candidateUrls) {
+                        if (urls.size() == PREFETCH_COUNT) {
+                            break;
+                        }
+                        if (!mStore.contains(url)) {
+                            urls.add(url);
+                        }
+                    }
+                    if (urls.isEmpty()) {
+                        return;
+                    }
+                    Map<String, String> bodies = mSource.fetch(urls, null);
+                    if (bodies != null) {
+                        for (Map.Entry<String, String> body : bodies.entrySet()) {
+                            mStore.put(body.getKey(), body.getValue());
+                            mPrefetchedCount.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    synchronized (mPendingUrls) {
+                        mPendingUrls.removeAll(candidateUrls);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the body of the article from the store, or fetches and stores it if it isn't there.
+     * Returns null if the body can't be loaded (i.e. offline). Runs the request on the calling thread.
+     */
+    public String getBody(String url, CancellationToken cancellationToken) {
+        String body = mStore.get(url);
+        if (body != null || GuardianQuery.idOf(url) == null) {
+            return body;
+        }
+
+        Map<String, String> bodies = mSource.fetch(Collections.singletonList(url), cancellationToken);
+        body = bodies != null ? bodies.get(url) : null;
+        if (body != null) {
+            mStore.put(url, body);
+        }
+        return body;
+    }
+
+    /**
+     * Returns the number of bodies stored by the prefetch.
+     */
+    public long getPrefetchedCount() {
+        return mPrefetchedCount.get();
+    }
+
+    /**
+     * Returns the store the bodies are kept in.
+     */
+    public ArticleBodyStore getStore() {
+        return mStore;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Disk store of the HTML bodies of articles, keyed by article URL, so the reader opens them at once and offline.
+ * Bodies are gzip-compressed, and the store is kept under a size limit by removing the least recently
+ * read (or written) bodies. It counts hits, misses and the bytes it uses.
+ */
+public class ArticleBodyStore {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ArticleBodyStore.class.getSimpleName();
+
+    /**
+     * Name of the store directory inside the app cache dir
+     */
+    private static final String STORE_DIR_NAME = "article_bodies";
+
+    /**
+     * Version of the body file format
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Maximum total size of the store on disk in bytes (5 MB, a few hundred compressed articles)
+     */
+    private static final long DEFAULT_MAX_BYTES = 5 * 1024 * 1024L;
+
+    /**
+     * Largest body accepted when reading, larger lengths come from a corrupt file
+     */
+    private static final int MAX_BODY_BYTES = 8 * 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Shared instance used by the reader and the prefetch
+     */
+    private static ArticleBodyStore sInstance;
+
+    /**
+     * Files of the stored bodies, one per URL, under the size limit
+     */
+    private final DiskLruFiles mFiles;
+
+    /**
+     * Number of get() calls that found the body
+     */
+    private final AtomicLong mHitCount = new AtomicLong();
+
+    /**
+     * Number of get() calls that didn't find the body
+     */
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /**
+     * Constructs a new ArticleBodyStore
+     *
+     * @param directory where the bodies are stored
+     * @param maxBytes  is the maximum total size of the compressed bodies
+     */
+    public ArticleBodyStore(File directory, long maxBytes) {
+        mFiles = new DiskLruFiles(directory, maxBytes);
+    }
+
+    /**
+     * Returns the shared store in the app cache directory.
+     */
+    public static synchronized ArticleBodyStore getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), STORE_DIR_NAME);
+            sInstance = new ArticleBodyStore(directory, DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the stored body of the article, or null if it isn't stored. Counts a hit or a miss.
+     */
+    public synchronized String get(String url) {
+        String body = read(url);
+        if (body != null) {
+            mHitCount.incrementAndGet();
+        } else {
+            mMissCount.incrementAndGet();
+        }
+        // The hit rate of the reader, reported with the other metrics instead of read on the main thread
+        Metrics.increment(body != null ? "bodies.hits" : "bodies.misses");
+        return body;
+    }
+
+    /**
+     * Returns true if the body of the article is stored, without counting a hit or a miss.
+     */
+    public synchronized boolean contains(String url) {
+        return mFiles.contains(url);
+    }
+
+    /**
+     * Stores the body of the article and removes the least recently used bodies over the size limit.
+     */
+    public synchronized void put(String url, String body) {
+        // Write to a temporary file first so a reader never sees a half written body
+        File tempFile = mFiles.tempFileFor(url);
+        if (tempFile == null) {
+            return;
+        }
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))));
+            byte[] bodyBytes = body.getBytes(UTF_8);
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(url);
+            output.writeInt(bodyBytes.length);
+            output.write(bodyBytes);
+            output.close();
+            output = null;
+
+            if (!mFiles.commit(url, tempFile)) {
+                Log.e(LOG_TAG, "Problem saving the article body");
+                return;
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the article body", e);
+        } finally {
+            DiskLruFiles.closeQuietly(output);
+            tempFile.delete();
+        }
+
+        Metrics.record("bodies.bytes_used", mFiles.getBytesUsed());
+    }
+
+    /**
+     * Returns the number of get() calls that found the body.
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * Returns the number of get() calls that didn't find the body.
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Returns the share of get() calls that found the body, between 0 and 1, or 0 before the first call.
+     */
+    public double getHitRate() {
+        long hits = mHitCount.get();
+        long total = hits + mMissCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Returns the number of stored bodies.
+     */
+    public synchronized int getCount() {
+        return mFiles.getCount();
+    }
+
+    /**
+     * Returns the size of the stored (compressed) bodies on disk, in bytes.
+     */
+    public synchronized long getBytesUsed() {
+        return mFiles.getBytesUsed();
+    }
+
+    /**
+     * Read the body of the article and mark it as the most recently used. Returns null if it can't be read.
+     */
+    private String read(String url) {
+        File file = mFiles.get(url);
+        if (file == null) {
+            return null;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+            if (input.readInt() != FORMAT_VERSION || !url.equals(input.readUTF())) {
+                // Old format, or another URL with the same hash
+                return null;
+            }
+            int length = input.readInt();
+            if (length < 0 || length > MAX_BODY_BYTES) {
+                throw new IOException("Corrupt body length " + length);
+            }
+            byte[] bodyBytes = new byte[length];
+            input.readFully(bodyBytes);
+            return new String(bodyBytes, UTF_8);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the article body", e);
+            mFiles.delete(url);
+            return null;
+        } finally {
+            DiskLruFiles.closeQuietly(input);
+        }
+    }
+}
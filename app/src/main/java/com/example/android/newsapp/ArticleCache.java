@@ -0,0 +1,338 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Disk-backed store of article lists, keyed by the query URL that loaded them.
+ * Entries are fresh for a time-to-live, after that they are still served but should be refreshed.
+ * The directory is kept under a size limit by removing the least recently written entries.
+ */
+public class ArticleCache {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ArticleCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory inside the app cache dir
+     */
+    private static final String CACHE_DIR_NAME = "articles";
+
+    /**
+     * Version of the entry file format: a header with the URL and save time, then the articles encoded by ArticleCodec
+     */
+    private static final int FORMAT_VERSION = 3;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Time an entry is considered fresh, in milliseconds (15 minutes)
+     */
+    private static final long DEFAULT_TTL_MS = 15 * 60 * 1000L;
+
+    /**
+     * Age after which an entry is deleted instead of served stale, in milliseconds (7 days)
+     */
+    private static final long DEFAULT_MAX_AGE_MS = 7 * 24 * 60 * 60 * 1000L;
+
+    /**
+     * Maximum total size of the cache directory in bytes (2 MB)
+     */
+    private static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024L;
+
+    /**
+     * Shared instance used by the repository and the search
+     */
+    private static ArticleCache sInstance;
+
+    /**
+     * Directory that holds one file per query URL
+     */
+    private final File mDirectory;
+
+    /**
+     * Time an entry is considered fresh, in milliseconds
+     */
+    private final long mTtlMs;
+
+    /**
+     * Age after which an entry is deleted, in milliseconds
+     */
+    private final long mMaxAgeMs;
+
+    /**
+     * Maximum total size of the directory in bytes
+     */
+    private final long mMaxBytes;
+
+    /**
+     * Incremented every time an entry is written or deleted
+     */
+    private int mVersion;
+
+    /**
+     * Index of the cached articles, built lazily
+     */
+    private SearchIndex mSearchIndex;
+
+    /**
+     * Value of mVersion when mSearchIndex was built
+     */
+    private int mSearchIndexVersion;
+
+    /**
+     * Constructs a new ArticleCache
+     *
+     * @param directory where the entries are stored
+     * @param ttlMs     is the time an entry is considered fresh
+     * @param maxAgeMs  is the age after which an entry is deleted
+     * @param maxBytes  is the maximum total size of the entries
+     */
+    public ArticleCache(File directory, long ttlMs, long maxAgeMs, long maxBytes) {
+        mDirectory = directory;
+        mTtlMs = ttlMs;
+        mMaxAgeMs = maxAgeMs;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the shared cache stored in the app cache directory.
+     */
+    public static synchronized ArticleCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME);
+            sInstance = new ArticleCache(directory, DEFAULT_TTL_MS, DEFAULT_MAX_AGE_MS, DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached articles for the given URL, or null if there are none.
+     */
+    public synchronized Entry get(String url) {
+        File file = fileFor(url);
+        if (!file.exists()) {
+            return null;
+        }
+        long section = Metrics.beginSection("cache.read");
+        try {
+            return readEntry(file, url);
+        } finally {
+            Metrics.endSection("cache.read", section);
+        }
+    }
+
+    /**
+     * Returns the index of all cached articles, rebuilt when the cache changed since the last call.
+     */
+    public synchronized SearchIndex getSearchIndex() {
+        if (mSearchIndex == null || mSearchIndexVersion != mVersion) {
+            List<Article> articles = new ArrayList<>();
+            File[] files = mDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Entry entry = file.getName().endsWith(".tmp") ? null : readEntry(file, null);
+                    if (entry != null) {
+                        articles.addAll(entry.getArticles());
+                    }
+                }
+            }
+            mSearchIndex = SearchIndex.build(articles);
+            mSearchIndexVersion = mVersion;
+        }
+        return mSearchIndex;
+    }
+
+    /**
+     * Read an entry file. Returns null if it can't be used.
+     *
+     * @param file is the entry file
+     * @param url  is the URL the entry must belong to, or null for any URL
+     */
+    private Entry readEntry(File file, String url) {
+        try {
+            // Map the file instead of reading it, the articles are decoded straight from the mapping
+            ByteBuffer buffer = ArticleCodec.map(file);
+            if (buffer.getInt() != FORMAT_VERSION) {
+                // Old format, the entry can't be used
+                return null;
+            }
+            int urlLength = buffer.getInt();
+            if (urlLength < 0 || urlLength > buffer.remaining()) {
+                throw new IOException("Corrupt entry header");
+            }
+            byte[] urlBytes = new byte[urlLength];
+            buffer.get(urlBytes);
+            if (url != null && !url.equals(new String(urlBytes, UTF_8))) {
+                // Another URL with the same hash
+                return null;
+            }
+            long savedAtMillis = buffer.getLong();
+            if (System.currentTimeMillis() - savedAtMillis > mMaxAgeMs) {
+                file.delete();
+                mVersion++;
+                return null;
+            }
+
+            List<Article> articles = ArticleCodec.decode(buffer);
+            return new Entry(articles, savedAtMillis, savedAtMillis + mTtlMs);
+        } catch (IOException | BufferUnderflowException e) {
+            Log.e(LOG_TAG, "Problem reading the cached articles", e);
+            file.delete();
+            mVersion++;
+            return null;
+        }
+    }
+
+    /**
+     * Stores the articles for the given URL and trims the cache to its size limit.
+     */
+    public synchronized void put(String url, List<Article> articles) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Problem creating the cache directory");
+            return;
+        }
+
+        // Write to a temporary file first so a reader never sees a half written entry
+        File file = fileFor(url);
+        File tempFile = new File(mDirectory, file.getName() + ".tmp");
+        DataOutputStream output = null;
+        long section = Metrics.beginSection("cache.write");
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            byte[] urlBytes = url.getBytes(UTF_8);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(urlBytes.length);
+            output.write(urlBytes);
+            output.writeLong(System.currentTimeMillis());
+            ArticleCodec.write(articles, output);
+            output.close();
+            output = null;
+
+            if (!tempFile.renameTo(file)) {
+                Log.e(LOG_TAG, "Problem saving the cached articles");
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the cached articles", e);
+        } finally {
+            closeQuietly(output);
+            tempFile.delete();
+            Metrics.endSection("cache.write", section);
+        }
+
+        mVersion++;
+        trimToSize();
+    }
+
+    /**
+     * Delete the oldest entries until the directory fits in the size limit.
+     */
+    private void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        if (totalBytes <= mMaxBytes) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File first, File second) {
+                return Long.compare(first.lastModified(), second.lastModified());
+            }
+        });
+        for (int i = 0; i < files.length && totalBytes > mMaxBytes; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    /**
+     * Returns the file that holds the entry for the given URL.
+     */
+    private File fileFor(String url) {
+        return new File(mDirectory, Integer.toHexString(url.hashCode()));
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing the cache file", e);
+            }
+        }
+    }
+
+    /**
+     * A list of cached articles and the time they were saved.
+     */
+    public static class Entry {
+
+        /**
+         * The cached articles
+         */
+        private final List<Article> mArticles;
+
+        /**
+         * The time the articles were saved, in milliseconds since epoch
+         */
+        private final long mSavedAtMillis;
+
+        /**
+         * The time after which the articles should be refreshed, in milliseconds since epoch
+         */
+        private final long mFreshUntilMillis;
+
+        Entry(List<Article> articles, long savedAtMillis, long freshUntilMillis) {
+            mArticles = articles;
+            mSavedAtMillis = savedAtMillis;
+            mFreshUntilMillis = freshUntilMillis;
+        }
+
+        /**
+         * Returns the cached articles.
+         */
+        public List<Article> getArticles() {
+            return mArticles;
+        }
+
+        /**
+         * Returns the time the articles were saved, in milliseconds since epoch.
+         */
+        public long getSavedAtMillis() {
+            return mSavedAtMillis;
+        }
+
+        /**
+         * Returns true if the articles are older than the time-to-live.
+         */
+        public boolean isStale() {
+            return System.currentTimeMillis() > mFreshUntilMillis;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.android.newsapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, versioned binary encoding of article lists, used by ArticleCache.
+ * <p>
+ * Layout: magic, version, a dictionary of the distinct sections and contributors, then the articles.
+ * Numbers are unsigned varints and strings are a varint byte length followed by UTF-8 bytes.
+ * Each article is stored as its title, the dictionary index of its section, its date as seconds relative
+ * to the previous article, the number of its contributors and their dictionary indexes, and its URL and thumbnail URL as the length of the prefix
+ * they share with the previous one followed by the rest. Decoding reads straight from a ByteBuffer, so a file can be
+ * memory-mapped instead of copied through a stream. Decoded sections and contributors are interned once per
+ * dictionary entry, not once per article.
+ */
+public final class ArticleCodec {
+
+    /**
+     * "ARTC", the first four bytes of an encoded list
+     */
+    static final int MAGIC = 0x41525443;
+
+    /**
+     * Version of the encoding, increased when the layout changes
+     */
+    static final int VERSION = 3;
+
+    /**
+     * Date stored as a string because it isn't in the canonical "yyyy-MM-ddTHH:mm:ssZ" form
+     */
+    private static final int DATE_STRING = 0;
+
+    /**
+     * Date stored as the difference in seconds with the date of the previous article
+     */
+    private static final int DATE_SECONDS = 1;
+
+    /**
+     * Shared prefix length written for a null thumbnail, the other lengths are shifted by one
+     */
+    private static final int NO_THUMBNAIL = 0;
+
+    /**
+     * Smallest possible size of an encoded article, used to reject corrupt counts before allocating
+     */
+    private static final int MIN_ARTICLE_BYTES = 6;
+
+    /**
+     * Size of the array the strings are decoded from, longer strings get their own array
+     */
+    private static final int SCRATCH_BYTES = 512;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * A private blank constructor
+     */
+    private ArticleCodec() {
+    }
+
+    /**
+     * Returns the encoded articles.
+     */
+    public static byte[] encode(List<Article> articles) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64 + articles.size() * 96);
+        try {
+            write(articles, output);
+        } catch (IOException e) {
+            // A ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Write the encoded articles to the output stream.
+     */
+    public static void write(List<Article> articles, OutputStream output) throws IOException {
+        // Collect the distinct sections and contributors, in order of first use
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        for (Article article : articles) {
+            addToDictionary(dictionary, values, article.getSection());
+            for (int i = 0; i < article.getContributorCount(); i++) {
+                addToDictionary(dictionary, values, Contributor.forId(article.getContributorId(i)).getName());
+            }
+        }
+
+        writeInt(output, MAGIC);
+        writeVarint(output, VERSION);
+        writeVarint(output, values.size());
+        for (String value : values) {
+            writeString(output, value);
+        }
+
+        writeVarint(output, articles.size());
+        long previousSeconds = 0;
+        String previousUrl = "";
+        String previousThumbnailUrl = "";
+        for (Article article : articles) {
+            writeString(output, article.getTitle());
+            writeVarint(output, dictionary.get(article.getSection()));
+
+            // Dates in the canonical form are rebuilt from their time, the others are kept as they are
+            long timeInMillis = article.getTimeInMillis();
+            if (timeInMillis != ArticleDates.UNKNOWN && timeInMillis % 1000 == 0
+                    && article.getDate().equals(ArticleDates.formatIsoDate(timeInMillis))) {
+                long seconds = timeInMillis / 1000;
+                output.write(DATE_SECONDS);
+                writeVarint(output, zigZag(seconds - previousSeconds));
+                previousSeconds = seconds;
+            } else {
+                output.write(DATE_STRING);
+                writeString(output, article.getDate());
+            }
+
+            writeVarint(output, article.getContributorCount());
+            for (int i = 0; i < article.getContributorCount(); i++) {
+                writeVarint(output, dictionary.get(Contributor.forId(article.getContributorId(i)).getName()));
+            }
+
+            String url = article.getUrl();
+            int shared = sharedPrefixLength(previousUrl, url);
+            writeVarint(output, shared);
+            writeString(output, url.substring(shared));
+            previousUrl = url;
+
+            String thumbnailUrl = article.getThumbnailUrl();
+            if (thumbnailUrl == null) {
+                writeVarint(output, NO_THUMBNAIL);
+            } else {
+                shared = sharedPrefixLength(previousThumbnailUrl, thumbnailUrl);
+                writeVarint(output, shared + 1);
+                writeString(output, thumbnailUrl.substring(shared));
+                previousThumbnailUrl = thumbnailUrl;
+            }
+        }
+    }
+
+    /**
+     * Returns the articles encoded in the buffer, from its position to its limit.
+     *
+     * @throws IOException if the bytes aren't a list encoded by this version
+     */
+    public static List<Article> decode(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an encoded article list");
+            }
+            int version = readVarint(buffer);
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version);
+            }
+
+            // Reused for the bytes of every string
+            byte[] scratch = new byte[SCRATCH_BYTES];
+
+            int dictionarySize = readCount(buffer, 1);
+            String[] values = new String[dictionarySize];
+            for (int i = 0; i < dictionarySize; i++) {
+                values[i] = readString(buffer, scratch);
+            }
+            // The entities of the dictionary entries, interned on first use
+            Section[] sections = new Section[dictionarySize];
+            Contributor[] contributors = new Contributor[dictionarySize];
+
+            int count = readCount(buffer, MIN_ARTICLE_BYTES);
+            List<Article> articles = new ArrayList<>(count);
+            long previousSeconds = 0;
+            String previousUrl = "";
+            String previousThumbnailUrl = "";
+            for (int i = 0; i < count; i++) {
+                String title = readString(buffer, scratch);
+                int sectionIndex = readVarint(buffer);
+                if (sections[sectionIndex] == null) {
+                    sections[sectionIndex] = Section.intern(values[sectionIndex]);
+                }
+                int sectionId = sections[sectionIndex].getId();
+
+                String date;
+                long timeInMillis;
+                int dateKind = buffer.get();
+                if (dateKind == DATE_SECONDS) {
+                    previousSeconds += unZigZag(readVarintLong(buffer));
+                    timeInMillis = previousSeconds * 1000;
+                    date = ArticleDates.formatIsoDate(timeInMillis);
+                } else if (dateKind == DATE_STRING) {
+                    date = readString(buffer, scratch);
+                    timeInMillis = ArticleDates.parseIsoDate(date);
+                } else {
+                    throw new IOException("Unknown date kind " + dateKind);
+                }
+
+                int contributorCount = readCount(buffer, 1);
+                int[] contributorIds = null;
+                for (int j = 0; j < contributorCount; j++) {
+                    int contributorIndex = readVarint(buffer);
+                    if (contributors[contributorIndex] == null) {
+                        contributors[contributorIndex] = Contributor.intern(values[contributorIndex]);
+                    }
+                    if (contributorCount == 1) {
+                        // Shared by all the articles of the contributor
+                        contributorIds = contributors[contributorIndex].asIdArray();
+                    } else {
+                        if (contributorIds == null) {
+                            contributorIds = new int[contributorCount];
+                        }
+                        contributorIds[j] = contributors[contributorIndex].getId();
+                    }
+                }
+
+                int shared = readVarint(buffer);
+                if (shared > previousUrl.length()) {
+                    throw new IOException("Shared prefix longer than the previous url");
+                }
+                String url = previousUrl.substring(0, shared) + readString(buffer, scratch);
+                previousUrl = url;
+
+                String thumbnailUrl = null;
+                int thumbnailShared = readVarint(buffer);
+                if (thumbnailShared != NO_THUMBNAIL) {
+                    thumbnailShared--;
+                    if (thumbnailShared > previousThumbnailUrl.length()) {
+                        throw new IOException("Shared prefix longer than the previous thumbnail url");
+                    }
+                    thumbnailUrl = previousThumbnailUrl.substring(0, thumbnailShared) + readString(buffer, scratch);
+                    previousThumbnailUrl = thumbnailUrl;
+                }
+
+                articles.add(new Article(title, sectionId, date, timeInMillis, contributorIds, url, thumbnailUrl));
+            }
+            if (buffer.hasRemaining()) {
+                throw new IOException(buffer.remaining() + " unexpected bytes after the articles");
+            }
+            return articles;
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Truncated or corrupt article list", e);
+        }
+    }
+
+    /**
+     * Returns the articles encoded in the array.
+     */
+    public static List<Article> decode(byte[] bytes) throws IOException {
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Returns the articles encoded in the file, which is memory-mapped instead of read.
+     */
+    public static List<Article> read(File file) throws IOException {
+        return decode(map(file));
+    }
+
+    /**
+     * Returns a read-only mapping of the whole file. The mapping stays valid after the file is closed.
+     */
+    static ByteBuffer map(File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            input.close();
+        }
+    }
+
+    private static void addToDictionary(Map<String, Integer> dictionary, List<String> values, String value) {
+        if (!dictionary.containsKey(value)) {
+            dictionary.put(value, values.size());
+            values.add(value);
+        }
+    }
+
+    private static int sharedPrefixLength(String first, String second) {
+        int max = Math.min(first.length(), second.length());
+        int length = 0;
+        while (length < max && first.charAt(length) == second.charAt(length)) {
+            length++;
+        }
+        // Don't split a surrogate pair between the prefix and the rest
+        if (length > 0 && Character.isHighSurrogate(second.charAt(length - 1))) {
+            length--;
+        }
+        return length;
+    }
+
+    private static void writeInt(OutputStream output, int value) throws IOException {
+        output.write(value >>> 24);
+        output.write(value >>> 16);
+        output.write(value >>> 8);
+        output.write(value);
+    }
+
+    private static void writeVarint(OutputStream output, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            output.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static void writeString(OutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(output, bytes.length);
+        output.write(bytes);
+    }
+
+    private static long readVarintLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static int readVarint(ByteBuffer buffer) throws IOException {
+        long value = readVarintLong(buffer);
+        if (value > Integer.MAX_VALUE) {
+            throw new IOException("Varint out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns a count of items that each take at least minBytes, checked against the remaining bytes.
+     */
+    private static int readCount(ByteBuffer buffer, int minBytes) throws IOException {
+        int count = readVarint(buffer);
+        if (count > buffer.remaining() / minBytes) {
+            throw new IOException("Count " + count + " larger than the remaining bytes");
+        }
+        return count;
+    }
+
+    /**
+     * Returns the string at the position of the buffer. Its bytes are copied to the scratch array,
+     * or to a new array if they don't fit.
+     */
+    private static String readString(ByteBuffer buffer, byte[] scratch) throws IOException {
+        int length = readVarint(buffer);
+        if (length > buffer.remaining()) {
+            throw new IOException("String length " + length + " larger than the remaining bytes");
+        }
+        byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+        buffer.get(bytes, 0, length);
+        return new String(bytes, 0, length, UTF_8);
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.android.newsapp;
+
+import java.text.DateFormatSymbols;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Parses the ISO-8601 dates of the Guardian API and formats them for display (i.e. "Feb 02, 2018").
+ * Both methods are thread-safe and don't create formatter objects, so they can run for every
+ * article of a response on the parse thread.
+ */
+public final class ArticleDates {
+
+    /**
+     * Returned by parseIsoDate() when the date can't be parsed
+     */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_DAY = 24 * 60 * 60 * MILLIS_PER_SECOND;
+
+    /**
+     * Short month names of the last used locale, looked up again when the default locale changes
+     */
+    private static volatile MonthNames sMonthNames;
+
+    /**
+     * A private blank constructor
+     */
+    private ArticleDates() {
+    }
+
+    /**
+     * Returns the milliseconds since epoch of a date like "2018-05-24T10:15:30Z", with optional
+     * fractional seconds and a "Z" or "+hh:mm" offset. Returns UNKNOWN if the date can't be parsed.
+     */
+    public static long parseIsoDate(String date) {
+        if (date == null || date.length() < 19
+                || date.charAt(4) != '-' || date.charAt(7) != '-' || date.charAt(10) != 'T'
+                || date.charAt(13) != ':' || date.charAt(16) != ':') {
+            return UNKNOWN;
+        }
+
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 2);
+        int day = digits(date, 8, 2);
+        int hour = digits(date, 11, 2);
+        int minute = digits(date, 14, 2);
+        int second = digits(date, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return UNKNOWN;
+        }
+
+        int index = 19;
+        int millis = 0;
+        if (index < date.length() && date.charAt(index) == '.') {
+            // Keep the first three digits of the fraction
+            index++;
+            int scale = 100;
+            while (index < date.length() && Character.isDigit(date.charAt(index))) {
+                millis += (date.charAt(index) - '0') * scale;
+                scale /= 10;
+                index++;
+            }
+        }
+
+        int offsetMinutes = 0;
+        if (index < date.length()) {
+            char zone = date.charAt(index);
+            if (zone == '+' || zone == '-') {
+                if (date.length() < index + 6 || date.charAt(index + 3) != ':') {
+                    return UNKNOWN;
+                }
+                int offsetHours = digits(date, index + 1, 2);
+                int offsetMins = digits(date, index + 4, 2);
+                if (offsetHours < 0 || offsetMins < 0) {
+                    return UNKNOWN;
+                }
+                offsetMinutes = (offsetHours * 60 + offsetMins) * (zone == '-' ? -1 : 1);
+            } else if (zone != 'Z') {
+                return UNKNOWN;
+            }
+        }
+
+        long days = daysFromCivil(year, month, day);
+        long seconds = hour * 3600L + minute * 60L + second - offsetMinutes * 60L;
+        return days * MILLIS_PER_DAY + seconds * MILLIS_PER_SECOND + millis;
+    }
+
+    /**
+     * Returns the date in the default time zone and locale formatted like "Feb 02, 2018",
+     * or an empty string for UNKNOWN.
+     */
+    public static String formatDisplayDate(long timeInMillis) {
+        if (timeInMillis == UNKNOWN) {
+            return "";
+        }
+
+        long localMillis = timeInMillis + TimeZone.getDefault().getOffset(timeInMillis);
+        long civilDate = civilFromDays(floorDiv(localMillis, MILLIS_PER_DAY));
+        long year = civilDate / 10000;
+        int month = (int) (civilDate / 100 % 100);
+        int day = (int) (civilDate % 100);
+
+        StringBuilder builder = new StringBuilder(12);
+        builder.append(monthNames()[month - 1]).append(' ');
+        if (day < 10) {
+            builder.append('0');
+        }
+        builder.append(day).append(", ").append(year);
+        return builder.toString();
+    }
+
+    /**
+     * Returns the UTC date like "2018-05-24T10:15:30Z", the form the Guardian API uses, with the
+     * milliseconds dropped. Returns null for UNKNOWN.
+     */
+    public static String formatIsoDate(long timeInMillis) {
+        if (timeInMillis == UNKNOWN) {
+            return null;
+        }
+
+        long days = floorDiv(timeInMillis, MILLIS_PER_DAY);
+        long civilDate = civilFromDays(days);
+        int secondOfDay = (int) ((timeInMillis - days * MILLIS_PER_DAY) / MILLIS_PER_SECOND);
+
+        StringBuilder builder = new StringBuilder(20);
+        appendDigits(builder, civilDate / 10000, 4).append('-');
+        appendDigits(builder, civilDate / 100 % 100, 2).append('-');
+        appendDigits(builder, civilDate % 100, 2).append('T');
+        appendDigits(builder, secondOfDay / 3600, 2).append(':');
+        appendDigits(builder, secondOfDay / 60 % 60, 2).append(':');
+        appendDigits(builder, secondOfDay % 60, 2).append('Z');
+        return builder.toString();
+    }
+
+    /**
+     * Returns the civil date of a number of days since 1970-01-01 packed as year * 10000 + month * 100 + day
+     * (Howard Hinnant's civil_from_days).
+     */
+    private static long civilFromDays(long days) {
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long monthPart = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * monthPart + 2) / 5 + 1;
+        long month = monthPart < 10 ? monthPart + 3 : monthPart - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * Append the value with leading zeros up to count digits.
+     */
+    private static StringBuilder appendDigits(StringBuilder builder, long value, int count) {
+        for (long limit = 10; count > 1; count--, limit *= 10) {
+            if (value < limit) {
+                builder.append('0');
+            }
+        }
+        return builder.append(value);
+    }
+
+    /**
+     * Returns the number of days since 1970-01-01 of a civil date (Howard Hinnant's days_from_civil).
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Returns the largest value less than or equal to dividend / divisor (Math.floorDiv() needs API 24).
+     */
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        if ((dividend % divisor != 0) && ((dividend < 0) != (divisor < 0))) {
+            quotient--;
+        }
+        return quotient;
+    }
+
+    /**
+     * Returns the value of count decimal digits starting at start, or -1 if one of them is not a digit.
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Returns the short month names of the default locale.
+     */
+    private static String[] monthNames() {
+        Locale locale = Locale.getDefault();
+        MonthNames monthNames = sMonthNames;
+        if (monthNames == null || !locale.equals(monthNames.mLocale)) {
+            monthNames = new MonthNames(locale, DateFormatSymbols.getInstance(locale).getShortMonths());
+            sMonthNames = monthNames;
+        }
+        return monthNames.mNames;
+    }
+
+    /**
+     * The short month names of a locale.
+     */
+    private static class MonthNames {
+
+        private final Locale mLocale;
+        private final String[] mNames;
+
+        MonthNames(Locale locale, String[] names) {
+            mLocale = locale;
+            mNames = names;
+        }
+    }
+}
@@ -0,0 +1,592 @@
+package com.example.android.newsapp;
+
+import android.app.Application;
+import android.arch.lifecycle.AndroidViewModel;
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.support.annotation.NonNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds the list of articles of MainActivity. It outlives configuration changes, so a rotation shows the
+ * pages already loaded without loading them again, and the loads in flight keep running.
+ * The loads are cancelled, HTTP calls included, when the activity finishes for good.
+ * <p>
+ * A refresh only fetches the articles published since the first page was loaded and adds them on top,
+ * so the rows already shown are neither fetched nor bound again.
+ * <p>
+ * A new list first shows the rows of the StartupSnapshot saved when the app last stopped, until the first page
+ * is loaded.
+ * <p>
+ * Only the pages around the screen are kept in memory. The pages dropped from the list go to a PageStore on disk,
+ * and scrolling back to them reads them from there instead of loading them again.
+ * <p>
+ * The searches of the search box run here too, so a search in flight survives a rotation.
+ */
+public class ArticleListViewModel extends AndroidViewModel {
+
+    /**
+     * Name of the directory of the PageStore inside the app cache dir
+     */
+    private static final String PAGE_STORE_DIR_NAME = "list_pages";
+
+    /**
+     * Time the search text must stay unchanged before it is searched, in milliseconds
+     */
+    private static final long SEARCH_DEBOUNCE_MS = 300;
+
+    /**
+     * Number of searches running at the same time, so a new search can start while the cancelled one unwinds
+     */
+    private static final int SEARCH_THREAD_COUNT = 2;
+
+    /**
+     * Loads the articles
+     */
+    private final ArticleRepository mRepository;
+
+    /**
+     * Rows shown while the first page loads
+     */
+    private final StartupSnapshot mSnapshot;
+
+    /**
+     * Runs the snapshot reads and writes
+     */
+    private final AppExecutors mExecutors;
+
+    /**
+     * The pages of the list, in memory and on disk
+     */
+    private final PageWindow mWindow;
+
+    /**
+     * Runs the searches typed in the search box
+     */
+    private final SearchPipeline mSearchPipeline;
+
+    /**
+     * The results of the search, null while no search result is shown
+     */
+    private final MutableLiveData<List<Article>> mSearchResults = new MutableLiveData<>();
+
+    /**
+     * The query of the search box, null while no search is open
+     */
+    private String mSearchQuery;
+
+    /**
+     * The articles of the retained pages
+     */
+    private final MutableLiveData<List<Article>> mArticles = new MutableLiveData<>();
+
+    /**
+     * True while the first page is loading and nothing complete was delivered yet
+     */
+    private final MutableLiveData<Boolean> mLoading = new MutableLiveData<>();
+
+    /**
+     * True if the first page couldn't be loaded and there were no cached articles to show instead
+     */
+    private final MutableLiveData<Boolean> mFailed = new MutableLiveData<>();
+
+    /**
+     * True while a refresh asked by the user runs
+     */
+    private final MutableLiveData<Boolean> mRefreshing = new MutableLiveData<>();
+
+    /**
+     * Number of articles a refresh added on top of the list, 0 once the user saw them
+     */
+    private final MutableLiveData<Integer> mNewArticleCount = new MutableLiveData<>();
+
+    /**
+     * True once the first page was requested, a new activity after a rotation only observes the result
+     */
+    private boolean mStarted;
+
+    /**
+     * True in "My feed" mode, whose merged results have no further pages
+     */
+    private boolean mFeedMode;
+
+    /**
+     * Cancels the load of the first page, null if none is running
+     */
+    private CancellationToken mListLoad;
+
+    /**
+     * Cancels the load of a page after (or before) the first one, null if none is running
+     */
+    private CancellationToken mPageLoad;
+
+    /**
+     * Cancels the load of the articles published since the first page was loaded, null if none is running
+     */
+    private CancellationToken mRefreshLoad;
+
+    /**
+     * URL of the first page shown, null in "My feed" mode. A refresh with other settings loads the list again.
+     */
+    private String mFirstPageUrl;
+
+    /**
+     * Number of articles per page, chosen by FetchPolicy for the first page and kept for the next ones
+     * since it is part of the page URLs
+     */
+    private int mPageSize = ArticleQueries.PAGE_SIZE;
+
+    /**
+     * Identifies the settings the list was loaded with, the key of its snapshot
+     */
+    private String mListKey;
+
+    /**
+     * True while the list shows the rows of the snapshot, until the first page is loaded
+     */
+    private boolean mShowingSnapshot;
+
+    /**
+     * The articles of the last snapshot saved, not saved again while the list doesn't change
+     */
+    private List<Article> mSavedArticles;
+
+    /**
+     * Constructs a new ArticleListViewModel, done by ViewModelProviders
+     */
+    public ArticleListViewModel(@NonNull Application application) {
+        super(application);
+        mRepository = ArticleRepository.getInstance(application);
+        mSnapshot = StartupSnapshot.getInstance(application);
+        mExecutors = AppExecutors.getInstance();
+        final File pageStoreDirectory = new File(application.getCacheDir(), PAGE_STORE_DIR_NAME);
+        mExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                // The stores of a process that was killed
+                PageStore.deleteAll(pageStoreDirectory);
+            }
+        });
+        mWindow = new PageWindow(application.getResources().getInteger(R.integer.max_retained_articles),
+                pageStoreDirectory, mExecutors.io());
+        mSearchPipeline = createSearchPipeline();
+    }
+
+    /**
+     * Returns the articles of the list.
+     */
+    public LiveData<List<Article>> getArticles() {
+        return mArticles;
+    }
+
+    /**
+     * Returns true while the first page is loading.
+     */
+    public LiveData<Boolean> isLoading() {
+        return mLoading;
+    }
+
+    /**
+     * Returns true if the first page couldn't be loaded, as opposed to a query without results.
+     */
+    public LiveData<Boolean> hasFailed() {
+        return mFailed;
+    }
+
+    /**
+     * Returns true while a refresh asked by the user runs.
+     */
+    public LiveData<Boolean> isRefreshing() {
+        return mRefreshing;
+    }
+
+    /**
+     * Returns the number of articles the last refresh added on top of the list, 0 once they were seen.
+     */
+    public LiveData<Integer> getNewArticleCount() {
+        return mNewArticleCount;
+    }
+
+    /**
+     * Returns the results of the search, null while no search result is shown.
+     */
+    public LiveData<List<Article>> getSearchResults() {
+        return mSearchResults;
+    }
+
+    /**
+     * Returns the query of the search box, null while no search is open.
+     */
+    public String getSearchQuery() {
+        return mSearchQuery;
+    }
+
+    /**
+     * Search the text of the search box, or close the search when it is empty. The same query is not searched
+     * again, i.e. when the search box is restored after a rotation.
+     *
+     * @param text      is the text of the search box
+     * @param submitted is true if the text was submitted, it is then searched without waiting
+     */
+    public void search(String text, boolean submitted) {
+        String query = text.trim();
+        if (query.isEmpty()) {
+            closeSearch();
+            return;
+        }
+        if (query.equals(mSearchQuery) && !submitted) {
+            return;
+        }
+        mSearchQuery = query;
+        if (submitted) {
+            mSearchPipeline.submitQuery(query);
+        } else {
+            mSearchPipeline.setQuery(query);
+        }
+    }
+
+    /**
+     * Cancel the search, the list shows the loaded pages again.
+     */
+    public void closeSearch() {
+        mSearchPipeline.cancel();
+        mSearchQuery = null;
+        mSearchResults.setValue(null);
+    }
+
+    /**
+     * Load the first page with the current settings, unless it was already loaded or is loading.
+     */
+    public void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        mLoading.setValue(true);
+        showSnapshot();
+        loadFirstPage();
+    }
+
+    /**
+     * Returns true while the list shows the rows saved when the app last stopped, not loaded ones.
+     */
+    public boolean isShowingSnapshot() {
+        return mShowingSnapshot;
+    }
+
+    /**
+     * Save the rows at the top of the list, to show them at the next launch before anything is loaded.
+     * Only a loaded first page is saved, not the snapshot itself nor a list scrolled past its first page.
+     */
+    public void saveSnapshot() {
+        List<Article> articles = mArticles.getValue();
+        if (mShowingSnapshot || mListKey == null || articles == null || articles.isEmpty()
+                || articles == mSavedArticles || mWindow.getPreviousPage() != 0) {
+            return;
+        }
+        mSavedArticles = articles;
+        final String key = mListKey;
+        final List<Article> rows = new ArrayList<>(articles.subList(0, Math.min(articles.size(), StartupSnapshot.MAX_ROWS)));
+        mExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                mSnapshot.write(key, rows);
+            }
+        });
+    }
+
+    /**
+     * Add the articles published since the list was loaded on top of it. The whole list is loaded again
+     * instead in "My feed" mode, when the first page was dropped, when the settings changed, or when too many
+     * articles were published to join up with the list.
+     */
+    public void refresh() {
+        if (mListLoad != null || mRefreshLoad != null) {
+            return;
+        }
+        mRefreshing.setValue(true);
+
+        Application context = getApplication();
+        List<Article> shownArticles = mArticles.getValue();
+        long newestMillis = getNewestTime(shownArticles);
+        if (ArticleQueries.isFeedMode(context) || !getListKey(context).equals(mListKey) || mWindow.getPreviousPage() != 0
+                || newestMillis == ArticleDates.UNKNOWN) {
+            loadFirstPage();
+            return;
+        }
+
+        mRefreshLoad = mRepository.loadNewerArticles(ArticleQueries.getNewerQuery(context, newestMillis), mFirstPageUrl,
+                mPageSize, shownArticles, new ArticleRepository.Callback<ArticleRepository.NewerArticles>() {
+                    @Override
+                    public void onResult(ArticleRepository.NewerArticles newerArticles, boolean complete) {
+                        mRefreshLoad = null;
+                        if (newerArticles != null && !newerArticles.isComplete()) {
+                            // Too many new articles, a gap would be left between them and the list
+                            loadFirstPage();
+                            return;
+                        }
+                        mRefreshing.setValue(false);
+                        if (newerArticles == null) {
+                            // The request failed, keep showing the list
+                            return;
+                        }
+                        List<Article> addedArticles = mWindow.prependToFirstPage(newerArticles.getArticles());
+                        if (!addedArticles.isEmpty()) {
+                            mArticles.setValue(mWindow.getArticles());
+                            mNewArticleCount.setValue(addedArticles.size());
+                        }
+                    }
+                });
+    }
+
+    /**
+     * The user saw the articles added by the last refresh.
+     */
+    public void onNewArticlesSeen() {
+        if (mNewArticleCount.getValue() != null && mNewArticleCount.getValue() != 0) {
+            mNewArticleCount.setValue(0);
+        }
+    }
+
+    /**
+     * Load the page after the last retained one, unless a page is loading or it was the last page.
+     */
+    public void loadNextPage() {
+        loadPage(mWindow.getNextPage());
+    }
+
+    /**
+     * Load the page before the first retained one, unless a page is loading or it is the first page.
+     */
+    public void loadPreviousPage() {
+        loadPage(mWindow.getPreviousPage());
+    }
+
+    @Override
+    protected void onCleared() {
+        // The activity finished for good, nobody wants the results anymore
+        cancel(mListLoad);
+        cancel(mPageLoad);
+        cancel(mRefreshLoad);
+        mSearchPipeline.cancel();
+        mWindow.close();
+    }
+
+    /**
+     * Returns the pipeline of the search box, on the shared executors.
+     */
+    private SearchPipeline createSearchPipeline() {
+        final Application context = getApplication();
+        return new SearchPipeline(mExecutors.timer(), AppExecutors.limit(mExecutors.io(), SEARCH_THREAD_COUNT),
+                mExecutors.mainThread(), new SearchPipeline.Source() {
+            @Override
+            public List<Article> search(String query, CancellationToken cancellationToken) {
+                return mRepository.search(ArticleQueries.getSearchUrl(context, query), query,
+                        ArticleQueries.getSection(context), cancellationToken);
+            }
+        }, new SearchPipeline.Listener() {
+            @Override
+            public void onSearchResult(String query, List<Article> articles) {
+                if (query.equals(mSearchQuery)) {
+                    mSearchResults.setValue(articles);
+                }
+            }
+        }, SEARCH_DEBOUNCE_MS);
+    }
+
+    /**
+     * Load the first page with the current settings, replacing the list.
+     */
+    private void loadFirstPage() {
+        Application context = getApplication();
+        mFeedMode = ArticleQueries.isFeedMode(context);
+        mListKey = getListKey(context);
+        ArticleRepository.Callback<List<Article>> callback = new ArticleRepository.Callback<List<Article>>() {
+
+            /**
+             * True once this load delivered a first page, i.e. the cached one
+             */
+            private boolean mDelivered;
+
+            @Override
+            public void onResult(List<Article> articles, boolean complete) {
+                if (complete) {
+                    mListLoad = null;
+                    mFailed.setValue(articles == null && !mDelivered);
+                    mLoading.setValue(false);
+                    mRefreshing.setValue(false);
+                }
+                if (!mDelivered) {
+                    mDelivered = true;
+                    showFirstPage(articles);
+                } else if (articles != null) {
+                    // The network copy of the cached page, the pages the user scrolled to stay
+                    replaceFirstPage(articles);
+                }
+            }
+        };
+        if (mFeedMode) {
+            mFirstPageUrl = null;
+            mListLoad = mRepository.loadFeed(ArticleQueries.getFeedUrls(context), callback);
+        } else {
+            // A new search shows the matching cached articles right away, even offline
+            mPageSize = FetchPolicy.getInstance(context).getPageSize();
+            mFirstPageUrl = ArticleQueries.getPageUrl(context, 1, mPageSize);
+            mListLoad = mRepository.loadArticles(mFirstPageUrl,
+                    ArticleQueries.getSearchTerm(context), ArticleQueries.getSection(context), callback);
+        }
+    }
+
+    /**
+     * Read the snapshot of the current settings in the background, and show it unless the first page was
+     * loaded (i.e. from the cache) meanwhile.
+     */
+    private void showSnapshot() {
+        final String key = getListKey(getApplication());
+        mExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Article> articles = mSnapshot.read(key);
+                Metrics.increment(articles != null ? "snapshot.hits" : "snapshot.misses");
+                mExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (articles != null && !articles.isEmpty() && mArticles.getValue() == null) {
+                            mShowingSnapshot = true;
+                            mArticles.setValue(articles);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Returns the key of the lists of the current settings: the URL of the first page, or the URLs of the
+     * "My feed" queries. The feed queries are sorted, their order follows the articles opened.
+     */
+    private static String getListKey(Application context) {
+        if (!ArticleQueries.isFeedMode(context)) {
+            return ArticleQueries.getPageUrl(context, 1);
+        }
+        List<String> urls = new ArrayList<>(ArticleQueries.getFeedUrls(context));
+        Collections.sort(urls);
+        StringBuilder key = new StringBuilder("feed");
+        for (String url : urls) {
+            key.append(' ').append(url);
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the publication time of the newest article, or ArticleDates.UNKNOWN if there is none.
+     */
+    private static long getNewestTime(List<Article> articles) {
+        long newestMillis = ArticleDates.UNKNOWN;
+        if (articles != null) {
+            for (Article article : articles) {
+                newestMillis = Math.max(newestMillis, article.getTimeInMillis());
+            }
+        }
+        return newestMillis;
+    }
+
+    /**
+     * Replace the pages with the first one.
+     */
+    private void showFirstPage(List<Article> articles) {
+        // A page requested from the previous first page doesn't fit the new one
+        cancel(mPageLoad);
+        mPageLoad = null;
+        mShowingSnapshot = false;
+        mArticles.setValue(mWindow.reset(articles, mFeedMode ? Integer.MAX_VALUE : mPageSize));
+        onNewArticlesSeen();
+    }
+
+    /**
+     * Replace the first page of the list with a newer copy of it, keeping the pages after it.
+     */
+    private void replaceFirstPage(List<Article> articles) {
+        mWindow.replaceFirstPage(articles, mFeedMode ? Integer.MAX_VALUE : mPageSize);
+        mArticles.setValue(mWindow.getArticles());
+    }
+
+    /**
+     * Start loading the given page, unless another page is already loading or the page number is 0.
+     */
+    private void loadPage(final int page) {
+        if (page <= 0 || mPageLoad != null || mFeedMode) {
+            return;
+        }
+        if (mWindow.isStored(page)) {
+            mPageLoad = restorePage(page);
+            return;
+        }
+
+        mPageLoad = mRepository.loadArticles(ArticleQueries.getPageUrl(getApplication(), page, mPageSize), null, null,
+                new ArticleRepository.Callback<List<Article>>() {
+                    @Override
+                    public void onResult(List<Article> articles, boolean complete) {
+                        if (complete) {
+                            mPageLoad = null;
+                        }
+                        if (articles == null) {
+                            // The page failed to load, the next scroll to it loads it again
+                            return;
+                        }
+                        addPage(page, articles);
+                    }
+                });
+    }
+
+    /**
+     * Read a page dropped from the list back from the PageStore in the background, and add it to the list.
+     * A page that can't be read is loaded again.
+     */
+    private CancellationToken restorePage(final int page) {
+        final CancellationToken cancellationToken = new CancellationToken();
+        final PageStore pageStore = mWindow.getPageStore();
+        mExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<Article> articles = pageStore.get(page);
+                mExecutors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancellationToken.isCancelled()) {
+                            return;
+                        }
+                        mPageLoad = null;
+                        if (articles == null) {
+                            // The page couldn't be read and left the store, load it again
+                            loadPage(page);
+                            return;
+                        }
+                        Metrics.increment("pages.restored");
+                        addPage(page, articles);
+                    }
+                });
+            }
+        });
+        return cancellationToken;
+    }
+
+    /**
+     * Add a loaded page at the end or the start of the list, if it still fits there.
+     */
+    private void addPage(int page, List<Article> articles) {
+        if (mWindow.addPage(page, articles, mPageSize)) {
+            mArticles.setValue(mWindow.getArticles());
+        }
+    }
+
+    private static void cancel(CancellationToken cancellationToken) {
+        if (cancellationToken != null) {
+            cancellationToken.cancel();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.android.newsapp;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps track of the pages of Guardian results shown in the list.
+ * Only a window of consecutive pages is retained, up to a number of articles. Articles already present in a
+ * retained page (same webUrl) are dropped when a new page is added.
+ */
+public class ArticlePager {
+
+    /**
+     * Maximum number of articles kept in memory, the window always keeps at least one page
+     */
+    private final int mMaxArticles;
+
+    /**
+     * The retained pages, in list order
+     */
+    private final LinkedList<Page> mPages = new LinkedList<>();
+
+    /**
+     * URLs of the articles in the retained pages
+     */
+    private final Set<String> mUrls = new HashSet<>();
+
+    /**
+     * Number of articles in the retained pages
+     */
+    private int mArticleCount;
+
+    /**
+     * True once a page came back empty or shorter than requested
+     */
+    private boolean mLastPageReached;
+
+    /**
+     * Constructs a new ArticlePager
+     *
+     * @param maxArticles is the maximum number of articles kept in memory
+     */
+    public ArticlePager(int maxArticles) {
+        mMaxArticles = maxArticles;
+    }
+
+    /**
+     * Forget every page and start again from the given first page.
+     * Returns the articles of the page to show.
+     */
+    public List<Article> reset(int pageNumber, List<Article> articles, int pageSize) {
+        mPages.clear();
+        mUrls.clear();
+        mArticleCount = 0;
+        mLastPageReached = false;
+        return append(pageNumber, articles, pageSize);
+    }
+
+    /**
+     * Add the page after the last retained page.
+     * Returns the articles to add at the end of the list, without duplicates.
+     */
+    public List<Article> append(int pageNumber, List<Article> articles, int pageSize) {
+        if (articles == null || articles.size() < pageSize) {
+            mLastPageReached = true;
+        }
+        Page page = new Page(pageNumber, removeDuplicates(articles));
+        mPages.addLast(page);
+        mArticleCount += page.mArticles.size();
+        return page.mArticles;
+    }
+
+    /**
+     * Add the page before the first retained page, i.e. when scrolling back up after it was dropped.
+     * Returns the articles to add at the start of the list, without duplicates.
+     */
+    public List<Article> prepend(int pageNumber, List<Article> articles) {
+        Page page = new Page(pageNumber, removeDuplicates(articles));
+        mPages.addFirst(page);
+        mArticleCount += page.mArticles.size();
+        return page.mArticles;
+    }
+
+    /**
+     * Replace the articles of the first retained page, i.e. with the network copy of a page first shown from the
+     * cache, keeping the pages after it. Articles also present in the other retained pages are dropped.
+     * Returns the articles of the page to show.
+     */
+    public List<Article> replaceFirstPage(List<Article> articles, int pageSize) {
+        if (mPages.isEmpty()) {
+            return append(1, articles, pageSize);
+        }
+        Page firstPage = mPages.removeFirst();
+        forget(firstPage);
+        if (mPages.isEmpty()) {
+            // It was the only page, it tells again whether there are more
+            mLastPageReached = articles == null || articles.size() < pageSize;
+        }
+        Page page = new Page(firstPage.mNumber, removeDuplicates(articles));
+        mPages.addFirst(page);
+        mArticleCount += page.mArticles.size();
+        return page.mArticles;
+    }
+
+    /**
+     * Add articles published since the first page was loaded at the start of the first retained page.
+     * Returns the articles added, without duplicates.
+     */
+    public List<Article> prependToFirstPage(List<Article> articles) {
+        List<Article> newArticles = removeDuplicates(articles);
+        if (mPages.isEmpty() || newArticles.isEmpty()) {
+            return newArticles;
+        }
+        // A new list, the list of the page may be held by the caller of an earlier call
+        Page firstPage = mPages.removeFirst();
+        List<Article> pageArticles = new ArrayList<>(newArticles);
+        pageArticles.addAll(firstPage.mArticles);
+        mPages.addFirst(new Page(firstPage.mNumber, pageArticles));
+        mArticleCount += newArticles.size();
+        return newArticles;
+    }
+
+    /**
+     * Returns true if more articles are retained than allowed, and there is a page to drop.
+     */
+    public boolean isOverCapacity() {
+        return mPages.size() > 1 && mArticleCount > mMaxArticles;
+    }
+
+    /**
+     * Returns the number of articles in the retained pages.
+     */
+    public int getArticleCount() {
+        return mArticleCount;
+    }
+
+    /**
+     * Drop the first retained page and return its articles.
+     */
+    public List<Article> dropFirstPage() {
+        Page page = mPages.removeFirst();
+        forget(page);
+        return page.mArticles;
+    }
+
+    /**
+     * Drop the last retained page and return its articles.
+     */
+    public List<Article> dropLastPage() {
+        Page page = mPages.removeLast();
+        forget(page);
+        // The dropped page can be loaded again
+        mLastPageReached = false;
+        return page.mArticles;
+    }
+
+    /**
+     * Returns the articles of all retained pages, in list order.
+     */
+    public List<Article> getArticles() {
+        List<Article> articles = new ArrayList<>();
+        for (Page page : mPages) {
+            articles.addAll(page.mArticles);
+        }
+        return articles;
+    }
+
+    /**
+     * Returns the number of the page to load after the retained pages, or 0 if there are no more pages.
+     */
+    public int getNextPage() {
+        if (mPages.isEmpty() || mLastPageReached) {
+            return 0;
+        }
+        return mPages.getLast().mNumber + 1;
+    }
+
+    /**
+     * Returns the number of the first retained page, or 0 if there is none.
+     */
+    public int getFirstPage() {
+        return mPages.isEmpty() ? 0 : mPages.getFirst().mNumber;
+    }
+
+    /**
+     * Returns the number of the last retained page, or 0 if there is none.
+     */
+    public int getLastPage() {
+        return mPages.isEmpty() ? 0 : mPages.getLast().mNumber;
+    }
+
+    /**
+     * Returns the number of the page to load before the retained pages, or 0 if the first page is retained.
+     */
+    public int getPreviousPage() {
+        if (mPages.isEmpty()) {
+            return 0;
+        }
+        return mPages.getFirst().mNumber - 1;
+    }
+
+    private List<Article> removeDuplicates(List<Article> articles) {
+        List<Article> newArticles = new ArrayList<>();
+        if (articles != null) {
+            for (Article article : articles) {
+                if (mUrls.add(article.getUrl())) {
+                    newArticles.add(article);
+                }
+            }
+        }
+        return newArticles;
+    }
+
+    private void forget(Page page) {
+        mArticleCount -= page.mArticles.size();
+        for (Article article : page.mArticles) {
+            mUrls.remove(article.getUrl());
+        }
+    }
+
+    /**
+     * A page of results and the articles it added to the list.
+     */
+    private static class Page {
+
+        /**
+         * The page number, starting at 1
+         */
+        private final int mNumber;
+
+        /**
+         * The articles of the page shown in the list
+         */
+        private final List<Article> mArticles;
+
+        Page(int number, List<Article> articles) {
+            mNumber = number;
+            mArticles = articles;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds the Guardian query URLs for the search term and sections chosen in the settings.
+ * The URLs are also the keys of the article cache, so the list and the background sync must build them here.
+ */
+public final class ArticleQueries {
+
+    /**
+     * Number of articles requested per page
+     */
+    public static final int PAGE_SIZE = 20;
+
+    /**
+     * Number of articles requested per page of a refresh, which usually finds only a few new articles
+     */
+    public static final int NEWER_PAGE_SIZE = 10;
+
+    /**
+     * Number of articles requested per query of "My feed"
+     */
+    public static final int FEED_PAGE_SIZE = 20;
+
+    /**
+     * Number of days of articles requested by the queries of "My feed"
+     */
+    private static final int FEED_DAYS = 7;
+
+    /**
+     * A private blank constructor
+     */
+    private ArticleQueries() {
+    }
+
+    /**
+     * Returns true if "My feed" is enabled in the settings.
+     */
+    public static boolean isFeedMode(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return sharedPrefs.getBoolean(context.getString(R.string.settings_my_feed_key), false);
+    }
+
+    /**
+     * Returns the URL of a page of results for the search term and section of the settings.
+     */
+    public static String getPageUrl(Context context, int page) {
+        return getPageUrl(context, page, PAGE_SIZE);
+    }
+
+    /**
+     * Returns the URL of a page of results for the search term and section of the settings, with the given
+     * number of articles per page (see FetchPolicy.getPageSize()).
+     */
+    public static String getPageUrl(Context context, int page, int pageSize) {
+        return newQuery(context, getSection(context), getSearchTerm(context))
+                .page(page)
+                .pageSize(pageSize)
+                .build()
+                .toUrl();
+    }
+
+    /**
+     * Returns the first page of the articles of the settings published on or after the day of the given time,
+     * newest first, to find the articles published since the list was loaded.
+     *
+     * @param newestMillis is the publication time of the newest article of the list
+     */
+    public static GuardianQuery getNewerQuery(Context context, long newestMillis) {
+        return newQuery(context, getSection(context), getSearchTerm(context))
+                .fromDate(newestMillis)
+                .pageSize(NEWER_PAGE_SIZE)
+                .build();
+    }
+
+    /**
+     * Returns the URL of the first page of results for a search typed in the search box, in the section of the settings.
+     */
+    public static String getSearchUrl(Context context, String searchTerm) {
+        return newQuery(context, getSection(context), searchTerm)
+                .pageSize(PAGE_SIZE)
+                .build()
+                .toUrl();
+    }
+
+    /**
+     * Returns the search term of the settings.
+     */
+    public static String getSearchTerm(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        // getString retrieves a String value from the preferences. The second parameter is the default value for this preference.
+        return sharedPrefs.getString(context.getString(R.string.settings_search_term_key), context.getString(R.string.settings_search_term_default));
+    }
+
+    /**
+     * Returns the section id of the settings, empty for all sections.
+     */
+    public static String getSection(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        return sharedPrefs.getString(context.getString(R.string.settings_section_key), context.getString(R.string.settings_section_default));
+    }
+
+    /**
+     * Returns the "My feed" URLs, one per selected section and comma separated search term. The sections the user
+     * opened the most articles of come first, so their requests start first and their articles are in the first
+     * partial results of the feed.
+     */
+    public static List<String> getFeedUrls(Context context) {
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        String searchTerm = getSearchTerm(context);
+        Set<String> feedSections = sharedPrefs.getStringSet(context.getString(R.string.settings_feed_sections_key), null);
+        if (feedSections == null || feedSections.isEmpty()) {
+            feedSections = Collections.singleton(context.getString(R.string.settings_section_default));
+        }
+
+        // The feed only shows recent articles, so older ones aren't sent at all
+        long fromDateMillis = System.currentTimeMillis() - FEED_DAYS * 24 * 60 * 60 * 1000L;
+
+        List<String> urls = new ArrayList<>();
+        for (String feedSection : orderByOpenCount(context, feedSections)) {
+            for (String feedTerm : searchTerm.split(",")) {
+                urls.add(newQuery(context, feedSection, feedTerm.trim())
+                        .fromDate(fromDateMillis)
+                        .pageSize(FEED_PAGE_SIZE)
+                        .build()
+                        .toUrl());
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the feed sections, the ones with the most articles opened first (see ReadingHistory).
+     */
+    private static List<String> orderByOpenCount(Context context, Set<String> feedSections) {
+        List<String> values = Arrays.asList(context.getResources().getStringArray(R.array.settings_feed_section_values));
+        String[] names = context.getResources().getStringArray(R.array.settings_feed_section_names);
+        ReadingHistory readingHistory = ReadingHistory.getInstance(context);
+        final Map<String, Integer> openCounts = new HashMap<>();
+        for (String feedSection : feedSections) {
+            int index = values.indexOf(feedSection);
+            openCounts.put(feedSection, index >= 0 ? readingHistory.getOpenCount(names[index]) : 0);
+        }
+
+        // The order of the set is arbitrary, the sections with the same count stay in alphabetical order
+        List<String> sections = new ArrayList<>(feedSections);
+        Collections.sort(sections);
+        Collections.sort(sections, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                return Integer.compare(openCounts.get(second), openCounts.get(first));
+            }
+        });
+        return sections;
+    }
+
+    /**
+     * Returns the URLs the list shows first with the current settings: the first page, or the "My feed" queries.
+     * The first page has the size the list asks for on the current link, so the sync warms the same cache key.
+     */
+    public static List<String> getStartUrls(Context context) {
+        if (isFeedMode(context)) {
+            return getFeedUrls(context);
+        }
+        return Collections.singletonList(getPageUrl(context, 1, FetchPolicy.getInstance(context).getPageSize()));
+    }
+
+    /**
+     * Returns a query builder for a section and a search term, newest first, with the fields the list shows
+     * (the byline and the thumbnail).
+     * The list only needs the contributor names, so it asks for the byline field instead of the contributor
+     * tags, which come with a bio, images and URLs for each contributor. The parser splits the byline into the
+     * names of its contributors.
+     */
+    private static GuardianQuery.Builder newQuery(Context context, String section, String searchTerm) {
+        if (section.equals(context.getString(R.string.settings_section_default))) {
+            section = null;
+        }
+        return GuardianQuery.newBuilder()
+                .section(section)
+                .searchTerm(searchTerm)
+                .orderBy(GuardianQuery.OrderBy.NEWEST)
+                .fields(GuardianQuery.Field.BYLINE, GuardianQuery.Field.THUMBNAIL)
+                .apiKey(context.getString(R.string.uri_api_key_value));
+    }
+}
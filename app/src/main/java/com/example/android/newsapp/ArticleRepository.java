@@ -0,0 +1,431 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the articles and article bodies shown by the app, in the background on AppExecutors.
+ * Cached articles for a URL are delivered first, and refreshed from the network when they are stale.
+ * Without cached articles for the URL, matching articles cached by other queries are delivered first and
+ * topped up with the network results.
+ * <p>
+ * Every load returns a CancellationToken. Cancelling it cancels the HTTP call in flight, and nothing is
+ * delivered after it, so callers don't have to check for late results.
+ */
+public class ArticleRepository {
+
+    /**
+     * Maximum time a single "My feed" query may take, in milliseconds
+     */
+    private static final long FEED_REQUEST_TIMEOUT_MS = 20000;
+
+    /**
+     * Maximum number of pages a refresh fetches to reach the articles already shown
+     */
+    private static final int MAX_NEWER_PAGES = 5;
+
+    /**
+     * Shared instance used by the view models
+     */
+    private static ArticleRepository sInstance;
+
+    /**
+     * Receives the results of a load, on the main thread.
+     */
+    public interface Callback<T> {
+        /**
+         * Called with each result of the load.
+         *
+         * @param result   is the result, null if nothing could be loaded
+         * @param complete is false for an early result (cached, local or partial) that a later one replaces
+         */
+        void onResult(T result, boolean complete);
+    }
+
+    /**
+     * Disk cache of the articles loaded for each query URL
+     */
+    private final ArticleCache mCache;
+
+    /**
+     * Fetches the "My feed" queries
+     */
+    private final FeedFetcher mFeedFetcher;
+
+    /**
+     * Stores and fetches the article bodies
+     */
+    private final ArticleBodyPrefetcher mBodyPrefetcher;
+
+    /**
+     * Runs the loads
+     */
+    private final AppExecutors mExecutors;
+
+    /**
+     * Constructs a new ArticleRepository
+     *
+     * @param cache          keeps the articles of each query URL
+     * @param feedFetcher    fetches the "My feed" queries
+     * @param bodyPrefetcher stores and fetches the article bodies
+     * @param executors      run the loads and deliver the results
+     */
+    public ArticleRepository(ArticleCache cache, FeedFetcher feedFetcher, ArticleBodyPrefetcher bodyPrefetcher,
+                             AppExecutors executors) {
+        mCache = cache;
+        mFeedFetcher = feedFetcher;
+        mBodyPrefetcher = bodyPrefetcher;
+        mExecutors = executors;
+    }
+
+    /**
+     * Returns the shared repository.
+     */
+    public static synchronized ArticleRepository getInstance(Context context) {
+        if (sInstance == null) {
+            Context appContext = context.getApplicationContext();
+            sInstance = new ArticleRepository(ArticleCache.getInstance(appContext), FeedFetcher.getInstance(appContext),
+                    ArticleBodyPrefetcher.getInstance(appContext), AppExecutors.getInstance());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Load the articles of a query URL: the cached ones first, then the network results when they are missing
+     * or stale. If the request fails (i.e. offline), the articles delivered so far are delivered again as complete.
+     *
+     * @param url        is the query URL
+     * @param searchTerm is the search term of the url, to show matching local articles first, null to skip that
+     * @param section    is the section id of the url, empty for all sections
+     * @param callback   receives the articles
+     */
+    public CancellationToken loadArticles(final String url, final String searchTerm, final String section,
+                                          Callback<List<Article>> callback) {
+        final CancellationToken cancellationToken = new CancellationToken();
+        final Callback<List<Article>> timedCallback = timed("load.articles", callback);
+
+        // Decoding the mapped cache file and searching the index keep a core busy
+        mExecutors.cpu().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancellationToken.isCancelled()) {
+                    return;
+                }
+
+                ArticleCache.Entry entry = mCache.get(url);
+                if (entry != null) {
+                    deliver(cancellationToken, timedCallback, entry.getArticles(), !entry.isStale());
+                    if (entry.isStale()) {
+                        fetchArticles(url, entry.getArticles(), null, cancellationToken, timedCallback);
+                    }
+                    return;
+                }
+
+                // A new query, show the matching articles we already have while the request runs
+                List<Article> localArticles = null;
+                if (searchTerm != null) {
+                    localArticles = mCache.getSearchIndex().search(searchTerm, section, ArticleQueries.PAGE_SIZE);
+                    if (localArticles.isEmpty()) {
+                        localArticles = null;
+                    } else {
+                        deliver(cancellationToken, timedCallback, localArticles, false);
+                    }
+                }
+                fetchArticles(url, localArticles, localArticles, cancellationToken, timedCallback);
+            }
+        });
+        return cancellationToken;
+    }
+
+    /**
+     * Search the articles for the search box: a fresh cached result if there is one, otherwise the network
+     * results topped up with the matching articles of the local index, or only those when the request fails.
+     * Runs on the calling thread, i.e. a thread of the SearchPipeline. Returns null if the search was cancelled.
+     *
+     * @param url               is the search query URL
+     * @param searchTerm        is the search term of the url
+     * @param section           is the section id of the url, empty for all sections
+     * @param cancellationToken cancels the request
+     */
+    public List<Article> search(String url, String searchTerm, String section, CancellationToken cancellationToken) {
+        ArticleCache.Entry entry = mCache.get(url);
+        if (entry != null && !entry.isStale()) {
+            return entry.getArticles();
+        }
+
+        List<Article> localArticles = mCache.getSearchIndex().search(searchTerm, section, ArticleQueries.PAGE_SIZE);
+        List<Article> articles = QueryUtils.fetchArticlesData(url, cancellationToken);
+        if (articles == null) {
+            // Cancelled or offline, the local matches are the best we have
+            return cancellationToken.isCancelled() ? null : localArticles;
+        }
+        mCache.put(url, articles);
+        return mergeNewestFirst(articles, localArticles);
+    }
+
+    /**
+     * Load only the articles published since the shown ones were loaded: the pages of a query bounded by the
+     * day of the newest shown article are fetched until one reaches a shown article. The cached first page
+     * is updated with the new articles. Delivers null if a request fails.
+     *
+     * @param newerQuery    is the first page of the query bounded by the day of the newest shown article
+     * @param firstPageUrl  is the URL of the first page of the shown articles, the key of their cache entry
+     * @param firstPageSize is the number of articles of the first page
+     * @param shownArticles are the articles of the list
+     * @param callback      receives the new articles
+     */
+    public CancellationToken loadNewerArticles(final GuardianQuery newerQuery, final String firstPageUrl,
+                                               final int firstPageSize, final List<Article> shownArticles,
+                                               Callback<NewerArticles> callback) {
+        final CancellationToken cancellationToken = new CancellationToken();
+        final Callback<NewerArticles> timedCallback = timed("load.newer", callback);
+        mExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                Set<String> shownUrls = new HashSet<>();
+                for (Article article : shownArticles) {
+                    shownUrls.add(article.getUrl());
+                }
+
+                // Newest first, so the articles before the first shown one are the new ones
+                List<Article> newArticles = new ArrayList<>();
+                Set<String> newUrls = new HashSet<>();
+                boolean reachedShown = false;
+                for (int page = 1; page <= MAX_NEWER_PAGES && !reachedShown; page++) {
+                    String url = newerQuery.buildUpon().page(page).build().toUrl();
+                    List<Article> articles = QueryUtils.fetchArticlesData(url, cancellationToken);
+                    if (cancellationToken.isCancelled()) {
+                        return;
+                    }
+                    if (articles == null) {
+                        deliver(cancellationToken, timedCallback, null, true);
+                        return;
+                    }
+                    for (Article article : articles) {
+                        if (shownUrls.contains(article.getUrl())) {
+                            reachedShown = true;
+                            break;
+                        }
+                        // The pages shift when articles are published meanwhile, so an article may come twice
+                        if (newUrls.add(article.getUrl())) {
+                            newArticles.add(article);
+                        }
+                    }
+                    // The last page of the query, there is nothing older to reach
+                    if (articles.size() < newerQuery.getPageSize()) {
+                        reachedShown = true;
+                    }
+                }
+                Metrics.record("load.newer.articles", newArticles.size());
+
+                if (reachedShown && !newArticles.isEmpty()) {
+                    // The cached first page starts with the new articles, as a full reload would
+                    List<Article> firstPage = mergeNewestFirst(newArticles, shownArticles);
+                    mCache.put(firstPageUrl, firstPage.subList(0, Math.min(firstPage.size(), firstPageSize)));
+                }
+                deliver(cancellationToken, timedCallback, new NewerArticles(newArticles, reachedShown), true);
+            }
+        });
+        return cancellationToken;
+    }
+
+    /**
+     * Load the "My feed" articles: several queries fetched in parallel and merged by FeedFetcher.
+     * The merged articles are delivered each time a query completes, so a slow section doesn't hold back the others.
+     * Delivers null if every query failed.
+     *
+     * @param urls     are the query URLs of the feed
+     * @param callback receives the merged articles
+     */
+    public CancellationToken loadFeed(List<String> urls, Callback<List<Article>> callback) {
+        final CancellationToken cancellationToken = new CancellationToken();
+        final Callback<List<Article>> timedCallback = timed("load.feed", callback);
+        mFeedFetcher.fetch(urls, FEED_REQUEST_TIMEOUT_MS, new FeedFetcher.Listener() {
+            @Override
+            public void onPartialResult(List<Article> articles, int completedCount, int totalCount) {
+                // The final result is delivered by onResult()
+                if (completedCount < totalCount) {
+                    deliver(cancellationToken, timedCallback, articles, false);
+                }
+            }
+
+            @Override
+            public void onResult(List<Article> articles) {
+                deliver(cancellationToken, timedCallback, articles, true);
+            }
+        }, cancellationToken);
+        return cancellationToken;
+    }
+
+    /**
+     * Load the body of an article for the reader: from the ArticleBodyStore when it was prefetched,
+     * otherwise from the network. Delivers null if it can't be loaded.
+     *
+     * @param url      is the website url of the article
+     * @param callback receives the body
+     */
+    public CancellationToken loadBody(final String url, Callback<String> callback) {
+        final CancellationToken cancellationToken = new CancellationToken();
+        final Callback<String> timedCallback = timed("load.body", callback);
+        mExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (cancellationToken.isCancelled()) {
+                    return;
+                }
+                String body = mBodyPrefetcher.getBody(url, cancellationToken);
+                deliver(cancellationToken, timedCallback, body, true);
+            }
+        });
+        return cancellationToken;
+    }
+
+    /**
+     * Returns a callback that records the time to the first and to the complete result of a load,
+     * then passes the results on. Returns the callback itself when the metrics are disabled.
+     */
+    private static <T> Callback<T> timed(final String name, final Callback<T> callback) {
+        final long start = Metrics.startTimer();
+        if (start == 0) {
+            return callback;
+        }
+        return new Callback<T>() {
+            /**
+             * True until the first result, the callbacks all run on the main thread
+             */
+            private boolean mWaitingForFirst = true;
+
+            @Override
+            public void onResult(T result, boolean complete) {
+                if (mWaitingForFirst) {
+                    mWaitingForFirst = false;
+                    Metrics.stopTimer(name + ".first", start);
+                }
+                if (complete) {
+                    Metrics.stopTimer(name, start);
+                }
+                callback.onResult(result, complete);
+            }
+        };
+    }
+
+    /**
+     * Returns the articles of both lists, de-duplicated by URL and sorted by publication date (newest first).
+     */
+    static List<Article> mergeNewestFirst(List<Article> first, List<Article> second) {
+        Map<String, Article> merged = new LinkedHashMap<>();
+        for (Article article : first) {
+            merged.put(article.getUrl(), article);
+        }
+        for (Article article : second) {
+            if (!merged.containsKey(article.getUrl())) {
+                merged.put(article.getUrl(), article);
+            }
+        }
+        List<Article> articles = new ArrayList<>(merged.values());
+        Collections.sort(articles, new Comparator<Article>() {
+            @Override
+            public int compare(Article firstArticle, Article secondArticle) {
+                return Long.compare(secondArticle.getTimeInMillis(), firstArticle.getTimeInMillis());
+            }
+        });
+        return articles;
+    }
+
+    /**
+     * Fetch the articles of the URL on an I/O thread, cache them and deliver them.
+     *
+     * @param shownArticles are the articles delivered so far, delivered again if the request fails
+     * @param localArticles are the local search results to top up with the network results, may be null
+     */
+    private void fetchArticles(final String url, final List<Article> shownArticles, final List<Article> localArticles,
+                               final CancellationToken cancellationToken, final Callback<List<Article>> callback) {
+        mExecutors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                // The response is parsed as it arrives, so the parse stays on the thread reading the socket
+                final List<Article> articles = QueryUtils.fetchArticlesData(url, cancellationToken);
+                if (cancellationToken.isCancelled()) {
+                    return;
+                }
+                if (articles == null) {
+                    // The request failed (i.e. offline), keep showing what we have
+                    deliver(cancellationToken, callback, shownArticles, true);
+                    return;
+                }
+
+                mCache.put(url, articles);
+                if (localArticles == null) {
+                    deliver(cancellationToken, callback, articles, true);
+                    return;
+                }
+                mExecutors.cpu().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Top up the local results with the network results
+                        deliver(cancellationToken, callback, mergeNewestFirst(articles, localArticles), true);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Deliver a result on the main thread, unless the load is cancelled by then.
+     */
+    private <T> void deliver(final CancellationToken cancellationToken, final Callback<T> callback,
+                             final T result, final boolean complete) {
+        mExecutors.mainThread().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!cancellationToken.isCancelled()) {
+                    callback.onResult(result, complete);
+                }
+            }
+        });
+    }
+
+    /**
+     * The result of loadNewerArticles().
+     */
+    public static class NewerArticles {
+
+        /**
+         * The articles published since the shown ones were loaded, newest first
+         */
+        private final List<Article> mArticles;
+
+        /**
+         * True if the pages reached the shown articles, so there are no other new articles
+         */
+        private final boolean mComplete;
+
+        NewerArticles(List<Article> articles, boolean complete) {
+            mArticles = articles;
+            mComplete = complete;
+        }
+
+        /**
+         * Returns the new articles, newest first.
+         */
+        public List<Article> getArticles() {
+            return mArticles;
+        }
+
+        /**
+         * Returns true if these are all the new articles. Otherwise more were published than a refresh fetches,
+         * and they don't join up with the shown ones.
+         */
+        public boolean isComplete() {
+            return mComplete;
+        }
+    }
+}
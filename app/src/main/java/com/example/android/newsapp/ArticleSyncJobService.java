@@ -0,0 +1,209 @@
+package com.example.android.newsapp;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Periodic background job that refreshes the queries of the settings into the ArticleCache,
+ * so the list can show fresh articles at launch without waiting for the network.
+ * Every run records its duration, the bytes received and the number of new articles.
+ */
+public class ArticleSyncJobService extends JobService {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ArticleSyncJobService.class.getSimpleName();
+
+    /**
+     * ID of the sync job
+     */
+    private static final int JOB_ID = 1;
+
+    /**
+     * First retry delay after a failed sync, doubled on every failure, in milliseconds
+     */
+    private static final long INITIAL_BACKOFF_MS = 30 * 1000L;
+
+    /**
+     * Name of the preferences file with the sync statistics
+     */
+    public static final String STATS_PREFS_NAME = "article_sync_stats";
+
+    public static final String STATS_LAST_RUN_TIME = "last_run_time";
+    public static final String STATS_LAST_DURATION_MS = "last_duration_ms";
+    public static final String STATS_LAST_BYTES = "last_bytes";
+    public static final String STATS_LAST_ARTICLES_CHANGED = "last_articles_changed";
+    public static final String STATS_LAST_SUCCESS = "last_success";
+    public static final String STATS_RUN_COUNT = "run_count";
+    public static final String STATS_TOTAL_BYTES = "total_bytes";
+
+    /**
+     * Thread running the current sync
+     */
+    private Thread mSyncThread;
+
+    /**
+     * Set when the system stops the job, i.e. when its constraints are no longer met
+     */
+    private volatile boolean mStopped;
+
+    /**
+     * Schedule the sync job with the constraints of the settings, or cancel it if the sync is disabled.
+     * The period comes from FetchPolicy: longer on a metered or poor link and with the data saver on.
+     * A job that is already scheduled with the same constraints and period is kept, so its period isn't restarted.
+     */
+    public static void schedule(Context context) {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        if (!sharedPrefs.getBoolean(context.getString(R.string.settings_sync_key), true)) {
+            jobScheduler.cancel(JOB_ID);
+            return;
+        }
+
+        boolean unmeteredOnly = sharedPrefs.getBoolean(context.getString(R.string.settings_sync_unmetered_key), true);
+        boolean chargingOnly = sharedPrefs.getBoolean(context.getString(R.string.settings_sync_charging_key), false);
+        int networkType = unmeteredOnly ? JobInfo.NETWORK_TYPE_UNMETERED : JobInfo.NETWORK_TYPE_ANY;
+        long intervalMs = FetchPolicy.getInstance(context).getSyncIntervalMs();
+
+        for (JobInfo pendingJob : jobScheduler.getAllPendingJobs()) {
+            if (pendingJob.getId() == JOB_ID && pendingJob.getNetworkType() == networkType
+                    && pendingJob.isRequireCharging() == chargingOnly && pendingJob.getIntervalMillis() == intervalMs) {
+                return;
+            }
+        }
+
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, ArticleSyncJobService.class))
+                .setPeriodic(intervalMs)
+                .setRequiredNetworkType(networkType)
+                .setRequiresCharging(chargingOnly)
+                .setBackoffCriteria(INITIAL_BACKOFF_MS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true)
+                .build();
+        jobScheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        mStopped = false;
+        QueryUtils.setHttpCache(HttpCache.getInstance(this));
+
+        mSyncThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                boolean success = sync();
+                // A failed sync is retried with the backoff of the job
+                jobFinished(params, !success && !mStopped);
+            }
+        }, "ArticleSync");
+        mSyncThread.start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        mStopped = true;
+        if (mSyncThread != null) {
+            mSyncThread.interrupt();
+        }
+        // Run again once the constraints are met
+        return true;
+    }
+
+    /**
+     * Fetch every query of the settings and store the articles in the cache.
+     * Returns true if all queries were fetched.
+     */
+    private boolean sync() {
+        final Thread syncThread = Thread.currentThread();
+        final long[] bytesReceived = new long[1];
+        RequestMetrics.Listener metricsListener = new RequestMetrics.Listener() {
+            @Override
+            public void onRequestFinished(RequestMetrics metrics) {
+                // Only count the requests of this sync, not those of the app running at the same time
+                if (Thread.currentThread() == syncThread) {
+                    bytesReceived[0] += metrics.getBytesReceived();
+                }
+            }
+        };
+
+        ArticleCache cache = ArticleCache.getInstance(this);
+        long startTime = SystemClock.elapsedRealtime();
+        int articlesChanged = 0;
+        boolean success = true;
+
+        QueryUtils.addRequestMetricsListener(metricsListener);
+        try {
+            for (String url : ArticleQueries.getStartUrls(this)) {
+                if (mStopped) {
+                    success = false;
+                    break;
+                }
+                List<Article> articles = QueryUtils.fetchArticlesData(url);
+                if (articles == null) {
+                    success = false;
+                    continue;
+                }
+                articlesChanged += countNewArticles(cache.get(url), articles);
+                cache.put(url, articles);
+            }
+        } finally {
+            QueryUtils.removeRequestMetricsListener(metricsListener);
+        }
+
+        recordRun(SystemClock.elapsedRealtime() - startTime, bytesReceived[0], articlesChanged, success);
+        return success;
+    }
+
+    /**
+     * Returns the number of articles that are not in the cached entry.
+     */
+    private static int countNewArticles(ArticleCache.Entry cached, List<Article> articles) {
+        if (cached == null) {
+            return articles.size();
+        }
+        Set<String> cachedUrls = new HashSet<>();
+        for (Article article : cached.getArticles()) {
+            cachedUrls.add(article.getUrl());
+        }
+        int count = 0;
+        for (Article article : articles) {
+            if (!cachedUrls.contains(article.getUrl())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Store the statistics of a sync run.
+     */
+    private void recordRun(long durationMs, long bytes, int articlesChanged, boolean success) {
+        Log.i(LOG_TAG, "Sync " + (success ? "succeeded" : "failed") + " in " + durationMs + " ms, "
+                + bytes + " bytes, " + articlesChanged + " new articles");
+
+        SharedPreferences stats = getSharedPreferences(STATS_PREFS_NAME, Context.MODE_PRIVATE);
+        stats.edit()
+                .putLong(STATS_LAST_RUN_TIME, System.currentTimeMillis())
+                .putLong(STATS_LAST_DURATION_MS, durationMs)
+                .putLong(STATS_LAST_BYTES, bytes)
+                .putInt(STATS_LAST_ARTICLES_CHANGED, articlesChanged)
+                .putBoolean(STATS_LAST_SUCCESS, success)
+                .putInt(STATS_RUN_COUNT, stats.getInt(STATS_RUN_COUNT, 0) + 1)
+                .putLong(STATS_TOTAL_BYTES, stats.getLong(STATS_TOTAL_BYTES, 0) + bytes)
+                .apply();
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.android.newsapp;
+
+/**
+ * Estimates the throughput and latency of the current link from the requests made on it, as exponentially
+ * weighted moving averages: recent requests count most, so the estimate follows a link that gets better or
+ * worse, and a single slow request doesn't swing it.
+ */
+public class BandwidthEstimator {
+
+    /**
+     * Weight of a new sample in the averages
+     */
+    static final double DEFAULT_WEIGHT = 0.3;
+
+    /**
+     * Bodies smaller than this are mostly latency on their own, consecutive ones are added up into one sample
+     * (a list page is ~1.5 KB gzipped)
+     */
+    static final long MIN_SAMPLE_BYTES = 4 * 1024;
+
+    /**
+     * Shortest body time used, faster bodies only tell the throughput is at least their size in this time
+     */
+    static final long MIN_SAMPLE_MS = 20;
+
+    /**
+     * Weight of a new sample in the averages
+     */
+    private final double mWeight;
+
+    /**
+     * Average throughput in bytes per second, or -1 before the first sample
+     */
+    private double mBytesPerSecond = -1;
+
+    /**
+     * Average time to the first byte of a response in milliseconds, or -1 before the first sample
+     */
+    private double mLatencyMs = -1;
+
+    /**
+     * Number of throughput samples in the average
+     */
+    private int mSampleCount;
+
+    /**
+     * Bytes of the small bodies not in a sample yet
+     */
+    private long mPendingBytes;
+
+    /**
+     * Time to read the small bodies not in a sample yet, in milliseconds
+     */
+    private long mPendingMs;
+
+    /**
+     * Constructs a new BandwidthEstimator with the default weight
+     */
+    public BandwidthEstimator() {
+        this(DEFAULT_WEIGHT);
+    }
+
+    /**
+     * Constructs a new BandwidthEstimator
+     *
+     * @param weight is the weight of a new sample in the averages, between 0 and 1
+     */
+    public BandwidthEstimator(double weight) {
+        if (weight <= 0 || weight > 1) {
+            throw new IllegalArgumentException("weight out of range: " + weight);
+        }
+        mWeight = weight;
+    }
+
+    /**
+     * Add the measures of a downloaded response. Small bodies are kept until they add up to MIN_SAMPLE_BYTES,
+     * and then count as one sample.
+     *
+     * @param bytes             is the size of the body on the wire
+     * @param bodyMs            is the time to read the body, or -1 if it wasn't read to the end
+     * @param timeToFirstByteMs is the time from the start of the call to the response headers, or -1 if unknown
+     */
+    public synchronized void addSample(long bytes, long bodyMs, long timeToFirstByteMs) {
+        if (timeToFirstByteMs >= 0) {
+            mLatencyMs = mLatencyMs < 0 ? timeToFirstByteMs : mLatencyMs + mWeight * (timeToFirstByteMs - mLatencyMs);
+        }
+        if (bodyMs < 0) {
+            return;
+        }
+        if (bytes < MIN_SAMPLE_BYTES) {
+            mPendingBytes += bytes;
+            mPendingMs += bodyMs;
+            if (mPendingBytes < MIN_SAMPLE_BYTES) {
+                return;
+            }
+            bytes = mPendingBytes;
+            bodyMs = mPendingMs;
+            mPendingBytes = 0;
+            mPendingMs = 0;
+        }
+        double bytesPerSecond = bytes * 1000.0 / Math.max(bodyMs, MIN_SAMPLE_MS);
+        mBytesPerSecond = mBytesPerSecond < 0 ? bytesPerSecond : mBytesPerSecond + mWeight * (bytesPerSecond - mBytesPerSecond);
+        mSampleCount++;
+        Metrics.record("net.throughput", (long) bytesPerSecond);
+    }
+
+    /**
+     * Returns the average throughput in bytes per second, or -1 if nothing was measured.
+     */
+    public synchronized double getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * Returns the average time to the first byte of a response in milliseconds, or -1 if nothing was measured.
+     */
+    public synchronized double getLatencyMs() {
+        return mLatencyMs;
+    }
+
+    /**
+     * Returns the number of throughput samples in the average.
+     */
+    public synchronized int getSampleCount() {
+        return mSampleCount;
+    }
+
+    /**
+     * Forget the samples, i.e. when the device moves to another link.
+     */
+    public synchronized void reset() {
+        mBytesPerSecond = -1;
+        mLatencyMs = -1;
+        mSampleCount = 0;
+        mPendingBytes = 0;
+        mPendingMs = 0;
+    }
+}
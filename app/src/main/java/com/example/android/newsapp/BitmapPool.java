@@ -0,0 +1,111 @@
+package com.example.android.newsapp;
+
+import android.graphics.Bitmap;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Pool of bitmaps that are no longer shown, kept so the next decode can reuse their memory (inBitmap)
+ * instead of allocating a new bitmap. It holds up to a number of bytes and drops the oldest bitmaps beyond it.
+ */
+public class BitmapPool {
+
+    /**
+     * Maximum total size of the pooled bitmaps in bytes
+     */
+    private final long mMaxBytes;
+
+    /**
+     * The pooled bitmaps, from the oldest to the newest
+     */
+    private final LinkedList<Bitmap> mBitmaps = new LinkedList<>();
+
+    /**
+     * Total size of the pooled bitmaps in bytes
+     */
+    private long mBytes;
+
+    /**
+     * Constructs a new BitmapPool
+     *
+     * @param maxBytes is the maximum total size of the pooled bitmaps
+     */
+    public BitmapPool(long maxBytes) {
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Adds a bitmap nobody shows anymore. Bitmaps that can't be reused are left to the garbage collector.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled() || bitmap.getAllocationByteCount() > mMaxBytes) {
+            return;
+        }
+        mBitmaps.addLast(bitmap);
+        mBytes += bitmap.getAllocationByteCount();
+        while (mBytes > mMaxBytes) {
+            Bitmap eldest = mBitmaps.removeFirst();
+            mBytes -= eldest.getAllocationByteCount();
+            eldest.recycle();
+        }
+    }
+
+    /**
+     * Removes and returns the smallest pooled bitmap with room for the given decoded size, or null if there is none.
+     * Since API 19 a bitmap can be decoded into any bitmap whose allocation is large enough.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        long byteCount = (long) width * height * bytesPerPixel(config);
+        Bitmap best = null;
+        for (Bitmap bitmap : mBitmaps) {
+            int allocation = bitmap.getAllocationByteCount();
+            // A much larger bitmap would waste more memory than a new allocation costs
+            if (allocation >= byteCount && allocation <= byteCount * 4
+                    && (best == null || allocation < best.getAllocationByteCount())) {
+                best = bitmap;
+            }
+        }
+        if (best != null) {
+            removeIdentical(best);
+            mBytes -= best.getAllocationByteCount();
+        }
+        return best;
+    }
+
+    /**
+     * Recycle all the pooled bitmaps, i.e. when the system is low on memory.
+     */
+    public synchronized void clear() {
+        for (Bitmap bitmap : mBitmaps) {
+            bitmap.recycle();
+        }
+        mBitmaps.clear();
+        mBytes = 0;
+    }
+
+    /**
+     * Remove the given bitmap, by identity as bitmaps don't define equality.
+     */
+    private void removeIdentical(Bitmap bitmap) {
+        Iterator<Bitmap> iterator = mBitmaps.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == bitmap) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.android.newsapp;
+
+/**
+ * Lets a caller cancel work running on another thread, i.e. a network request whose result is no longer needed.
+ * The work registers a listener that stops it, such as disconnecting the HTTP connection.
+ */
+public class CancellationToken {
+
+    /**
+     * True once cancel() was called
+     */
+    private boolean mCancelled;
+
+    /**
+     * Called when the token is cancelled, null if none
+     */
+    private Runnable mOnCancelListener;
+
+    /**
+     * Cancel the work and run its cancel listener. Does nothing if already cancelled.
+     */
+    public void cancel() {
+        Runnable listener;
+        synchronized (this) {
+            if (mCancelled) {
+                return;
+            }
+            mCancelled = true;
+            listener = mOnCancelListener;
+            // Wake up the threads waiting in await()
+            notifyAll();
+        }
+        // Run outside the lock, the listener may block (i.e. closing a socket)
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Returns true if cancel() was called.
+     */
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * Wait until the token is cancelled or the timeout elapses, i.e. between two attempts of a request.
+     * Returns true if the token is cancelled.
+     */
+    public synchronized boolean await(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        long remainingMs = timeoutMs;
+        while (!mCancelled && remainingMs > 0) {
+            wait(remainingMs);
+            remainingMs = deadline - System.currentTimeMillis();
+        }
+        return mCancelled;
+    }
+
+    /**
+     * Set the listener called when the token is cancelled, or null to remove it.
+     * The listener runs right away if the token is already cancelled.
+     */
+    public void setOnCancelListener(Runnable listener) {
+        synchronized (this) {
+            if (!mCancelled) {
+                mOnCancelListener = listener;
+                return;
+            }
+        }
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
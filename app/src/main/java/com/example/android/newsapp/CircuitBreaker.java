@@ -0,0 +1,146 @@
+package com.example.android.newsapp;
+
+/**
+ * Stops sending requests to a server that keeps failing. After a number of failures in a row the circuit
+ * opens and requests fail at once, without a connection, for a while. Then a single trial request is let
+ * through (half-open): if it succeeds the circuit closes again, otherwise it stays open for another while.
+ * The server can also open it for a given time, i.e. with the Retry-After of a 429 Too Many Requests.
+ */
+public class CircuitBreaker {
+
+    /**
+     * Default number of failures in a row that open the circuit
+     */
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /**
+     * Default time the circuit stays open before a trial request, in milliseconds
+     */
+    private static final long DEFAULT_OPEN_MS = 30000;
+
+    /**
+     * The states of the circuit.
+     */
+    public enum State {
+        /**
+         * Requests are sent
+         */
+        CLOSED,
+        /**
+         * Requests fail at once
+         */
+        OPEN,
+        /**
+         * One trial request is running, the others fail at once
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Number of failures in a row that open the circuit
+     */
+    private final int mFailureThreshold;
+
+    /**
+     * Time the circuit stays open before a trial request, in milliseconds
+     */
+    private final long mOpenMs;
+
+    /**
+     * The current state
+     */
+    private State mState = State.CLOSED;
+
+    /**
+     * Number of failures since the last success
+     */
+    private int mFailureCount;
+
+    /**
+     * Time until which the circuit stays open, in milliseconds since the epoch
+     */
+    private long mOpenUntilMillis;
+
+    /**
+     * Constructs a CircuitBreaker with the default threshold and open time
+     */
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_MS);
+    }
+
+    /**
+     * Constructs a new CircuitBreaker
+     *
+     * @param failureThreshold is the number of failures in a row that open the circuit
+     * @param openMs           is the time the circuit stays open before a trial request
+     */
+    public CircuitBreaker(int failureThreshold, long openMs) {
+        mFailureThreshold = failureThreshold;
+        mOpenMs = openMs;
+    }
+
+    /**
+     * Returns true if a request may be sent now. Once the open time is over, the first caller gets
+     * the trial request and the others are refused until it completes.
+     */
+    public synchronized boolean allowRequest() {
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() < mOpenUntilMillis) {
+                    return false;
+                }
+                mState = State.HALF_OPEN;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The server answered, close the circuit.
+     */
+    public synchronized void onSuccess() {
+        mState = State.CLOSED;
+        mFailureCount = 0;
+    }
+
+    /**
+     * A request failed. Opens the circuit when the trial request failed or too many requests failed in a row.
+     */
+    public synchronized void onFailure() {
+        mFailureCount++;
+        if (mState == State.HALF_OPEN || mFailureCount >= mFailureThreshold) {
+            open(mOpenMs);
+        }
+    }
+
+    /**
+     * A request was cancelled before it succeeded or failed. A cancelled trial lets the next request be the trial.
+     */
+    public synchronized void onCancelled() {
+        if (mState == State.HALF_OPEN) {
+            mState = State.OPEN;
+        }
+    }
+
+    /**
+     * Open the circuit for at least the given time, i.e. the Retry-After of a rate limited response.
+     */
+    public synchronized void openFor(long durationMs) {
+        open(durationMs);
+    }
+
+    /**
+     * Returns the current state. An open circuit whose time is over stays OPEN until a request asks for the trial.
+     */
+    public synchronized State getState() {
+        return mState;
+    }
+
+    private void open(long durationMs) {
+        mState = State.OPEN;
+        mOpenUntilMillis = Math.max(mOpenUntilMillis, System.currentTimeMillis() + durationMs);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.android.newsapp;
+
+/**
+ * A contributor of the Guardian, from the contributor tags of an article or its byline. There is a single
+ * instance per name, shared by all the articles of the contributor, which refer to it by its id.
+ */
+public final class Contributor {
+
+    private static final Interner<Contributor> sInterner = new Interner<>(new Interner.Factory<Contributor>() {
+        @Override
+        public Contributor create(int id, String name) {
+            return new Contributor(id, name);
+        }
+    });
+
+    /**
+     * Id of the contributor, only valid in this process
+     */
+    private final int mId;
+
+    /**
+     * Display name of the contributor
+     */
+    private final String mName;
+
+    /**
+     * The ids of an article by this contributor only, shared by all of them. Never modified.
+     */
+    private final int[] mIdArray;
+
+    private Contributor(int id, String name) {
+        mId = id;
+        mName = name;
+        mIdArray = new int[]{id};
+    }
+
+    /**
+     * Returns the contributor of the name, created on first use.
+     */
+    public static Contributor intern(String name) {
+        return sInterner.intern(name);
+    }
+
+    /**
+     * Returns the contributor of an id.
+     */
+    public static Contributor forId(int id) {
+        return sInterner.get(id);
+    }
+
+    /**
+     * Returns the number of distinct contributors seen so far.
+     */
+    static int count() {
+        return sInterner.size();
+    }
+
+    /**
+     * Returns the id of the contributor, only valid in this process.
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * Returns the display name of the contributor.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Returns the contributor ids of an article by this contributor only, an array shared by all of them.
+     */
+    int[] asIdArray() {
+        return mIdArray;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
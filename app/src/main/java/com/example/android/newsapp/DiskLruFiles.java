@@ -0,0 +1,207 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The files of a disk store with one file per key, kept under a size limit by deleting the least recently used
+ * ones. The order of use survives restarts through the modification times of the files. The stores write a
+ * file to tempFileFor() and commit() it, so a reader never sees a half written file.
+ * Not thread-safe: the store calls it with its own lock held.
+ */
+class DiskLruFiles {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = DiskLruFiles.class.getSimpleName();
+
+    /**
+     * Suffix of the files being written, left over if the process was killed meanwhile
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    /**
+     * Directory that holds one file per key
+     */
+    private final File mDirectory;
+
+    /**
+     * Maximum total size of the directory in bytes
+     */
+    private final long mMaxBytes;
+
+    /**
+     * Size of each file by file name, from the least to the most recently used. Loaded on first use.
+     */
+    private LinkedHashMap<String, Long> mFiles;
+
+    /**
+     * Total size of the files in bytes
+     */
+    private long mBytesUsed;
+
+    /**
+     * Constructs a new DiskLruFiles
+     *
+     * @param directory where the files are stored
+     * @param maxBytes  is the maximum total size of the files
+     */
+    DiskLruFiles(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the file of the key and marks it as the most recently used, or null if there is none.
+     */
+    File get(String key) {
+        String fileName = fileNameFor(key);
+        if (files().get(fileName) == null) {
+            return null;
+        }
+        File file = new File(mDirectory, fileName);
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Returns true if there is a file for the key, without marking it as used.
+     */
+    boolean contains(String key) {
+        return files().containsKey(fileNameFor(key));
+    }
+
+    /**
+     * Returns the temporary file to write the file of the key to, creating the directory if needed.
+     * Returns null if the directory can't be created.
+     */
+    File tempFileFor(String key) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.e(LOG_TAG, "Problem creating the directory " + mDirectory);
+            return null;
+        }
+        return new File(mDirectory, fileNameFor(key) + TEMP_SUFFIX);
+    }
+
+    /**
+     * Replace the file of the key with the written temporary file, as the most recently used, then delete the
+     * least recently used files over the size limit. Returns false if the file couldn't be replaced.
+     */
+    boolean commit(String key, File tempFile) {
+        String fileName = fileNameFor(key);
+        File file = new File(mDirectory, fileName);
+        if (!tempFile.renameTo(file)) {
+            return false;
+        }
+        forget(fileName);
+        files().put(fileName, file.length());
+        mBytesUsed += file.length();
+        trimToSize();
+        return true;
+    }
+
+    /**
+     * Delete the file of the key, i.e. a corrupt one.
+     */
+    void delete(String key) {
+        String fileName = fileNameFor(key);
+        forget(fileName);
+        new File(mDirectory, fileName).delete();
+    }
+
+    /**
+     * Returns the number of files.
+     */
+    int getCount() {
+        return files().size();
+    }
+
+    /**
+     * Returns the total size of the files on disk, in bytes.
+     */
+    long getBytesUsed() {
+        files();
+        return mBytesUsed;
+    }
+
+    /**
+     * Close a file of the store, logging the errors.
+     */
+    static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing a file", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the sizes of the files, loaded from the directory on first use in order of last use.
+     */
+    private LinkedHashMap<String, Long> files() {
+        if (mFiles == null) {
+            // Access order, so reading a file moves it to the end
+            mFiles = new LinkedHashMap<>(16, 0.75f, true);
+            mBytesUsed = 0;
+            File[] files = mDirectory.listFiles();
+            if (files != null) {
+                Arrays.sort(files, new Comparator<File>() {
+                    @Override
+                    public int compare(File first, File second) {
+                        return Long.compare(first.lastModified(), second.lastModified());
+                    }
+                });
+                for (File file : files) {
+                    if (file.getName().endsWith(TEMP_SUFFIX)) {
+                        file.delete();
+                        continue;
+                    }
+                    mFiles.put(file.getName(), file.length());
+                    mBytesUsed += file.length();
+                }
+            }
+        }
+        return mFiles;
+    }
+
+    /**
+     * Forget a file, the caller deletes or replaces it.
+     */
+    private void forget(String fileName) {
+        Long length = files().remove(fileName);
+        if (length != null) {
+            mBytesUsed -= length;
+        }
+    }
+
+    /**
+     * Delete the least recently used files until they fit in the size limit.
+     */
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = files().entrySet().iterator();
+        while (mBytesUsed > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(mDirectory, eldest.getKey()).delete();
+            mBytesUsed -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns the name of the file of the key.
+     */
+    private static String fileNameFor(String key) {
+        return Integer.toHexString(key.hashCode());
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches several Guardian queries at once on a bounded executor and merges the results,
+ * de-duplicated by URL and sorted by publication date (newest first).
+ * A request that runs longer than the timeout is cancelled, the others are still merged.
+ * Cancelling the whole fetch cancels the HTTP calls of the requests that are still running.
+ * No thread waits for the requests: the last one to complete delivers the result.
+ */
+public class FeedFetcher {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = FeedFetcher.class.getSimpleName();
+
+    /**
+     * Maximum number of requests running at the same time
+     */
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    /**
+     * Orders articles from the newest to the oldest
+     */
+    private static final Comparator<Article> NEWEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article first, Article second) {
+            return Long.compare(second.getTimeInMillis(), first.getTimeInMillis());
+        }
+    };
+
+    /**
+     * Shared instance used by the ArticleRepository
+     */
+    private static FeedFetcher sInstance;
+
+    /**
+     * Loads the articles of one query URL.
+     */
+    public interface Source {
+        /**
+         * Returns the articles of the query, or null if the request failed.
+         * Should stop early when the token is cancelled.
+         */
+        List<Article> fetch(String url, CancellationToken cancellationToken);
+    }
+
+    /**
+     * Receives the merged articles as the requests complete. Called on the request threads or the timer thread,
+     * one call at a time.
+     */
+    public interface Listener {
+        /**
+         * Receives the merged articles each time a request succeeds.
+         */
+        void onPartialResult(List<Article> articles, int completedCount, int totalCount);
+
+        /**
+         * Receives the merged articles once every request completed or timed out, or the fetch was cancelled.
+         * Receives null if every request failed or timed out.
+         */
+        void onResult(List<Article> articles);
+    }
+
+    /**
+     * Runs the requests, it bounds their concurrency
+     */
+    private final Executor mExecutor;
+
+    /**
+     * Cancels the requests that run longer than the timeout
+     */
+    private final ScheduledExecutorService mTimer;
+
+    /**
+     * Loads the articles of each query
+     */
+    private final Source mSource;
+
+    /**
+     * Constructs a new FeedFetcher
+     *
+     * @param executor runs the requests, it bounds their concurrency
+     * @param timer    runs the timeouts of the requests
+     * @param source   loads the articles of one query URL
+     */
+    public FeedFetcher(Executor executor, ScheduledExecutorService timer, Source source) {
+        mExecutor = executor;
+        mTimer = timer;
+        mSource = source;
+    }
+
+    /**
+     * Returns the shared fetcher, which runs up to MAX_CONCURRENT_REQUESTS QueryUtils requests at a time on
+     * the I/O threads. Queries with fresh articles in the ArticleCache (i.e. from the background sync) are not
+     * requested.
+     */
+    public static synchronized FeedFetcher getInstance(Context context) {
+        if (sInstance == null) {
+            final ArticleCache cache = ArticleCache.getInstance(context);
+            AppExecutors executors = AppExecutors.getInstance();
+            sInstance = new FeedFetcher(AppExecutors.limit(executors.io(), MAX_CONCURRENT_REQUESTS),
+                    executors.timer(), new Source() {
+                @Override
+                public List<Article> fetch(String url, CancellationToken cancellationToken) {
+                    ArticleCache.Entry entry = cache.get(url);
+                    if (entry != null && !entry.isStale()) {
+                        return entry.getArticles();
+                    }
+
+                    List<Article> articles = QueryUtils.fetchArticlesData(url, cancellationToken);
+                    if (articles == null) {
+                        if (cancellationToken.isCancelled()) {
+                            return null;
+                        }
+                        // The request failed (i.e. offline), use the stale articles if there are any
+                        return entry != null ? entry.getArticles() : null;
+                    }
+                    cache.put(url, articles);
+                    return articles;
+                }
+            });
+        }
+        return sInstance;
+    }
+
+    /**
+     * Start fetching all URLs and return right away. The merged articles go to the listener after each
+     * successful request, and once every request completed or timed out. Once the token is cancelled, the
+     * articles merged so far are the result.
+     *
+     * @param urls              are the query URLs
+     * @param timeoutMs         is the maximum time a single request may run, in milliseconds
+     * @param listener          receives the merged articles
+     * @param cancellationToken cancels the running requests, may be null
+     */
+    public void fetch(List<String> urls, long timeoutMs, Listener listener, CancellationToken cancellationToken) {
+        new Fetch(urls, timeoutMs, listener, cancellationToken).start();
+    }
+
+    /**
+     * The requests of one fetch and the articles merged from them.
+     */
+    private class Fetch {
+
+        private final List<String> mUrls;
+        private final long mTimeoutMs;
+        private final Listener mListener;
+        private final CancellationToken mCancellationToken;
+
+        /**
+         * Each request has its own token, so a timeout cancels only its own call
+         */
+        private final CancellationToken[] mRequestTokens;
+
+        /**
+         * True for the requests that completed, timed out or were cancelled
+         */
+        private final boolean[] mFinished;
+
+        /**
+         * The articles of the successful requests by URL
+         */
+        private final Map<String, Article> mMerged = new LinkedHashMap<>();
+
+        private int mCompletedCount;
+        private int mSucceededCount;
+
+        /**
+         * True once the result was delivered
+         */
+        private boolean mDone;
+
+        Fetch(List<String> urls, long timeoutMs, Listener listener, CancellationToken cancellationToken) {
+            mUrls = urls;
+            mTimeoutMs = timeoutMs;
+            mListener = listener;
+            mCancellationToken = cancellationToken;
+            mRequestTokens = new CancellationToken[urls.size()];
+            for (int i = 0; i < mRequestTokens.length; i++) {
+                mRequestTokens[i] = new CancellationToken();
+            }
+            mFinished = new boolean[urls.size()];
+        }
+
+        void start() {
+            if (mUrls.isEmpty()) {
+                synchronized (this) {
+                    finish();
+                }
+                return;
+            }
+            if (mCancellationToken != null) {
+                mCancellationToken.setOnCancelListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        cancel();
+                    }
+                });
+            }
+            for (int i = 0; i < mUrls.size(); i++) {
+                final int index = i;
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runRequest(index);
+                    }
+                });
+            }
+        }
+
+        private void runRequest(final int index) {
+            synchronized (this) {
+                if (mFinished[index]) {
+                    // Cancelled while it was queued
+                    return;
+                }
+            }
+            // The timeout starts when the request leaves the queue
+            ScheduledFuture<?> timeout = mTimer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    timeOut(index);
+                }
+            }, mTimeoutMs, TimeUnit.MILLISECONDS);
+            List<Article> articles = null;
+            try {
+                articles = mSource.fetch(mUrls.get(index), mRequestTokens[index]);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Problem fetching a feed query", e);
+            } finally {
+                timeout.cancel(false);
+                complete(index, articles);
+            }
+        }
+
+        private void timeOut(int index) {
+            synchronized (this) {
+                if (mFinished[index]) {
+                    return;
+                }
+            }
+            Log.e(LOG_TAG, "Request timed out: " + mUrls.get(index));
+            mRequestTokens[index].cancel();
+            complete(index, null);
+        }
+
+        /**
+         * Merge the articles of a request, null if it failed, unless it was already counted as timed out.
+         */
+        private synchronized void complete(int index, List<Article> articles) {
+            if (mFinished[index]) {
+                return;
+            }
+            mFinished[index] = true;
+            mCompletedCount++;
+            if (articles != null) {
+                for (Article article : articles) {
+                    if (!mMerged.containsKey(article.getUrl())) {
+                        mMerged.put(article.getUrl(), article);
+                    }
+                }
+                mSucceededCount++;
+                mListener.onPartialResult(sortedArticles(mMerged), mCompletedCount, mUrls.size());
+            }
+            if (mCompletedCount == mUrls.size()) {
+                finish();
+            }
+        }
+
+        /**
+         * Stop the running requests, the queued ones don't start, and deliver the articles merged so far.
+         */
+        private void cancel() {
+            synchronized (this) {
+                if (mDone) {
+                    return;
+                }
+                for (int i = 0; i < mFinished.length; i++) {
+                    mFinished[i] = true;
+                }
+                finish();
+            }
+            // Outside the lock, cancelling a call may block
+            for (CancellationToken requestToken : mRequestTokens) {
+                requestToken.cancel();
+            }
+        }
+
+        /**
+         * Deliver the result. Called with the lock held.
+         */
+        private void finish() {
+            mDone = true;
+            if (mCancellationToken != null) {
+                mCancellationToken.setOnCancelListener(null);
+            }
+            boolean cancelled = mCancellationToken != null && mCancellationToken.isCancelled();
+            if (mSucceededCount == 0 && !mUrls.isEmpty() && !cancelled) {
+                // An empty feed would read as queries without results
+                mListener.onResult(null);
+                return;
+            }
+            mListener.onResult(sortedArticles(mMerged));
+        }
+    }
+
+    private static List<Article> sortedArticles(Map<String, Article> merged) {
+        List<Article> articles = new ArrayList<>(merged.values());
+        Collections.sort(articles, NEWEST_FIRST);
+        return articles;
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.SystemClock;
+import android.telephony.TelephonyManager;
+
+/**
+ * Decides how much the app fetches on the current link: the page size of the list, how many article bodies
+ * and thumbnails are prefetched, and how often the background sync runs.
+ * <p>
+ * The link is classified from the throughput measured on the requests made on it (see BandwidthEstimator),
+ * or from its type until enough requests were measured. A metered link prefetches less, and the data saver
+ * of the system (Android 7.0+) turns the prefetch off, unless the user allowed the app to use data freely.
+ */
+public class FetchPolicy implements RequestMetrics.Listener {
+
+    /**
+     * Quality of the current link, from worst to best.
+     */
+    public enum LinkClass {
+        OFFLINE, POOR, MODERATE, GOOD, EXCELLENT
+    }
+
+    /**
+     * Type of the current link.
+     */
+    public enum ConnectionType {
+        NONE, CELLULAR_2G, CELLULAR_3G, CELLULAR_4G, WIFI, ETHERNET, OTHER
+    }
+
+    /**
+     * Page size of the list on a poor link or with the data saver on
+     */
+    public static final int SMALL_PAGE_SIZE = 10;
+
+    /**
+     * Bodies prefetched on a good metered link, the others prefetch ArticleBodyPrefetcher.PREFETCH_COUNT
+     */
+    static final int METERED_BODY_PREFETCH_COUNT = 3;
+
+    /**
+     * Thumbnails prefetched below the screen on a good link, half of them on a moderate one
+     */
+    static final int THUMBNAIL_PREFETCH_COUNT = 4;
+
+    /**
+     * Sync period on a good unmetered link
+     */
+    static final long SYNC_INTERVAL_MS = 60 * 60 * 1000L;
+
+    /**
+     * Sync period on a metered or poor link
+     */
+    static final long METERED_SYNC_INTERVAL_MS = 3 * SYNC_INTERVAL_MS;
+
+    /**
+     * Sync period with the data saver on
+     */
+    static final long DATA_SAVER_SYNC_INTERVAL_MS = 6 * SYNC_INTERVAL_MS;
+
+    /**
+     * Lowest throughput of a moderate link in bytes per second (800 kbit/s)
+     */
+    static final double MODERATE_BYTES_PER_SECOND = 100 * 1000;
+
+    /**
+     * Lowest throughput of a good link in bytes per second (3.2 Mbit/s)
+     */
+    static final double GOOD_BYTES_PER_SECOND = 400 * 1000;
+
+    /**
+     * Lowest throughput of an excellent link in bytes per second (16 Mbit/s)
+     */
+    static final double EXCELLENT_BYTES_PER_SECOND = 2000 * 1000;
+
+    /**
+     * Throughput samples needed before they replace the classification by link type
+     */
+    static final int MIN_SAMPLES = 2;
+
+    private static FetchPolicy sInstance;
+
+    /**
+     * Tells the current link
+     */
+    private final ConnectionSource mConnectionSource;
+
+    /**
+     * Throughput of the link of mEstimatorType
+     */
+    private final BandwidthEstimator mEstimator = new BandwidthEstimator();
+
+    /**
+     * Type of the link the estimator measured, the estimate is dropped when the type changes
+     */
+    private ConnectionType mEstimatorType = ConnectionType.NONE;
+
+    /**
+     * The state of a link.
+     */
+    public static class Connection {
+
+        /**
+         * No active link
+         */
+        public static final Connection NONE = new Connection(ConnectionType.NONE, false, false);
+
+        private final ConnectionType mType;
+        private final boolean mMetered;
+        private final boolean mDataSaver;
+
+        /**
+         * Constructs a new Connection
+         *
+         * @param type      is the type of the link
+         * @param metered   is true if the data of the link may cost the user
+         * @param dataSaver is true if the data saver of the system restricts the app
+         */
+        public Connection(ConnectionType type, boolean metered, boolean dataSaver) {
+            mType = type;
+            mMetered = metered;
+            mDataSaver = dataSaver;
+        }
+
+        /**
+         * Returns the type of the link.
+         */
+        public ConnectionType getType() {
+            return mType;
+        }
+
+        /**
+         * Returns true if the data of the link may cost the user.
+         */
+        public boolean isMetered() {
+            return mMetered;
+        }
+
+        /**
+         * Returns true if the data saver of the system restricts the app.
+         */
+        public boolean isDataSaver() {
+            return mDataSaver;
+        }
+    }
+
+    /**
+     * Tells the current link, replaced by a simulated one in tests.
+     */
+    public interface ConnectionSource {
+        Connection getConnection();
+    }
+
+    /**
+     * Constructs a new FetchPolicy. It only measures the requests it is given, see QueryUtils.addRequestMetricsListener().
+     *
+     * @param connectionSource tells the current link
+     */
+    public FetchPolicy(ConnectionSource connectionSource) {
+        mConnectionSource = connectionSource;
+    }
+
+    /**
+     * Returns the shared policy of the system link, which measures the requests of QueryUtils.
+     */
+    public static synchronized FetchPolicy getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new FetchPolicy(new SystemConnectionSource(context.getApplicationContext()));
+            QueryUtils.addRequestMetricsListener(sInstance);
+        }
+        return sInstance;
+    }
+
+    @Override
+    public void onRequestFinished(RequestMetrics metrics) {
+        RequestTimings timings = metrics.getTimings();
+        // Cached and not modified responses carry no body, they don't tell the throughput
+        if (metrics.isFromCache() || timings == null) {
+            return;
+        }
+        addSample(metrics.getBytesReceived(), timings.getBodyMs(), timings.getTimeToFirstByteMs());
+    }
+
+    /**
+     * Add the measures of a response downloaded on the current link, see BandwidthEstimator.addSample().
+     */
+    void addSample(long bytes, long bodyMs, long timeToFirstByteMs) {
+        ConnectionType type = mConnectionSource.getConnection().getType();
+        synchronized (this) {
+            if (type != mEstimatorType) {
+                mEstimator.reset();
+                mEstimatorType = type;
+            }
+            mEstimator.addSample(bytes, bodyMs, timeToFirstByteMs);
+        }
+    }
+
+    /**
+     * Returns the quality of the current link.
+     */
+    public LinkClass getLinkClass() {
+        return classify(mConnectionSource.getConnection());
+    }
+
+    /**
+     * Returns the number of articles of a page of the list. It changes the URLs of the pages, so a list keeps
+     * the page size it was loaded with.
+     */
+    public int getPageSize() {
+        Connection connection = mConnectionSource.getConnection();
+        if (connection.isDataSaver() || classify(connection) == LinkClass.POOR) {
+            return SMALL_PAGE_SIZE;
+        }
+        return ArticleQueries.PAGE_SIZE;
+    }
+
+    /**
+     * Returns the number of article bodies to prefetch from the first visible row on, 0 for none.
+     */
+    public int getBodyPrefetchCount() {
+        Connection connection = mConnectionSource.getConnection();
+        LinkClass linkClass = classify(connection);
+        if (connection.isDataSaver() || linkClass.compareTo(LinkClass.MODERATE) < 0) {
+            return 0;
+        }
+        if (connection.isMetered()) {
+            return linkClass.compareTo(LinkClass.GOOD) >= 0 ? METERED_BODY_PREFETCH_COUNT : 0;
+        }
+        return ArticleBodyPrefetcher.PREFETCH_COUNT;
+    }
+
+    /**
+     * Returns the number of thumbnails to prefetch below the screen, 0 for none.
+     */
+    public int getThumbnailPrefetchCount() {
+        Connection connection = mConnectionSource.getConnection();
+        LinkClass linkClass = classify(connection);
+        if (connection.isDataSaver() || linkClass.compareTo(LinkClass.MODERATE) < 0) {
+            return 0;
+        }
+        return linkClass == LinkClass.MODERATE ? THUMBNAIL_PREFETCH_COUNT / 2 : THUMBNAIL_PREFETCH_COUNT;
+    }
+
+    /**
+     * Returns the period of the background sync.
+     */
+    public long getSyncIntervalMs() {
+        Connection connection = mConnectionSource.getConnection();
+        if (connection.isDataSaver()) {
+            return DATA_SAVER_SYNC_INTERVAL_MS;
+        }
+        if (connection.isMetered() || classify(connection) == LinkClass.POOR) {
+            return METERED_SYNC_INTERVAL_MS;
+        }
+        return SYNC_INTERVAL_MS;
+    }
+
+    /**
+     * Returns the throughput estimator of the current link.
+     */
+    public BandwidthEstimator getEstimator() {
+        return mEstimator;
+    }
+
+    /**
+     * Returns the class of the link: from its measured throughput, or from its type until it is measured.
+     */
+    private LinkClass classify(Connection connection) {
+        ConnectionType type = connection.getType();
+        if (type == ConnectionType.NONE) {
+            return LinkClass.OFFLINE;
+        }
+        synchronized (this) {
+            if (type == mEstimatorType && mEstimator.getSampleCount() >= MIN_SAMPLES) {
+                return classifyThroughput(mEstimator.getBytesPerSecond());
+            }
+        }
+        switch (type) {
+            case CELLULAR_2G:
+                return LinkClass.POOR;
+            case CELLULAR_4G:
+            case WIFI:
+            case ETHERNET:
+                return LinkClass.GOOD;
+            default:
+                return LinkClass.MODERATE;
+        }
+    }
+
+    /**
+     * Returns the class of a link with the given throughput in bytes per second.
+     */
+    static LinkClass classifyThroughput(double bytesPerSecond) {
+        if (bytesPerSecond >= EXCELLENT_BYTES_PER_SECOND) {
+            return LinkClass.EXCELLENT;
+        } else if (bytesPerSecond >= GOOD_BYTES_PER_SECOND) {
+            return LinkClass.GOOD;
+        } else if (bytesPerSecond >= MODERATE_BYTES_PER_SECOND) {
+            return LinkClass.MODERATE;
+        }
+        return LinkClass.POOR;
+    }
+
+    /**
+     * Reads the link from the ConnectivityManager. The state is kept for a moment, so the policy can be asked
+     * while scrolling without a system call per frame.
+     */
+    private static class SystemConnectionSource implements ConnectionSource {
+
+        /**
+         * Time the state of the link is kept
+         */
+        private static final long MAX_AGE_MS = 2000;
+
+        private final ConnectivityManager mConnectivityManager;
+
+        private Connection mConnection;
+
+        private long mReadAtMs;
+
+        SystemConnectionSource(Context context) {
+            mConnectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        }
+
+        @Override
+        public synchronized Connection getConnection() {
+            long now = SystemClock.elapsedRealtime();
+            if (mConnection == null || now - mReadAtMs > MAX_AGE_MS) {
+                mConnection = readConnection();
+                mReadAtMs = now;
+            }
+            return mConnection;
+        }
+
+        private Connection readConnection() {
+            NetworkInfo activeNetwork = mConnectivityManager.getActiveNetworkInfo();
+            if (activeNetwork == null || !activeNetwork.isConnected()) {
+                return Connection.NONE;
+            }
+            // Only the apps the user allowed keep using data freely with the data saver on
+            boolean dataSaver = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                    && mConnectivityManager.getRestrictBackgroundStatus() == ConnectivityManager.RESTRICT_BACKGROUND_STATUS_ENABLED;
+            return new Connection(typeOf(activeNetwork), mConnectivityManager.isActiveNetworkMetered(), dataSaver);
+        }
+
+        private static ConnectionType typeOf(NetworkInfo networkInfo) {
+            switch (networkInfo.getType()) {
+                case ConnectivityManager.TYPE_WIFI:
+                    return ConnectionType.WIFI;
+                case ConnectivityManager.TYPE_ETHERNET:
+                    return ConnectionType.ETHERNET;
+                case ConnectivityManager.TYPE_MOBILE:
+                    break;
+                default:
+                    return ConnectionType.OTHER;
+            }
+            switch (networkInfo.getSubtype()) {
+                case TelephonyManager.NETWORK_TYPE_GPRS:
+                case TelephonyManager.NETWORK_TYPE_EDGE:
+                case TelephonyManager.NETWORK_TYPE_CDMA:
+                case TelephonyManager.NETWORK_TYPE_1xRTT:
+                case TelephonyManager.NETWORK_TYPE_IDEN:
+                case TelephonyManager.NETWORK_TYPE_GSM:
+                    return ConnectionType.CELLULAR_2G;
+                case TelephonyManager.NETWORK_TYPE_UMTS:
+                case TelephonyManager.NETWORK_TYPE_EVDO_0:
+                case TelephonyManager.NETWORK_TYPE_EVDO_A:
+                case TelephonyManager.NETWORK_TYPE_EVDO_B:
+                case TelephonyManager.NETWORK_TYPE_HSDPA:
+                case TelephonyManager.NETWORK_TYPE_HSUPA:
+                case TelephonyManager.NETWORK_TYPE_HSPA:
+                case TelephonyManager.NETWORK_TYPE_EHRPD:
+                case TelephonyManager.NETWORK_TYPE_HSPAP:
+                case TelephonyManager.NETWORK_TYPE_TD_SCDMA:
+                    return ConnectionType.CELLULAR_3G;
+                case TelephonyManager.NETWORK_TYPE_LTE:
+                case TelephonyManager.NETWORK_TYPE_IWLAN:
+                    return ConnectionType.CELLULAR_4G;
+                default:
+                    return ConnectionType.OTHER;
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.android.newsapp;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A query of the Guardian content search API (content.guardianapis.com/search).
+ * Each screen declares the fields, tags, page size, date range and order it needs, so the server
+ * only sends what is shown. The parameters are always written in the same order, so equal queries
+ * build equal URLs and share their cache entries.
+ */
+public final class GuardianQuery {
+
+    /**
+     * URL of the search endpoint
+     */
+    public static final String SEARCH_URL = "https://content.guardianapis.com/search";
+
+    /**
+     * Start of the web URLs of the articles, the rest of the URL is the id of the article
+     */
+    private static final String WEB_URL_PREFIX = "https://www.theguardian.com/";
+
+    /**
+     * Optional fields added to each result with "show-fields".
+     */
+    public enum Field {
+        /**
+         * The names of the contributors as a single line, i.e. "Alex Hern and Samuel Gibbs"
+         */
+        BYLINE("byline"),
+        /**
+         * URL of the main image of the article
+         */
+        THUMBNAIL("thumbnail"),
+        /**
+         * The standfirst of the article
+         */
+        TRAIL_TEXT("trailText"),
+        /**
+         * The HTML body of the article
+         */
+        BODY("body");
+
+        private final String mName;
+
+        Field(String name) {
+            mName = name;
+        }
+    }
+
+    /**
+     * Tag types added to each result with "show-tags". Every tag is a full object (bio, images, urls...),
+     * so prefer a Field when one carries the value.
+     */
+    public enum Tag {
+        CONTRIBUTOR("contributor"),
+        KEYWORD("keyword");
+
+        private final String mName;
+
+        Tag(String name) {
+            mName = name;
+        }
+    }
+
+    /**
+     * Order of the results.
+     */
+    public enum OrderBy {
+        NEWEST("newest"),
+        OLDEST("oldest"),
+        RELEVANCE("relevance");
+
+        private final String mName;
+
+        OrderBy(String name) {
+            mName = name;
+        }
+    }
+
+    /**
+     * Search term, null for all articles
+     */
+    private final String mSearchTerm;
+
+    /**
+     * Section id, null for all sections
+     */
+    private final String mSection;
+
+    /**
+     * Order of the results
+     */
+    private final OrderBy mOrderBy;
+
+    /**
+     * Oldest publication time of the results in milliseconds since epoch, or ArticleDates.UNKNOWN for no limit
+     */
+    private final long mFromDateMillis;
+
+    /**
+     * Ids of the articles to return, empty for all articles
+     */
+    private final List<String> mIds;
+
+    /**
+     * Optional fields of the results
+     */
+    private final Set<Field> mFields;
+
+    /**
+     * Tag types of the results
+     */
+    private final Set<Tag> mTags;
+
+    /**
+     * Number of the page of results, starting at 1
+     */
+    private final int mPage;
+
+    /**
+     * Number of results per page
+     */
+    private final int mPageSize;
+
+    /**
+     * Key of the API, null to leave it out
+     */
+    private final String mApiKey;
+
+    /**
+     * URL of the search endpoint, SEARCH_URL unless a test points the query at a local server
+     */
+    private final String mSearchUrl;
+
+    private GuardianQuery(Builder builder) {
+        mSearchTerm = builder.mSearchTerm;
+        mSection = builder.mSection;
+        mOrderBy = builder.mOrderBy;
+        mFromDateMillis = builder.mFromDateMillis;
+        mIds = Collections.unmodifiableList(new ArrayList<>(builder.mIds));
+        mFields = EnumSet.copyOf(builder.mFields);
+        mTags = EnumSet.copyOf(builder.mTags);
+        mPage = builder.mPage;
+        mPageSize = builder.mPageSize;
+        mApiKey = builder.mApiKey;
+        mSearchUrl = builder.mSearchUrl;
+    }
+
+    /**
+     * Returns a builder for a query of the first page, newest first, without fields or tags.
+     */
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns the id of an article (i.e. "technology/2018/may/24/title") from its web URL, or null if the URL
+     * isn't a Guardian article URL.
+     */
+    public static String idOf(String webUrl) {
+        if (webUrl == null || !webUrl.startsWith(WEB_URL_PREFIX) || webUrl.length() == WEB_URL_PREFIX.length()) {
+            return null;
+        }
+        return webUrl.substring(WEB_URL_PREFIX.length());
+    }
+
+    /**
+     * Returns a builder that starts with the values of this query, i.e. to ask for another page.
+     */
+    public Builder buildUpon() {
+        return new Builder(this);
+    }
+
+    /**
+     * Returns the page of results the query asks for.
+     */
+    public int getPage() {
+        return mPage;
+    }
+
+    /**
+     * Returns the number of results per page.
+     */
+    public int getPageSize() {
+        return mPageSize;
+    }
+
+    /**
+     * Returns the request URL. For example:
+     * https://content.guardianapis.com/search?section=technology&order-by=newest&q=android&show-fields=byline&page=2&page-size=20&api-key=test
+     */
+    public String toUrl() {
+        StringBuilder url = new StringBuilder(mSearchUrl);
+        char separator = '?';
+        if (mSection != null) {
+            separator = appendParameter(url, separator, "section", mSection);
+        }
+        separator = appendParameter(url, separator, "order-by", mOrderBy.mName);
+        if (mFromDateMillis != ArticleDates.UNKNOWN) {
+            // The API takes the day only, i.e. "2018-05-24"
+            separator = appendParameter(url, separator, "from-date",
+                    ArticleDates.formatIsoDate(mFromDateMillis).substring(0, 10));
+        }
+        if (mSearchTerm != null) {
+            separator = appendParameter(url, separator, "q", mSearchTerm);
+        }
+        if (!mIds.isEmpty()) {
+            StringBuilder ids = new StringBuilder();
+            for (String id : mIds) {
+                ids.append(ids.length() == 0 ? "" : ",").append(id);
+            }
+            separator = appendParameter(url, separator, "ids", ids.toString());
+        }
+        if (!mFields.isEmpty()) {
+            StringBuilder fields = new StringBuilder();
+            for (Field field : mFields) {
+                fields.append(fields.length() == 0 ? "" : ",").append(field.mName);
+            }
+            separator = appendParameter(url, separator, "show-fields", fields.toString());
+        }
+        if (!mTags.isEmpty()) {
+            StringBuilder tags = new StringBuilder();
+            for (Tag tag : mTags) {
+                tags.append(tags.length() == 0 ? "" : ",").append(tag.mName);
+            }
+            separator = appendParameter(url, separator, "show-tags", tags.toString());
+        }
+        separator = appendParameter(url, separator, "page", String.valueOf(mPage));
+        separator = appendParameter(url, separator, "page-size", String.valueOf(mPageSize));
+        if (mApiKey != null) {
+            appendParameter(url, separator, "api-key", mApiKey);
+        }
+        return url.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toUrl();
+    }
+
+    /**
+     * Append "name=value" with the value percent-encoded, and return the separator of the next parameter.
+     */
+    private static char appendParameter(StringBuilder url, char separator, String name, String value) {
+        url.append(separator).append(name).append('=').append(encode(value));
+        return '&';
+    }
+
+    /**
+     * Returns the value percent-encoded like Uri.encode(), with spaces as "%20" and commas kept as they are.
+     */
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8")
+                    .replace("+", "%20")
+                    .replace("%2C", ",")
+                    .replace("*", "%2A")
+                    .replace("%7E", "~");
+        } catch (UnsupportedEncodingException e) {
+            // Every Java platform supports UTF-8
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Builds a GuardianQuery.
+     */
+    public static final class Builder {
+
+        private String mSearchTerm;
+        private String mSection;
+        private OrderBy mOrderBy = OrderBy.NEWEST;
+        private long mFromDateMillis = ArticleDates.UNKNOWN;
+        private final List<String> mIds = new ArrayList<>();
+        private final EnumSet<Field> mFields = EnumSet.noneOf(Field.class);
+        private final EnumSet<Tag> mTags = EnumSet.noneOf(Tag.class);
+        private int mPage = 1;
+        private int mPageSize = 10;
+        private String mApiKey;
+        private String mSearchUrl = SEARCH_URL;
+
+        private Builder() {
+        }
+
+        private Builder(GuardianQuery query) {
+            mSearchTerm = query.mSearchTerm;
+            mSection = query.mSection;
+            mOrderBy = query.mOrderBy;
+            mFromDateMillis = query.mFromDateMillis;
+            mIds.addAll(query.mIds);
+            mFields.addAll(query.mFields);
+            mTags.addAll(query.mTags);
+            mPage = query.mPage;
+            mPageSize = query.mPageSize;
+            mApiKey = query.mApiKey;
+            mSearchUrl = query.mSearchUrl;
+        }
+
+        /**
+         * Search for the term, null or empty for all articles.
+         */
+        public Builder searchTerm(String searchTerm) {
+            mSearchTerm = searchTerm == null || searchTerm.isEmpty() ? null : searchTerm;
+            return this;
+        }
+
+        /**
+         * Restrict the results to a section id (i.e. "technology"), null or empty for all sections.
+         */
+        public Builder section(String section) {
+            mSection = section == null || section.isEmpty() ? null : section;
+            return this;
+        }
+
+        public Builder orderBy(OrderBy orderBy) {
+            if (orderBy == null) {
+                throw new IllegalArgumentException("orderBy == null");
+            }
+            mOrderBy = orderBy;
+            return this;
+        }
+
+        /**
+         * Only return articles published on or after the UTC day of the time, ArticleDates.UNKNOWN for no limit.
+         */
+        public Builder fromDate(long timeInMillis) {
+            mFromDateMillis = timeInMillis;
+            return this;
+        }
+
+        /**
+         * Only return the articles with the given ids (see idOf()), i.e. to fetch the bodies of known articles.
+         */
+        public Builder ids(Collection<String> ids) {
+            mIds.addAll(ids);
+            return this;
+        }
+
+        /**
+         * Add optional fields to each result.
+         */
+        public Builder fields(Field... fields) {
+            for (Field field : fields) {
+                mFields.add(field);
+            }
+            return this;
+        }
+
+        /**
+         * Add tags of the given types to each result.
+         */
+        public Builder tags(Tag... tags) {
+            for (Tag tag : tags) {
+                mTags.add(tag);
+            }
+            return this;
+        }
+
+        /**
+         * Ask for a page of results, starting at 1.
+         */
+        public Builder page(int page) {
+            if (page < 1) {
+                throw new IllegalArgumentException("page < 1: " + page);
+            }
+            mPage = page;
+            return this;
+        }
+
+        /**
+         * Number of results per page, the API allows 1 to 200.
+         */
+        public Builder pageSize(int pageSize) {
+            if (pageSize < 1 || pageSize > 200) {
+                throw new IllegalArgumentException("pageSize out of range: " + pageSize);
+            }
+            mPageSize = pageSize;
+            return this;
+        }
+
+        public Builder apiKey(String apiKey) {
+            mApiKey = apiKey;
+            return this;
+        }
+
+        /**
+         * Send the query to another search endpoint, i.e. a local server in tests.
+         */
+        Builder searchUrl(String searchUrl) {
+            mSearchUrl = searchUrl;
+            return this;
+        }
+
+        public GuardianQuery build() {
+            return new GuardianQuery(this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.android.newsapp;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of recorded values, i.e. durations or sizes, with fixed memory.
+ * Values below 16 are counted exactly, larger ones in buckets that split each power of two in 8,
+ * so a percentile is within 12.5% of the recorded value. Negative values are counted as 0.
+ */
+public class Histogram {
+
+    /**
+     * Values below this are counted in a bucket of their own
+     */
+    private static final int LINEAR_BUCKETS = 16;
+
+    /**
+     * Number of bits of a value, after its highest one bit, that select its bucket
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * Number of buckets per power of two
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Buckets for every long: the linear ones, then 8 for each power of two from 16 to 2^62
+     */
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+    /**
+     * Number of values in each bucket
+     */
+    private final long[] mBuckets = new long[BUCKET_COUNT];
+
+    /**
+     * Number of recorded values
+     */
+    private long mCount;
+
+    /**
+     * Sum of the recorded values
+     */
+    private long mSum;
+
+    /**
+     * Smallest recorded value
+     */
+    private long mMin = Long.MAX_VALUE;
+
+    /**
+     * Largest recorded value
+     */
+    private long mMax = Long.MIN_VALUE;
+
+    /**
+     * Record a value.
+     */
+    public synchronized void record(long value) {
+        value = Math.max(0, value);
+        mBuckets[bucketOf(value)]++;
+        mCount++;
+        mSum += value;
+        mMin = Math.min(mMin, value);
+        mMax = Math.max(mMax, value);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     */
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the mean of the recorded values, or 0 if there are none.
+     */
+    public synchronized double getMean() {
+        return mCount == 0 ? 0 : (double) mSum / mCount;
+    }
+
+    /**
+     * Returns the smallest recorded value, or 0 if there are none.
+     */
+    public synchronized long getMin() {
+        return mCount == 0 ? 0 : mMin;
+    }
+
+    /**
+     * Returns the largest recorded value, or 0 if there are none.
+     */
+    public synchronized long getMax() {
+        return mCount == 0 ? 0 : mMax;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values are, or 0 if there are none.
+     * The result is the upper bound of the bucket of that value, never more than the largest value.
+     *
+     * @param percentile is between 0 and 100
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (mCount == 0) {
+            return 0;
+        }
+        // Rank of the value, 1 for the smallest
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * mCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mBuckets[i];
+            if (seen >= rank) {
+                return Math.max(mMin, Math.min(mMax, upperBoundOf(i)));
+            }
+        }
+        return mMax;
+    }
+
+    /**
+     * Forget the recorded values.
+     */
+    public synchronized void reset() {
+        Arrays.fill(mBuckets, 0);
+        mCount = 0;
+        mSum = 0;
+        mMin = Long.MAX_VALUE;
+        mMax = Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the bucket of a value that isn't negative.
+     */
+    static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the largest value of a bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowerBound = (1L << exponent) + subBucket * width;
+        return lowerBound + width - 1;
+    }
+}
@@ -0,0 +1,438 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * On-disk cache of HTTP response bodies and their validators (ETag, Last-Modified, Cache-Control max-age).
+ * QueryUtils uses it to send conditional GETs and to read the body of a 304 response from the local copy.
+ */
+public class HttpCache {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = HttpCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory inside the app cache dir
+     */
+    private static final String CACHE_DIR_NAME = "http";
+
+    /**
+     * Version of the metadata file format
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Maximum total size of the cache directory in bytes (5 MB)
+     */
+    private static final long DEFAULT_MAX_BYTES = 5 * 1024 * 1024L;
+
+    /**
+     * Suffix of the files holding the validators of a response
+     */
+    private static final String META_SUFFIX = ".meta";
+
+    /**
+     * Suffix of the files holding the decoded body of a response
+     */
+    private static final String BODY_SUFFIX = ".body";
+
+    /**
+     * Shared instance installed in QueryUtils
+     */
+    private static HttpCache sInstance;
+
+    /**
+     * Directory that holds a metadata file and a body file per URL
+     */
+    private final File mDirectory;
+
+    /**
+     * Maximum total size of the directory in bytes
+     */
+    private final long mMaxBytes;
+
+    /**
+     * Constructs a new HttpCache
+     *
+     * @param directory where the responses are stored
+     * @param maxBytes  is the maximum total size of the responses
+     */
+    public HttpCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the shared cache stored in the app cache directory.
+     */
+    public static synchronized HttpCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME);
+            sInstance = new HttpCache(directory, DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached response for the given URL, or null if there is none.
+     */
+    public synchronized Entry get(String url) {
+        File metaFile = new File(mDirectory, keyFor(url) + META_SUFFIX);
+        File bodyFile = new File(mDirectory, keyFor(url) + BODY_SUFFIX);
+        if (!metaFile.exists() || !bodyFile.exists()) {
+            return null;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(metaFile)));
+            if (input.readInt() != FORMAT_VERSION || !url.equals(input.readUTF())) {
+                return null;
+            }
+            String eTag = input.readBoolean() ? input.readUTF() : null;
+            String lastModified = input.readBoolean() ? input.readUTF() : null;
+            long expiresAtMillis = input.readLong();
+            return new Entry(url, eTag, lastModified, expiresAtMillis, bodyFile);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached response", e);
+            return null;
+        } finally {
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Stores new validators for a cached response, i.e. after a 304 response.
+     */
+    public synchronized void updateValidators(Entry entry, String eTag, String lastModified, long expiresAtMillis) {
+        // A 304 may omit validators that did not change
+        writeMeta(entry.mUrl,
+                eTag != null ? eTag : entry.mETag,
+                lastModified != null ? lastModified : entry.mLastModified,
+                expiresAtMillis);
+    }
+
+    /**
+     * Returns a Writer that copies the body of a new response to the cache while it is read.
+     * The response is stored once Writer.commit() is called. Throws an IOException if the copy can't be
+     * started, the response should then be read without caching it.
+     */
+    public Writer newWriter(String url, String eTag, String lastModified, long expiresAtMillis) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Cannot create the cache directory");
+        }
+        return new Writer(url, eTag, lastModified, expiresAtMillis);
+    }
+
+    /**
+     * Write the metadata file of a response.
+     */
+    private void writeMeta(String url, String eTag, String lastModified, long expiresAtMillis) {
+        File metaFile = new File(mDirectory, keyFor(url) + META_SUFFIX);
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(metaFile)));
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(url);
+            output.writeBoolean(eTag != null);
+            if (eTag != null) {
+                output.writeUTF(eTag);
+            }
+            output.writeBoolean(lastModified != null);
+            if (lastModified != null) {
+                output.writeUTF(lastModified);
+            }
+            output.writeLong(expiresAtMillis);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the cached response", e);
+            metaFile.delete();
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    /**
+     * Delete the least recently stored or revalidated responses until the directory fits in the size limit.
+     * A response is deleted with both its files. The temporary files of the bodies still being written
+     * are left to their writers.
+     */
+    private void trimToSize() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // Size and last write of each response, by key
+        final Map<String, long[]> responses = new HashMap<>();
+        long totalBytes = 0;
+        for (File file : files) {
+            String key = keyOf(file);
+            if (key == null) {
+                continue;
+            }
+            long[] response = responses.get(key);
+            if (response == null) {
+                response = new long[2];
+                responses.put(key, response);
+            }
+            response[0] += file.length();
+            response[1] = Math.max(response[1], file.lastModified());
+            totalBytes += file.length();
+        }
+        if (totalBytes <= mMaxBytes) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(responses.keySet());
+        Collections.sort(keys, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                return Long.compare(responses.get(first)[1], responses.get(second)[1]);
+            }
+        });
+        for (int i = 0; i < keys.size() && totalBytes > mMaxBytes; i++) {
+            String key = keys.get(i);
+            // Without its metadata the body is never read, the metadata goes first
+            new File(mDirectory, key + META_SUFFIX).delete();
+            new File(mDirectory, key + BODY_SUFFIX).delete();
+            totalBytes -= responses.get(key)[0];
+        }
+    }
+
+    /**
+     * Returns the key of a metadata or body file, or null for another file, i.e. a body being written.
+     */
+    private static String keyOf(File file) {
+        String name = file.getName();
+        if (name.endsWith(META_SUFFIX)) {
+            return name.substring(0, name.length() - META_SUFFIX.length());
+        } else if (name.endsWith(BODY_SUFFIX)) {
+            return name.substring(0, name.length() - BODY_SUFFIX.length());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the file name prefix used for the given URL.
+     */
+    private static String keyFor(String url) {
+        return Integer.toHexString(url.hashCode());
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing the cache file", e);
+            }
+        }
+    }
+
+    /**
+     * A cached response body and its validators.
+     */
+    public static class Entry {
+
+        /**
+         * The request URL
+         */
+        private final String mUrl;
+
+        /**
+         * The ETag response header
+         */
+        private final String mETag;
+
+        /**
+         * The Last-Modified response header
+         */
+        private final String mLastModified;
+
+        /**
+         * The time until the response can be used without revalidation, in milliseconds since epoch
+         */
+        private final long mExpiresAtMillis;
+
+        /**
+         * The file holding the decoded body
+         */
+        private final File mBodyFile;
+
+        Entry(String url, String eTag, String lastModified, long expiresAtMillis, File bodyFile) {
+            mUrl = url;
+            mETag = eTag;
+            mLastModified = lastModified;
+            mExpiresAtMillis = expiresAtMillis;
+            mBodyFile = bodyFile;
+        }
+
+        /**
+         * Returns the ETag of the response, or null if the server did not send one.
+         */
+        public String getETag() {
+            return mETag;
+        }
+
+        /**
+         * Returns the Last-Modified date of the response, or null if the server did not send one.
+         */
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        /**
+         * Returns true if Cache-Control allows using the response without asking the server.
+         */
+        public boolean isFresh() {
+            return System.currentTimeMillis() < mExpiresAtMillis;
+        }
+
+        /**
+         * Returns the size of the decoded body in bytes.
+         */
+        public long getBodyLength() {
+            return mBodyFile.length();
+        }
+
+        /**
+         * Opens the decoded body of the response.
+         */
+        public InputStream openBody() throws IOException {
+            return new BufferedInputStream(new FileInputStream(mBodyFile));
+        }
+    }
+
+    /**
+     * Copies a response body to a temporary file while it is read, and stores it on commit().
+     */
+    public class Writer {
+
+        private final String mUrl;
+        private final String mETag;
+        private final String mLastModified;
+        private final long mExpiresAtMillis;
+
+        /**
+         * The file the body is copied to until it is committed
+         */
+        private final File mTempFile;
+
+        /**
+         * The stream writing to the temporary file
+         */
+        private final OutputStream mOutput;
+
+        /**
+         * True once writing the copy failed, e.g. the disk is full. The response is then read without it.
+         */
+        private boolean mFailed;
+
+        private Writer(String url, String eTag, String lastModified, long expiresAtMillis) throws IOException {
+            mUrl = url;
+            mETag = eTag;
+            mLastModified = lastModified;
+            mExpiresAtMillis = expiresAtMillis;
+            mTempFile = File.createTempFile(keyFor(url), ".tmp", mDirectory);
+            mOutput = new BufferedOutputStream(new FileOutputStream(mTempFile));
+        }
+
+        /**
+         * Returns a stream that reads from the given body and writes every byte it reads to the cache.
+         * Only the errors of the body itself are thrown, a failed copy is dropped.
+         */
+        public InputStream wrap(InputStream body) {
+            return new FilterInputStream(body) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1 && !mFailed) {
+                        try {
+                            mOutput.write(b);
+                        } catch (IOException e) {
+                            fail(e);
+                        }
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int count) throws IOException {
+                    int read = super.read(buffer, offset, count);
+                    if (read > 0 && !mFailed) {
+                        try {
+                            mOutput.write(buffer, offset, read);
+                        } catch (IOException e) {
+                            fail(e);
+                        }
+                    }
+                    return read;
+                }
+            };
+        }
+
+        /**
+         * Store the body read so far as the cached response, unless writing it failed. A response that can't be
+         * stored is logged and dropped.
+         */
+        public void commit() {
+            if (mFailed) {
+                return;
+            }
+            try {
+                mOutput.close();
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            synchronized (HttpCache.this) {
+                File bodyFile = new File(mDirectory, keyFor(mUrl) + BODY_SUFFIX);
+                if (!mTempFile.renameTo(bodyFile)) {
+                    fail(new IOException("Cannot store the cached response"));
+                    return;
+                }
+                writeMeta(mUrl, mETag, mLastModified, mExpiresAtMillis);
+                trimToSize();
+            }
+        }
+
+        /**
+         * Discard the body read so far.
+         */
+        public void abort() {
+            closeQuietly(mOutput);
+            mTempFile.delete();
+        }
+
+        /**
+         * Give up the copy after a write error.
+         */
+        private void fail(IOException e) {
+            Log.e(LOG_TAG, "Problem writing the cached response", e);
+            mFailed = true;
+            abort();
+        }
+    }
+}
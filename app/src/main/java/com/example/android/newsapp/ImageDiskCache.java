@@ -0,0 +1,157 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Disk cache of the downloaded (encoded) thumbnail images, keyed by image URL, so a thumbnail is downloaded
+ * once and decoded again at any size. The images are already compressed, so they are stored as they are,
+ * and the cache is kept under a size limit by removing the least recently used images.
+ */
+public class ImageDiskCache {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ImageDiskCache.class.getSimpleName();
+
+    /**
+     * Name of the cache directory inside the app cache dir
+     */
+    private static final String CACHE_DIR_NAME = "thumbnails";
+
+    /**
+     * Version of the image file format
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Maximum total size of the cache on disk in bytes (20 MB, a few hundred thumbnails)
+     */
+    private static final long DEFAULT_MAX_BYTES = 20 * 1024 * 1024L;
+
+    /**
+     * Largest image accepted, larger lengths come from a corrupt file or aren't thumbnails
+     */
+    static final int MAX_IMAGE_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Shared instance used by the image loader
+     */
+    private static ImageDiskCache sInstance;
+
+    /**
+     * Files of the cached images, one per URL, under the size limit
+     */
+    private final DiskLruFiles mFiles;
+
+    /**
+     * Constructs a new ImageDiskCache
+     *
+     * @param directory where the images are stored
+     * @param maxBytes  is the maximum total size of the images
+     */
+    public ImageDiskCache(File directory, long maxBytes) {
+        mFiles = new DiskLruFiles(directory, maxBytes);
+    }
+
+    /**
+     * Returns the shared cache in the app cache directory.
+     */
+    public static synchronized ImageDiskCache getInstance(Context context) {
+        if (sInstance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), CACHE_DIR_NAME);
+            sInstance = new ImageDiskCache(directory, DEFAULT_MAX_BYTES);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the cached image and marks it as the most recently used, or null if it isn't cached.
+     */
+    public synchronized byte[] get(String url) {
+        File file = mFiles.get(url);
+        if (file == null) {
+            return null;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != FORMAT_VERSION || !url.equals(input.readUTF())) {
+                // Old format, or another URL with the same hash
+                return null;
+            }
+            int length = input.readInt();
+            if (length < 0 || length > MAX_IMAGE_BYTES) {
+                throw new IOException("Corrupt image length " + length);
+            }
+            byte[] image = new byte[length];
+            input.readFully(image);
+            return image;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached image", e);
+            mFiles.delete(url);
+            return null;
+        } finally {
+            DiskLruFiles.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Stores the image and removes the least recently used images over the size limit.
+     */
+    public synchronized void put(String url, byte[] image) {
+        if (image.length > MAX_IMAGE_BYTES) {
+            return;
+        }
+
+        // Write to a temporary file first so a reader never sees a half written image
+        File tempFile = mFiles.tempFileFor(url);
+        if (tempFile == null) {
+            return;
+        }
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(url);
+            output.writeInt(image.length);
+            output.write(image);
+            output.close();
+            output = null;
+
+            if (!mFiles.commit(url, tempFile)) {
+                Log.e(LOG_TAG, "Problem saving the image");
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the image", e);
+        } finally {
+            DiskLruFiles.closeQuietly(output);
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Returns the number of cached images.
+     */
+    public synchronized int getCount() {
+        return mFiles.getCount();
+    }
+
+    /**
+     * Returns the size of the cached images on disk, in bytes.
+     */
+    public synchronized long getBytesUsed() {
+        return mFiles.getBytesUsed();
+    }
+}
@@ -0,0 +1,441 @@
+package com.example.android.newsapp;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Loads the thumbnails of the list into ImageViews. Decoded bitmaps are kept in a memory cache sized to the
+ * memory class of the device, and the downloaded images in an ImageDiskCache. Images are decoded at the
+ * smallest power-of-two scale that still covers the view, into the memory of bitmaps nobody shows anymore.
+ * Loading another image into a view cancels its previous request, download included.
+ */
+public class ImageLoader {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ImageLoader.class.getSimpleName();
+
+    /**
+     * Number of images downloaded and decoded at the same time
+     */
+    private static final int THREAD_COUNT = 3;
+
+    /**
+     * The memory cache gets 1/MEMORY_CACHE_DIVISOR of the heap the app may use
+     */
+    private static final int MEMORY_CACHE_DIVISOR = 8;
+
+    /**
+     * The bitmap pool gets 1/POOL_DIVISOR of the size of the memory cache
+     */
+    private static final int POOL_DIVISOR = 4;
+
+    /**
+     * Shared instance used by the list
+     */
+    private static ImageLoader sInstance;
+
+    /**
+     * Decoded bitmaps by URL and size
+     */
+    private final LruCache<String, Bitmap> mMemoryCache;
+
+    /**
+     * Bitmaps whose memory the next decodes reuse
+     */
+    private final BitmapPool mBitmapPool;
+
+    /**
+     * Downloaded images
+     */
+    private final ImageDiskCache mDiskCache;
+
+    /**
+     * Downloads and decodes the images, THREAD_COUNT at a time on the I/O threads
+     */
+    private final Executor mExecutor = AppExecutors.limit(AppExecutors.getInstance().io(), THREAD_COUNT);
+
+    /**
+     * Delivers the bitmaps to the views on the main thread
+     */
+    private final Executor mMainThread = AppExecutors.getInstance().mainThread();
+
+    /**
+     * Number of views that show each bitmap. A bitmap goes to the pool only once no view shows it.
+     * Also the lock for moving bitmaps between the memory cache, the views and the pool.
+     */
+    private final Map<Bitmap, Integer> mDisplayCounts = new IdentityHashMap<>();
+
+    /**
+     * Bitmaps removed from the memory cache while a view still shows them
+     */
+    private final Set<Bitmap> mEvictedBitmaps = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+
+    /**
+     * Keys of the prefetches that are queued or running
+     */
+    private final Set<String> mPendingPrefetches = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Constructs a new ImageLoader
+     *
+     * @param memoryCacheBytes is the maximum total size of the decoded bitmaps kept in memory
+     * @param diskCache        keeps the downloaded images
+     */
+    public ImageLoader(int memoryCacheBytes, ImageDiskCache diskCache) {
+        mDiskCache = diskCache;
+        mBitmapPool = new BitmapPool(memoryCacheBytes / POOL_DIVISOR);
+        mMemoryCache = new LruCache<String, Bitmap>(memoryCacheBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldBitmap, Bitmap newBitmap) {
+                if (oldBitmap != newBitmap) {
+                    synchronized (mDisplayCounts) {
+                        if (mDisplayCounts.containsKey(oldBitmap)) {
+                            // Still shown, it goes to the pool when its last view lets go of it
+                            mEvictedBitmaps.add(oldBitmap);
+                        } else {
+                            mBitmapPool.put(oldBitmap);
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns the shared loader, with a memory cache of an eighth of the memory class of the device.
+     */
+    public static synchronized ImageLoader getInstance(Context context) {
+        if (sInstance == null) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            int memoryCacheBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CACHE_DIVISOR;
+            sInstance = new ImageLoader(memoryCacheBytes, ImageDiskCache.getInstance(context));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Show the image in the view, at once when it is in the memory cache, otherwise when it is loaded.
+     * Cancels the previous request of the view. A null URL just clears the view.
+     *
+     * @param width  is the width of the view in pixels
+     * @param height is the height of the view in pixels
+     */
+    public void load(String url, ImageView view, int width, int height) {
+        cancel(view);
+        if (url == null) {
+            return;
+        }
+
+        String key = keyFor(url, width, height);
+        Bitmap bitmap;
+        synchronized (mDisplayCounts) {
+            bitmap = mMemoryCache.get(key);
+            if (bitmap != null) {
+                acquire(bitmap);
+            }
+        }
+        if (bitmap != null) {
+            Metrics.increment("image.memory_hits");
+            show(view, bitmap);
+            return;
+        }
+
+        ImageRequest request = new ImageRequest(url, key, width, height, view);
+        view.setTag(R.id.image_loader_request, request);
+        mExecutor.execute(request);
+    }
+
+    /**
+     * Load the image into the memory cache in the background, i.e. for rows just off-screen.
+     */
+    public void prefetch(String url, int width, int height) {
+        if (url == null) {
+            return;
+        }
+        String key = keyFor(url, width, height);
+        if (mMemoryCache.get(key) != null || !mPendingPrefetches.add(key)) {
+            return;
+        }
+        mExecutor.execute(new ImageRequest(url, key, width, height, null));
+    }
+
+    /**
+     * Cancel the request of the view and clear it, i.e. when its row is recycled.
+     */
+    public void cancel(ImageView view) {
+        ImageRequest request = (ImageRequest) view.getTag(R.id.image_loader_request);
+        if (request != null) {
+            request.mCancellationToken.cancel();
+            view.setTag(R.id.image_loader_request, null);
+        }
+
+        Bitmap bitmap = (Bitmap) view.getTag(R.id.image_loader_bitmap);
+        view.setImageDrawable(null);
+        if (bitmap != null) {
+            view.setTag(R.id.image_loader_bitmap, null);
+            release(bitmap);
+        }
+    }
+
+    /**
+     * Free memory when the system asks for it, level is one of the ComponentCallbacks2 TRIM_MEMORY levels.
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            mMemoryCache.evictAll();
+            mBitmapPool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            mMemoryCache.trimToSize(mMemoryCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * Returns the largest power of two by which an image can be scaled down and still cover the requested size.
+     */
+    static int calculateInSampleSize(int width, int height, int requestedWidth, int requestedHeight) {
+        int sampleSize = 1;
+        if (requestedWidth <= 0 || requestedHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= requestedWidth && height / (sampleSize * 2) >= requestedHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Show the bitmap, which the caller has acquired for the view.
+     */
+    private void show(ImageView view, Bitmap bitmap) {
+        view.setImageBitmap(bitmap);
+        view.setTag(R.id.image_loader_bitmap, bitmap);
+    }
+
+    /**
+     * Count one more view that shows the bitmap. Called holding mDisplayCounts.
+     */
+    private void acquire(Bitmap bitmap) {
+        Integer count = mDisplayCounts.get(bitmap);
+        mDisplayCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Count one view less that shows the bitmap, and pool it if the memory cache dropped it and no view shows it.
+     */
+    private void release(Bitmap bitmap) {
+        synchronized (mDisplayCounts) {
+            Integer count = mDisplayCounts.get(bitmap);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                mDisplayCounts.put(bitmap, count - 1);
+                return;
+            }
+            mDisplayCounts.remove(bitmap);
+            if (mEvictedBitmaps.remove(bitmap)) {
+                mBitmapPool.put(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Returns the image from the disk cache, or downloads and caches it. Returns null if it can't be loaded.
+     */
+    private byte[] loadImage(String url, CancellationToken cancellationToken) {
+        byte[] image = mDiskCache.get(url);
+        if (image != null) {
+            return image;
+        }
+
+        final Call call = NetworkClient.get().newCall(new Request.Builder().url(url).build());
+        // Cancelling the call makes a blocked connect or read throw
+        cancellationToken.setOnCancelListener(new Runnable() {
+            @Override
+            public void run() {
+                call.cancel();
+            }
+        });
+        Response response = null;
+        try {
+            response = call.execute();
+            if (!response.isSuccessful()) {
+                Log.e(LOG_TAG, "Image response with error code: " + response.code());
+                return null;
+            }
+            image = response.body().bytes();
+        } catch (IOException e) {
+            if (!cancellationToken.isCancelled()) {
+                Log.e(LOG_TAG, "Problem downloading the image", e);
+            }
+            return null;
+        } finally {
+            cancellationToken.setOnCancelListener(null);
+            if (response != null) {
+                response.close();
+            }
+        }
+
+        mDiskCache.put(url, image);
+        return image;
+    }
+
+    /**
+     * Returns the image decoded at the scale that covers the requested size, or null if it can't be decoded.
+     */
+    private Bitmap decode(byte[] image, int width, int height) {
+        // Read only the size first, to pick the scale before allocating any pixels
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = calculateInSampleSize(options.outWidth, options.outHeight, width, height);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        // Thumbnails are photos without transparency, 565 halves the memory of each pixel
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        options.inBitmap = mBitmapPool.get((options.outWidth + sampleSize - 1) / sampleSize,
+                (options.outHeight + sampleSize - 1) / sampleSize, Bitmap.Config.RGB_565);
+        try {
+            return BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap doesn't fit after all, decode into a new one
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(image, 0, image.length, options);
+        }
+    }
+
+    /**
+     * Returns the memory cache key of the image at the given size.
+     */
+    private static String keyFor(String url, int width, int height) {
+        return url + '@' + width + 'x' + height;
+    }
+
+    /**
+     * Loads an image for a view, or into the memory cache only when there is no view (a prefetch).
+     */
+    private final class ImageRequest implements Runnable {
+
+        private final String mUrl;
+        private final String mKey;
+        private final int mWidth;
+        private final int mHeight;
+
+        /**
+         * The view that shows the image, null for a prefetch
+         */
+        private final ImageView mView;
+
+        /**
+         * Cancelled when the view gets another image or its row is recycled
+         */
+        private final CancellationToken mCancellationToken = new CancellationToken();
+
+        ImageRequest(String url, String key, int width, int height, ImageView view) {
+            mUrl = url;
+            mKey = key;
+            mWidth = width;
+            mHeight = height;
+            mView = view;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Rows scrolled past while the request was queued are skipped
+                if (mCancellationToken.isCancelled()) {
+                    return;
+                }
+                Bitmap bitmap = null;
+                if (mView != null) {
+                    // A prefetch may have loaded it since the request was queued
+                    synchronized (mDisplayCounts) {
+                        bitmap = mMemoryCache.get(mKey);
+                        if (bitmap != null) {
+                            acquire(bitmap);
+                        }
+                    }
+                }
+                if (bitmap == null) {
+                    byte[] image = loadImage(mUrl, mCancellationToken);
+                    if (image == null || mCancellationToken.isCancelled()) {
+                        return;
+                    }
+                    long section = Metrics.beginSection("image.decode");
+                    try {
+                        bitmap = decode(image, mWidth, mHeight);
+                    } finally {
+                        Metrics.endSection("image.decode", section);
+                    }
+                    if (bitmap == null) {
+                        Log.e(LOG_TAG, "Problem decoding the image " + mUrl);
+                        return;
+                    }
+                    if (mView == null) {
+                        mMemoryCache.put(mKey, bitmap);
+                        return;
+                    }
+
+                    // Acquired before it is cached, so the cache can't pool it before the view shows it
+                    synchronized (mDisplayCounts) {
+                        acquire(bitmap);
+                        mMemoryCache.put(mKey, bitmap);
+                    }
+                }
+                final Bitmap loadedBitmap = bitmap;
+                mMainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(loadedBitmap);
+                    }
+                });
+            } finally {
+                if (mView == null) {
+                    mPendingPrefetches.remove(mKey);
+                }
+            }
+        }
+
+        /**
+         * Show the bitmap if the view still waits for this request. Runs on the main thread.
+         */
+        private void deliver(Bitmap bitmap) {
+            if (mView.getTag(R.id.image_loader_request) == this && !mCancellationToken.isCancelled()) {
+                mView.setTag(R.id.image_loader_request, null);
+                show(mView, bitmap);
+            } else {
+                release(bitmap);
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.android.newsapp;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Table of interned entities (see Section and Contributor): a single instance per distinct name, numbered from 0
+ * in the order the names are first seen. Lookups by id don't lock, so they are cheap enough for binding rows.
+ * The ids are only valid in this process, the cache stores the names.
+ *
+ * @param <T> is the type of the entities
+ */
+final class Interner<T> {
+
+    /**
+     * Creates the entity of a name seen for the first time.
+     */
+    interface Factory<T> {
+        T create(int id, String name);
+    }
+
+    /**
+     * Initial size of the table, there are usually a few dozen sections
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Factory<T> mFactory;
+
+    /**
+     * Entities by name, guarded by this
+     */
+    private final Map<String, T> mByName = new HashMap<>();
+
+    /**
+     * Entities by id, replaced by a larger copy when full. Written under the lock, read without it.
+     */
+    private volatile Object[] mById = new Object[INITIAL_CAPACITY];
+
+    /**
+     * Number of entities, guarded by this
+     */
+    private int mSize;
+
+    Interner(Factory<T> factory) {
+        mFactory = factory;
+    }
+
+    /**
+     * Returns the entity of the name, created on first use.
+     */
+    synchronized T intern(String name) {
+        T entity = mByName.get(name);
+        if (entity != null) {
+            return entity;
+        }
+        Object[] byId = mById;
+        if (mSize == byId.length) {
+            byId = Arrays.copyOf(byId, byId.length * 2);
+        }
+        entity = mFactory.create(mSize, name);
+        byId[mSize++] = entity;
+        mByName.put(name, entity);
+        // The volatile write publishes the new entity to the threads that look it up without the lock
+        mById = byId;
+        return entity;
+    }
+
+    /**
+     * Returns the entity of an id returned by intern().
+     *
+     * @throws IndexOutOfBoundsException if no entity has the id
+     */
+    @SuppressWarnings("unchecked")
+    T get(int id) {
+        Object entity = mById[id];
+        if (entity == null) {
+            throw new IndexOutOfBoundsException("No entity with id " + id);
+        }
+        return (T) entity;
+    }
+
+    /**
+     * Returns the number of entities interned so far.
+     */
+    synchronized int size() {
+        return mSize;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.android.newsapp;
+
+/**
+ * Set of long values in one array, with open addressing and linear probing.
+ * Lookups don't allocate (no boxing, no entry objects), so they can run while binding rows.
+ * Values can only be added, which keeps the probing simple (no tombstones). Not thread-safe.
+ */
+public class LongHashSet {
+
+    /**
+     * Marks an empty slot of the table, the value 0 itself is tracked by mHasZero
+     */
+    private static final long EMPTY = 0;
+
+    /**
+     * Smallest table size, a power of two
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The table, its size is a power of two and it is at most half full
+     */
+    private long[] mTable;
+
+    /**
+     * Number of values in the table, 0 excluded
+     */
+    private int mSize;
+
+    /**
+     * True if the set holds 0
+     */
+    private boolean mHasZero;
+
+    /**
+     * Constructs a new LongHashSet
+     *
+     * @param expectedSize is the number of values the set is sized for, it grows past it
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        mTable = new long[capacity];
+    }
+
+    /**
+     * Add the value. Returns true if it wasn't in the set.
+     */
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !mHasZero;
+            mHasZero = true;
+            return added;
+        }
+        int mask = mTable.length - 1;
+        int slot = slotOf(value, mask);
+        while (mTable[slot] != EMPTY) {
+            if (mTable[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mTable[slot] = value;
+        mSize++;
+        if (mSize * 2 > mTable.length) {
+            grow();
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the value is in the set.
+     */
+    public boolean contains(long value) {
+        if (value == EMPTY) {
+            return mHasZero;
+        }
+        int mask = mTable.length - 1;
+        int slot = slotOf(value, mask);
+        while (mTable[slot] != EMPTY) {
+            if (mTable[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     */
+    public int size() {
+        return mHasZero ? mSize + 1 : mSize;
+    }
+
+    /**
+     * Returns the values of the set, in no particular order.
+     */
+    public long[] toArray() {
+        long[] values = new long[size()];
+        int index = 0;
+        if (mHasZero) {
+            values[index++] = EMPTY;
+        }
+        for (long value : mTable) {
+            if (value != EMPTY) {
+                values[index++] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Double the table and insert the values again.
+     */
+    private void grow() {
+        long[] oldTable = mTable;
+        mTable = new long[oldTable.length * 2];
+        int mask = mTable.length - 1;
+        for (long value : oldTable) {
+            if (value != EMPTY) {
+                int slot = slotOf(value, mask);
+                while (mTable[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                mTable[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Returns the first slot to probe for the value. The bits are mixed so that values differing only in their
+     * high bits don't land in the same slots.
+     */
+    private static int slotOf(long value, int mask) {
+        long hash = value * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
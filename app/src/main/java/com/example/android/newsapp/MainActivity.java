@@ -1,39 +1,36 @@
 package com.example.android.newsapp;
 
-import android.app.LoaderManager;
-import android.app.LoaderManager.LoaderCallbacks;
+import android.arch.lifecycle.Observer;
+import android.arch.lifecycle.ViewModelProviders;
 import android.content.Context;
 import android.content.Intent;
-import android.content.Loader;
-import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AppCompatActivity;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ListView;
+import android.view.ViewTreeObserver;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity implements LoaderCallbacks<List<Article>> {
+public class MainActivity extends AppCompatActivity {
 
     /**
-     * URL for articles data from the content.guardianapis.com
+     * Number of rows from the end of the list at which the next page is requested
      */
-    private static final String GUARDIAN_REQUEST_URL = "https://content.guardianapis.com/search";
-
-    /**
-     * Constant value for the article loader ID
-     */
-    private static final int ARTICLE_LOADER_ID = 1;
+    private static final int PREFETCH_DISTANCE = 5;
 
     /**
      * Adapter for the list of articles
@@ -50,120 +47,388 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
      */
     private ProgressBar loadingSpinner;
 
+    /**
+     * Layout manager of the list of articles
+     */
+    private LinearLayoutManager mLayoutManager;
+
+    /**
+     * Holds the pages of the list across configuration changes
+     */
+    private ArticleListViewModel mViewModel;
+
+    /**
+     * The articles shown in the list, the pages of the view model or the search results
+     */
+    private List<Article> mShownArticles = Collections.emptyList();
+
+    /**
+     * True while the list shows search results instead of the view model results
+     */
+    private boolean mSearching;
+
+    /**
+     * Fetches the bodies of the articles at the top of the list for the reader
+     */
+    private ArticleBodyPrefetcher mBodyPrefetcher;
+
+    /**
+     * Tells how much to prefetch on the current link
+     */
+    private FetchPolicy mFetchPolicy;
+
+    /**
+     * Records the articles opened, the list dims them
+     */
+    private ReadingHistory mReadingHistory;
+
+    /**
+     * Updates the dimmed rows when the read state changes
+     */
+    private final ReadingHistory.Listener mReadingHistoryListener = new ReadingHistory.Listener() {
+        @Override
+        public void onReadingHistoryChanged() {
+            mAdapter.onReadStateChanged();
+        }
+    };
+
+    /**
+     * Start of the timer from the creation of the activity to the first articles shown, 0 once they are shown
+     */
+    private long mTimeToContentStart;
+
+    /**
+     * Start of the timer from the creation of the activity to the first loaded articles shown
+     * (time to full display), 0 after a configuration change
+     */
+    private long mFullyDrawnStart;
+
+    /**
+     * True once the loaded articles were shown and reportFullyDrawn() was called
+     */
+    private boolean mFullyDrawnReported;
+
+    /**
+     * Pull-to-refresh container of the list
+     */
+    private SwipeRefreshLayout mSwipeRefreshLayout;
+
+    /**
+     * Tells how many articles a refresh added above the ones on screen
+     */
+    private TextView mNewArticlesButton;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // Record the metrics before anything is loaded, if they are turned on in the settings
+        Metrics.setEnabled(PreferenceManager.getDefaultSharedPreferences(this)
+                .getBoolean(getString(R.string.settings_metrics_key), false));
+        mTimeToContentStart = Metrics.startTimer();
+        long section = Metrics.beginSection("startup.create");
+        // Only a new start is a startup, after a configuration change the list is already loaded
+        final long startupStart = savedInstanceState == null ? mTimeToContentStart : 0;
+        mFullyDrawnStart = startupStart;
+        mFullyDrawnReported = savedInstanceState != null;
+
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        // Time to initial display: the first frame, empty or with the rows of the startup snapshot
+        getWindow().getDecorView().getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                getWindow().getDecorView().getViewTreeObserver().removeOnPreDrawListener(this);
+                Metrics.stopTimer("startup.ttid", startupStart);
+                return true;
+            }
+        });
+
+        // Keep the response bodies on disk so refreshes can be answered with 304 Not Modified
+        QueryUtils.setHttpCache(HttpCache.getInstance(this));
+
+        // Keep the articles of the current settings warm in the background
+        ArticleSyncJobService.schedule(this);
+
         // Find the list view from the layout
-        ListView articlesListView = findViewById(R.id.list);
+        final RecyclerView articlesRecyclerView = findViewById(R.id.list);
+        mLayoutManager = new LinearLayoutManager(this);
+        articlesRecyclerView.setLayoutManager(mLayoutManager);
+
+        // Pulling the list down adds the articles published since it was loaded
+        mSwipeRefreshLayout = findViewById(R.id.swipe_refresh);
+        mSwipeRefreshLayout.setColorSchemeResources(R.color.colorPrimary);
+        mSwipeRefreshLayout.setOnRefreshListener(new SwipeRefreshLayout.OnRefreshListener() {
+            @Override
+            public void onRefresh() {
+                mViewModel.refresh();
+            }
+        });
 
-        // Find and set the empty state view from the layout
+        // The new articles are added above the rows on screen, which stay in place until the button is tapped
+        mNewArticlesButton = findViewById(R.id.new_articles_button);
+        mNewArticlesButton.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View view) {
+                articlesRecyclerView.smoothScrollToPosition(0);
+                mViewModel.onNewArticlesSeen();
+            }
+        });
+
+        // Find the empty state view from the layout
         mEmptyStateTextView = findViewById(R.id.empty_view);
-        articlesListView.setEmptyView(mEmptyStateTextView);
 
         // Find and set the progress bar from the layout
         loadingSpinner = findViewById(R.id.loading_spinner);
 
-        // Create a new ArrayAdapter of articles
-        mAdapter = new ArticleAdapter(this, new ArrayList<Article>());
-
-        // Set the adapter on the ListView to populate the list of articles in the user interface
-        articlesListView.setAdapter(mAdapter);
+        // Bodies of the articles at the top of the list are fetched ahead, so the reader opens them at once
+        mBodyPrefetcher = ArticleBodyPrefetcher.getInstance(this);
+        mFetchPolicy = FetchPolicy.getInstance(this);
 
-        // Set an item click listener on the ListView, to open a website with the article.
-        articlesListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        // Create a new adapter of articles, with a click listener to open the article in the reader.
+        // The click is recorded in the reading history, which is written in the background.
+        mReadingHistory = ReadingHistory.getInstance(this);
+        mAdapter = new ArticleAdapter(this, new ArticleAdapter.OnArticleClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> adapterView, View view, int position, long l) {
-                // Find the current article that was clicked on
-                Article currentArticle = mAdapter.getItem(position);
-
-                // Convert the String URL from Article object into a URI object
-                Uri articleUri = Uri.parse(currentArticle.getUrl());
-
-                // Create a new ACTION_VIEW intent
-                Intent webIntent = new Intent(Intent.ACTION_VIEW, articleUri);
-
-                // Send the intent
-                startActivity(webIntent);
+            public void onArticleClick(Article currentArticle) {
+                mReadingHistory.recordOpen(currentArticle);
+                startActivity(ReaderActivity.newIntent(MainActivity.this, currentArticle));
             }
         });
 
-        // Get a reference to the ConnectivityManager used to checking the state of network
-        ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
+        // Set the adapter on the RecyclerView to populate the list of articles in the user interface
+        articlesRecyclerView.setAdapter(mAdapter);
+        mReadingHistory.addListener(mReadingHistoryListener);
 
-        // Get details on the currently active data network
-        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
-        boolean isConnected = activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+        // Request the next page when the end of the list comes near, and the previous one when
+        // scrolling back to pages that were dropped
+        articlesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleBodies();
+                }
+            }
 
-        // If there is a network connection, fetch data
-        if (isConnected) {
-            // Get a reference to the LoaderManager to interact with loaders.
-            LoaderManager loaderManager = getLoaderManager();
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int totalItemCount = mLayoutManager.getItemCount();
+                if (totalItemCount == 0) {
+                    return;
+                }
+                // Thumbnails of the rows just below the screen are loaded before they scroll in, if the link allows
+                if (dy > 0) {
+                    int thumbnailCount = mFetchPolicy.getThumbnailPrefetchCount();
+                    if (thumbnailCount > 0) {
+                        mAdapter.prefetchThumbnails(mLayoutManager.findLastVisibleItemPosition() + 1, thumbnailCount);
+                    }
+                }
+                // The new articles were seen once the top of the list is shown
+                if (mLayoutManager.findFirstVisibleItemPosition() == 0) {
+                    mViewModel.onNewArticlesSeen();
+                }
+                // Search results have no further pages
+                if (mSearching) {
+                    return;
+                }
+                if (mLayoutManager.findLastVisibleItemPosition() >= totalItemCount - 1 - PREFETCH_DISTANCE) {
+                    mViewModel.loadNextPage();
+                } else if (mLayoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+                    mViewModel.loadPreviousPage();
+                }
+            }
+        });
 
-            // Initialize the loader.
-            loaderManager.initLoader(ARTICLE_LOADER_ID, null, this);
-        } else {
-            // Otherwise, display error
-            // Hide loading indicator
-            loadingSpinner.setVisibility(View.GONE);
+        // The view model keeps the loaded pages across rotations, only the first start loads them.
+        // Cached articles are delivered first, so it also shows articles without a network connection.
+        mViewModel = ViewModelProviders.of(this).get(ArticleListViewModel.class);
+        mViewModel.getArticles().observe(this, new Observer<List<Article>>() {
+            @Override
+            public void onChanged(@Nullable List<Article> articles) {
+                // The view model results are shown again when the search is closed
+                if (!mSearching) {
+                    showArticles(articles);
+                }
+                if (!mViewModel.isShowingSnapshot()) {
+                    reportStartupFullyDrawn();
+                }
+            }
+        });
+        mViewModel.getSearchResults().observe(this, new Observer<List<Article>>() {
+            @Override
+            public void onChanged(@Nullable List<Article> articles) {
+                if (mSearching && articles != null) {
+                    showArticles(articles);
+                }
+            }
+        });
+        mViewModel.isLoading().observe(this, new Observer<Boolean>() {
+            @Override
+            public void onChanged(@Nullable Boolean loading) {
+                showLoading(Boolean.TRUE.equals(loading));
+                if (!Boolean.TRUE.equals(loading)) {
+                    // The load failed or found nothing, the empty state is the full display
+                    reportStartupFullyDrawn();
+                }
+            }
+        });
+        mViewModel.isRefreshing().observe(this, new Observer<Boolean>() {
+            @Override
+            public void onChanged(@Nullable Boolean refreshing) {
+                mSwipeRefreshLayout.setRefreshing(Boolean.TRUE.equals(refreshing));
+            }
+        });
+        mViewModel.getNewArticleCount().observe(this, new Observer<Integer>() {
+            @Override
+            public void onChanged(@Nullable Integer count) {
+                showNewArticleCount(count != null ? count : 0);
+            }
+        });
+        mViewModel.start();
+        Metrics.endSection("startup.create", section);
+    }
 
-            // Update empty state with no connection error message
-            mEmptyStateTextView.setText(R.string.no_internet);
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // The rows on top are shown at the next launch while the list loads, a rotation keeps the list anyway
+        if (!isChangingConfigurations()) {
+            mViewModel.saveSnapshot();
+            // The process may be killed in the background, write the clicks still buffered
+            mReadingHistory.flush();
         }
-
     }
 
     @Override
-    public Loader<List<Article>> onCreateLoader(int i, Bundle bundle) {
-
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+    protected void onDestroy() {
+        super.onDestroy();
+        // Detaching the adapter recycles the rows, so their thumbnails go back to the BitmapPool. A destroyed
+        // activity (i.e. on rotation) doesn't recycle them otherwise, and the shared ImageLoader would keep them.
+        RecyclerView articlesRecyclerView = findViewById(R.id.list);
+        articlesRecyclerView.setAdapter(null);
+        mReadingHistory.removeListener(mReadingHistoryListener);
+    }
 
-        // getString retrieves a String value from the preferences. The second parameter is the default value for this preference.
-        String searchTerm = sharedPrefs.getString(getString(R.string.settings_search_term_key), getString(R.string.settings_search_term_default));
-        String section = sharedPrefs.getString(getString(R.string.settings_section_key), getString(R.string.settings_section_default));
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ImageLoader.getInstance(this).trimMemory(level);
+    }
 
-        // parse breaks apart the URI string that's passed into its parameter
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+    /**
+     * Search the text of the search box in the view model, or show its pages again when the text is empty.
+     *
+     * @param text      is the text of the search box
+     * @param submitted is true if the text was submitted, it is then searched without waiting
+     */
+    private void search(String text, boolean submitted) {
+        if (text.trim().isEmpty()) {
+            closeSearch();
+            return;
+        }
 
-        // buildUpon prepares the baseUri
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+        mSearching = true;
+        // Search results aren't refreshed, and the new articles of the list aren't in them
+        mSwipeRefreshLayout.setEnabled(false);
+        mNewArticlesButton.setVisibility(View.GONE);
+        mViewModel.search(text, submitted);
+    }
 
-        // Append query parameter and its value. For example: section=technology
-        if (!section.equals(getString(R.string.settings_section_default))) {
-            uriBuilder.appendQueryParameter(getString(R.string.uri_section_param), section);
+    /**
+     * Cancel the search and show the view model results again.
+     */
+    private void closeSearch() {
+        mViewModel.closeSearch();
+        if (mSearching) {
+            mSearching = false;
+            mSwipeRefreshLayout.setEnabled(true);
+            showArticles(mViewModel.getArticles().getValue());
+            Integer count = mViewModel.getNewArticleCount().getValue();
+            showNewArticleCount(count != null ? count : 0);
         }
-        uriBuilder.appendQueryParameter(getString(R.string.uri_order_by_param), getString(R.string.uri_order_by_value));
-        uriBuilder.appendQueryParameter(getString(R.string.uri_search_param), searchTerm);
-        uriBuilder.appendQueryParameter(getString(R.string.uri_show_tags_param), getString(R.string.uri_show_tags_value));
-        uriBuilder.appendQueryParameter(getString(R.string.uri_api_key_param), getString(R.string.uri_api_key_value));
+    }
 
-        // Return the completed uri. For example: https://content.guardianapis.com/search?section=technology&from-date=2018-05-24&show-tags=contributor&api-key=test
-        return new ArticleLoader(this, uriBuilder.toString());
+    /**
+     * Show how many articles a refresh added above the ones on screen, or hide the button once they were seen.
+     */
+    private void showNewArticleCount(int count) {
+        if (count == 0 || mSearching) {
+            mNewArticlesButton.setVisibility(View.GONE);
+            return;
+        }
+        mNewArticlesButton.setText(getResources().getQuantityString(R.plurals.new_articles, count, count));
+        mNewArticlesButton.setVisibility(View.VISIBLE);
     }
 
-    @Override
-    public void onLoadFinished(Loader<List<Article>> loader, List<Article> articles) {
+    /**
+     * Returns true if there is an active data network.
+     */
+    private boolean isConnected() {
+        // Get a reference to the ConnectivityManager used to checking the state of network
+        ConnectivityManager cm = (ConnectivityManager) getSystemService(Context.CONNECTIVITY_SERVICE);
 
-        // Hide loading indicator because the data has been loaded
-        loadingSpinner.setVisibility(View.GONE);
+        // Get details on the currently active data network
+        NetworkInfo activeNetwork = cm.getActiveNetworkInfo();
+        return activeNetwork != null && activeNetwork.isConnectedOrConnecting();
+    }
+
+    /**
+     * Show or hide the loading indicator. Once loaded, the empty state text tells why the list may be empty.
+     */
+    private void showLoading(boolean loading) {
+        loadingSpinner.setVisibility(loading ? View.VISIBLE : View.GONE);
+        if (loading) {
+            return;
+        }
 
-        // Set empty state text to display "No news found."
-        mEmptyStateTextView.setText(R.string.no_articles);
+        // Set empty state text to display "No news found." or, without a network connection, the connection error.
+        // A request that failed even after its retries gets its own message.
+        if (!isConnected()) {
+            mEmptyStateTextView.setText(R.string.no_internet);
+        } else if (Boolean.TRUE.equals(mViewModel.hasFailed().getValue())) {
+            mEmptyStateTextView.setText(R.string.server_error);
+        } else {
+            mEmptyStateTextView.setText(R.string.no_articles);
+        }
+    }
 
-        // Clear the adapter of previous articles data
-        mAdapter.clear();
+    /**
+     * Show the given articles in the list. Only the rows that changed are rebound.
+     */
+    private void showArticles(List<Article> articles) {
+        mShownArticles = articles != null ? articles : Collections.<Article>emptyList();
+        mAdapter.submitList(mShownArticles);
+        mEmptyStateTextView.setVisibility(mShownArticles.isEmpty() ? View.VISIBLE : View.GONE);
+        prefetchVisibleBodies();
+
+        if (mTimeToContentStart != 0 && !mShownArticles.isEmpty()) {
+            Metrics.stopTimer("ui.time_to_content", mTimeToContentStart);
+            mTimeToContentStart = 0;
+        }
+    }
 
-        // If there is a valid list of articles, then add them to the adapter's data set.
-        if (articles != null && !articles.isEmpty()) {
-            mAdapter.addAll(articles);
+    /**
+     * Tell the system the activity shows the loaded articles (time to full display), once per startup.
+     * The rows of the startup snapshot only count for the initial display.
+     */
+    private void reportStartupFullyDrawn() {
+        if (mFullyDrawnReported) {
+            return;
         }
+        mFullyDrawnReported = true;
+        reportFullyDrawn();
+        Metrics.stopTimer("startup.ttfd", mFullyDrawnStart);
     }
 
-    @Override
-    public void onLoaderReset(Loader<List<Article>> loader) {
-        // Clear the existing data.
-        mAdapter.clear();
+    /**
+     * Fetch in the background the bodies of the articles from the first visible row on, as many as the link allows.
+     */
+    private void prefetchVisibleBodies() {
+        List<Article> articles = mShownArticles;
+        int firstVisible = Math.max(0, mLayoutManager.findFirstVisibleItemPosition());
+        int count = mFetchPolicy.getBodyPrefetchCount();
+        if (count > 0 && firstVisible < articles.size()) {
+            mBodyPrefetcher.prefetch(articles.subList(firstVisible, Math.min(articles.size(), firstVisible + count)));
+        }
     }
 
     @Override
@@ -171,6 +436,48 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
     public boolean onCreateOptionsMenu(Menu menu) {
         // Inflate the Options Menu specified in XML
         getMenuInflater().inflate(R.menu.main, menu);
+
+        // Search as the text is typed, the pipeline waits for a pause in the typing
+        MenuItem searchItem = menu.findItem(R.id.action_search);
+        final SearchView searchView = (SearchView) searchItem.getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query, true);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                search(newText, false);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(MenuItem item) {
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(MenuItem item) {
+                closeSearch();
+                return true;
+            }
+        });
+
+        // A search opened before a rotation still runs, or has its results, in the view model
+        String searchQuery = mViewModel.getSearchQuery();
+        if (searchQuery != null) {
+            searchItem.expandActionView();
+            searchView.setQuery(searchQuery, false);
+            List<Article> searchResults = mViewModel.getSearchResults().getValue();
+            if (mSearching && searchResults != null) {
+                showArticles(searchResults);
+            }
+        }
         return true;
     }
 
@@ -182,6 +489,9 @@ public class MainActivity extends AppCompatActivity implements LoaderCallbacks<L
             Intent settingsIntent = new Intent(this, SettingsActivity.class);
             startActivity(settingsIntent);
             return true;
+        } else if (id == R.id.action_metrics) {
+            startActivity(new Intent(this, MetricsActivity.class));
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
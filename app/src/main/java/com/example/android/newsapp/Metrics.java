@@ -0,0 +1,267 @@
+package com.example.android.newsapp;
+
+import android.os.Trace;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters, timers and histograms of the stages of the app (fetch, parse, cache, render), shown by
+ * MetricsActivity and exported to a file.
+ * <p>
+ * Recording is off until setEnabled(true), and then every call returns after reading one volatile field,
+ * so the calls can stay in the hot paths. Timed work is bracketed with a start value that is 0 when disabled:
+ * <pre>
+ * long section = Metrics.beginSection("parse.stream");
+ * try {
+ *     ...
+ * } finally {
+ *     Metrics.endSection("parse.stream", section);
+ * }
+ * </pre>
+ * Sections also show up in systrace. Times are recorded in microseconds.
+ */
+public final class Metrics {
+
+    /**
+     * Format of the time in the name of an exported file
+     */
+    private static final String FILE_TIME_PATTERN = "yyyyMMdd-HHmmss";
+
+    /**
+     * True while the metrics are recorded
+     */
+    private static volatile boolean sEnabled;
+
+    /**
+     * The counters, by name
+     */
+    private static final ConcurrentMap<String, AtomicLong> sCounters = new ConcurrentHashMap<>();
+
+    /**
+     * The durations of the timers and sections in microseconds, by name
+     */
+    private static final ConcurrentMap<String, Histogram> sTimers = new ConcurrentHashMap<>();
+
+    /**
+     * The other recorded values, by name
+     */
+    private static final ConcurrentMap<String, Histogram> sHistograms = new ConcurrentHashMap<>();
+
+    /**
+     * Create a private constructor because no one should ever create a {@link Metrics} object.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Start or stop recording. The values recorded so far are kept.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Returns true while the metrics are recorded.
+     */
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Add one to a counter.
+     */
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Add to a counter.
+     */
+    public static void add(String name, long delta) {
+        if (!sEnabled) {
+            return;
+        }
+        AtomicLong counter = sCounters.get(name);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = sCounters.putIfAbsent(name, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.addAndGet(delta);
+    }
+
+    /**
+     * Record a value, i.e. a size, in a histogram.
+     */
+    public static void record(String name, long value) {
+        if (sEnabled) {
+            histogram(sHistograms, name).record(value);
+        }
+    }
+
+    /**
+     * Record a duration measured elsewhere, i.e. a phase of an HTTP call.
+     */
+    public static void recordDuration(String name, long durationNanos) {
+        if (sEnabled) {
+            histogram(sTimers, name).record(durationNanos / 1000);
+        }
+    }
+
+    /**
+     * Returns the start value of a timer, to be passed to stopTimer(). Returns 0 when disabled.
+     */
+    public static long startTimer() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record the time since startTimer(), unless the timer was started while disabled.
+     */
+    public static void stopTimer(String name, long start) {
+        if (start != 0 && sEnabled) {
+            histogram(sTimers, name).record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * Start a timer that is also a systrace section. Returns 0 when disabled.
+     * Sections of a thread must end in the reverse order they began.
+     */
+    public static long beginSection(String name) {
+        if (!sEnabled) {
+            return 0;
+        }
+        Trace.beginSection(name);
+        return System.nanoTime();
+    }
+
+    /**
+     * End a section started by beginSection() and record its time. Does nothing if it began while disabled,
+     * so a section always ends in systrace when it began.
+     */
+    public static void endSection(String name, long start) {
+        if (start == 0) {
+            return;
+        }
+        Trace.endSection();
+        histogram(sTimers, name).record((System.nanoTime() - start) / 1000);
+    }
+
+    /**
+     * Returns the value of a counter, 0 if it was never incremented.
+     */
+    public static long getCount(String name) {
+        AtomicLong counter = sCounters.get(name);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * Returns the durations of a timer or section in microseconds, null if none was recorded.
+     */
+    public static Histogram getTimer(String name) {
+        return sTimers.get(name);
+    }
+
+    /**
+     * Returns the values of a histogram, null if none was recorded.
+     */
+    public static Histogram getHistogram(String name) {
+        return sHistograms.get(name);
+    }
+
+    /**
+     * Forget all recorded values.
+     */
+    public static void reset() {
+        sCounters.clear();
+        sTimers.clear();
+        sHistograms.clear();
+    }
+
+    /**
+     * Returns the recorded values as text, a table per kind of metric sorted by name.
+     */
+    public static String dump() {
+        StringWriter writer = new StringWriter();
+        dump(writer);
+        return writer.toString();
+    }
+
+    /**
+     * Write the recorded values as text, a table per kind of metric sorted by name.
+     * Columns are separated by tabs so the export can be opened in a spreadsheet.
+     */
+    public static void dump(Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("# Counters");
+        out.println("name\tcount");
+        for (Map.Entry<String, AtomicLong> counter : new TreeMap<>(sCounters).entrySet()) {
+            out.println(counter.getKey() + "\t" + counter.getValue().get());
+        }
+        out.println();
+        out.println("# Timers (us)");
+        dumpHistograms(out, sTimers);
+        out.println();
+        out.println("# Histograms");
+        dumpHistograms(out, sHistograms);
+        out.flush();
+    }
+
+    /**
+     * Write the recorded values to a new file in the given directory and return the file.
+     */
+    public static File export(File directory) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        String time = new SimpleDateFormat(FILE_TIME_PATTERN, Locale.US).format(new Date());
+        File file = new File(directory, "metrics-" + time + ".tsv");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            dump(writer);
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static void dumpHistograms(PrintWriter out, Map<String, Histogram> histograms) {
+        out.println("name\tcount\tmean\tp50\tp90\tp99\tmax");
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            Histogram histogram = entry.getValue();
+            out.println(String.format(Locale.US, "%s\t%d\t%.0f\t%d\t%d\t%d\t%d", entry.getKey(),
+                    histogram.getCount(), histogram.getMean(), histogram.getPercentile(50),
+                    histogram.getPercentile(90), histogram.getPercentile(99), histogram.getMax()));
+        }
+    }
+
+    private static Histogram histogram(ConcurrentMap<String, Histogram> histograms, String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            Histogram newHistogram = new Histogram();
+            histogram = histograms.putIfAbsent(name, newHistogram);
+            if (histogram == null) {
+                histogram = newHistogram;
+            }
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.android.newsapp;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Debug screen with the metrics recorded by Metrics, which can be exported to a file to compare runs.
+ */
+public class MetricsActivity extends AppCompatActivity {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = MetricsActivity.class.getSimpleName();
+
+    /**
+     * Shows the recorded metrics
+     */
+    private TextView mMetricsTextView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_metrics);
+        mMetricsTextView = findViewById(R.id.metrics_text);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showMetrics();
+    }
+
+    /**
+     * Show the metrics recorded so far.
+     */
+    private void showMetrics() {
+        String metrics = Metrics.dump();
+        if (!Metrics.isEnabled()) {
+            metrics = getString(R.string.metrics_disabled) + "\n\n" + metrics;
+        }
+        mMetricsTextView.setText(metrics);
+    }
+
+    /**
+     * Write the metrics to a file in the background and tell where it is. The app directory of the
+     * external storage can be read with adb without a permission.
+     */
+    private void exportMetrics() {
+        File externalDirectory = getExternalFilesDir(null);
+        final File directory = new File(externalDirectory != null ? externalDirectory : getFilesDir(), "metrics");
+        final AppExecutors executors = AppExecutors.getInstance();
+        executors.io().execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = null;
+                try {
+                    file = Metrics.export(directory);
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem exporting the metrics", e);
+                }
+                final String message = file != null
+                        ? getString(R.string.metrics_exported, file.getAbsolutePath())
+                        : getString(R.string.metrics_export_failed);
+                executors.mainThread().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(getApplicationContext(), message, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.metrics, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        int id = item.getItemId();
+        if (id == R.id.action_metrics_refresh) {
+            showMetrics();
+            return true;
+        } else if (id == R.id.action_metrics_export) {
+            exportMetrics();
+            return true;
+        } else if (id == R.id.action_metrics_reset) {
+            Metrics.reset();
+            showMetrics();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
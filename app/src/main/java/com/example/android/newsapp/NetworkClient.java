@@ -0,0 +1,91 @@
+package com.example.android.newsapp;
+
+import okhttp3.Call;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP client shared by the whole process. Its connection pool keeps connections alive
+ * between requests, so repeated requests skip the TCP and TLS handshakes, and HTTP/2 lets
+ * concurrent requests to the same host share one connection.
+ */
+public final class NetworkClient {
+
+    /**
+     * Default connect timeout in milliseconds
+     */
+    public static final long DEFAULT_CONNECT_TIMEOUT_MS = 15000;
+
+    /**
+     * Default read timeout in milliseconds
+     */
+    public static final long DEFAULT_READ_TIMEOUT_MS = 10000;
+
+    /**
+     * Maximum number of idle connections kept in the pool
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    /**
+     * Time an idle connection is kept in the pool, in minutes
+     */
+    private static final long KEEP_ALIVE_DURATION_MINUTES = 5;
+
+    /**
+     * Records the timings of the calls whose request has a RequestTimings tag
+     */
+    private static final EventListener.Factory TIMINGS_FACTORY = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            RequestTimings timings = call.request().tag(RequestTimings.class);
+            return timings != null ? timings : EventListener.NONE;
+        }
+    };
+
+    /**
+     * The shared client, created on first use
+     */
+    private static OkHttpClient sClient;
+
+    /**
+     * A private blank constructor
+     */
+    private NetworkClient() {
+    }
+
+    /**
+     * Returns the shared client.
+     */
+    public static synchronized OkHttpClient get() {
+        if (sClient == null) {
+            sClient = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MINUTES, TimeUnit.MINUTES))
+                    .connectTimeout(DEFAULT_CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .readTimeout(DEFAULT_READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .eventListenerFactory(TIMINGS_FACTORY)
+                    .build();
+        }
+        return sClient;
+    }
+
+    /**
+     * Change the timeouts of the shared client. The new client keeps the connection pool of the old one.
+     */
+    public static synchronized void setTimeouts(long connectTimeoutMs, long readTimeoutMs) {
+        sClient = get().newBuilder()
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Replace the shared client, i.e. with one that trusts the certificate of a local test server.
+     * Null restores the default client on next use.
+     */
+    static synchronized void setClient(OkHttpClient client) {
+        sClient = client;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.android.newsapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Disk store of the pages dropped from the list, so scrolling back to them reads a few KB from disk instead of
+ * loading them again, and the heap only holds the pages around the screen.
+ * Pages are encoded by ArticleCodec and appended to one file per list, the heap only keeps where each page is.
+ * The file is deleted when the store is closed.
+ */
+public class PageStore {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = PageStore.class.getSimpleName();
+
+    /**
+     * Initial number of pages the index holds, it grows as needed
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Directory of the store file
+     */
+    private final File mDirectory;
+
+    /**
+     * The store file, created with the first page
+     */
+    private File mFile;
+
+    /**
+     * Open store file, null until the first page is written
+     */
+    private RandomAccessFile mData;
+
+    /**
+     * Offset of each page in the file, by page number
+     */
+    private long[] mOffsets = new long[INITIAL_CAPACITY];
+
+    /**
+     * Encoded size of each page, by page number. 0 if the page isn't stored.
+     */
+    private int[] mLengths = new int[INITIAL_CAPACITY];
+
+    /**
+     * True once the store is closed, later writes are ignored
+     */
+    private boolean mClosed;
+
+    /**
+     * Constructs a new PageStore
+     *
+     * @param directory is where the store file is created
+     */
+    public PageStore(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Delete the store files left in the directory, i.e. by a process that was killed.
+     */
+    public static void deleteAll(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Store the articles of a page, replacing the page if it was stored. Does nothing once the store is closed.
+     */
+    public synchronized void put(int page, List<Article> articles) {
+        if (mClosed || page < 0) {
+            return;
+        }
+        long section = Metrics.beginSection("pages.write");
+        try {
+            if (mData == null) {
+                if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+                    Log.e(LOG_TAG, "Problem creating the page store directory");
+                    return;
+                }
+                mFile = File.createTempFile("pages", null, mDirectory);
+                mData = new RandomAccessFile(mFile, "rw");
+            }
+            // Pages are only appended, a replaced page leaves its old bytes unused until the store is closed
+            byte[] bytes = ArticleCodec.encode(articles);
+            long offset = mData.length();
+            mData.seek(offset);
+            mData.write(bytes);
+
+            ensureCapacity(page + 1);
+            mOffsets[page] = offset;
+            mLengths[page] = bytes.length;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing a page", e);
+            remove(page);
+        } finally {
+            Metrics.endSection("pages.write", section);
+        }
+    }
+
+    /**
+     * Returns the articles of the page, or null if the page isn't stored or can't be read.
+     */
+    public synchronized List<Article> get(int page) {
+        if (!contains(page)) {
+            return null;
+        }
+        long section = Metrics.beginSection("pages.read");
+        try {
+            byte[] bytes = new byte[mLengths[page]];
+            mData.seek(mOffsets[page]);
+            mData.readFully(bytes);
+            return ArticleCodec.decode(bytes);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading a page", e);
+            remove(page);
+            return null;
+        } finally {
+            Metrics.endSection("pages.read", section);
+        }
+    }
+
+    /**
+     * Returns true if the page is stored.
+     */
+    public synchronized boolean contains(int page) {
+        return !mClosed && page >= 0 && page < mLengths.length && mLengths[page] > 0;
+    }
+
+    /**
+     * Forget the page, i.e. when its articles changed in the list.
+     */
+    public synchronized void remove(int page) {
+        if (page >= 0 && page < mLengths.length) {
+            mLengths[page] = 0;
+        }
+    }
+
+    /**
+     * Returns the size of the store file in bytes.
+     */
+    public synchronized long getFileBytes() {
+        return mFile != null ? mFile.length() : 0;
+    }
+
+    /**
+     * Forget every page and delete the store file.
+     */
+    public synchronized void close() {
+        mClosed = true;
+        Arrays.fill(mLengths, 0);
+        if (mData != null) {
+            try {
+                mData.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing the page store", e);
+            }
+            mData = null;
+            mFile.delete();
+        }
+    }
+
+    private void ensureCapacity(int pageCount) {
+        if (pageCount > mLengths.length) {
+            int capacity = Math.max(pageCount, mLengths.length * 2);
+            mOffsets = Arrays.copyOf(mOffsets, capacity);
+            mLengths = Arrays.copyOf(mLengths, capacity);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.android.newsapp;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * The pages of the list kept in memory, and the PageStore of the pages dropped from them.
+ * Pages are added at either end of an ArticlePager, and while it retains too many articles the pages at the
+ * other end go to the store, so scrolling back to them reads them from disk instead of loading them again.
+ * Not thread-safe: it is used from the main thread, and the writes to the store run on the given executor.
+ */
+public class PageWindow {
+
+    /**
+     * The retained pages
+     */
+    private final ArticlePager mPager;
+
+    /**
+     * Directory of the page stores
+     */
+    private final File mStoreDirectory;
+
+    /**
+     * Runs the writes to the store and its deletion
+     */
+    private final Executor mStoreExecutor;
+
+    /**
+     * The pages dropped from the current list, replaced when the list is
+     */
+    private PageStore mPageStore;
+
+    /**
+     * Constructs a new PageWindow
+     *
+     * @param maxArticles    is the maximum number of articles kept in memory, the window keeps at least one page
+     * @param storeDirectory is where the store files of the dropped pages are created
+     * @param storeExecutor  runs the writes to the store, i.e. an I/O thread
+     */
+    public PageWindow(int maxArticles, File storeDirectory, Executor storeExecutor) {
+        mPager = new ArticlePager(maxArticles);
+        mStoreDirectory = storeDirectory;
+        mStoreExecutor = storeExecutor;
+        mPageStore = new PageStore(storeDirectory);
+    }
+
+    /**
+     * Forget every page and start again from the given first page, the stored pages of the previous list
+     * are deleted. Returns the articles to show.
+     */
+    public List<Article> reset(List<Article> articles, int pageSize) {
+        close();
+        mPageStore = new PageStore(mStoreDirectory);
+        return mPager.reset(1, articles, pageSize);
+    }
+
+    /**
+     * Add a loaded page at the end or the start of the window, if it still fits there, dropping the pages at
+     * the other end to the store while too many articles are retained. Returns true if the page was added.
+     * A page that failed to load (null) isn't added, so it can be loaded again.
+     */
+    public boolean addPage(int page, List<Article> articles, int pageSize) {
+        if (articles == null) {
+            return false;
+        }
+        if (page > 0 && page == mPager.getNextPage()) {
+            mPager.append(page, articles, pageSize);
+            while (mPager.isOverCapacity()) {
+                storePage(mPager.getFirstPage(), mPager.dropFirstPage());
+            }
+        } else if (page > 0 && page == mPager.getPreviousPage()) {
+            mPager.prepend(page, articles);
+            while (mPager.isOverCapacity()) {
+                storePage(mPager.getLastPage(), mPager.dropLastPage());
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Replace the first page with a newer copy of it, keeping the pages after it. If the first page was dropped,
+     * the copy replaces the stored one.
+     */
+    public void replaceFirstPage(final List<Article> articles, int pageSize) {
+        if (mPager.getFirstPage() != 1) {
+            final PageStore pageStore = mPageStore;
+            mStoreExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    pageStore.put(1, articles);
+                }
+            });
+            return;
+        }
+        // The stored first page, if any, is the older copy
+        mPageStore.remove(1);
+        mPager.replaceFirstPage(articles, pageSize);
+        while (mPager.isOverCapacity()) {
+            storePage(mPager.getLastPage(), mPager.dropLastPage());
+        }
+    }
+
+    /**
+     * Add articles published since the first page was loaded at the start of the first retained page.
+     * Returns the articles added, without duplicates.
+     */
+    public List<Article> prependToFirstPage(List<Article> articles) {
+        List<Article> addedArticles = mPager.prependToFirstPage(articles);
+        if (!addedArticles.isEmpty()) {
+            // The stored first page, if any, misses the new articles
+            mPageStore.remove(1);
+        }
+        return addedArticles;
+    }
+
+    /**
+     * Returns true if the page was dropped to the store, and can be read back from there.
+     */
+    public boolean isStored(int page) {
+        return mPageStore.contains(page);
+    }
+
+    /**
+     * Returns the store of the current list. Its reads go to disk, they must run off the main thread.
+     */
+    public PageStore getPageStore() {
+        return mPageStore;
+    }
+
+    /**
+     * Returns the articles of the retained pages, in list order.
+     */
+    public List<Article> getArticles() {
+        return mPager.getArticles();
+    }
+
+    /**
+     * Returns the number of articles in the retained pages.
+     */
+    public int getArticleCount() {
+        return mPager.getArticleCount();
+    }
+
+    /**
+     * Returns the number of the first retained page, or 0 if there is none.
+     */
+    public int getFirstPage() {
+        return mPager.getFirstPage();
+    }
+
+    /**
+     * Returns the number of the page to load after the retained pages, or 0 if there are no more pages.
+     */
+    public int getNextPage() {
+        return mPager.getNextPage();
+    }
+
+    /**
+     * Returns the number of the page to load before the retained pages, or 0 if the first page is retained.
+     */
+    public int getPreviousPage() {
+        return mPager.getPreviousPage();
+    }
+
+    /**
+     * Delete the store in the background, the writes still queued for it are ignored.
+     */
+    public void close() {
+        final PageStore pageStore = mPageStore;
+        mStoreExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                pageStore.close();
+            }
+        });
+    }
+
+    /**
+     * Write a page dropped from the window to the store in the background, unless it is stored already,
+     * i.e. it was read back from there.
+     */
+    private void storePage(final int page, final List<Article> articles) {
+        if (mPageStore.contains(page)) {
+            return;
+        }
+        final PageStore pageStore = mPageStore;
+        mStoreExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                pageStore.put(page, articles);
+            }
+        });
+    }
+}
@@ -3,20 +3,33 @@ package com.example.android.newsapp;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import okhttp3.Call;
+import okhttp3.Request;
+import okhttp3.Response;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 public final class QueryUtils {
 
@@ -26,19 +39,72 @@ public final class QueryUtils {
     private static final String LOG_TAG = QueryUtils.class.getSimpleName();
 
     /**
-     * Read timeout in milliseconds
+     * Success response code for url connection
      */
-    private static final int READ_TIMEOUT_MS = 10000;
+    private static final int SUCCESS_RESPONSE_CODE = 200;
 
     /**
-     * Connect timeout in milliseconds
+     * Not modified response code, answer to a conditional request when the cached copy is still valid
      */
-    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int NOT_MODIFIED_RESPONSE_CODE = 304;
 
     /**
-     * Success response code for url connection
+     * Cache of response bodies used for conditional requests, null if responses are not cached
      */
-    private static final int SUCCESS_RESPONSE_CODE = 200;
+    private static volatile HttpCache sHttpCache;
+
+    /**
+     * Decides whether failed requests are tried again
+     */
+    private static volatile RetryPolicy sRetryPolicy = new RetryPolicy();
+
+    /**
+     * Stops the requests while the API keeps failing
+     */
+    private static volatile CircuitBreaker sCircuitBreaker = new CircuitBreaker();
+
+    /**
+     * Separates the names of a byline: "Alex Hern and Samuel Gibbs", "Alex Hern, Samuel Gibbs and Dan Sabbagh"
+     */
+    private static final Pattern BYLINE_SEPARATOR = Pattern.compile("\\s*,\\s*(?:and\\s+)?|\\s+(?:and|&)\\s+");
+
+    /**
+     * Receive the sizes of every request
+     */
+    private static final List<RequestMetrics.Listener> sMetricsListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Reads the "results" of a response into a list of articles
+     */
+    private static final ResponseParser<List<Article>> ARTICLES_PARSER = new ResponseParser<List<Article>>() {
+        @Override
+        public List<Article> newResult() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public void readEntry(JsonReader reader, List<Article> articles) throws IOException {
+            Article article = readArticle(reader);
+            if (article != null) {
+                articles.add(article);
+            }
+        }
+    };
+
+    /**
+     * Reads the "results" of a show-fields=body response into a map of article URL to HTML body
+     */
+    private static final ResponseParser<Map<String, String>> BODIES_PARSER = new ResponseParser<Map<String, String>>() {
+        @Override
+        public Map<String, String> newResult() {
+            return new LinkedHashMap<>();
+        }
+
+        @Override
+        public void readEntry(JsonReader reader, Map<String, String> bodies) throws IOException {
+            readBody(reader, bodies);
+        }
+    };
 
     /**
      * A private black constructor
@@ -46,6 +112,41 @@ public final class QueryUtils {
     private QueryUtils() {
     }
 
+    /**
+     * Set the cache used for conditional requests, or null to disable it.
+     */
+    public static void setHttpCache(HttpCache httpCache) {
+        sHttpCache = httpCache;
+    }
+
+    /**
+     * Set the policy that decides whether failed requests are tried again.
+     */
+    public static void setRetryPolicy(RetryPolicy retryPolicy) {
+        sRetryPolicy = retryPolicy;
+    }
+
+    /**
+     * Set the circuit breaker that stops the requests while the API keeps failing.
+     */
+    public static void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        sCircuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Add a listener that receives the sizes of every request. It is called on the thread that made the request.
+     */
+    public static void addRequestMetricsListener(RequestMetrics.Listener listener) {
+        sMetricsListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added with addRequestMetricsListener().
+     */
+    public static void removeRequestMetricsListener(RequestMetrics.Listener listener) {
+        sMetricsListeners.remove(listener);
+    }
+
     /**
      * Returns an URL object from the given string URL.
      */
@@ -62,7 +163,7 @@ public final class QueryUtils {
     /**
      * Convert the InputStream into a String which contains the JSON response from the server.
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
+    static String readFromStream(InputStream inputStream) throws IOException {
         StringBuilder output = new StringBuilder();
 
         if (inputStream != null) {
@@ -77,48 +178,612 @@ public final class QueryUtils {
         return output.toString();
     }
 
-    private static String makeHttpRequest(URL url) throws IOException {
-        String jsonResponse = "";
+    /**
+     * Perform the HTTP request on the shared NetworkClient and parse the results directly off the response stream.
+     * When a cached copy of the response exists, a conditional request is sent and a 304 response
+     * is answered from the cached body. Network errors, server errors and rate limited (429) responses are
+     * retried as the RetryPolicy says, unless the CircuitBreaker is open. When the request still fails,
+     * the cached copy is returned even if it is stale. An unexpected exception fails the request without retries.
+     * Returns null if there is none, or if the request was not successful or was cancelled.
+     *
+     * @param httpCache is the cache of the response bodies, null to neither read nor write cached copies
+     */
+    private static <T> T makeHttpRequest(URL url, CancellationToken cancellationToken, ResponseParser<T> parser,
+                                         HttpCache httpCache) throws IOException {
+        T result = null;
 
-        // If the URL is null, then return empty jsonResponse
-        if (url == null) {
-            return jsonResponse;
+        // If the URL is null, then return no results
+        if (url == null || isCancelled(cancellationToken)) {
+            return result;
         }
 
-        HttpURLConnection urlConnection = null;
-        InputStream inputStream = null;
+        String requestUrl = url.toString();
+        HttpCache.Entry cachedResponse = httpCache != null ? httpCache.get(requestUrl) : null;
+
+        // Cache-Control allows to use the cached copy without asking the server
+        if (cachedResponse != null && cachedResponse.isFresh()) {
+            result = readCachedResponse(cachedResponse, parser);
+            if (result != null) {
+                reportMetrics(new RequestMetrics(requestUrl, 0, 0, cachedResponse.getBodyLength(), true, null));
+                return result;
+            }
+        }
+
+        RetryPolicy retryPolicy = sRetryPolicy;
+        CircuitBreaker circuitBreaker = sCircuitBreaker;
+        for (int attempt = 1; ; attempt++) {
+            // While the circuit is open requests fail at once, without a connection
+            if (!circuitBreaker.allowRequest()) {
+                Metrics.increment("http.circuit_open");
+                Log.e(LOG_TAG, "Too many failed requests, not requesting " + requestUrl);
+                return readFallback(cachedResponse, parser);
+            }
+
+            try {
+                result = requestOnce(url, cancellationToken, parser, httpCache, cachedResponse);
+                circuitBreaker.onSuccess();
+                break;
+            } catch (IOException e) {
+                if (isCancelled(cancellationToken)) {
+                    circuitBreaker.onCancelled();
+                    return null;
+                }
+                circuitBreaker.onFailure();
+
+                long retryAfterMs = e instanceof FailedResponseException ? ((FailedResponseException) e).mRetryAfterMs : -1;
+                long delayMs = retryPolicy.getDelayMs(attempt, retryAfterMs);
+                if (delayMs < 0) {
+                    if (retryAfterMs > 0) {
+                        // Rate limited for longer than we wait: send nothing until the server is ready
+                        circuitBreaker.openFor(retryAfterMs);
+                    }
+                    Log.e(LOG_TAG, "Problem retrieving the result JSON result.", e);
+                    return readFallback(cachedResponse, parser);
+                }
+                Metrics.increment("http.retries");
+                Log.e(LOG_TAG, "Attempt " + attempt + " failed, retrying in " + delayMs + " ms", e);
+                if (waitForRetry(delayMs, cancellationToken)) {
+                    return null;
+                }
+            } catch (RuntimeException e) {
+                // Not a network error but the request failed all the same, a trial request must still
+                // close or open the circuit again
+                if (isCancelled(cancellationToken)) {
+                    circuitBreaker.onCancelled();
+                    return null;
+                }
+                circuitBreaker.onFailure();
+                Log.e(LOG_TAG, "Problem with the request to " + requestUrl, e);
+                return readFallback(cachedResponse, parser);
+            }
+        }
+
+        // The articles of a cancelled request may be incomplete
+        if (isCancelled(cancellationToken)) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Send the request once. Returns the parsed results, or null for a response that would fail the same way
+     * if sent again (i.e. 404). Throws an IOException for a failure that may not happen again: a network error,
+     * or a FailedResponseException for a retryable response code (5xx, 429).
+     */
+    private static <T> T requestOnce(URL url, CancellationToken cancellationToken, ResponseParser<T> parser,
+                                     HttpCache httpCache, HttpCache.Entry cachedResponse) throws IOException {
+        String requestUrl = url.toString();
+
+        // Asking for gzip explicitly turns off the transparent decoding of the client, so the received bytes can be counted
+        RequestTimings timings = new RequestTimings();
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(url)
+                .header("Accept-Encoding", "gzip")
+                .tag(RequestTimings.class, timings);
+        if (cachedResponse != null) {
+            if (cachedResponse.getETag() != null) {
+                requestBuilder.header("If-None-Match", cachedResponse.getETag());
+            }
+            if (cachedResponse.getLastModified() != null) {
+                requestBuilder.header("If-Modified-Since", cachedResponse.getLastModified());
+            }
+        }
+        final Call call = NetworkClient.get().newCall(requestBuilder.build());
+        if (cancellationToken != null) {
+            // Cancelling the call makes a blocked connect or read throw
+            cancellationToken.setOnCancelListener(new Runnable() {
+                @Override
+                public void run() {
+                    call.cancel();
+                }
+            });
+        }
 
+        Response response = null;
         try {
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setReadTimeout(READ_TIMEOUT_MS);
-            urlConnection.setConnectTimeout(CONNECT_TIMEOUT_MS);
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // If the request was successful (response code 200), then read the input stream and parse the response
-            if (urlConnection.getResponseCode() == SUCCESS_RESPONSE_CODE) {
-                inputStream = urlConnection.getInputStream();
-                jsonResponse = readFromStream(inputStream);
+            response = call.execute();
+
+            int responseCode = response.code();
+            if (responseCode == NOT_MODIFIED_RESPONSE_CODE && cachedResponse != null) {
+                // The cached copy is still valid, parse it instead of downloading the body again
+                httpCache.updateValidators(cachedResponse, response.header("ETag"),
+                        response.header("Last-Modified"), getExpiresAtMillis(response.header("Cache-Control")));
+                response.close();
+                T result = readCachedResponse(cachedResponse, parser);
+                reportMetrics(new RequestMetrics(requestUrl, responseCode, 0, cachedResponse.getBodyLength(), true, timings));
+                return result;
+            } else if (responseCode == SUCCESS_RESPONSE_CODE) {
+                // If the request was successful (response code 200), then parse the input stream as it arrives
+                CountingInputStream receivedStream = new CountingInputStream(response.body().byteStream());
+                return readResponseBody(requestUrl, response, receivedStream, httpCache, timings, parser);
+            } else if (RetryPolicy.isRetryable(responseCode)) {
+                throw new FailedResponseException(responseCode,
+                        RetryPolicy.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()));
             } else {
-                Log.e(LOG_TAG, "Response with error code: " + urlConnection.getResponseCode());
+                Log.e(LOG_TAG, "Response with error code: " + responseCode);
+                return null;
             }
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Problem retrieving the articles JSON result.", e);
         } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
+            if (cancellationToken != null) {
+                cancellationToken.setOnCancelListener(null);
+            }
+            if (response != null) {
+                // Closing the response gives the connection back to the pool
+                response.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the results of the cached copy of a request that failed, even if it is stale, or null if there is none.
+     */
+    private static <T> T readFallback(HttpCache.Entry cachedResponse, ResponseParser<T> parser) {
+        if (cachedResponse == null) {
+            return null;
+        }
+        Metrics.increment("http.fallbacks");
+        Log.i(LOG_TAG, "Using the cached copy of a failed request");
+        return readCachedResponse(cachedResponse, parser);
+    }
+
+    /**
+     * Wait before the next attempt of a request. Returns true if the request was cancelled meanwhile.
+     */
+    private static boolean waitForRetry(long delayMs, CancellationToken cancellationToken) {
+        try {
+            if (cancellationToken != null) {
+                return cancellationToken.await(delayMs);
+            }
+            Thread.sleep(delayMs);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return true;
+        }
+    }
+
+    private static boolean isCancelled(CancellationToken cancellationToken) {
+        return cancellationToken != null && cancellationToken.isCancelled();
+    }
+
+    /**
+     * Parse the body of a 200 response, decoding gzip and copying the body to the cache when the
+     * response can be cached. Throws an IOException if the body is cut short or malformed, so a partial
+     * page is retried like a failed request instead of being taken for the whole one.
+     */
+    private static <T> T readResponseBody(String requestUrl, Response response, CountingInputStream receivedStream,
+                                          HttpCache httpCache, RequestTimings timings, ResponseParser<T> parser)
+            throws IOException {
+        InputStream bodyStream = receivedStream;
+        if ("gzip".equalsIgnoreCase(response.header("Content-Encoding"))) {
+            bodyStream = new GZIPInputStream(bodyStream);
+        }
+        CountingInputStream decodedStream = new CountingInputStream(bodyStream);
+        bodyStream = decodedStream;
+
+        HttpCache.Writer cacheWriter = null;
+        String cacheControl = response.header("Cache-Control");
+        String eTag = response.header("ETag");
+        String lastModified = response.header("Last-Modified");
+        boolean hasValidators = eTag != null || lastModified != null;
+        long expiresAtMillis = getExpiresAtMillis(cacheControl);
+        if (httpCache != null && !hasDirective(cacheControl, "no-store")
+                && (hasValidators || expiresAtMillis > System.currentTimeMillis())) {
+            try {
+                cacheWriter = httpCache.newWriter(requestUrl, eTag, lastModified, expiresAtMillis);
+                bodyStream = cacheWriter.wrap(bodyStream);
+            } catch (IOException e) {
+                // The cache is best-effort, the response is read without it
+                Log.e(LOG_TAG, "Problem caching the response", e);
             }
+        }
+
+        T result = parser.newResult();
+        // The body is parsed as it arrives, so this includes the waits for the network
+        long section = Metrics.beginSection("parse.stream");
+        try {
+            parseResults(bodyStream, parser, result);
+
+            // Read what is left after the JSON object, so the cached copy is complete
+            // and the connection can be reused
+            byte[] buffer = new byte[512];
+            while (bodyStream.read(buffer) != -1) {
+                // Discard
+            }
+            if (cacheWriter != null) {
+                cacheWriter.commit();
+                cacheWriter = null;
+            }
+        } catch (IllegalStateException e) {
+            // The results read so far would pass for a short last page
+            throw new IOException("Malformed response body", e);
+        } finally {
+            Metrics.endSection("parse.stream", section);
+            if (cacheWriter != null) {
+                // The body wasn't read to the end, don't cache it
+                cacheWriter.abort();
+            }
+        }
+
+        // Close the body before reporting, so the timings include the end of the call
+        receivedStream.close();
+        reportMetrics(new RequestMetrics(requestUrl, SUCCESS_RESPONSE_CODE,
+                receivedStream.getCount(), decodedStream.getCount(), false, timings));
+        return result;
+    }
+
+    /**
+     * Parse a cached response body. Returns null if the cached copy can't be read or is malformed.
+     */
+    private static <T> T readCachedResponse(HttpCache.Entry cachedResponse, ResponseParser<T> parser) {
+        InputStream inputStream = null;
+        try {
+            inputStream = cachedResponse.openBody();
+            T result = parser.newResult();
+            long section = Metrics.beginSection("parse.cached");
+            try {
+                parseResults(inputStream, parser, result);
+            } catch (IllegalStateException e) {
+                // Part of the results would pass for a short last page
+                Log.e(LOG_TAG, "Problem parsing the cached response", e);
+                return null;
+            } finally {
+                Metrics.endSection("parse.cached", section);
+            }
+            return result;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached response", e);
+            return null;
+        } finally {
             if (inputStream != null) {
-                // Closing the input stream could throw an IOException, which is why
-                // the makeHttpRequest(URL url) method signature specifies than an IOException
-                // could be thrown
-                inputStream.close();
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem closing the cached response", e);
+                }
             }
         }
-        return jsonResponse;
     }
 
-    private static List<Article> extractResultsFromJson(String articlesJson) {
+    /**
+     * Returns the time until the response can be used without revalidation, from its Cache-Control
+     * max-age. Returns 0 if the response must be revalidated every time.
+     */
+    private static long getExpiresAtMillis(String cacheControl) {
+        if (cacheControl == null || hasDirective(cacheControl, "no-cache")) {
+            return 0;
+        }
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.startsWith("max-age=")) {
+                try {
+                    return System.currentTimeMillis() + Long.parseLong(directive.substring(8).trim()) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns true if the Cache-Control header contains the given directive.
+     */
+    private static boolean hasDirective(String cacheControl, String directive) {
+        if (cacheControl == null) {
+            return false;
+        }
+        for (String part : cacheControl.split(",")) {
+            if (part.trim().equalsIgnoreCase(directive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void reportMetrics(RequestMetrics metrics) {
+        if (Metrics.isEnabled()) {
+            if (metrics.getResponseCode() == 0) {
+                Metrics.increment("http.fresh_cache_hits");
+            } else {
+                Metrics.increment(metrics.isFromCache() ? "http.not_modified" : "http.downloaded");
+            }
+            Metrics.add("http.bytes_received", metrics.getBytesReceived());
+            Metrics.add("http.bytes_saved", metrics.getBytesSaved());
+            Metrics.record("http.body_bytes", metrics.getBodyBytes());
+            RequestTimings timings = metrics.getTimings();
+            if (timings != null) {
+                recordTiming("http.ttfb", timings.getTimeToFirstByteMs());
+                recordTiming("http.total", timings.getTotalMs());
+            }
+        }
+        for (RequestMetrics.Listener listener : sMetricsListeners) {
+            listener.onRequestFinished(metrics);
+        }
+    }
+
+    /**
+     * Record the time of a phase of an HTTP call, unless the phase didn't happen.
+     */
+    private static void recordTiming(String name, long durationMs) {
+        if (durationMs >= 0) {
+            Metrics.recordDuration(name, durationMs * 1000000);
+        }
+    }
+
+    /**
+     * Parse the Guardian response with a pull parser, creating each Article as soon as its
+     * object has been read. Only response.results[] is visited, every other field is skipped
+     * without being materialized.
+     */
+    static List<Article> extractResultsFromStream(InputStream inputStream) throws IOException {
+
+        // Create an empty ArrayList
+        List<Article> articles = new ArrayList<>();
+
+        if (inputStream == null) {
+            return articles;
+        }
+
+        // If the stream is malformed or truncated, keep the articles read so far, like the JSONException path does.
+        try {
+            parseResults(inputStream, ARTICLES_PARSER, articles);
+        } catch (IOException | IllegalStateException e) {
+            Log.e(LOG_TAG, "Problem parsing the JSON results", e);
+        }
+
+        // Return the list of articles
+        return articles;
+    }
+
+    /**
+     * Read the Guardian response from the stream and add its results to the result of the parser.
+     * Throws if the stream is malformed or truncated.
+     */
+    private static <T> void parseResults(InputStream inputStream, ResponseParser<T> parser, T result) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("response".equals(reader.nextName())) {
+                readResponse(reader, parser, result);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read the "response" object and pass each entry of its "results" array to the parser.
+     */
+    private static <T> void readResponse(JsonReader reader, ResponseParser<T> parser, T result) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("results".equals(reader.nextName())) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    parser.readEntry(reader, result);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read a single entry of the "results" array.
+     * Returns null if the entry has no "webUrl" or "webTitle".
+     */
+    private static Article readArticle(JsonReader reader) throws IOException {
+        String articleSection = "";
+        String articleDate = "";
+        String articleUrl = null;
+        String articleTitle = null;
+        int[] articleContributorIds = null;
+        String articleByline = null;
+        String articleThumbnail = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sectionName":
+                    articleSection = nextStringOrEmpty(reader);
+                    break;
+                case "webPublicationDate":
+                    articleDate = nextStringOrEmpty(reader);
+                    break;
+                case "webUrl":
+                    articleUrl = nextStringOrEmpty(reader);
+                    break;
+                case "webTitle":
+                    articleTitle = nextStringOrEmpty(reader);
+                    break;
+                case "tags":
+                    articleContributorIds = readContributorIds(reader);
+                    break;
+                case "fields":
+                    // The optional fields asked for with show-fields
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "byline":
+                                articleByline = nextStringOrEmpty(reader);
+                                break;
+                            case "thumbnail":
+                                articleThumbnail = nextStringOrEmpty(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                                break;
+                        }
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (articleUrl == null || articleTitle == null) {
+            return null;
+        }
+
+        // Queries that ask for the byline field instead of the contributor tags
+        if (articleContributorIds == null && articleByline != null && !articleByline.isEmpty()) {
+            articleContributorIds = splitByline(articleByline);
+        }
+
+        // Create a new Article object with the values from the JSON response.
+        // The section and contributors are interned, so the articles share a single copy of their names.
+        return new Article(articleTitle, Section.intern(articleSection).getId(), articleDate,
+                ArticleDates.parseIsoDate(articleDate), articleContributorIds, articleUrl,
+                articleThumbnail == null || articleThumbnail.isEmpty() ? null : articleThumbnail);
+    }
+
+    /**
+     * Returns the ids of the interned contributors named in a byline, in byline order, or null if it names nobody.
+     * The byline has no structure, so a name holding a separator (i.e. "Guardian staff and agencies") is split too.
+     */
+    static int[] splitByline(String byline) {
+        String names = byline.trim();
+        if (names.isEmpty()) {
+            return null;
+        }
+        if (names.indexOf(',') < 0 && names.indexOf(" and ") < 0 && names.indexOf(" & ") < 0) {
+            // Most bylines have a single contributor, they share the id array of the contributor
+            return Contributor.intern(names).asIdArray();
+        }
+        String[] splitNames = BYLINE_SEPARATOR.split(names);
+        int[] ids = new int[splitNames.length];
+        int count = 0;
+        for (String name : splitNames) {
+            if (!name.isEmpty()) {
+                ids[count++] = Contributor.intern(name).getId();
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        return count == 1 ? Contributor.forId(ids[0]).asIdArray() : Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Read the "tags" array and return the ids of the interned contributors, in byline order.
+     * Returns null if there are no contributors.
+     */
+    private static int[] readContributorIds(JsonReader reader) throws IOException {
+        Contributor first = null;
+        int[] ids = null;
+        int count = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if ("webTitle".equals(reader.nextName())) {
+                    Contributor contributor = Contributor.intern(nextStringOrEmpty(reader));
+                    if (count == 0) {
+                        first = contributor;
+                    } else {
+                        if (ids == null) {
+                            ids = new int[4];
+                            ids[0] = first.getId();
+                        } else if (count == ids.length) {
+                            ids = Arrays.copyOf(ids, count * 2);
+                        }
+                        ids[count] = contributor.getId();
+                    }
+                    count++;
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+
+        if (count == 0) {
+            return null;
+        }
+        // Most articles have a single contributor, they share the id array of the contributor
+        return count == 1 ? first.asIdArray() : Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Read a single entry of a show-fields=body response and put its body in the map, keyed by "webUrl".
+     * Entries without a URL or a body are skipped.
+     */
+    private static void readBody(JsonReader reader, Map<String, String> bodies) throws IOException {
+        String url = null;
+        String body = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("webUrl".equals(name)) {
+                url = nextStringOrEmpty(reader);
+            } else if ("fields".equals(name)) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if ("body".equals(reader.nextName())) {
+                        body = nextStringOrEmpty(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (url != null && body != null && !body.isEmpty()) {
+            bodies.put(url, body);
+        }
+    }
+
+    /**
+     * Returns the next string value, or an empty string for a JSON null (the optString() behaviour).
+     */
+    private static String nextStringOrEmpty(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return "";
+        }
+        return reader.nextString();
+    }
+
+    /**
+     * Parse a whole JSON response string with the org.json tree.
+     * The app reads responses with extractResultsFromStream(), this path is kept as the
+     * baseline of the parser benchmark.
+     */
+    static List<Article> extractResultsFromJson(String articlesJson) {
 
         // If the JSON string is empty or null, return null
         if (TextUtils.isEmpty(articlesJson)) {
@@ -162,29 +827,21 @@ public final class QueryUtils {
                 // Extract the JSONArray with the key "tags" that contains the contributors
                 JSONArray tagsArray = currentArticle.getJSONArray("tags");
 
-                // A string that contains the list of contributors if are available
-                String articleContributors;
+                // The ids of the interned contributors if are available
+                int[] articleContributorIds = null;
 
-                // If the contributors are not available return null
-                if (tagsArray.length() == 0) {
-                    articleContributors = null;
-                } else {
-                    StringBuilder contributorsStringBuilder = new StringBuilder();
-
-                    // For each contributor get the title with the key "webTitle"
+                // For each contributor intern the title with the key "webTitle"
+                if (tagsArray.length() > 0) {
+                    articleContributorIds = new int[tagsArray.length()];
                     for (int j = 0; j < tagsArray.length(); j++) {
                         JSONObject currentTag = tagsArray.getJSONObject(j);
-                        if (j == tagsArray.length() - 1) {
-                            contributorsStringBuilder.append(currentTag.getString("webTitle"));
-                        } else {
-                            contributorsStringBuilder.append(currentTag.getString("webTitle")).append(" & ");
-                        }
+                        articleContributorIds[j] = Contributor.intern(currentTag.getString("webTitle")).getId();
                     }
-                    articleContributors = contributorsStringBuilder.toString();
                 }
 
                 // Create a new Article object with the values from the JSON response.
-                Article article = new Article(articleTitle, articleSection, articleDate, articleContributors, articleUrl);
+                Article article = new Article(articleTitle, Section.intern(articleSection).getId(), articleDate,
+                        ArticleDates.parseIsoDate(articleDate), articleContributorIds, articleUrl, null);
 
                 // Add article to the list of articles
                 articles.add(article);
@@ -202,23 +859,113 @@ public final class QueryUtils {
      * Query the content.guardianapis.com and return a list of Article objects.
      */
     public static List<Article> fetchArticlesData(String requestUrl) {
+        return fetchArticlesData(requestUrl, null);
+    }
+
+    /**
+     * Query the Guardian dataset and return a list of Article objects, or null if the request failed.
+     * Cancelling the token disconnects the request and makes this method return null.
+     */
+    public static List<Article> fetchArticlesData(String requestUrl, CancellationToken cancellationToken) {
         // Create URL object
         URL url = createUrl(requestUrl);
 
-        // Perform HTTP request to the URL and receive a JSON response
-        String jsonResponse = null;
+        // Perform HTTP request to the URL and extract the list of Article objects from the JSON response
+        List<Article> articles = null;
 
         try {
-            jsonResponse = makeHttpRequest(url);
+            articles = makeHttpRequest(url, cancellationToken, ARTICLES_PARSER, sHttpCache);
         } catch (IOException e) {
             Log.e(LOG_TAG, "Problem with the HTTP request", e);
         }
 
-        // Extract relevant fields from the JSON response and create a list of Article objects
-        List<Article> articles = extractResultsFromJson(jsonResponse);
-
         // Return the list of Article objects
         return articles;
     }
 
+    /**
+     * Query the Guardian dataset for article bodies (a show-fields=body query) and return them keyed by article URL,
+     * or null if the request failed or was cancelled. The responses aren't kept in the HTTP cache,
+     * the caller stores the bodies itself.
+     */
+    public static Map<String, String> fetchArticleBodies(String requestUrl, CancellationToken cancellationToken) {
+        try {
+            return makeHttpRequest(createUrl(requestUrl), cancellationToken, BODIES_PARSER, null);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem with the HTTP request", e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the entries of the "results" array of a response.
+     */
+    private interface ResponseParser<T> {
+
+        /**
+         * Returns an empty result the entries are read into.
+         */
+        T newResult();
+
+        /**
+         * Read one entry of the "results" array into the result.
+         */
+        void readEntry(JsonReader reader, T result) throws IOException;
+    }
+
+    /**
+     * Counts the bytes read through it.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        /**
+         * Number of bytes read so far
+         */
+        private long mCount;
+
+        CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if (read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+
+        /**
+         * Returns the number of bytes read so far.
+         */
+        long getCount() {
+            return mCount;
+        }
+    }
+
+    /**
+     * A response with a code that may succeed when the request is sent again.
+     */
+    private static class FailedResponseException extends IOException {
+
+        /**
+         * The wait asked by the Retry-After header in milliseconds, or -1 if there was none
+         */
+        private final long mRetryAfterMs;
+
+        FailedResponseException(int responseCode, long retryAfterMs) {
+            super("Response with error code: " + responseCode);
+            mRetryAfterMs = retryAfterMs;
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package com.example.android.newsapp;
+
+import android.arch.lifecycle.Observer;
+import android.arch.lifecycle.ViewModelProviders;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.support.annotation.Nullable;
+import android.support.v7.app.AppCompatActivity;
+import android.text.Html;
+import android.view.View;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+import android.widget.ProgressBar;
+
+/**
+ * Shows the body of an article in a WebView. Prefetched bodies are shown at once, offline too.
+ * When the body can't be loaded, the article is opened in the browser instead.
+ */
+public class ReaderActivity extends AppCompatActivity {
+
+    /**
+     * Intent extra with the website url of the article
+     */
+    private static final String EXTRA_URL = "url";
+
+    /**
+     * Intent extra with the title of the article
+     */
+    private static final String EXTRA_TITLE = "title";
+
+    /**
+     * Shows the body
+     */
+    private WebView mWebView;
+
+    /**
+     * Spinner progress bar
+     */
+    private ProgressBar mLoadingSpinner;
+
+    /**
+     * Website url of the article
+     */
+    private String mUrl;
+
+    /**
+     * Returns the intent that opens the article in the reader.
+     */
+    public static Intent newIntent(Context context, Article article) {
+        Intent intent = new Intent(context, ReaderActivity.class);
+        intent.putExtra(EXTRA_URL, article.getUrl());
+        intent.putExtra(EXTRA_TITLE, article.getTitle());
+        return intent;
+    }
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_reader);
+
+        mUrl = getIntent().getStringExtra(EXTRA_URL);
+        setTitle(getIntent().getStringExtra(EXTRA_TITLE));
+
+        mLoadingSpinner = findViewById(R.id.reader_loading_spinner);
+        mWebView = findViewById(R.id.reader_web_view);
+
+        // Links of the body open in the browser, the reader only shows the article
+        mWebView.setWebViewClient(new WebViewClient() {
+            @Override
+            public boolean shouldOverrideUrlLoading(WebView view, String url) {
+                startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(url)));
+                return true;
+            }
+        });
+
+        // The view model keeps the body across rotations, so it is loaded once
+        ReaderViewModel viewModel = ViewModelProviders.of(this).get(ReaderViewModel.class);
+        viewModel.getBody(mUrl).observe(this, new Observer<String>() {
+            @Override
+            public void onChanged(@Nullable String body) {
+                showBody(body);
+            }
+        });
+    }
+
+    /**
+     * Show the loaded body, or open the article in the browser if it couldn't be loaded.
+     */
+    private void showBody(String body) {
+        mLoadingSpinner.setVisibility(View.GONE);
+
+        if (body == null) {
+            // Not prefetched and no network, or not a Guardian article: let the browser try
+            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(mUrl)));
+            finish();
+            return;
+        }
+
+        // The body is relative to the article page, so its links and images resolve against it
+        mWebView.loadDataWithBaseURL(mUrl, wrapBody(getTitle().toString(), body), "text/html", "UTF-8", null);
+    }
+
+    /**
+     * Returns a page with the title and the body, with images scaled to the screen width.
+     */
+    private static String wrapBody(String title, String body) {
+        return "<!DOCTYPE html><html><head><meta charset=\"utf-8\">"
+                + "<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">"
+                + "<style>body{font-family:serif;line-height:1.5;margin:16px;}img,figure,iframe{max-width:100%;height:auto;}</style>"
+                + "</head><body><h2>" + Html.escapeHtml(title) + "</h2>" + body + "</body></html>";
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.android.newsapp;
+
+import android.app.Application;
+import android.arch.lifecycle.AndroidViewModel;
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.support.annotation.NonNull;
+
+/**
+ * Holds the body of the article shown by ReaderActivity, loaded once and kept across configuration changes.
+ */
+public class ReaderViewModel extends AndroidViewModel {
+
+    /**
+     * Loads the body
+     */
+    private final ArticleRepository mRepository;
+
+    /**
+     * The body of the article, set to null if it can't be loaded
+     */
+    private MutableLiveData<String> mBody;
+
+    /**
+     * Cancels the load of the body, null if none is running
+     */
+    private CancellationToken mBodyLoad;
+
+    /**
+     * Constructs a new ReaderViewModel, done by ViewModelProviders
+     */
+    public ReaderViewModel(@NonNull Application application) {
+        super(application);
+        mRepository = ArticleRepository.getInstance(application);
+    }
+
+    /**
+     * Returns the body of the article, loaded on the first call.
+     *
+     * @param url is the website url of the article
+     */
+    public LiveData<String> getBody(String url) {
+        if (mBody == null) {
+            mBody = new MutableLiveData<>();
+            mBodyLoad = mRepository.loadBody(url, new ArticleRepository.Callback<String>() {
+                @Override
+                public void onResult(String body, boolean complete) {
+                    mBodyLoad = null;
+                    mBody.setValue(body);
+                }
+            });
+        }
+        return mBody;
+    }
+
+    @Override
+    protected void onCleared() {
+        if (mBodyLoad != null) {
+            mBodyLoad.cancel();
+        }
+    }
+}
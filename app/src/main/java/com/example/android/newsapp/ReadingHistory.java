@@ -0,0 +1,593 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Records the articles the user opened, so the list can dim the ones already read and rank the sections by
+ * the articles opened in them.
+ * <p>
+ * Clicks only update the in-memory state and buffer an event. The events are written in batches on a background
+ * thread, when enough of them are buffered, a few seconds after the first one, or when the app goes to the
+ * background. Each batch is appended to a log with a checksum and synced to disk before it counts as committed,
+ * so a process killed mid-write loses at most the batch being written. The log is read back at startup,
+ * dropping a torn last batch, and rewritten compactly once it grows too large.
+ */
+public class ReadingHistory {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = ReadingHistory.class.getSimpleName();
+
+    /**
+     * Name of the log inside the app files dir, the history is not a cache the system may clear
+     */
+    private static final String LOG_FILE_NAME = "reading_history.log";
+
+    /**
+     * Starts every batch of the log
+     */
+    private static final int BATCH_MAGIC = 0x52484231;
+
+    /**
+     * Largest batch accepted when reading, larger lengths come from a corrupt log
+     */
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * Size of the header of a batch: magic, payload length and CRC-32 of the payload
+     */
+    private static final int BATCH_HEADER_BYTES = 4 + 4 + 8;
+
+    /**
+     * Number of buffered events that triggers a write
+     */
+    static final int BATCH_SIZE = 20;
+
+    /**
+     * Time the first buffered event waits for others before it is written, in milliseconds
+     */
+    static final long FLUSH_DELAY_MS = 5000;
+
+    /**
+     * Size of the log after which it is rewritten compactly, in bytes (256 KB, thousands of clicks)
+     */
+    private static final long DEFAULT_MAX_LOG_BYTES = 256 * 1024L;
+
+    /**
+     * Expected number of articles read, the set grows past it
+     */
+    private static final int EXPECTED_READ_COUNT = 1024;
+
+    /**
+     * An article was opened from the list: its key, the time and its section
+     */
+    private static final byte EVENT_OPEN = 1;
+
+    /**
+     * An article was read, written by a compaction: its key
+     */
+    private static final byte EVENT_READ = 2;
+
+    /**
+     * Number of articles opened in a section, written by a compaction: the section and the count
+     */
+    private static final byte EVENT_SECTION_OPENS = 3;
+
+    /**
+     * Shared instance used by the list
+     */
+    private static ReadingHistory sInstance;
+
+    /**
+     * Listener for changes of the read state, called on the main thread.
+     */
+    public interface Listener {
+        void onReadingHistoryChanged();
+    }
+
+    /**
+     * The log of batches
+     */
+    private final File mLogFile;
+
+    /**
+     * Size of the log after which it is rewritten compactly
+     */
+    private final long mMaxLogBytes;
+
+    /**
+     * Single thread that reads and writes the log, so batches are written in order
+     */
+    private final ScheduledExecutorService mWriter;
+
+    /**
+     * Runs the listeners
+     */
+    private final Executor mMainThread;
+
+    /**
+     * Notified when the read state changes
+     */
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Keys of the URLs of the articles read
+     */
+    private final LongHashSet mReadKeys = new LongHashSet(EXPECTED_READ_COUNT);
+
+    /**
+     * Number of articles opened by section name
+     */
+    private final Map<String, Integer> mSectionOpenCounts = new HashMap<>();
+
+    /**
+     * Events not written yet, in order
+     */
+    private List<Event> mPendingEvents = new ArrayList<>();
+
+    /**
+     * True while a delayed write is scheduled
+     */
+    private boolean mFlushScheduled;
+
+    /**
+     * Writes the buffered events
+     */
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            writePendingEvents();
+        }
+    };
+
+    /**
+     * Constructs a new ReadingHistory and starts reading its log on the writer thread
+     *
+     * @param logFile     is the log of batches
+     * @param maxLogBytes is the size of the log after which it is rewritten compactly
+     * @param writer      is the single thread that reads and writes the log
+     * @param mainThread  runs the listeners
+     */
+    public ReadingHistory(File logFile, long maxLogBytes, ScheduledExecutorService writer, Executor mainThread) {
+        mLogFile = logFile;
+        mMaxLogBytes = maxLogBytes;
+        mWriter = writer;
+        mMainThread = mainThread;
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                readLog();
+            }
+        });
+    }
+
+    /**
+     * Returns the shared history, stored in the app files directory.
+     */
+    public static synchronized ReadingHistory getInstance(Context context) {
+        if (sInstance == null) {
+            File logFile = new File(context.getApplicationContext().getFilesDir(), LOG_FILE_NAME);
+            sInstance = new ReadingHistory(logFile, DEFAULT_MAX_LOG_BYTES,
+                    Executors.newSingleThreadScheduledExecutor(), AppExecutors.getInstance().mainThread());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Add a listener called on the main thread when the read state changes.
+     */
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener added with addListener().
+     */
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Returns true if the article of the URL was opened. Doesn't allocate, so it can be called while binding rows.
+     */
+    public boolean isRead(String url) {
+        long key = keyOf(url);
+        synchronized (this) {
+            return mReadKeys.contains(key);
+        }
+    }
+
+    /**
+     * Returns the number of articles opened in the section, by its Guardian sectionName. Orders the sections
+     * of "My feed".
+     */
+    public synchronized int getOpenCount(String section) {
+        Integer count = mSectionOpenCounts.get(section);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Record that the article was opened from the list. Only updates the memory and buffers the event,
+     * the event is written later on the writer thread.
+     */
+    public void recordOpen(Article article) {
+        Event event = new Event(keyOf(article.getUrl()), System.currentTimeMillis(), sectionOf(article));
+        boolean newlyRead;
+        synchronized (this) {
+            newlyRead = apply(event);
+            mPendingEvents.add(event);
+            if (mPendingEvents.size() >= BATCH_SIZE) {
+                mWriter.execute(mFlushTask);
+            } else if (!mFlushScheduled) {
+                mFlushScheduled = true;
+                mWriter.schedule(mFlushTask, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+        Metrics.increment("history.opens");
+        if (newlyRead) {
+            notifyListeners();
+        }
+    }
+
+    /**
+     * Write the buffered events now, on the writer thread. Called when the app goes to the background, where
+     * the process may be killed without notice.
+     */
+    public void flush() {
+        mWriter.execute(mFlushTask);
+    }
+
+    /**
+     * Returns the key of a URL in the set of articles read: a 64-bit FNV-1a hash of its characters.
+     */
+    static long keyOf(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String sectionOf(Article article) {
+        return article.getSection() != null ? article.getSection() : "";
+    }
+
+    /**
+     * Apply an event to the in-memory state. Returns true if it added an article read. Called with the lock held.
+     */
+    private boolean apply(Event event) {
+        if (event.mSection != null) {
+            Integer count = mSectionOpenCounts.get(event.mSection);
+            mSectionOpenCounts.put(event.mSection, (count != null ? count : 0) + event.mCount);
+        }
+        return event.mType != EVENT_SECTION_OPENS && mReadKeys.add(event.mKey);
+    }
+
+    private void notifyListeners() {
+        mMainThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Listener listener : mListeners) {
+                    listener.onReadingHistoryChanged();
+                }
+            }
+        });
+    }
+
+    /**
+     * Read the committed batches of the log into memory, and cut off a torn or corrupt last batch so the next
+     * batches are appended after the good ones. Runs on the writer thread.
+     */
+    private void readLog() {
+        if (!mLogFile.exists()) {
+            return;
+        }
+        long section = Metrics.beginSection("history.read");
+        List<Event> events = new ArrayList<>();
+        long logBytes = mLogFile.length();
+        long committedBytes = 0;
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(mLogFile)));
+            while (committedBytes < logBytes) {
+                if (input.readInt() != BATCH_MAGIC) {
+                    throw new IOException("Corrupt batch header");
+                }
+                int length = input.readInt();
+                long checksum = input.readLong();
+                if (length < 0 || length > MAX_BATCH_BYTES) {
+                    throw new IOException("Corrupt batch length");
+                }
+                byte[] payload = new byte[length];
+                input.readFully(payload);
+                if (checksumOf(payload) != checksum) {
+                    throw new IOException("Corrupt batch");
+                }
+                events.addAll(decodeBatch(payload));
+                committedBytes += BATCH_HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // The process was killed while a batch was written, it was never committed
+            Log.e(LOG_TAG, "Dropping a torn batch of the reading history");
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the reading history", e);
+        } finally {
+            closeQuietly(input);
+        }
+        if (committedBytes < logBytes) {
+            truncateLog(committedBytes);
+        }
+
+        boolean changed = false;
+        synchronized (this) {
+            for (Event event : events) {
+                changed |= apply(event);
+            }
+        }
+        Metrics.endSection("history.read", section);
+        if (changed) {
+            notifyListeners();
+        }
+    }
+
+    /**
+     * Write the buffered events as one batch, or rewrite the whole log with them once it is too large.
+     * Events that couldn't be written stay buffered for the next write. Runs on the writer thread.
+     */
+    private void writePendingEvents() {
+        boolean compact = mLogFile.length() > mMaxLogBytes;
+        List<Event> takenEvents;
+        List<Event> events;
+        synchronized (this) {
+            mFlushScheduled = false;
+            if (mPendingEvents.isEmpty()) {
+                return;
+            }
+            takenEvents = mPendingEvents;
+            mPendingEvents = new ArrayList<>();
+            // The memory holds the taken events and no other pending one, its snapshot replaces the log
+            events = compact ? snapshot() : takenEvents;
+        }
+
+        long section = Metrics.beginSection("history.write");
+        try {
+            byte[] batch = encodeBatch(events);
+            if (compact) {
+                rewriteLog(batch);
+            } else {
+                appendToLog(batch);
+            }
+            Metrics.increment("history.batches");
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the reading history", e);
+            synchronized (this) {
+                mPendingEvents.addAll(0, takenEvents);
+            }
+        } finally {
+            Metrics.endSection("history.write", section);
+        }
+    }
+
+    /**
+     * Returns events that rebuild the in-memory state. Called with the lock held.
+     */
+    private List<Event> snapshot() {
+        List<Event> events = new ArrayList<>();
+        for (long key : mReadKeys.toArray()) {
+            events.add(new Event(EVENT_READ, key, 0, null, 0));
+        }
+        for (Map.Entry<String, Integer> entry : mSectionOpenCounts.entrySet()) {
+            events.add(new Event(EVENT_SECTION_OPENS, 0, 0, entry.getKey(), entry.getValue()));
+        }
+        return events;
+    }
+
+    /**
+     * Append a batch to the log and sync it to disk, after which it is committed. A batch that failed half way
+     * is cut off, so the next batches don't follow a torn one.
+     */
+    private void appendToLog(byte[] batch) throws IOException {
+        RandomAccessFile log = new RandomAccessFile(mLogFile, "rw");
+        long committedBytes = log.length();
+        try {
+            log.seek(committedBytes);
+            log.write(batch);
+            log.getFD().sync();
+        } catch (IOException e) {
+            log.setLength(committedBytes);
+            throw e;
+        } finally {
+            closeQuietly(log);
+        }
+    }
+
+    /**
+     * Replace the log with a single batch. The batch is synced to a temporary file first, so a process killed
+     * meanwhile leaves the old log in place.
+     */
+    private void rewriteLog(byte[] batch) throws IOException {
+        File tempFile = new File(mLogFile.getPath() + ".tmp");
+        FileOutputStream output = new FileOutputStream(tempFile);
+        try {
+            output.write(batch);
+            output.getFD().sync();
+        } finally {
+            closeQuietly(output);
+        }
+        if (!tempFile.renameTo(mLogFile)) {
+            tempFile.delete();
+            throw new IOException("Problem replacing the reading history");
+        }
+    }
+
+    /**
+     * Cut the log after its last committed batch.
+     */
+    private void truncateLog(long committedBytes) {
+        RandomAccessFile log = null;
+        try {
+            log = new RandomAccessFile(mLogFile, "rw");
+            log.setLength(committedBytes);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem truncating the reading history", e);
+        } finally {
+            closeQuietly(log);
+        }
+    }
+
+    /**
+     * Returns the events as a batch of the log: its header (magic, payload length and CRC-32) and its payload.
+     */
+    private static byte[] encodeBatch(List<Event> events) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + events.size() * 32);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeInt(events.size());
+            for (Event event : events) {
+                output.writeByte(event.mType);
+                switch (event.mType) {
+                    case EVENT_OPEN:
+                        output.writeLong(event.mKey);
+                        output.writeLong(event.mTimeMillis);
+                        output.writeUTF(event.mSection);
+                        break;
+                    case EVENT_READ:
+                        output.writeLong(event.mKey);
+                        break;
+                    default:
+                        output.writeUTF(event.mSection);
+                        output.writeInt(event.mCount);
+                        break;
+                }
+            }
+            byte[] payload = bytes.toByteArray();
+
+            bytes.reset();
+            output.writeInt(BATCH_MAGIC);
+            output.writeInt(payload.length);
+            output.writeLong(checksumOf(payload));
+            output.write(payload);
+        } catch (IOException e) {
+            // A ByteArrayOutputStream doesn't throw
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the events of a batch payload whose checksum matched.
+     */
+    private static List<Event> decodeBatch(byte[] payload) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        int count = input.readInt();
+        if (count < 0 || count > payload.length) {
+            throw new IOException("Corrupt event count");
+        }
+        List<Event> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte type = input.readByte();
+            switch (type) {
+                case EVENT_OPEN:
+                    events.add(new Event(input.readLong(), input.readLong(), input.readUTF()));
+                    break;
+                case EVENT_READ:
+                    events.add(new Event(EVENT_READ, input.readLong(), 0, null, 0));
+                    break;
+                case EVENT_SECTION_OPENS:
+                    events.add(new Event(EVENT_SECTION_OPENS, 0, 0, input.readUTF(), input.readInt()));
+                    break;
+                default:
+                    throw new IOException("Unknown event type " + type);
+            }
+        }
+        return events;
+    }
+
+    private static long checksumOf(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return crc.getValue();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem closing the reading history", e);
+            }
+        }
+    }
+
+    /**
+     * An event of the history.
+     */
+    private static final class Event {
+
+        /**
+         * One of the EVENT_ types
+         */
+        private final byte mType;
+
+        /**
+         * Key of the article URL, unused for EVENT_SECTION_OPENS
+         */
+        private final long mKey;
+
+        /**
+         * Time of the event in milliseconds since epoch, 0 if unknown
+         */
+        private final long mTimeMillis;
+
+        /**
+         * Section the count applies to, null for EVENT_READ
+         */
+        private final String mSection;
+
+        /**
+         * Number of articles opened in the section
+         */
+        private final int mCount;
+
+        /**
+         * Constructs an EVENT_OPEN
+         */
+        Event(long key, long timeMillis, String section) {
+            this(EVENT_OPEN, key, timeMillis, section, 1);
+        }
+
+        Event(byte type, long key, long timeMillis, String section, int count) {
+            mType = type;
+            mKey = key;
+            mTimeMillis = timeMillis;
+            mSection = section;
+            mCount = count;
+        }
+    }
+}
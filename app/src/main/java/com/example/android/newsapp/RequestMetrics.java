@@ -0,0 +1,113 @@
+package com.example.android.newsapp;
+
+/**
+ * Sizes and timings of a finished HTTP request, reported by QueryUtils to its Listener.
+ */
+public class RequestMetrics {
+
+    /**
+     * Receives the metrics of every request made by QueryUtils.
+     */
+    public interface Listener {
+        void onRequestFinished(RequestMetrics metrics);
+    }
+
+    /**
+     * The request URL
+     */
+    private final String mUrl;
+
+    /**
+     * The HTTP response code, or 0 if the response was read from the cache without a request
+     */
+    private final int mResponseCode;
+
+    /**
+     * Number of body bytes received over the network
+     */
+    private final long mBytesReceived;
+
+    /**
+     * Number of bytes of the decoded body given to the parser
+     */
+    private final long mBodyBytes;
+
+    /**
+     * True if the body was read from the local copy
+     */
+    private final boolean mFromCache;
+
+    /**
+     * Timings of the call, null if no request was made
+     */
+    private final RequestTimings mTimings;
+
+    /**
+     * Constructs a new RequestMetrics object
+     *
+     * @param url           is the request URL
+     * @param responseCode  is the HTTP response code, 0 if no request was made
+     * @param bytesReceived is the number of body bytes received over the network
+     * @param bodyBytes     is the number of bytes of the decoded body
+     * @param fromCache     is true if the body was read from the local copy
+     * @param timings       are the timings of the call, null if no request was made
+     */
+    public RequestMetrics(String url, int responseCode, long bytesReceived, long bodyBytes, boolean fromCache,
+                          RequestTimings timings) {
+        mUrl = url;
+        mResponseCode = responseCode;
+        mBytesReceived = bytesReceived;
+        mBodyBytes = bodyBytes;
+        mFromCache = fromCache;
+        mTimings = timings;
+    }
+
+    /**
+     * Returns the request URL.
+     */
+    public String getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * Returns the HTTP response code, or 0 if the response was read from the cache without a request.
+     */
+    public int getResponseCode() {
+        return mResponseCode;
+    }
+
+    /**
+     * Returns the number of body bytes received over the network.
+     */
+    public long getBytesReceived() {
+        return mBytesReceived;
+    }
+
+    /**
+     * Returns the number of bytes of the decoded body.
+     */
+    public long getBodyBytes() {
+        return mBodyBytes;
+    }
+
+    /**
+     * Returns the number of bytes that did not have to be downloaded, thanks to the cache or gzip.
+     */
+    public long getBytesSaved() {
+        return mBodyBytes - mBytesReceived;
+    }
+
+    /**
+     * Returns true if the body was read from the local copy.
+     */
+    public boolean isFromCache() {
+        return mFromCache;
+    }
+
+    /**
+     * Returns the timings of the call, or null if the response was read from the cache without a request.
+     */
+    public RequestTimings getTimings() {
+        return mTimings;
+    }
+}
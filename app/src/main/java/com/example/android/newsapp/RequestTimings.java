@@ -0,0 +1,175 @@
+package com.example.android.newsapp;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+/**
+ * Records the phases of one HTTP call: DNS lookup, connect, TLS handshake, time to first byte and body.
+ * Phases that didn't happen, i.e. the connect of a call on a pooled connection, return -1.
+ * The body time includes the parsing, as the body is parsed while it is read.
+ */
+public class RequestTimings extends EventListener {
+
+    // Times of the events in System.nanoTime(), -1 until the event happens
+    private volatile long mCallStart = -1;
+    private volatile long mDnsStart = -1;
+    private volatile long mDnsEnd = -1;
+    private volatile long mConnectStart = -1;
+    private volatile long mConnectEnd = -1;
+    private volatile long mSecureConnectStart = -1;
+    private volatile long mSecureConnectEnd = -1;
+    private volatile long mResponseHeadersStart = -1;
+    private volatile long mResponseBodyStart = -1;
+    private volatile long mResponseBodyEnd = -1;
+    private volatile long mCallEnd = -1;
+
+    /**
+     * Protocol of the connection, null until the connection is acquired
+     */
+    private volatile Protocol mProtocol;
+
+    @Override
+    public void callStart(Call call) {
+        mCallStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        mDnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        mDnsEnd = System.nanoTime();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        mConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        mSecureConnectStart = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        mSecureConnectEnd = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        mConnectEnd = System.nanoTime();
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        mProtocol = connection.protocol();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        mResponseHeadersStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        mResponseBodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        mResponseBodyEnd = System.nanoTime();
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        mCallEnd = System.nanoTime();
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        mCallEnd = System.nanoTime();
+    }
+
+    /**
+     * Returns the DNS lookup time in milliseconds, or -1 if there was no lookup.
+     */
+    public long getDnsMs() {
+        return elapsedMs(mDnsStart, mDnsEnd);
+    }
+
+    /**
+     * Returns the connect time in milliseconds, including the TLS handshake, or -1 if a pooled connection was used.
+     */
+    public long getConnectMs() {
+        return elapsedMs(mConnectStart, mConnectEnd);
+    }
+
+    /**
+     * Returns the TLS handshake time in milliseconds, or -1 if there was no handshake.
+     */
+    public long getTlsMs() {
+        return elapsedMs(mSecureConnectStart, mSecureConnectEnd);
+    }
+
+    /**
+     * Returns the time from the start of the call to the first byte of the response, in milliseconds.
+     */
+    public long getTimeToFirstByteMs() {
+        return elapsedMs(mCallStart, mResponseHeadersStart);
+    }
+
+    /**
+     * Returns the time spent reading the body, in milliseconds, or -1 if the body wasn't read to the end.
+     */
+    public long getBodyMs() {
+        return elapsedMs(mResponseBodyStart, mResponseBodyEnd);
+    }
+
+    /**
+     * Returns the duration of the whole call, in milliseconds, or -1 if it isn't finished.
+     */
+    public long getTotalMs() {
+        return elapsedMs(mCallStart, mCallEnd);
+    }
+
+    /**
+     * Returns true if the call used a pooled connection instead of opening one.
+     */
+    public boolean isConnectionReused() {
+        return mCallStart != -1 && mConnectStart == -1;
+    }
+
+    /**
+     * Returns the protocol of the connection (i.e. "h2" or "http/1.1"), or null if no connection was acquired.
+     */
+    public String getProtocol() {
+        Protocol protocol = mProtocol;
+        return protocol != null ? protocol.toString() : null;
+    }
+
+    private static long elapsedMs(long start, long end) {
+        if (start == -1 || end == -1) {
+            return -1;
+        }
+        return (end - start) / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return "dns=" + getDnsMs() + "ms connect=" + getConnectMs() + "ms tls=" + getTlsMs()
+                + "ms ttfb=" + getTimeToFirstByteMs() + "ms body=" + getBodyMs() + "ms total=" + getTotalMs()
+                + "ms reused=" + isConnectionReused() + " protocol=" + getProtocol();
+    }
+}
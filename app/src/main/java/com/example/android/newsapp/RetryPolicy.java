@@ -0,0 +1,141 @@
+package com.example.android.newsapp;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Decides whether a failed Guardian request is tried again and how long to wait before.
+ * The wait grows exponentially with "full jitter" (a random time up to the exponential bound), so clients
+ * that failed together don't retry together. A Retry-After header from the server (i.e. with a 429 Too Many
+ * Requests) replaces the computed wait, and when it asks for a longer wait than the policy allows, the request
+ * isn't retried at all.
+ */
+public class RetryPolicy {
+
+    /**
+     * Too many requests, the API rate limit was hit
+     */
+    static final int TOO_MANY_REQUESTS = 429;
+
+    /**
+     * Request timeout, the server gave up waiting for the request
+     */
+    private static final int REQUEST_TIMEOUT = 408;
+
+    /**
+     * Default number of attempts of a request, the first one included
+     */
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /**
+     * Default bound of the wait before the first retry, doubled for each next one, in milliseconds
+     */
+    private static final long DEFAULT_BASE_DELAY_MS = 500;
+
+    /**
+     * Default bound of the wait before any retry, in milliseconds
+     */
+    private static final long DEFAULT_MAX_DELAY_MS = 8000;
+
+    /**
+     * Format of the HTTP date form of Retry-After (i.e. "Wed, 21 Oct 2015 07:28:00 GMT")
+     */
+    private static final String HTTP_DATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    /**
+     * Number of attempts of a request, the first one included
+     */
+    private final int mMaxAttempts;
+
+    /**
+     * Bound of the wait before the first retry, in milliseconds
+     */
+    private final long mBaseDelayMs;
+
+    /**
+     * Bound of the wait before any retry, also the longest Retry-After that is waited for, in milliseconds
+     */
+    private final long mMaxDelayMs;
+
+    /**
+     * Picks the jittered waits
+     */
+    private final Random mRandom;
+
+    /**
+     * Constructs a RetryPolicy with the default attempts and waits
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS, new Random());
+    }
+
+    /**
+     * Constructs a new RetryPolicy
+     *
+     * @param maxAttempts is the number of attempts of a request, the first one included
+     * @param baseDelayMs is the bound of the wait before the first retry, doubled for each next one
+     * @param maxDelayMs  is the bound of any wait, a longer Retry-After isn't waited for
+     * @param random      picks the jittered waits
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs, Random random) {
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMs = baseDelayMs;
+        mMaxDelayMs = maxDelayMs;
+        mRandom = random;
+    }
+
+    /**
+     * Returns true if a response with the given code may succeed when sent again:
+     * server errors, timeouts and the rate limit. Other client errors would fail the same way.
+     */
+    public static boolean isRetryable(int responseCode) {
+        return responseCode >= 500 || responseCode == TOO_MANY_REQUESTS || responseCode == REQUEST_TIMEOUT;
+    }
+
+    /**
+     * Returns the time to wait before the next attempt, or -1 if the request should not be tried again.
+     *
+     * @param attempt      is the number of the attempt that failed, starting at 1
+     * @param retryAfterMs is the wait asked by the server in milliseconds, or -1 if it didn't ask for one
+     */
+    public long getDelayMs(int attempt, long retryAfterMs) {
+        if (attempt >= mMaxAttempts) {
+            return -1;
+        }
+        if (retryAfterMs >= 0) {
+            return retryAfterMs <= mMaxDelayMs ? retryAfterMs : -1;
+        }
+        // The bound doubles with every attempt, shifting at most 30 bits keeps it from overflowing
+        long bound = Math.min(mMaxDelayMs, mBaseDelayMs << Math.min(attempt - 1, 30));
+        return (long) (mRandom.nextDouble() * bound);
+    }
+
+    /**
+     * Returns the wait asked by a Retry-After header in milliseconds, either as seconds or as an HTTP date,
+     * or -1 if there is no valid header.
+     *
+     * @param nowMillis is the current time, to turn a date into a wait
+     */
+    public static long parseRetryAfter(String retryAfter, long nowMillis) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        retryAfter = retryAfter.trim();
+        try {
+            long seconds = Long.parseLong(retryAfter);
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException e) {
+            // Not a number of seconds, try the date form
+        }
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_PATTERN, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(retryAfter).getTime() - nowMillis);
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
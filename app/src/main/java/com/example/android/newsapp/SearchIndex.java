@@ -0,0 +1,221 @@
+package com.example.android.newsapp;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable inverted index over the titles, sections and contributors of a set of articles.
+ * Every word of a query is matched as a prefix and all words must match, so "elec gov" finds
+ * "Government wins the election". Results are returned newest first.
+ */
+public class SearchIndex {
+
+    /**
+     * Orders articles from the newest to the oldest
+     */
+    private static final Comparator<Article> NEWEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article first, Article second) {
+            return Long.compare(second.getTimeInMillis(), first.getTimeInMillis());
+        }
+    };
+
+    /**
+     * Combining marks left by the decomposition of accented letters
+     */
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{Mn}+");
+
+    /**
+     * The indexed articles, newest first. The position of an article is its document id.
+     */
+    private final Article[] mArticles;
+
+    /**
+     * All indexed words, sorted, so the words starting with a prefix are next to each other
+     */
+    private final String[] mTerms;
+
+    /**
+     * Ascending document ids of the articles that contain each word of mTerms
+     */
+    private final int[][] mPostings;
+
+    private SearchIndex(Article[] articles, String[] terms, int[][] postings) {
+        mArticles = articles;
+        mTerms = terms;
+        mPostings = postings;
+    }
+
+    /**
+     * Build the index of the given articles. Articles with the same URL are indexed once.
+     */
+    public static SearchIndex build(Collection<Article> articles) {
+        // De-duplicate by URL and number the articles from the newest to the oldest,
+        // so iterating the matches in document order returns them newest first
+        Map<String, Article> unique = new LinkedHashMap<>();
+        for (Article article : articles) {
+            if (!unique.containsKey(article.getUrl())) {
+                unique.put(article.getUrl(), article);
+            }
+        }
+        Article[] sorted = unique.values().toArray(new Article[unique.size()]);
+        Arrays.sort(sorted, NEWEST_FIRST);
+
+        Map<String, Postings> postingsByTerm = new HashMap<>();
+        List<String> words = new ArrayList<>();
+        for (int doc = 0; doc < sorted.length; doc++) {
+            Article article = sorted[doc];
+            words.clear();
+            tokenize(article.getTitle(), words);
+            tokenize(article.getSection(), words);
+            tokenize(article.getAuthor(), words);
+            for (String word : words) {
+                Postings postings = postingsByTerm.get(word);
+                if (postings == null) {
+                    postings = new Postings();
+                    postingsByTerm.put(word, postings);
+                }
+                postings.add(doc);
+            }
+        }
+
+        String[] terms = postingsByTerm.keySet().toArray(new String[postingsByTerm.size()]);
+        Arrays.sort(terms);
+        int[][] postings = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            postings[i] = postingsByTerm.get(terms[i]).toArray();
+        }
+        return new SearchIndex(sorted, terms, postings);
+    }
+
+    /**
+     * Returns the number of indexed articles.
+     */
+    public int size() {
+        return mArticles.length;
+    }
+
+    /**
+     * Returns the newest articles matching every word of the query, as a prefix.
+     * An empty query matches all articles.
+     *
+     * @param query   are the words to look for in the title, section and contributors
+     * @param section is the Guardian section id the article section must start with, empty for all sections
+     * @param limit   is the maximum number of articles returned
+     */
+    public List<Article> search(String query, String section, int limit) {
+        List<String> words = new ArrayList<>();
+        tokenize(query, words);
+
+        BitSet matches = null;
+        for (String word : words) {
+            BitSet wordMatches = matchPrefix(word);
+            if (matches == null) {
+                matches = wordMatches;
+            } else {
+                matches.and(wordMatches);
+            }
+            if (matches.isEmpty()) {
+                return Collections.emptyList();
+            }
+        }
+        if (matches == null) {
+            matches = new BitSet(mArticles.length);
+            matches.set(0, mArticles.length);
+        }
+
+        List<Article> results = new ArrayList<>();
+        for (int doc = matches.nextSetBit(0); doc >= 0 && results.size() < limit; doc = matches.nextSetBit(doc + 1)) {
+            Article article = mArticles[doc];
+            // Section ids are the lower case section names, i.e. "world" for "World news"
+            if (section.isEmpty() || article.getSection().regionMatches(true, 0, section, 0, section.length())) {
+                results.add(article);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Returns the documents that contain a word starting with the given prefix.
+     */
+    private BitSet matchPrefix(String prefix) {
+        BitSet matches = new BitSet(mArticles.length);
+        int index = Arrays.binarySearch(mTerms, prefix);
+        if (index < 0) {
+            // Not an indexed word, start at the first word after it
+            index = -index - 1;
+        }
+        for (; index < mTerms.length && mTerms[index].startsWith(prefix); index++) {
+            for (int doc : mPostings[index]) {
+                matches.set(doc);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Split the text into lower case words made of letters and digits, without accents.
+     * Each word is added once.
+     */
+    static void tokenize(String text, List<String> words) {
+        if (text == null) {
+            return;
+        }
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = normalize(text.substring(start, i));
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static String normalize(String word) {
+        String lowerCase = word.toLowerCase(Locale.ROOT);
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (lowerCase.charAt(i) > 127) {
+                // Remove the accents, so "cafe" also finds "café"
+                return COMBINING_MARKS.matcher(Normalizer.normalize(lowerCase, Normalizer.Form.NFD)).replaceAll("");
+            }
+        }
+        return lowerCase;
+    }
+
+    /**
+     * Growable list of ascending document ids.
+     */
+    private static class Postings {
+
+        private int[] mDocs = new int[4];
+        private int mSize;
+
+        void add(int doc) {
+            if (mSize == mDocs.length) {
+                mDocs = Arrays.copyOf(mDocs, mSize * 2);
+            }
+            mDocs[mSize++] = doc;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(mDocs, mSize);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.android.newsapp;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the searches typed in the search box. A search starts once the text stopped changing for the
+ * debounce delay. Starting a search cancels the one in flight. If the text changes back to the query
+ * in flight, that search is kept instead of starting the same one again. Only the result of the
+ * current query is delivered, so an older search that completes late never replaces a newer result.
+ */
+public class SearchPipeline {
+
+    /**
+     * Runs one search.
+     */
+    public interface Source {
+        /**
+         * Returns the articles matching the query, or null if the search failed.
+         * Should stop early when the token is cancelled.
+         */
+        List<Article> search(String query, CancellationToken cancellationToken);
+    }
+
+    /**
+     * Receives the search results, on the callback executor.
+     */
+    public interface Listener {
+        void onSearchResult(String query, List<Article> articles);
+    }
+
+    /**
+     * Runs the debounce delays
+     */
+    private final ScheduledExecutorService mTimer;
+
+    /**
+     * Runs the searches
+     */
+    private final Executor mExecutor;
+
+    /**
+     * Delivers the results to the listener, i.e. on the main thread
+     */
+    private final Executor mCallbackExecutor;
+
+    /**
+     * Runs the searches
+     */
+    private final Source mSource;
+
+    /**
+     * Receives the results
+     */
+    private final Listener mListener;
+
+    /**
+     * Time the text must stay unchanged before a search starts, in milliseconds
+     */
+    private final long mDebounceMs;
+
+    /**
+     * The query whose result is wanted, null when no search is wanted
+     */
+    private String mQuery;
+
+    /**
+     * The search waiting for the end of the debounce delay, null if none
+     */
+    private ScheduledFuture<?> mPendingSearch;
+
+    /**
+     * The search running, null if none
+     */
+    private Search mRunningSearch;
+
+    /**
+     * Incremented every time a search starts or the searches are cancelled, only the latest search is delivered
+     */
+    private int mSequence;
+
+    /**
+     * Constructs a new SearchPipeline
+     *
+     * @param timer            runs the debounce delays, its tasks only pass the searches to the executor
+     * @param executor         runs the searches, needs 2 threads so a new search can start while the cancelled
+     *                         one unwinds
+     * @param callbackExecutor delivers the results to the listener
+     * @param source           runs one search
+     * @param listener         receives the results
+     * @param debounceMs       is the time the text must stay unchanged before a search starts
+     */
+    public SearchPipeline(ScheduledExecutorService timer, Executor executor, Executor callbackExecutor,
+                          Source source, Listener listener, long debounceMs) {
+        mTimer = timer;
+        mExecutor = executor;
+        mCallbackExecutor = callbackExecutor;
+        mSource = source;
+        mListener = listener;
+        mDebounceMs = debounceMs;
+    }
+
+    /**
+     * The search text changed, search it after the debounce delay.
+     */
+    public void setQuery(String query) {
+        schedule(query, mDebounceMs);
+    }
+
+    /**
+     * The search text was submitted, search it right away.
+     */
+    public void submitQuery(String query) {
+        schedule(query, 0);
+    }
+
+    /**
+     * Cancel the pending and running searches, nothing is delivered until the next query.
+     */
+    public synchronized void cancel() {
+        mQuery = null;
+        mSequence++;
+        cancelPendingSearch();
+        if (mRunningSearch != null) {
+            mRunningSearch.mCancellationToken.cancel();
+            mRunningSearch = null;
+        }
+    }
+
+    private synchronized void schedule(final String query, long delayMs) {
+        mQuery = query;
+        cancelPendingSearch();
+
+        // The same search is already running, its result is still wanted
+        if (mRunningSearch != null && mRunningSearch.mQuery.equals(query)) {
+            return;
+        }
+
+        mPendingSearch = mTimer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                mExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        Search search = start(query);
+                        if (search != null) {
+                            List<Article> articles = null;
+                            try {
+                                articles = mSource.search(query, search.mCancellationToken);
+                            } finally {
+                                // Even if the search threw, so the query can be searched again
+                                finish(search, articles);
+                            }
+                        }
+                    }
+                });
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void cancelPendingSearch() {
+        if (mPendingSearch != null) {
+            mPendingSearch.cancel(false);
+            mPendingSearch = null;
+        }
+    }
+
+    /**
+     * Start the search of the query and cancel the running one.
+     * Returns null if the query is no longer wanted.
+     */
+    private synchronized Search start(String query) {
+        if (!query.equals(mQuery)) {
+            return null;
+        }
+        mPendingSearch = null;
+        if (mRunningSearch != null && mRunningSearch.mQuery.equals(query)) {
+            return null;
+        }
+        if (mRunningSearch != null) {
+            mRunningSearch.mCancellationToken.cancel();
+        }
+        mRunningSearch = new Search(query, ++mSequence);
+        return mRunningSearch;
+    }
+
+    /**
+     * Deliver the result of a search if it is still the latest one.
+     */
+    private void finish(final Search search, final List<Article> articles) {
+        synchronized (this) {
+            if (mRunningSearch == search) {
+                mRunningSearch = null;
+            }
+            if (articles == null || !isLatest(search)) {
+                return;
+            }
+        }
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Check again, another search may have started while the result was posted
+                synchronized (SearchPipeline.this) {
+                    if (!isLatest(search)) {
+                        return;
+                    }
+                }
+                mListener.onSearchResult(search.mQuery, articles);
+            }
+        });
+    }
+
+    private boolean isLatest(Search search) {
+        return search.mSequence == mSequence && search.mQuery.equals(mQuery)
+                && !search.mCancellationToken.isCancelled();
+    }
+
+    /**
+     * A started search.
+     */
+    private static class Search {
+
+        /**
+         * The searched text
+         */
+        private final String mQuery;
+
+        /**
+         * Number of the search, in start order
+         */
+        private final int mSequence;
+
+        /**
+         * Cancels the search
+         */
+        private final CancellationToken mCancellationToken = new CancellationToken();
+
+        Search(String query, int sequence) {
+            mQuery = query;
+            mSequence = sequence;
+        }
+    }
+}
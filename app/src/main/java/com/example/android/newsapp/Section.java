@@ -0,0 +1,71 @@
+package com.example.android.newsapp;
+
+/**
+ * A section of the Guardian (i.e. "Technology"). There is a single instance per name, so the thousands of
+ * articles of a section share it, and articles refer to it by its id: grouping or filtering them by section
+ * compares ints instead of strings.
+ */
+public final class Section {
+
+    private static final Interner<Section> sInterner = new Interner<>(new Interner.Factory<Section>() {
+        @Override
+        public Section create(int id, String name) {
+            return new Section(id, name);
+        }
+    });
+
+    /**
+     * Id of the section, only valid in this process
+     */
+    private final int mId;
+
+    /**
+     * Display name of the section
+     */
+    private final String mName;
+
+    private Section(int id, String name) {
+        mId = id;
+        mName = name;
+    }
+
+    /**
+     * Returns the section of the name, created on first use. A null name is the empty one.
+     */
+    public static Section intern(String name) {
+        return sInterner.intern(name == null ? "" : name);
+    }
+
+    /**
+     * Returns the section of an id.
+     */
+    public static Section forId(int id) {
+        return sInterner.get(id);
+    }
+
+    /**
+     * Returns the number of distinct sections seen so far.
+     */
+    static int count() {
+        return sInterner.size();
+    }
+
+    /**
+     * Returns the id of the section, only valid in this process.
+     */
+    public int getId() {
+        return mId;
+    }
+
+    /**
+     * Returns the display name of the section.
+     */
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
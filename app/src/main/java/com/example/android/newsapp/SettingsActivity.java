@@ -3,11 +3,18 @@ package com.example.android.newsapp;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.ListPreference;
+import android.preference.MultiSelectListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
 import android.support.annotation.Nullable;
 import android.support.v7.app.AppCompatActivity;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class SettingsActivity extends AppCompatActivity {
 
@@ -17,7 +24,8 @@ public class SettingsActivity extends AppCompatActivity {
         setContentView(R.layout.settings_activity);
     }
 
-    public static class NewsAppPreferenceFragment extends PreferenceFragment implements Preference.OnPreferenceChangeListener {
+    public static class NewsAppPreferenceFragment extends PreferenceFragment implements Preference.OnPreferenceChangeListener,
+            SharedPreferences.OnSharedPreferenceChangeListener {
         @Override
         public void onCreate(@Nullable Bundle savedInstanceState) {
             super.onCreate(savedInstanceState);
@@ -28,11 +36,56 @@ public class SettingsActivity extends AppCompatActivity {
 
             Preference section = findPreference(getString(R.string.settings_section_key));
             bindPreferenceSummaryToValue(section);
+
+            MultiSelectListPreference feedSections = (MultiSelectListPreference) findPreference(getString(R.string.settings_feed_sections_key));
+            feedSections.setOnPreferenceChangeListener(this);
+            SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(feedSections.getContext());
+            onPreferenceChange(feedSections, preferences.getStringSet(feedSections.getKey(), new HashSet<String>()));
+        }
+
+        @Override
+        public void onResume() {
+            super.onResume();
+            getPreferenceScreen().getSharedPreferences().registerOnSharedPreferenceChangeListener(this);
+        }
+
+        @Override
+        public void onPause() {
+            getPreferenceScreen().getSharedPreferences().unregisterOnSharedPreferenceChangeListener(this);
+            super.onPause();
+        }
+
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+            // Called after the new value is saved, so the job is scheduled with the new constraints
+            if (key.equals(getString(R.string.settings_sync_key))
+                    || key.equals(getString(R.string.settings_sync_unmetered_key))
+                    || key.equals(getString(R.string.settings_sync_charging_key))) {
+                ArticleSyncJobService.schedule(getActivity());
+            } else if (key.equals(getString(R.string.settings_metrics_key))) {
+                Metrics.setEnabled(sharedPreferences.getBoolean(key, false));
+            }
         }
 
         @Override
         public boolean onPreferenceChange(Preference preference, Object value) {
             // The code in this method takes care of updating the displayed preference summary after it has been changed
+            if (preference instanceof MultiSelectListPreference) {
+                // Show the labels of the selected values, in the order of the list
+                MultiSelectListPreference multiSelectListPreference = (MultiSelectListPreference) preference;
+                @SuppressWarnings("unchecked")
+                Set<String> values = (Set<String>) value;
+                CharSequence[] entryValues = multiSelectListPreference.getEntryValues();
+                List<CharSequence> labels = new ArrayList<>();
+                for (int i = 0; i < entryValues.length; i++) {
+                    if (values.contains(entryValues[i].toString())) {
+                        labels.add(multiSelectListPreference.getEntries()[i]);
+                    }
+                }
+                preference.setSummary(TextUtils.join(", ", labels));
+                return true;
+            }
+
             String stringValue = value.toString();
             if (preference instanceof ListPreference) {
                 ListPreference listPreference = (ListPreference) preference;
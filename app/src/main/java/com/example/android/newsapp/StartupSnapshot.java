@@ -0,0 +1,162 @@
+package com.example.android.newsapp;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * The rows at the top of the list when MainActivity last stopped, in a single small file. The next launch
+ * reads it in the background and shows its rows before the list is loaded, without a network request or a
+ * parse of the JSON, and without looking up the cache entry of the settings.
+ * <p>
+ * The rows are stored with ArticleCodec next to the settings they were loaded with, so a snapshot of other
+ * settings isn't shown.
+ */
+public class StartupSnapshot {
+
+    /**
+     * Tag for the log messages
+     */
+    private static final String LOG_TAG = StartupSnapshot.class.getSimpleName();
+
+    /**
+     * Name of the snapshot file in the app cache directory
+     */
+    private static final String FILE_NAME = "startup_snapshot";
+
+    /**
+     * Version of the file layout, increased when it changes
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Number of rows stored, more than a screen holds
+     */
+    public static final int MAX_ROWS = 20;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static StartupSnapshot sInstance;
+
+    /**
+     * The snapshot file
+     */
+    private final File mFile;
+
+    /**
+     * Constructs a new StartupSnapshot
+     *
+     * @param file is the snapshot file
+     */
+    public StartupSnapshot(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Returns the shared snapshot stored in the app cache directory.
+     */
+    public static synchronized StartupSnapshot getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new StartupSnapshot(new File(context.getApplicationContext().getCacheDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the rows saved for the given settings, or null if there are none. Reads the file, so it must not
+     * be called on the main thread.
+     *
+     * @param key identifies the settings of the list, i.e. the URL of its first page
+     */
+    public synchronized List<Article> read(String key) {
+        if (!mFile.exists()) {
+            return null;
+        }
+        long section = Metrics.beginSection("snapshot.read");
+        try {
+            ByteBuffer buffer = ArticleCodec.map(mFile);
+            if (buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int keyLength = buffer.getInt();
+            if (keyLength < 0 || keyLength > buffer.remaining()) {
+                throw new IOException("Corrupt snapshot header");
+            }
+            byte[] keyBytes = new byte[keyLength];
+            buffer.get(keyBytes);
+            if (!key.equals(new String(keyBytes, UTF_8))) {
+                // The settings changed since
+                return null;
+            }
+            return ArticleCodec.decode(buffer);
+        } catch (IOException | BufferUnderflowException e) {
+            Log.e(LOG_TAG, "Problem reading the startup snapshot", e);
+            mFile.delete();
+            return null;
+        } finally {
+            Metrics.endSection("snapshot.read", section);
+        }
+    }
+
+    /**
+     * Replace the snapshot with the first MAX_ROWS articles. Writes the file, so it must not be called on the
+     * main thread.
+     *
+     * @param key      identifies the settings of the list, i.e. the URL of its first page
+     * @param articles are the articles of the list, from the top
+     */
+    public synchronized void write(String key, List<Article> articles) {
+        File directory = mFile.getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            Log.e(LOG_TAG, "Problem creating the snapshot directory");
+            return;
+        }
+
+        // Write to a temporary file first so the next launch never reads a half written snapshot
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        DataOutputStream output = null;
+        long section = Metrics.beginSection("snapshot.write");
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            byte[] keyBytes = key.getBytes(UTF_8);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(keyBytes.length);
+            output.write(keyBytes);
+            ArticleCodec.write(articles.subList(0, Math.min(articles.size(), MAX_ROWS)), output);
+            output.close();
+            output = null;
+
+            if (!tempFile.renameTo(mFile)) {
+                Log.e(LOG_TAG, "Problem saving the startup snapshot");
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the startup snapshot", e);
+        } finally {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Problem closing the snapshot file", e);
+                }
+            }
+            tempFile.delete();
+            Metrics.endSection("snapshot.write", section);
+        }
+    }
+
+    /**
+     * Delete the snapshot.
+     */
+    public synchronized void clear() {
+        mFile.delete();
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the LRU eviction and statistics of ArticleBodyStore, and the prefetch of bodies into it.
+ */
+public class ArticleBodyStoreTest {
+
+    private static final String URL_PREFIX = "https://www.theguardian.com/technology/2018/may/24/article-";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    /**
+     * Runs the prefetch on the calling thread
+     */
+    private final Executor mDirectExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void get_returnsTheStoredBodyAndCountsHits() throws IOException {
+        ArticleBodyStore store = new ArticleBodyStore(mTemporaryFolder.newFolder(), 1024 * 1024);
+        String body = "<p>Café – “quoted” body</p>" + repeat("<p>Paragraph</p>", 5000);
+
+        assertNull(store.get(url(1)));
+        store.put(url(1), body);
+
+        assertEquals(body, store.get(url(1)));
+        assertEquals(1, store.getHitCount());
+        assertEquals(1, store.getMissCount());
+        assertEquals(0.5, store.getHitRate(), 0.001);
+        // Repetitive HTML compresses well
+        assertTrue(store.getBytesUsed() < body.length() / 10);
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedBodies() throws IOException {
+        File directory = mTemporaryFolder.newFolder();
+        String body = randomText(4000);
+        ArticleBodyStore store = new ArticleBodyStore(directory, 3 * compressedSize(body) + 100);
+
+        store.put(url(1), body);
+        store.put(url(2), body);
+        store.put(url(3), body);
+        // Reading the first body makes the second one the least recently used
+        assertEquals(body, store.get(url(1)));
+        store.put(url(4), body);
+
+        assertTrue(store.contains(url(1)));
+        assertFalse(store.contains(url(2)));
+        assertTrue(store.contains(url(3)));
+        assertTrue(store.contains(url(4)));
+        assertEquals(3, store.getCount());
+        assertTrue(store.getBytesUsed() <= 3 * compressedSize(body) + 100);
+        assertEquals(3, directory.list().length);
+    }
+
+    @Test
+    public void newInstance_findsTheStoredBodies() throws IOException {
+        File directory = mTemporaryFolder.newFolder();
+        ArticleBodyStore store = new ArticleBodyStore(directory, 1024 * 1024);
+        store.put(url(1), "<p>One</p>");
+        store.put(url(2), "<p>Two</p>");
+
+        ArticleBodyStore reopened = new ArticleBodyStore(directory, 1024 * 1024);
+
+        assertEquals(2, reopened.getCount());
+        assertEquals(store.getBytesUsed(), reopened.getBytesUsed());
+        assertEquals("<p>Two</p>", reopened.get(url(2)));
+    }
+
+    @Test
+    public void corruptFile_isDeletedAndCountedAsMiss() throws IOException {
+        File directory = mTemporaryFolder.newFolder();
+        ArticleBodyStore store = new ArticleBodyStore(directory, 1024 * 1024);
+        store.put(url(1), "<p>One</p>");
+        FileOutputStream output = new FileOutputStream(directory.listFiles()[0]);
+        output.write(new byte[]{1, 2, 3});
+        output.close();
+
+        assertNull(store.get(url(1)));
+        assertEquals(1, store.getMissCount());
+        assertFalse(store.contains(url(1)));
+        assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void prefetch_fetchesTheTopArticlesThatArentStored() throws IOException {
+        ArticleBodyStore store = new ArticleBodyStore(mTemporaryFolder.newFolder(), 1024 * 1024);
+        store.put(url(0), "<p>Already stored</p>");
+        final List<List<String>> requests = new ArrayList<>();
+        ArticleBodyPrefetcher prefetcher = new ArticleBodyPrefetcher(store, mDirectExecutor, new ArticleBodyPrefetcher.Source() {
+            @Override
+            public Map<String, String> fetch(List<String> urls, CancellationToken cancellationToken) {
+                requests.add(new ArrayList<>(urls));
+                Map<String, String> bodies = new HashMap<>();
+                for (String url : urls) {
+                    bodies.put(url, "<p>" + url + "</p>");
+                }
+                return bodies;
+            }
+        });
+
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            articles.add(new Article("Title " + i, "Technology", "2018-05-24T10:00:00Z", null, url(i)));
+        }
+        articles.add(1, new Article("Not an article", "Technology", "2018-05-24T10:00:00Z", null, "https://example.com/"));
+        prefetcher.prefetch(articles);
+        prefetcher.prefetch(articles.subList(0, 5));
+
+        // One request for the first PREFETCH_COUNT articles without a stored body, none for the second call
+        assertEquals(1, requests.size());
+        assertEquals(ArticleBodyPrefetcher.PREFETCH_COUNT, requests.get(0).size());
+        assertEquals(url(1), requests.get(0).get(0));
+        assertEquals(ArticleBodyPrefetcher.PREFETCH_COUNT, prefetcher.getPrefetchedCount());
+
+        // Opening a prefetched article is a hit, opening one further down fetches it
+        assertEquals("<p>" + url(5) + "</p>", prefetcher.getBody(url(5), null));
+        assertEquals("<p>" + url(25) + "</p>", prefetcher.getBody(url(25), null));
+        assertEquals(Collections.singletonList(url(25)), requests.get(1));
+        assertEquals(1, store.getHitCount());
+        assertEquals(1, store.getMissCount());
+    }
+
+    @Test(timeout = 5000)
+    public void prefetch_doesNotWaitForTheStoreOnTheCallingThread() throws Exception {
+        final ArticleBodyStore store = new ArticleBodyStore(mTemporaryFolder.newFolder(), 1024 * 1024);
+        final List<Runnable> queued = new ArrayList<>();
+        final List<List<String>> requests = new ArrayList<>();
+        ArticleBodyPrefetcher prefetcher = new ArticleBodyPrefetcher(store, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        }, new ArticleBodyPrefetcher.Source() {
+            @Override
+            public Map<String, String> fetch(List<String> urls, CancellationToken cancellationToken) {
+                requests.add(new ArrayList<>(urls));
+                return null;
+            }
+        });
+        store.put(url(0), "<p>Already stored</p>");
+
+        // The prefetch thread is writing a large body
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (store) {
+                    locked.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        writer.start();
+        locked.await();
+        prefetcher.prefetch(Arrays.asList(
+                new Article("Title 0", "Technology", "2018-05-24T10:00:00Z", null, url(0)),
+                new Article("Title 1", "Technology", "2018-05-24T10:00:00Z", null, url(1))));
+        release.countDown();
+        writer.join();
+
+        assertEquals(1, queued.size());
+        queued.get(0).run();
+        assertEquals(Collections.singletonList(Collections.singletonList(url(1))), requests);
+    }
+
+    @Test
+    public void fetchArticleBodies_readsTheBodyFieldOfEachResult() throws IOException {
+        final byte[] response = ("{\"response\":{\"status\":\"ok\",\"results\":["
+                + "{\"id\":\"a\",\"webUrl\":\"" + url(1) + "\",\"fields\":{\"body\":\"<p>First \\u00e9</p>\"}},"
+                + "{\"id\":\"b\",\"webUrl\":\"" + url(2) + "\",\"fields\":{}},"
+                + "{\"id\":\"c\",\"webUrl\":\"" + url(3) + "\",\"fields\":{\"wordcount\":\"12\",\"body\":\"<p>Third</p>\"}}"
+                + "]}}").getBytes(Charset.forName("UTF-8"));
+        final List<String> requestQueries = new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestQueries.add(exchange.getRequestURI().getRawQuery());
+                exchange.sendResponseHeaders(200, response.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(response);
+                output.close();
+            }
+        });
+        server.start();
+        try {
+            String bodiesUrl = ArticleBodyPrefetcher.getBodiesUrl(Arrays.asList(url(1), url(2), url(3)), "test")
+                    .replace(GuardianQuery.SEARCH_URL, "http://127.0.0.1:" + server.getAddress().getPort() + "/search");
+
+            Map<String, String> bodies = QueryUtils.fetchArticleBodies(bodiesUrl, null);
+
+            assertEquals(2, bodies.size());
+            assertEquals("<p>First é</p>", bodies.get(url(1)));
+            assertEquals("<p>Third</p>", bodies.get(url(3)));
+            assertTrue(requestQueries.get(0), requestQueries.get(0).startsWith("order-by=newest&ids="
+                    + "technology%2F2018%2Fmay%2F24%2Farticle-1,technology%2F2018%2Fmay%2F24%2Farticle-2,"));
+            assertTrue(requestQueries.get(0), requestQueries.get(0).contains("&show-fields=body&page=1&page-size=3&"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static String url(int index) {
+        return URL_PREFIX + index;
+    }
+
+    private int compressedSize(String body) throws IOException {
+        ArticleBodyStore store = new ArticleBodyStore(mTemporaryFolder.newFolder(), Long.MAX_VALUE);
+        store.put(url(1), body);
+        return (int) store.getBytesUsed();
+    }
+
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns text that doesn't compress much, so a few bodies reach the size limit.
+     */
+    private static String randomText(int length) {
+        java.util.Random random = new java.util.Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+        }
+        return builder.toString();
+    }
+}
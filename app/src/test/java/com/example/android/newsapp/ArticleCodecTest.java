@@ -0,0 +1,222 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round-trips article lists through ArticleCodec and compares cold hydration of a few thousand
+ * cached articles with parsing the raw Guardian JSON they came from.
+ */
+public class ArticleCodecTest {
+
+    /**
+     * Copies of the 200 article fixture hydrated by the benchmark
+     */
+    private static final int FIXTURE_COPIES = 15;
+
+    private static final int WARMUP_ITERATIONS = 30;
+    private static final int MEASURED_ITERATIONS = 100;
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("article-codec", "");
+        assertTrue(mDirectory.delete() && mDirectory.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void roundTrip_keepsEveryField() throws IOException {
+        List<Article> articles = Arrays.asList(
+                new Article("Café culture – the return", "World news", "2018-05-21T10:00:00Z",
+                        "Zoë Williams", "https://www.theguardian.com/world/2018/may/21/cafe",
+                        "https://media.guim.co.uk/0a1b2c/0_0_3000_1800/500.jpg"),
+                new Article("Second", "World news", "2018-05-20T08:30:15Z",
+                        null, "https://www.theguardian.com/world/2018/may/20/second",
+                        "https://media.guim.co.uk/9f8e7d/0_0_3000_1800/500.jpg"),
+                new Article("Offset date", "Technology", "2018-05-19T10:00:00+01:00",
+                        "Alex Hern & Samuel Gibbs", "https://www.theguardian.com/technology/offset"),
+                new Article("Fraction", "Technology", "2018-05-19T10:00:00.250Z",
+                        "Zoë Williams", "https://www.theguardian.com/technology/fraction"),
+                new Article("No date", "Science", "", null, "https://example.com/😀"),
+                new Article("", "", "not a date", "", ""));
+
+        assertArticlesEqual(articles, ArticleCodec.decode(ArticleCodec.encode(articles)));
+    }
+
+    @Test
+    public void roundTrip_ofGuardianResponse() throws IOException {
+        List<Article> articles = parseFixture();
+
+        byte[] encoded = ArticleCodec.encode(articles);
+
+        assertArticlesEqual(articles, ArticleCodec.decode(encoded));
+        int json = TestFixtures.readFixture("guardian_search_200.json").length;
+        System.out.println(String.format("200 articles  raw JSON: %,d B  encoded: %,d B", json, encoded.length));
+        assertTrue(encoded.length * 4 < json);
+    }
+
+    @Test
+    public void roundTrip_ofEmptyList() throws IOException {
+        assertTrue(ArticleCodec.decode(ArticleCodec.encode(Collections.<Article>emptyList())).isEmpty());
+    }
+
+    @Test
+    public void read_ofMappedFile() throws IOException {
+        List<Article> articles = parseFixture();
+        File file = writeFile(ArticleCodec.encode(articles));
+
+        assertArticlesEqual(articles, ArticleCodec.read(file));
+    }
+
+    @Test
+    public void articleCache_storesEncodedEntries() {
+        List<Article> articles = parseFixture();
+        ArticleCache cache = new ArticleCache(mDirectory, 60000, 60000, 1024 * 1024);
+        String url = "https://content.guardianapis.com/search?q=test";
+
+        cache.put(url, articles);
+
+        assertArticlesEqual(articles, cache.get(url).getArticles());
+        assertEquals(null, cache.get(url + "&page=2"));
+        assertEquals(articles.size(), cache.getSearchIndex().search("", "", 1000).size());
+    }
+
+    @Test
+    public void decode_rejectsOtherVersions() {
+        byte[] encoded = ArticleCodec.encode(parseFixture());
+        // The version is the varint after the magic
+        encoded[4] = (byte) (ArticleCodec.VERSION + 1);
+
+        assertRejected(encoded);
+    }
+
+    @Test
+    public void decode_rejectsTruncatedAndCorruptData() {
+        byte[] encoded = ArticleCodec.encode(parseFixture());
+
+        assertRejected(Arrays.copyOf(encoded, encoded.length / 2));
+        assertRejected(Arrays.copyOf(encoded, encoded.length + 1));
+        assertRejected(new byte[]{1, 2, 3, 4, 5, 6});
+        byte[] corrupt = encoded.clone();
+        // A huge article count right after the dictionary would be caught before allocating
+        Arrays.fill(corrupt, 5, corrupt.length, (byte) 0xFF);
+        assertRejected(corrupt);
+    }
+
+    @Test
+    public void hydration_isFasterThanParsingRawJson() throws Exception {
+        final byte[] json = TestFixtures.readFixture("guardian_search_200.json");
+        List<Article> articles = new ArrayList<>();
+        for (int copy = 0; copy < FIXTURE_COPIES; copy++) {
+            for (Article article : QueryUtils.extractResultsFromStream(new ByteArrayInputStream(json))) {
+                articles.add(new Article(article.getTitle(), article.getSection(), article.getDate(),
+                        article.getAuthor(), article.getUrl() + "?copy=" + copy));
+            }
+        }
+        final File file = writeFile(ArticleCodec.encode(articles));
+        final int articleCount = articles.size();
+
+        // The times are recorded in the results, only their ratio is checked as it holds on any machine
+        Benchmark benchmark = new Benchmark("article_codec", WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+        long jsonMedian = benchmark.measure("hydrate.json/" + articleCount, articleCount, new Benchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                List<Article> parsed = parseJson(json);
+                assertEquals(articleCount, parsed.size());
+                return parsed;
+            }
+        });
+        long codecMedian = benchmark.measure("hydrate.codec/" + articleCount, articleCount, new Benchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                List<Article> decoded = ArticleCodec.read(file);
+                assertEquals(articleCount, decoded.size());
+                return decoded;
+            }
+        });
+        benchmark.writeResults();
+        System.out.println(String.format("raw JSON: %,d B  encoded: %,d B", json.length * FIXTURE_COPIES,
+                file.length()));
+
+        assertTrue("median " + codecMedian + " ns, raw JSON " + jsonMedian + " ns", codecMedian < jsonMedian);
+    }
+
+    /**
+     * Parses the raw response once per copy, the same number of articles the codec hydrates.
+     */
+    private static List<Article> parseJson(byte[] json) throws IOException {
+        List<Article> articles = new ArrayList<>();
+        for (int copy = 0; copy < FIXTURE_COPIES; copy++) {
+            articles.addAll(QueryUtils.extractResultsFromStream(new ByteArrayInputStream(json)));
+        }
+        return articles;
+    }
+
+    private static List<Article> parseFixture() {
+        try {
+            return TestFixtures.readArticles("guardian_search_200.json");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private File writeFile(byte[] bytes) throws IOException {
+        File file = new File(mDirectory, "articles.bin");
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+        return file;
+    }
+
+    private static void assertRejected(byte[] bytes) {
+        try {
+            ArticleCodec.decode(bytes);
+            fail("Decoded invalid data");
+        } catch (IOException expected) {
+            // The data is rejected instead of decoded into wrong articles
+        }
+    }
+
+    private static void assertArticlesEqual(List<Article> expected, List<Article> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+            assertEquals(expected.get(i).getSection(), actual.get(i).getSection());
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+            assertEquals(expected.get(i).getTimeInMillis(), actual.get(i).getTimeInMillis());
+            assertEquals(expected.get(i).getDisplayDate(), actual.get(i).getDisplayDate());
+            assertEquals(expected.get(i).getAuthor(), actual.get(i).getAuthor());
+            assertEquals(expected.get(i).getUrl(), actual.get(i).getUrl());
+            assertEquals(expected.get(i).getThumbnailUrl(), actual.get(i).getThumbnailUrl());
+        }
+    }
+}
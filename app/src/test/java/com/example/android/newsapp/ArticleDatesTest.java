@@ -0,0 +1,113 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks ArticleDates against SimpleDateFormat and compares the per-bind cost of the old
+ * SimpleDateFormat code with reading the date formatted at parse time.
+ */
+public class ArticleDatesTest {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int MEASURED_ITERATIONS = 200000;
+
+    @Test
+    public void parseIsoDate_matchesSimpleDateFormat() throws ParseException {
+        SimpleDateFormat isoFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
+        isoFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        for (String date : new String[]{"2018-05-24T10:15:30Z", "1970-01-01T00:00:00Z", "2016-02-29T23:59:59Z", "1969-12-31T23:00:00Z"}) {
+            assertEquals(isoFormat.parse(date).getTime(), ArticleDates.parseIsoDate(date));
+        }
+    }
+
+    @Test
+    public void parseIsoDate_handlesFractionsAndOffsets() {
+        long expected = ArticleDates.parseIsoDate("2018-05-24T10:15:30Z");
+        assertEquals(expected + 250, ArticleDates.parseIsoDate("2018-05-24T10:15:30.25Z"));
+        assertEquals(expected, ArticleDates.parseIsoDate("2018-05-24T12:15:30+02:00"));
+        assertEquals(expected, ArticleDates.parseIsoDate("2018-05-24T07:45:30-02:30"));
+    }
+
+    @Test
+    public void parseIsoDate_rejectsInvalidDates() {
+        assertEquals(ArticleDates.UNKNOWN, ArticleDates.parseIsoDate(null));
+        assertEquals(ArticleDates.UNKNOWN, ArticleDates.parseIsoDate(""));
+        assertEquals(ArticleDates.UNKNOWN, ArticleDates.parseIsoDate("2018-13-24T10:15:30Z"));
+        assertEquals(ArticleDates.UNKNOWN, ArticleDates.parseIsoDate("2018-05-24 10:15:30Z"));
+        assertEquals("", ArticleDates.formatDisplayDate(ArticleDates.UNKNOWN));
+    }
+
+    @Test
+    public void formatDisplayDate_matchesSimpleDateFormat() {
+        SimpleDateFormat displayFormat = new SimpleDateFormat("MMM dd, yyyy");
+        for (String date : new String[]{"2018-05-24T10:15:30Z", "2018-01-01T00:30:00Z", "2016-02-29T23:59:59Z", "1999-12-31T12:00:00Z"}) {
+            long timeInMillis = ArticleDates.parseIsoDate(date);
+            assertEquals(displayFormat.format(new Date(timeInMillis)), ArticleDates.formatDisplayDate(timeInMillis));
+        }
+    }
+
+    @Test
+    public void formatIsoDate_reversesParseIsoDate() {
+        for (String date : new String[]{"2018-05-24T10:15:30Z", "1970-01-01T00:00:00Z", "2016-02-29T23:59:59Z", "1969-12-31T23:00:00Z"}) {
+            assertEquals(date, ArticleDates.formatIsoDate(ArticleDates.parseIsoDate(date)));
+        }
+        assertEquals("2018-05-24T10:15:30Z", ArticleDates.formatIsoDate(ArticleDates.parseIsoDate("2018-05-24T12:15:30+02:00")));
+        assertEquals(null, ArticleDates.formatIsoDate(ArticleDates.UNKNOWN));
+    }
+
+    @Test
+    public void bindCost_oldVersusPrecomputed() {
+        Article article = new Article("Title", "Technology", "2018-05-24T10:15:30Z", "Author", "https://www.theguardian.com/a");
+
+        int sink = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            sink += formatDatePerBind(article.getDate()).length() + article.getDisplayDate().length();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += formatDatePerBind(article.getDate()).length();
+        }
+        long oldNanos = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += article.getDisplayDate().length();
+        }
+        long newNanos = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            sink += ArticleDates.formatDisplayDate(ArticleDates.parseIsoDate(article.getDate())).length();
+        }
+        long parseStageNanos = (System.nanoTime() - start) / MEASURED_ITERATIONS;
+
+        System.out.println(String.format("date per bind: SimpleDateFormat %,d ns, precomputed %,d ns (parse stage %,d ns once per article) [%d]",
+                oldNanos, newNanos, parseStageNanos, sink % 10));
+        assertTrue(parseStageNanos < oldNanos);
+    }
+
+    /**
+     * The date formatting ArticleAdapter did on every bind before the date was precomputed.
+     */
+    private static String formatDatePerBind(String unformedDate) {
+        SimpleDateFormat resultDateFormater = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        try {
+            Date jsonDateToParse = resultDateFormater.parse(unformedDate);
+            SimpleDateFormat appDateFormater = new SimpleDateFormat("LLL dd, yyyy");
+            return appDateFormater.format(jsonDateToParse);
+        } catch (ParseException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the order of the results of ArticleRepository, that cancelling a load cancels its HTTP call, and
+ * that a refresh only delivers the new articles, against a local server that answers with the Guardian fixture.
+ */
+public class ArticleRepositoryTest {
+
+    private static final String PATH = "/search";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    /**
+     * Single I/O thread, so a blocked call shows up as a busy executor
+     */
+    private final ExecutorService mIoExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService mCpuExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * The results delivered to the callback, which runs on the worker threads here
+     */
+    private final BlockingQueue<Result> mResults = new LinkedBlockingQueue<>();
+
+    /**
+     * The results of loadNewerArticles()
+     */
+    private final BlockingQueue<ArticleRepository.NewerArticles> mNewerResults = new LinkedBlockingQueue<>();
+
+    /**
+     * Released to let the server answer a request that waits for it
+     */
+    private final CountDownLatch mReleaseResponse = new CountDownLatch(1);
+
+    /**
+     * Counted down when a request arrives at the server
+     */
+    private final CountDownLatch mRequestArrived = new CountDownLatch(1);
+
+    private HttpServer mServer;
+
+    private volatile boolean mHoldResponse;
+
+    @Before
+    public void setUp() throws IOException {
+        final byte[] response = TestFixtures.readFixture("guardian_search_200.json");
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequestArrived.countDown();
+                if (mHoldResponse) {
+                    try {
+                        mReleaseResponse.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                try {
+                    exchange.sendResponseHeaders(200, response.length);
+                    OutputStream output = exchange.getResponseBody();
+                    output.write(response);
+                    output.close();
+                } catch (IOException e) {
+                    // The client went away
+                }
+            }
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mReleaseResponse.countDown();
+        mServer.stop(0);
+        mIoExecutor.shutdownNow();
+        mCpuExecutor.shutdownNow();
+    }
+
+    @Test
+    public void loadArticles_deliversStaleCachedArticlesThenTheNetworkResults() throws Exception {
+        // Stale at once, a time-to-live of 0 would keep it fresh within the millisecond it was written
+        ArticleCache cache = newCache(-1);
+        List<Article> cached = Arrays.asList(
+                new Article("Cached", "World news", "2018-05-21T10:00:00Z", null, "https://www.theguardian.com/a"));
+        cache.put(serverUrl(), cached);
+
+        newRepository(cache).loadArticles(serverUrl(), null, "", newCallback());
+
+        Result first = mResults.poll(5, TimeUnit.SECONDS);
+        assertEquals(1, first.mArticles.size());
+        assertFalse(first.mComplete);
+        Result second = mResults.poll(5, TimeUnit.SECONDS);
+        assertEquals(200, second.mArticles.size());
+        assertTrue(second.mComplete);
+        // The network results replace the stale entry
+        assertEquals(200, cache.get(serverUrl()).getArticles().size());
+    }
+
+    @Test
+    public void loadArticles_deliversFreshCachedArticlesWithoutRequest() throws Exception {
+        ArticleCache cache = newCache(60000);
+        cache.put(serverUrl(), Arrays.asList(
+                new Article("Cached", "World news", "2018-05-21T10:00:00Z", null, "https://www.theguardian.com/a")));
+
+        newRepository(cache).loadArticles(serverUrl(), null, "", newCallback());
+
+        Result result = mResults.poll(5, TimeUnit.SECONDS);
+        assertEquals(1, result.mArticles.size());
+        assertTrue(result.mComplete);
+        assertEquals(1, mRequestArrived.getCount());
+    }
+
+    @Test
+    public void cancel_cancelsTheHttpCallInFlight() throws Exception {
+        mHoldResponse = true;
+        ArticleRepository repository = newRepository(newCache(60000));
+
+        CancellationToken load = repository.loadArticles(serverUrl(), null, "", newCallback());
+        assertTrue(mRequestArrived.await(5, TimeUnit.SECONDS));
+        long start = System.nanoTime();
+        load.cancel();
+
+        // The I/O thread is free again long before the server would answer
+        final CountDownLatch ioFree = new CountDownLatch(1);
+        mIoExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ioFree.countDown();
+            }
+        });
+        assertTrue(ioFree.await(2, TimeUnit.SECONDS));
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+        System.out.println("I/O thread free " + elapsedMs + " ms after cancel");
+
+        mReleaseResponse.countDown();
+        assertNull(mResults.poll(300, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void loadNewerArticles_deliversTheArticlesAboveTheShownOnes() throws Exception {
+        mReleaseResponse.countDown();
+        List<Article> articles = TestFixtures.readArticles("guardian_search_200.json");
+        List<Article> shown = articles.subList(2, 2 + ArticleQueries.PAGE_SIZE);
+        ArticleCache cache = newCache(60000);
+        ArticleRepository repository = newRepository(cache);
+
+        repository.loadNewerArticles(newerQuery(), serverUrl(), ArticleQueries.PAGE_SIZE, shown, newNewerCallback());
+
+        ArticleRepository.NewerArticles newerArticles = mNewerResults.poll(10, TimeUnit.SECONDS);
+        assertTrue(newerArticles.isComplete());
+        assertEquals(urlsOf(articles.subList(0, 2)), urlsOf(newerArticles.getArticles()));
+        // The cached first page is the one a full reload would show
+        assertEquals(urlsOf(articles.subList(0, ArticleQueries.PAGE_SIZE)), urlsOf(cache.get(serverUrl()).getArticles()));
+    }
+
+    @Test
+    public void loadNewerArticles_isIncompleteWhenTheShownArticlesAreTooOld() throws Exception {
+        mReleaseResponse.countDown();
+        List<Article> shown = Arrays.asList(
+                new Article("Old", "World news", "2010-05-21T10:00:00Z", null, "https://www.theguardian.com/old"));
+        ArticleCache cache = newCache(60000);
+        ArticleRepository repository = newRepository(cache);
+
+        repository.loadNewerArticles(newerQuery(), serverUrl(), ArticleQueries.PAGE_SIZE, shown, newNewerCallback());
+
+        ArticleRepository.NewerArticles newerArticles = mNewerResults.poll(10, TimeUnit.SECONDS);
+        assertFalse(newerArticles.isComplete());
+        // The articles repeated by the following pages are only delivered once
+        assertEquals(200, newerArticles.getArticles().size());
+        assertNull(cache.get(serverUrl()));
+    }
+
+    private ArticleRepository newRepository(ArticleCache cache) {
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        return new ArticleRepository(cache, null, null, new AppExecutors(mIoExecutor, mCpuExecutor, direct, null));
+    }
+
+    private ArticleCache newCache(long ttlMs) throws IOException {
+        return new ArticleCache(mTemporaryFolder.newFolder(), ttlMs, 3600000, 1024 * 1024);
+    }
+
+    private ArticleRepository.Callback<List<Article>> newCallback() {
+        return new ArticleRepository.Callback<List<Article>>() {
+            @Override
+            public void onResult(List<Article> articles, boolean complete) {
+                mResults.add(new Result(articles, complete));
+            }
+        };
+    }
+
+    private ArticleRepository.Callback<ArticleRepository.NewerArticles> newNewerCallback() {
+        return new ArticleRepository.Callback<ArticleRepository.NewerArticles>() {
+            @Override
+            public void onResult(ArticleRepository.NewerArticles newerArticles, boolean complete) {
+                mNewerResults.add(newerArticles);
+            }
+        };
+    }
+
+    /**
+     * Returns a query of the articles published since the fixture, sent to the local server
+     */
+    private GuardianQuery newerQuery() {
+        return GuardianQuery.newBuilder()
+                .searchUrl("http://127.0.0.1:" + mServer.getAddress().getPort() + PATH)
+                .fromDate(ArticleDates.parseIsoDate("2018-05-21T00:00:00Z"))
+                .pageSize(ArticleQueries.NEWER_PAGE_SIZE)
+                .build();
+    }
+
+    private static List<String> urlsOf(List<Article> articles) {
+        List<String> urls = new ArrayList<>();
+        for (Article article : articles) {
+            urls.add(article.getUrl());
+        }
+        return urls;
+    }
+
+    private String serverUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + PATH + "?q=test";
+    }
+
+    private static class Result {
+        final List<Article> mArticles;
+        final boolean mComplete;
+
+        Result(List<Article> articles, boolean complete) {
+            mArticles = articles;
+            mComplete = complete;
+        }
+    }
+}
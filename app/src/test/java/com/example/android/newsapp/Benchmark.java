@@ -0,0 +1,230 @@
+package com.example.android.newsapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs the JVM benchmarks the way JMH would, without its annotation processor: warm-up runs, then measured
+ * runs timed one by one, with the allocated bytes of the thread. Heap measurements report the bytes retained
+ * by a result instead. Results are printed and written as JSON to the directory of the "benchmark.output"
+ * system property (set by the build to app/build/benchmarks), one file per suite, so runs of different
+ * commits can be compared with a script.
+ */
+class Benchmark {
+
+    /**
+     * System property with the directory of the JSON results
+     */
+    static final String OUTPUT_PROPERTY = "benchmark.output";
+
+    /**
+     * Directory of the JSON results when the property isn't set, relative to the working directory
+     */
+    private static final String DEFAULT_OUTPUT = "build/benchmarks";
+
+    /**
+     * Work of a benchmark.
+     */
+    interface Operation {
+        /**
+         * Run the work once. The returned value is consumed so the work can't be optimized away.
+         */
+        Object run() throws Exception;
+    }
+
+    /**
+     * Name of the suite, also the name of its result file
+     */
+    private final String mSuite;
+
+    /**
+     * Number of runs before the measured ones
+     */
+    private final int mWarmupIterations;
+
+    /**
+     * Number of measured runs
+     */
+    private final int mMeasuredIterations;
+
+    /**
+     * Results of the suite so far, as JSON objects
+     */
+    private final List<String> mResults = new ArrayList<>();
+
+    /**
+     * Consumes the results of the runs
+     */
+    private volatile int mBlackhole;
+
+    /**
+     * Constructs a new Benchmark suite
+     *
+     * @param suite              is the name of the suite, also the name of its result file
+     * @param warmupIterations   is the number of runs before the measured ones
+     * @param measuredIterations is the number of measured runs
+     */
+    Benchmark(String suite, int warmupIterations, int measuredIterations) {
+        mSuite = suite;
+        mWarmupIterations = warmupIterations;
+        mMeasuredIterations = measuredIterations;
+    }
+
+    /**
+     * Measure an operation and add its result to the suite. Allocations are measured on the calling thread
+     * only, so the work of other threads (i.e. the executors of a load) isn't counted.
+     *
+     * @param name      is the name of the benchmark, i.e. "parse.stream/guardian_search_50"
+     * @param units     is the number of items an operation handles (i.e. articles), to also report the time per item
+     * @param operation is the work to measure
+     * @return the median time of an operation in nanoseconds
+     */
+    long measure(String name, int units, Operation operation) throws Exception {
+        for (int i = 0; i < mWarmupIterations; i++) {
+            consume(operation.run());
+        }
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long[] nanos = new long[mMeasuredIterations];
+        long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < mMeasuredIterations; i++) {
+            long start = System.nanoTime();
+            Object result = operation.run();
+            nanos[i] = System.nanoTime() - start;
+            consume(result);
+        }
+        long allocatedPerOp = (threadBean.getThreadAllocatedBytes(threadId) - bytesBefore) / mMeasuredIterations;
+
+        Arrays.sort(nanos);
+        long total = 0;
+        for (long value : nanos) {
+            total += value;
+        }
+        long mean = total / nanos.length;
+        long median = percentile(nanos, 50);
+
+        System.out.println(String.format(Locale.US, "%-45s median %,12d ns  p90 %,12d ns  %,10d ns/unit  %,12d B/op",
+                name, median, percentile(nanos, 90), median / Math.max(1, units), allocatedPerOp));
+
+        mResults.add(String.format(Locale.US, "{\"name\":%s,\"units\":%d,\"iterations\":%d,\"meanNs\":%d,"
+                        + "\"medianNs\":%d,\"p90Ns\":%d,\"p99Ns\":%d,\"minNs\":%d,\"maxNs\":%d,"
+                        + "\"medianNsPerUnit\":%d,\"allocatedBytesPerOp\":%d}",
+                quote(name), units, nanos.length, mean, median, percentile(nanos, 90), percentile(nanos, 99),
+                nanos[0], nanos[nanos.length - 1], median / Math.max(1, units), allocatedPerOp));
+        return median;
+    }
+
+    /**
+     * Measure the heap retained by the result of an operation, i.e. a list of articles, and add it to the suite.
+     * The heap is measured after garbage collections, so run it alone in the test for a stable value.
+     *
+     * @param name      is the name of the measurement, i.e. "heap.articles/10000"
+     * @param units     is the number of items of the result, to also report the bytes per item
+     * @param operation creates the result to measure
+     * @return the retained bytes
+     */
+    long measureHeap(String name, int units, Operation operation) throws Exception {
+        long before = usedHeapAfterGc();
+        Object result = operation.run();
+        long retained = usedHeapAfterGc() - before;
+        // Keeps the result reachable until it was measured
+        consume(result);
+
+        System.out.println(String.format(Locale.US, "%-45s retained %,12d B  %,10d B/unit",
+                name, retained, retained / Math.max(1, units)));
+
+        mResults.add(String.format(Locale.US, "{\"name\":%s,\"units\":%d,\"retainedBytes\":%d,"
+                        + "\"retainedBytesPerUnit\":%d}",
+                quote(name), units, retained, retained / Math.max(1, units)));
+        return retained;
+    }
+
+    /**
+     * Write the results of the suite to its JSON file and return the file.
+     */
+    File writeResults() throws IOException {
+        File directory = new File(System.getProperty(OUTPUT_PROPERTY, DEFAULT_OUTPUT));
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        File file = new File(directory, mSuite + ".json");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writer.write("{\"suite\":" + quote(mSuite)
+                    + ",\"timestamp\":" + System.currentTimeMillis()
+                    + ",\"jvm\":" + quote(System.getProperty("java.vm.name") + " " + System.getProperty("java.version"))
+                    + ",\"os\":" + quote(System.getProperty("os.name") + " " + System.getProperty("os.arch"))
+                    + ",\"processors\":" + Runtime.getRuntime().availableProcessors()
+                    + ",\"results\":[\n");
+            for (int i = 0; i < mResults.size(); i++) {
+                writer.write(mResults.get(i));
+                writer.write(i < mResults.size() - 1 ? ",\n" : "\n");
+            }
+            writer.write("]}\n");
+        } finally {
+            writer.close();
+        }
+        System.out.println("Benchmark results written to " + file.getAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Returns the used heap once the garbage collections stop freeing memory.
+     */
+    private static long usedHeapAfterGc() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            Thread.sleep(20);
+            long current = runtime.totalMemory() - runtime.freeMemory();
+            if (current >= used) {
+                return current;
+            }
+            used = current;
+        }
+        return used;
+    }
+
+    private void consume(Object result) {
+        mBlackhole += result != null ? result.hashCode() : 0;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the sorted values are.
+     */
+    private static long percentile(long[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Returns the string as a JSON string literal.
+     */
+    private static String quote(String value) {
+        StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+}
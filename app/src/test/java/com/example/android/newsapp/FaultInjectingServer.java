@@ -0,0 +1,182 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in for the Guardian API that answers with scripted faults: error codes, Retry-After headers,
+ * dropped connections, bodies cut short and latency. Once the script is used up, it answers with the default
+ * response.
+ */
+class FaultInjectingServer {
+
+    private static final String PATH = "/search";
+
+    /**
+     * One scripted answer.
+     */
+    static class Fault {
+
+        private int mCode = 200;
+        private byte[] mBody = new byte[0];
+        private final Map<String, String> mHeaders = new LinkedHashMap<>();
+        private long mDelayMs;
+        private boolean mDisconnect;
+        private int mSentBytes = -1;
+
+        /**
+         * Returns an answer with the given code and body.
+         */
+        static Fault respond(int code, byte[] body) {
+            Fault fault = new Fault();
+            fault.mCode = code;
+            fault.mBody = body;
+            return fault;
+        }
+
+        /**
+         * Returns an answer with the given code and no body.
+         */
+        static Fault respond(int code) {
+            return respond(code, new byte[0]);
+        }
+
+        /**
+         * Returns an answer that closes the connection without a response.
+         */
+        static Fault disconnect() {
+            Fault fault = new Fault();
+            fault.mDisconnect = true;
+            return fault;
+        }
+
+        /**
+         * Returns an answer that announces the whole body but closes the connection after its first bytes.
+         */
+        static Fault truncate(byte[] body, int sentBytes) {
+            Fault fault = respond(200, body);
+            fault.mSentBytes = sentBytes;
+            return fault;
+        }
+
+        /**
+         * Adds a header to the answer.
+         */
+        Fault header(String name, String value) {
+            mHeaders.put(name, value);
+            return this;
+        }
+
+        /**
+         * Waits before answering.
+         */
+        Fault delay(long delayMs) {
+            mDelayMs = delayMs;
+            return this;
+        }
+    }
+
+    private final HttpServer mServer;
+
+    private final ConcurrentLinkedQueue<Fault> mScript = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+
+    private volatile Fault mDefault;
+
+    /**
+     * Starts a server on a free local port.
+     *
+     * @param defaultFault is the answer once the script is used up
+     */
+    FaultInjectingServer(Fault defaultFault) throws IOException {
+        mDefault = defaultFault;
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext(PATH, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequestCount.incrementAndGet();
+                Fault fault = mScript.poll();
+                answer(exchange, fault != null ? fault : mDefault);
+            }
+        });
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+    }
+
+    /**
+     * Adds answers to the end of the script.
+     */
+    void enqueue(Fault... faults) {
+        for (Fault fault : faults) {
+            mScript.add(fault);
+        }
+    }
+
+    /**
+     * Changes the answer once the script is used up.
+     */
+    void setDefault(Fault defaultFault) {
+        mDefault = defaultFault;
+    }
+
+    /**
+     * Returns the number of requests received.
+     */
+    int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * Returns the URL of a search on this server.
+     */
+    String getUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + PATH + "?q=test";
+    }
+
+    void stop() {
+        mServer.stop(0);
+    }
+
+    private static void answer(HttpExchange exchange, Fault fault) throws IOException {
+        if (fault.mDelayMs > 0) {
+            try {
+                Thread.sleep(fault.mDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (fault.mDisconnect) {
+            exchange.close();
+            return;
+        }
+        for (Map.Entry<String, String> header : fault.mHeaders.entrySet()) {
+            exchange.getResponseHeaders().add(header.getKey(), header.getValue());
+        }
+        try {
+            exchange.sendResponseHeaders(fault.mCode, fault.mBody.length == 0 ? -1 : fault.mBody.length);
+            OutputStream output = exchange.getResponseBody();
+            if (fault.mSentBytes >= 0) {
+                output.write(fault.mBody, 0, fault.mSentBytes);
+                output.flush();
+                // Closing the exchange before the announced length drops the connection
+                exchange.close();
+                return;
+            }
+            output.write(fault.mBody);
+            output.close();
+        } catch (IOException e) {
+            // The client gave up, i.e. after a read timeout
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FeedFetcherTest {
+
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(4);
+
+    private final ScheduledExecutorService mTimer = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mTimer.shutdownNow();
+    }
+
+    @Test
+    public void fetch_runsRequestsInParallel() {
+        DelayedSource source = new DelayedSource(300, null);
+        FeedFetcher fetcher = new FeedFetcher(mExecutor, mTimer, source);
+
+        List<Article> articles = fetch(fetcher, Arrays.asList("world", "technology", "science", "film"), 5000, null, null);
+
+        assertEquals(4, articles.size());
+        assertEquals(4, source.getMaxRunningCount());
+    }
+
+    @Test
+    public void fetch_deliversPartialResultsWhenRequestTimesOut() {
+        FeedFetcher fetcher = new FeedFetcher(mExecutor, mTimer, new DelayedSource(50, "film"));
+        final List<Integer> partialCounts = Collections.synchronizedList(new ArrayList<Integer>());
+
+        long start = System.nanoTime();
+        List<Article> articles = fetch(fetcher, Arrays.asList("world", "film", "science"), 500, partialCounts, null);
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(2, articles.size());
+        assertEquals(Arrays.asList(1, 2), partialCounts);
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 2000);
+    }
+
+    @Test
+    public void fetch_cancelsTheRunningRequests() {
+        final AtomicInteger cancelledCount = new AtomicInteger();
+        FeedFetcher fetcher = new FeedFetcher(mExecutor, mTimer, new FeedFetcher.Source() {
+            @Override
+            public List<Article> fetch(String url, CancellationToken cancellationToken) {
+                // Stands for a blocked HTTP call, which the token cancels
+                while (!cancellationToken.isCancelled()) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        return null;
+                    }
+                }
+                cancelledCount.incrementAndGet();
+                return null;
+            }
+        });
+        final CancellationToken cancellationToken = new CancellationToken();
+        Executors.newSingleThreadScheduledExecutor().schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancellationToken.cancel();
+            }
+        }, 200, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        List<Article> articles = fetch(fetcher, Arrays.asList("world", "film", "science"), 5000, null, cancellationToken);
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertTrue(articles.isEmpty());
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 1000);
+        mExecutor.shutdown();
+        try {
+            assertTrue(mExecutor.awaitTermination(1, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        assertEquals(3, cancelledCount.get());
+    }
+
+    @Test
+    public void fetch_onALimitedExecutor_runsAtMostTheLimitAtATime() {
+        DelayedSource source = new DelayedSource(100, null);
+        FeedFetcher fetcher = new FeedFetcher(AppExecutors.limit(mExecutor, 2), mTimer, source);
+
+        List<Article> articles = fetch(fetcher, Arrays.asList("world", "technology", "science", "film", "games"),
+                5000, null, null);
+
+        assertEquals(5, articles.size());
+        assertEquals(2, source.getMaxRunningCount());
+    }
+
+    @Test
+    public void fetch_returnsNullWhenEveryRequestFails() {
+        FeedFetcher fetcher = new FeedFetcher(mExecutor, mTimer, new FeedFetcher.Source() {
+            @Override
+            public List<Article> fetch(String url, CancellationToken cancellationToken) {
+                return null;
+            }
+        });
+
+        assertNull(fetch(fetcher, Arrays.asList("world", "film"), 5000, null, null));
+        // A query without results is not a failure
+        assertTrue(fetch(new FeedFetcher(mExecutor, mTimer, new FeedFetcher.Source() {
+            @Override
+            public List<Article> fetch(String url, CancellationToken cancellationToken) {
+                return url.equals("world") ? Collections.<Article>emptyList() : null;
+            }
+        }), Arrays.asList("world", "film"), 5000, null, null).isEmpty());
+    }
+
+    @Test
+    public void fetch_mergesByUrlNewestFirst() {
+        FeedFetcher fetcher = new FeedFetcher(mExecutor, mTimer, new FeedFetcher.Source() {
+            @Override
+            public List<Article> fetch(String url, CancellationToken cancellationToken) {
+                if (url.equals("first")) {
+                    return Arrays.asList(article("a", "2018-05-20T10:00:00Z"), article("b", "2018-05-22T10:00:00Z"));
+                }
+                return Arrays.asList(article("b", "2018-05-22T10:00:00Z"), article("c", "2018-05-21T10:00:00Z"));
+            }
+        });
+
+        List<Article> articles = fetch(fetcher, Arrays.asList("first", "second"), 5000, null, null);
+
+        assertEquals(3, articles.size());
+        assertEquals("b", articles.get(0).getUrl());
+        assertEquals("c", articles.get(1).getUrl());
+        assertEquals("a", articles.get(2).getUrl());
+    }
+
+    /**
+     * Run a fetch and wait for its result.
+     *
+     * @param partialCounts receives the number of articles of each partial result, may be null
+     */
+    private static List<Article> fetch(FeedFetcher fetcher, List<String> urls, long timeoutMs,
+                                       final List<Integer> partialCounts, CancellationToken cancellationToken) {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<List<Article>> results = Collections.synchronizedList(new ArrayList<List<Article>>());
+        fetcher.fetch(urls, timeoutMs, new FeedFetcher.Listener() {
+            @Override
+            public void onPartialResult(List<Article> articles, int completedCount, int totalCount) {
+                if (partialCounts != null) {
+                    partialCounts.add(articles.size());
+                }
+            }
+
+            @Override
+            public void onResult(List<Article> articles) {
+                results.add(articles);
+                done.countDown();
+            }
+        }, cancellationToken);
+        try {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        assertEquals(1, results.size());
+        return results.get(0);
+    }
+
+    private static Article article(String url, String date) {
+        return new Article("Title " + url, "Section", date, null, url);
+    }
+
+    /**
+     * Returns one article per URL after a delay, and hangs on the slow URL until its call is cancelled.
+     * Counts the requests running at the same time.
+     */
+    private static class DelayedSource implements FeedFetcher.Source {
+
+        private final long mDelayMs;
+        private final String mSlowUrl;
+        private final AtomicInteger mRunningCount = new AtomicInteger();
+        private final AtomicInteger mMaxRunningCount = new AtomicInteger();
+
+        DelayedSource(long delayMs, String slowUrl) {
+            mDelayMs = delayMs;
+            mSlowUrl = slowUrl;
+        }
+
+        @Override
+        public List<Article> fetch(String url, CancellationToken cancellationToken) {
+            int runningCount = mRunningCount.incrementAndGet();
+            while (true) {
+                int maxRunningCount = mMaxRunningCount.get();
+                if (runningCount <= maxRunningCount || mMaxRunningCount.compareAndSet(maxRunningCount, runningCount)) {
+                    break;
+                }
+            }
+            try {
+                if (cancellationToken.await(url.equals(mSlowUrl) ? 10000 : mDelayMs)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                return null;
+            } finally {
+                mRunningCount.decrementAndGet();
+            }
+            return Collections.singletonList(article(url, "2018-05-24T10:00:00Z"));
+        }
+
+        /**
+         * Returns the largest number of requests that ran at the same time.
+         */
+        int getMaxRunningCount() {
+            return mMaxRunningCount.get();
+        }
+    }
+}
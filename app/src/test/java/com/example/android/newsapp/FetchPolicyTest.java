@@ -0,0 +1,205 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the decisions of FetchPolicy on simulated links, and its classification of the throughput measured
+ * on real requests over the bandwidth profiles of ReplayServer.
+ */
+public class FetchPolicyTest {
+
+    /**
+     * A link the test changes at will
+     */
+    private final SimulatedConnectionSource mConnectionSource = new SimulatedConnectionSource();
+
+    private final FetchPolicy mPolicy = new FetchPolicy(mConnectionSource);
+
+    @Test
+    public void unmeasuredLink_isClassifiedByItsType() {
+        mConnectionSource.set(FetchPolicy.ConnectionType.CELLULAR_2G, true, false);
+        assertEquals(FetchPolicy.LinkClass.POOR, mPolicy.getLinkClass());
+        assertEquals(FetchPolicy.SMALL_PAGE_SIZE, mPolicy.getPageSize());
+        assertEquals(0, mPolicy.getBodyPrefetchCount());
+        assertEquals(0, mPolicy.getThumbnailPrefetchCount());
+
+        mConnectionSource.set(FetchPolicy.ConnectionType.CELLULAR_3G, true, false);
+        assertEquals(FetchPolicy.LinkClass.MODERATE, mPolicy.getLinkClass());
+        assertEquals(ArticleQueries.PAGE_SIZE, mPolicy.getPageSize());
+        assertEquals(0, mPolicy.getBodyPrefetchCount());
+        assertEquals(FetchPolicy.THUMBNAIL_PREFETCH_COUNT / 2, mPolicy.getThumbnailPrefetchCount());
+
+        mConnectionSource.set(FetchPolicy.ConnectionType.WIFI, false, false);
+        assertEquals(FetchPolicy.LinkClass.GOOD, mPolicy.getLinkClass());
+        assertEquals(ArticleBodyPrefetcher.PREFETCH_COUNT, mPolicy.getBodyPrefetchCount());
+        assertEquals(FetchPolicy.SYNC_INTERVAL_MS, mPolicy.getSyncIntervalMs());
+
+        mConnectionSource.set(FetchPolicy.ConnectionType.NONE, false, false);
+        assertEquals(FetchPolicy.LinkClass.OFFLINE, mPolicy.getLinkClass());
+    }
+
+    @Test
+    public void meteredLink_prefetchesFewerBodiesAndSyncsLessOften() {
+        mConnectionSource.set(FetchPolicy.ConnectionType.CELLULAR_4G, true, false);
+
+        assertEquals(FetchPolicy.METERED_BODY_PREFETCH_COUNT, mPolicy.getBodyPrefetchCount());
+        assertEquals(FetchPolicy.THUMBNAIL_PREFETCH_COUNT, mPolicy.getThumbnailPrefetchCount());
+        assertEquals(FetchPolicy.METERED_SYNC_INTERVAL_MS, mPolicy.getSyncIntervalMs());
+    }
+
+    @Test
+    public void dataSaver_turnsThePrefetchOffEvenOnAGoodLink() {
+        mConnectionSource.set(FetchPolicy.ConnectionType.WIFI, true, true);
+        measure(5, 3000000);
+
+        assertEquals(FetchPolicy.LinkClass.EXCELLENT, mPolicy.getLinkClass());
+        assertEquals(FetchPolicy.SMALL_PAGE_SIZE, mPolicy.getPageSize());
+        assertEquals(0, mPolicy.getBodyPrefetchCount());
+        assertEquals(0, mPolicy.getThumbnailPrefetchCount());
+        assertEquals(FetchPolicy.DATA_SAVER_SYNC_INTERVAL_MS, mPolicy.getSyncIntervalMs());
+    }
+
+    @Test
+    public void measuredThroughput_overridesTheLinkType() {
+        // A congested Wi-Fi
+        mConnectionSource.set(FetchPolicy.ConnectionType.WIFI, false, false);
+        measure(1, 20000);
+        assertEquals(FetchPolicy.LinkClass.GOOD, mPolicy.getLinkClass());
+
+        measure(1, 20000);
+        assertEquals(FetchPolicy.LinkClass.POOR, mPolicy.getLinkClass());
+        assertEquals(FetchPolicy.SMALL_PAGE_SIZE, mPolicy.getPageSize());
+        assertEquals(FetchPolicy.METERED_SYNC_INTERVAL_MS, mPolicy.getSyncIntervalMs());
+    }
+
+    @Test
+    public void linkChange_dropsTheMeasures() {
+        mConnectionSource.set(FetchPolicy.ConnectionType.WIFI, false, false);
+        measure(5, 20000);
+        assertEquals(FetchPolicy.LinkClass.POOR, mPolicy.getLinkClass());
+
+        mConnectionSource.set(FetchPolicy.ConnectionType.CELLULAR_4G, true, false);
+        assertEquals(FetchPolicy.LinkClass.GOOD, mPolicy.getLinkClass());
+
+        measure(1, 20000);
+        assertEquals(1, mPolicy.getEstimator().getSampleCount());
+    }
+
+    @Test
+    public void estimator_followsTheRecentSamples() {
+        BandwidthEstimator estimator = new BandwidthEstimator(0.5);
+        // Mostly latency, no throughput sample
+        estimator.addSample(1000, 50, 100);
+        assertEquals(0, estimator.getSampleCount());
+        assertEquals(100, estimator.getLatencyMs(), 0.001);
+
+        estimator.addSample(100000, 1000, 300);
+        estimator.addSample(300000, 1000, 300);
+        assertEquals(2, estimator.getSampleCount());
+        assertEquals(200000, estimator.getBytesPerSecond(), 0.001);
+        assertEquals(250, estimator.getLatencyMs(), 0.001);
+
+        // Faster than the clock tells, only a lower bound
+        estimator.reset();
+        estimator.addSample(100000, 0, 10);
+        assertEquals(100000 * 1000.0 / BandwidthEstimator.MIN_SAMPLE_MS, estimator.getBytesPerSecond(), 0.001);
+
+        // Small bodies count once they add up to one sample
+        estimator.reset();
+        estimator.addSample(1000, 50, 100);
+        estimator.addSample(1500, 50, 100);
+        assertEquals(0, estimator.getSampleCount());
+        estimator.addSample(1596, 100, 100);
+        assertEquals(1, estimator.getSampleCount());
+        assertEquals(4096 * 1000.0 / 200, estimator.getBytesPerSecond(), 0.001);
+    }
+
+    @Test
+    public void simulatedProfiles_areClassifiedFromTheirRequests() throws IOException {
+        ReplayServer server = new ReplayServer();
+        QueryUtils.addRequestMetricsListener(mPolicy);
+        try {
+            String url = server.replay("guardian_search_200",
+                    TestFixtures.readFixture("guardian_search_200.json"));
+            mConnectionSource.set(FetchPolicy.ConnectionType.OTHER, false, false);
+
+            assertEquals(FetchPolicy.LinkClass.POOR, classify(server, url, ReplayServer.Profile.SLOW_3G));
+            assertEquals(FetchPolicy.LinkClass.GOOD, classify(server, url, ReplayServer.Profile.LTE));
+            assertTrue(classify(server, url, ReplayServer.Profile.WIFI).compareTo(FetchPolicy.LinkClass.GOOD) >= 0);
+        } finally {
+            QueryUtils.removeRequestMetricsListener(mPolicy);
+            server.stop();
+        }
+    }
+
+    @Test
+    public void listPages_measureASlowLink() throws IOException {
+        ReplayServer server = new ReplayServer();
+        QueryUtils.addRequestMetricsListener(mPolicy);
+        try {
+            // A first page of the list, ~1.2 KB gzipped
+            String url = server.replay("guardian_search_10_byline", GuardianQueryTest.toBylineResponse(
+                    TestFixtures.readFixture("guardian_search_10.json")));
+            server.setProfile(ReplayServer.Profile.SLOW_3G);
+            mConnectionSource.set(FetchPolicy.ConnectionType.CELLULAR_3G, true, false);
+
+            int requestCount = 0;
+            while (mPolicy.getEstimator().getSampleCount() < FetchPolicy.MIN_SAMPLES && requestCount < 20) {
+                assertEquals(10, QueryUtils.fetchArticlesData(url).size());
+                requestCount++;
+            }
+
+            assertTrue("measured after " + requestCount + " requests", requestCount < 20);
+            assertEquals(FetchPolicy.LinkClass.POOR, mPolicy.getLinkClass());
+        } finally {
+            QueryUtils.removeRequestMetricsListener(mPolicy);
+            server.stop();
+        }
+    }
+
+    /**
+     * Fetch the URL over the profile until the policy measured it, and return its class.
+     */
+    private FetchPolicy.LinkClass classify(ReplayServer server, String url, ReplayServer.Profile profile) {
+        server.setProfile(profile);
+        // A new link for the policy, so the measures of the previous profile are dropped
+        mConnectionSource.set(mConnectionSource.getConnection().getType() == FetchPolicy.ConnectionType.OTHER
+                ? FetchPolicy.ConnectionType.ETHERNET : FetchPolicy.ConnectionType.OTHER, false, false);
+        for (int i = 0; i < FetchPolicy.MIN_SAMPLES; i++) {
+            assertEquals(200, QueryUtils.fetchArticlesData(url).size());
+        }
+        BandwidthEstimator estimator = mPolicy.getEstimator();
+        FetchPolicy.LinkClass linkClass = mPolicy.getLinkClass();
+        System.out.println(String.format("%-8s %,10.0f B/s  latency %,6.0f ms  %s",
+                profile.mName, estimator.getBytesPerSecond(), estimator.getLatencyMs(), linkClass));
+        return linkClass;
+    }
+
+    /**
+     * Report requests of 1 second with the given throughput to the policy.
+     */
+    private void measure(int count, long bytesPerSecond) {
+        for (int i = 0; i < count; i++) {
+            mPolicy.addSample(bytesPerSecond, 1000, 50);
+        }
+    }
+
+    private static class SimulatedConnectionSource implements FetchPolicy.ConnectionSource {
+
+        private volatile FetchPolicy.Connection mConnection = FetchPolicy.Connection.NONE;
+
+        void set(FetchPolicy.ConnectionType type, boolean metered, boolean dataSaver) {
+            mConnection = new FetchPolicy.Connection(type, metered, dataSaver);
+        }
+
+        @Override
+        public FetchPolicy.Connection getConnection() {
+            return mConnection;
+        }
+    }
+}
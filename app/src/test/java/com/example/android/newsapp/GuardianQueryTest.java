@@ -0,0 +1,195 @@
+package com.example.android.newsapp;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the URLs built by GuardianQuery, and measures the payload and parse time of the recorded
+ * responses with the contributor tags (before) and with the byline field the list now asks for (after).
+ */
+public class GuardianQueryTest {
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 200;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void toUrl_writesTheDeclaredParametersInAFixedOrder() {
+        GuardianQuery query = GuardianQuery.newBuilder()
+                .apiKey("test")
+                .pageSize(20)
+                .page(2)
+                .fields(GuardianQuery.Field.THUMBNAIL, GuardianQuery.Field.BYLINE)
+                .searchTerm("climate change")
+                .fromDate(ArticleDates.parseIsoDate("2018-05-24T23:47:23Z"))
+                .section("environment")
+                .build();
+
+        assertEquals("https://content.guardianapis.com/search?section=environment&order-by=newest"
+                        + "&from-date=2018-05-24&q=climate%20change&show-fields=byline,thumbnail&page=2&page-size=20&api-key=test",
+                query.toUrl());
+    }
+
+    @Test
+    public void toUrl_leavesOutUnsetParameters() {
+        GuardianQuery query = GuardianQuery.newBuilder()
+                .section("")
+                .searchTerm(null)
+                .orderBy(GuardianQuery.OrderBy.RELEVANCE)
+                .tags(GuardianQuery.Tag.CONTRIBUTOR)
+                .build();
+
+        assertEquals("https://content.guardianapis.com/search?order-by=relevance&show-tags=contributor&page=1&page-size=10",
+                query.toUrl());
+    }
+
+    @Test
+    public void toUrl_encodesValues() {
+        String url = GuardianQuery.newBuilder().searchTerm("café & \"tea\"/+?").build().toUrl();
+
+        assertTrue(url, url.contains("q=caf%C3%A9%20%26%20%22tea%22%2F%2B%3F&"));
+    }
+
+    @Test
+    public void buildUpon_keepsEverythingButWhatChanges() {
+        GuardianQuery first = GuardianQuery.newBuilder()
+                .searchTerm("storm")
+                .fields(GuardianQuery.Field.BYLINE)
+                .pageSize(20)
+                .build();
+
+        GuardianQuery second = first.buildUpon().page(2).build();
+
+        assertEquals(first.toUrl().replace("page=1", "page=2"), second.toUrl());
+        assertEquals(1, first.getPage());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pageSize_isLimitedByTheApi() {
+        GuardianQuery.newBuilder().pageSize(201);
+    }
+
+    @Test
+    public void bylineResponse_givesTheSameArticles() throws IOException {
+        byte[] tagsResponse = TestFixtures.readFixture("guardian_search_50.json");
+        byte[] bylineResponse = toBylineResponse(tagsResponse);
+
+        List<Article> before = QueryUtils.extractResultsFromStream(new ByteArrayInputStream(tagsResponse));
+        List<Article> after = QueryUtils.extractResultsFromStream(new ByteArrayInputStream(bylineResponse));
+
+        assertEquals(before.size(), after.size());
+        for (int i = 0; i < before.size(); i++) {
+            assertEquals(before.get(i).getTitle(), after.get(i).getTitle());
+            assertEquals(before.get(i).getUrl(), after.get(i).getUrl());
+            assertEquals(before.get(i).getDate(), after.get(i).getDate());
+            // The byline is split into the same contributors as the tags
+            assertTrue(before.get(i).hasSameContributors(after.get(i)));
+            assertEquals(before.get(i).getAuthor(), after.get(i).getAuthor());
+        }
+    }
+
+    @Test
+    public void splitByline_findsEachContributor() {
+        assertEquals(Arrays.asList("Alex Hern"), namesOf(QueryUtils.splitByline("Alex Hern")));
+        assertEquals(Arrays.asList("Alex Hern", "Samuel Gibbs"),
+                namesOf(QueryUtils.splitByline("Alex Hern and Samuel Gibbs")));
+        assertEquals(Arrays.asList("Alex Hern", "Samuel Gibbs", "Dan Sabbagh"),
+                namesOf(QueryUtils.splitByline("Alex Hern, Samuel Gibbs and Dan Sabbagh")));
+        assertEquals(Arrays.asList("Alex Hern", "Samuel Gibbs", "Dan Sabbagh"),
+                namesOf(QueryUtils.splitByline(" Alex Hern, Samuel Gibbs, and Dan Sabbagh ")));
+        assertEquals(Arrays.asList("Alex Hern", "Samuel Gibbs"), namesOf(QueryUtils.splitByline("Alex Hern & Samuel Gibbs")));
+        // Names holding no separator keep their "and" inside a word
+        assertEquals(Arrays.asList("Sandra Anderson"), namesOf(QueryUtils.splitByline("Sandra Anderson")));
+        assertNull(QueryUtils.splitByline("  "));
+        // A single contributor shares the id array of the contributor
+        assertSame(QueryUtils.splitByline("Alex Hern"), QueryUtils.splitByline("Alex Hern"));
+    }
+
+    @Test
+    public void bylineResponse_isSmallerAndFasterToParse() throws IOException {
+        for (String fixture : new String[]{"guardian_search_10.json", "guardian_search_50.json", "guardian_search_200.json"}) {
+            byte[] tagsResponse = TestFixtures.readFixture(fixture);
+            byte[] bylineResponse = toBylineResponse(tagsResponse);
+
+            long tagsNanos = measureParse(tagsResponse);
+            long bylineNanos = measureParse(bylineResponse);
+
+            System.out.println(String.format("%s  show-tags=contributor: %,d B (%,d B gzip) %,d ns/parse"
+                            + "  show-fields=byline: %,d B (%,d B gzip) %,d ns/parse",
+                    fixture, tagsResponse.length, TestFixtures.gzip(tagsResponse).length, tagsNanos,
+                    bylineResponse.length, TestFixtures.gzip(bylineResponse).length, bylineNanos));
+
+            assertTrue(bylineResponse.length < tagsResponse.length);
+            assertTrue(TestFixtures.gzip(bylineResponse).length < TestFixtures.gzip(tagsResponse).length);
+        }
+    }
+
+    private static List<String> namesOf(int[] contributorIds) {
+        List<String> names = new ArrayList<>();
+        for (int id : contributorIds) {
+            names.add(Contributor.forId(id).getName());
+        }
+        return names;
+    }
+
+    /**
+     * Returns the median time to parse the response, in nanoseconds.
+     */
+    private static long measureParse(byte[] response) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response));
+        }
+        long[] nanos = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response));
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos[MEASURED_ITERATIONS / 2];
+    }
+
+    /**
+     * Returns the response the same query gets with show-fields=byline instead of show-tags=contributor:
+     * the tags array of each result is replaced with a fields object holding the byline, whose names are joined
+     * as on the Guardian ("Alex Hern, Samuel Gibbs and Dan Sabbagh").
+     */
+    static byte[] toBylineResponse(byte[] tagsResponse) {
+        JsonObject root = new JsonParser().parse(new String(tagsResponse, UTF_8)).getAsJsonObject();
+        for (JsonElement element : root.getAsJsonObject("response").getAsJsonArray("results")) {
+            JsonObject result = element.getAsJsonObject();
+            JsonArray tags = result.remove("tags").getAsJsonArray();
+            if (tags.size() > 0) {
+                StringBuilder byline = new StringBuilder();
+                for (int i = 0; i < tags.size(); i++) {
+                    byline.append(i == 0 ? "" : i == tags.size() - 1 ? " and " : ", ")
+                            .append(tags.get(i).getAsJsonObject().get("webTitle").getAsString());
+                }
+                JsonObject fields = new JsonObject();
+                fields.addProperty("byline", byline.toString());
+                result.add("fields", fields);
+            }
+        }
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        return gson.toJson(root).getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs QueryUtils against a local stand-in for the Guardian API that answers conditional requests.
+ */
+public class HttpCacheTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private HttpServer mServer;
+    private HttpCache mHttpCache;
+    private final ExecutorService mServerExecutor = Executors.newCachedThreadPool();
+    private byte[] mResponse;
+    private String mCacheControl = "max-age=0";
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final List<RequestMetrics> mMetrics = new ArrayList<>();
+    private final RequestMetrics.Listener mMetricsListener = new RequestMetrics.Listener() {
+        @Override
+        public void onRequestFinished(RequestMetrics metrics) {
+            mMetrics.add(metrics);
+        }
+    };
+
+    @Before
+    public void setUp() throws IOException {
+        mResponse = TestFixtures.readFixture("guardian_search_50.json");
+
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mRequestCount.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.getResponseHeaders().set("Cache-Control", mCacheControl);
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+
+                byte[] body = mResponse;
+                String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    body = TestFixtures.gzip(mResponse);
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(body);
+                output.close();
+            }
+        });
+        mServer.createContext("/slow", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                // Send the body slowly, like a bad mobile connection
+                mRequestCount.incrementAndGet();
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                exchange.sendResponseHeaders(200, mResponse.length);
+                OutputStream output = exchange.getResponseBody();
+                try {
+                    for (int offset = 0; offset < mResponse.length; offset += 1024) {
+                        output.write(mResponse, offset, Math.min(1024, mResponse.length - offset));
+                        output.flush();
+                        Thread.sleep(100);
+                    }
+                } catch (InterruptedException | IOException e) {
+                    // The client went away or the test is over
+                }
+                exchange.close();
+            }
+        });
+        mServer.setExecutor(mServerExecutor);
+        mServer.start();
+
+        mHttpCache = new HttpCache(mTemporaryFolder.newFolder("http"), 1024 * 1024);
+        QueryUtils.setHttpCache(mHttpCache);
+        QueryUtils.addRequestMetricsListener(mMetricsListener);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+        mServerExecutor.shutdownNow();
+        QueryUtils.setHttpCache(null);
+        QueryUtils.removeRequestMetricsListener(mMetricsListener);
+    }
+
+    @Test
+    public void firstRequest_isGzipped() {
+        List<Article> articles = QueryUtils.fetchArticlesData(url());
+
+        assertEquals(50, articles.size());
+        RequestMetrics metrics = mMetrics.get(0);
+        assertEquals(200, metrics.getResponseCode());
+        assertFalse(metrics.isFromCache());
+        assertEquals(mResponse.length, metrics.getBodyBytes());
+        assertTrue(metrics.getBytesReceived() < metrics.getBodyBytes());
+    }
+
+    @Test
+    public void repeatedRequest_isAnsweredWithNotModified() {
+        List<Article> first = QueryUtils.fetchArticlesData(url());
+        List<Article> second = QueryUtils.fetchArticlesData(url());
+
+        assertEquals(2, mRequestCount.get());
+        assertEquals(first.size(), second.size());
+        assertEquals(first.get(0).getUrl(), second.get(0).getUrl());
+        RequestMetrics metrics = mMetrics.get(1);
+        assertEquals(304, metrics.getResponseCode());
+        assertTrue(metrics.isFromCache());
+        assertEquals(mResponse.length, metrics.getBytesSaved());
+    }
+
+    @Test
+    public void freshResponse_isServedWithoutRequest() {
+        mCacheControl = "max-age=60";
+
+        QueryUtils.fetchArticlesData(url());
+        List<Article> second = QueryUtils.fetchArticlesData(url());
+
+        assertEquals(1, mRequestCount.get());
+        assertEquals(50, second.size());
+        assertEquals(0, mMetrics.get(1).getResponseCode());
+    }
+
+    @Test
+    public void noStoreResponse_isNotCached() {
+        mCacheControl = "no-store";
+
+        QueryUtils.fetchArticlesData(url());
+        QueryUtils.fetchArticlesData(url());
+
+        assertEquals(2, mRequestCount.get());
+        assertEquals(200, mMetrics.get(1).getResponseCode());
+    }
+
+    @Test
+    public void cancelledRequest_isDisconnectedAndNotCached() {
+        final CancellationToken cancellationToken = new CancellationToken();
+        new Timer(true).schedule(new TimerTask() {
+            @Override
+            public void run() {
+                cancellationToken.cancel();
+            }
+        }, 200);
+
+        long start = System.nanoTime();
+        List<Article> articles = QueryUtils.fetchArticlesData(url("/slow"), cancellationToken);
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertNull(articles);
+        // Returns when cancelled, not when the server finishes the response
+        assertTrue("took " + elapsedMs + " ms", elapsedMs < 2000);
+        assertNull(mHttpCache.get(url("/slow")));
+    }
+
+    @Test
+    public void trim_deletesWholeResponsesAndLeavesTheBodiesBeingWritten() throws IOException {
+        File directory = mTemporaryFolder.newFolder("trimmed");
+        // Room for two bodies of 1 KB and their metadata
+        HttpCache httpCache = new HttpCache(directory, 2 * 1024 + 512);
+        HttpCache.Writer pending = httpCache.newWriter("http://example.com/pending", ETAG, null, 0);
+        readAll(pending.wrap(new ByteArrayInputStream(new byte[512])));
+        long writtenAt = System.currentTimeMillis() - 60000;
+        // A slow download, its temporary file is older than every response
+        for (File file : directory.listFiles()) {
+            assertTrue(file.setLastModified(writtenAt));
+        }
+
+        for (int i = 1; i <= 3; i++) {
+            store(httpCache, "http://example.com/" + i, 1024);
+            // The oldest writes first
+            for (File file : directory.listFiles()) {
+                if (!file.getName().endsWith(".tmp") && file.lastModified() > writtenAt + 1000 * i) {
+                    assertTrue(file.setLastModified(writtenAt + 1000 * i));
+                }
+            }
+        }
+
+        assertNull(httpCache.get("http://example.com/1"));
+        assertTrue(httpCache.get("http://example.com/2") != null);
+        assertTrue(httpCache.get("http://example.com/3") != null);
+        int tempFileCount = 0;
+        int otherFileCount = 0;
+        for (File file : directory.listFiles()) {
+            if (file.getName().endsWith(".tmp")) {
+                tempFileCount++;
+            } else {
+                otherFileCount++;
+            }
+        }
+        // No half of the first response is left, and the pending body is still being written
+        assertEquals(1, tempFileCount);
+        assertEquals(4, otherFileCount);
+        pending.commit();
+        assertTrue(httpCache.get("http://example.com/pending") != null);
+    }
+
+    @Test
+    public void cacheThatCannotBeWritten_doesNotFailTheRequest() throws IOException {
+        // A file in place of the directory, no copy can be created
+        QueryUtils.setHttpCache(new HttpCache(mTemporaryFolder.newFile("http-file"), 1024 * 1024));
+
+        List<Article> articles = QueryUtils.fetchArticlesData(url());
+
+        assertEquals(50, articles.size());
+        assertEquals(1, mRequestCount.get());
+    }
+
+    @Test
+    public void copyThatCannotBeStored_isDropped() throws IOException {
+        File directory = mTemporaryFolder.newFolder("removed");
+        HttpCache httpCache = new HttpCache(directory, 1024 * 1024);
+        HttpCache.Writer writer = httpCache.newWriter("http://example.com/removed", ETAG, null, 0);
+        readAll(writer.wrap(new ByteArrayInputStream(new byte[1024])));
+        // The storage was cleared while the body was read
+        for (File file : directory.listFiles()) {
+            assertTrue(file.delete());
+        }
+        assertTrue(directory.delete());
+
+        writer.commit();
+
+        assertNull(httpCache.get("http://example.com/removed"));
+    }
+
+    private static void store(HttpCache httpCache, String url, int bodyBytes) throws IOException {
+        HttpCache.Writer writer = httpCache.newWriter(url, ETAG, null, 0);
+        readAll(writer.wrap(new ByteArrayInputStream(new byte[bodyBytes])));
+        writer.commit();
+    }
+
+    private static void readAll(InputStream input) throws IOException {
+        byte[] buffer = new byte[256];
+        while (input.read(buffer) != -1) {
+            // Discard
+        }
+    }
+
+    private String url() {
+        return url("/search");
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + path + "?q=test";
+    }
+}
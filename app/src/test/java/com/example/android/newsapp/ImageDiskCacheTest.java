@@ -0,0 +1,115 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks the LRU eviction of ImageDiskCache, and the scale ImageLoader decodes the thumbnails at.
+ */
+public class ImageDiskCacheTest {
+
+    private static final String URL_PREFIX = "https://media.guim.co.uk/0a1b2c/0_0_3000_1800/";
+
+    private static final int IMAGE_BYTES = 20000;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void get_returnsTheStoredImage() throws IOException {
+        ImageDiskCache cache = new ImageDiskCache(mTemporaryFolder.newFolder(), 1024 * 1024);
+        byte[] image = randomImage(1);
+
+        assertNull(cache.get(url(1)));
+        cache.put(url(1), image);
+
+        assertArrayEquals(image, cache.get(url(1)));
+        assertEquals(1, cache.getCount());
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedImages() throws IOException {
+        ImageDiskCache cache = new ImageDiskCache(mTemporaryFolder.newFolder(), 3 * (IMAGE_BYTES + 200));
+
+        cache.put(url(1), randomImage(1));
+        cache.put(url(2), randomImage(2));
+        cache.put(url(3), randomImage(3));
+        // Reading the first image makes the second one the least recently used
+        assertArrayEquals(randomImage(1), cache.get(url(1)));
+        cache.put(url(4), randomImage(4));
+
+        assertNull(cache.get(url(2)));
+        assertArrayEquals(randomImage(1), cache.get(url(1)));
+        assertArrayEquals(randomImage(4), cache.get(url(4)));
+        assertEquals(3, cache.getCount());
+    }
+
+    @Test
+    public void get_ofReopenedCache() throws IOException {
+        File directory = mTemporaryFolder.newFolder();
+        new ImageDiskCache(directory, 1024 * 1024).put(url(1), randomImage(1));
+
+        ImageDiskCache reopened = new ImageDiskCache(directory, 1024 * 1024);
+
+        assertArrayEquals(randomImage(1), reopened.get(url(1)));
+        assertEquals(reopened.getBytesUsed(), directory.listFiles()[0].length());
+    }
+
+    @Test
+    public void get_dropsCorruptFiles() throws IOException {
+        File directory = mTemporaryFolder.newFolder();
+        new ImageDiskCache(directory, 1024 * 1024).put(url(1), randomImage(1));
+        File file = directory.listFiles()[0];
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        // A file cut short, i.e. by a crash while the disk was full
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(Arrays.copyOf(bytes, bytes.length / 2));
+        } finally {
+            output.close();
+        }
+
+        ImageDiskCache reopened = new ImageDiskCache(directory, 1024 * 1024);
+
+        assertNull(reopened.get(url(1)));
+        assertEquals(0, reopened.getCount());
+    }
+
+    @Test
+    public void calculateInSampleSize_keepsTheImageAtLeastAsLargeAsTheView() {
+        // A 500x300 Guardian thumbnail in a 96x72dp view on a xxhdpi screen (288x216 px)
+        assertEquals(1, ImageLoader.calculateInSampleSize(500, 300, 288, 216));
+        // On a mdpi screen (96x72 px)
+        assertEquals(4, ImageLoader.calculateInSampleSize(500, 300, 96, 72));
+        // The larger 2000x1200 rendition
+        assertEquals(8, ImageLoader.calculateInSampleSize(2000, 1200, 192, 144));
+        // Smaller than the view, or no size requested
+        assertEquals(1, ImageLoader.calculateInSampleSize(80, 60, 96, 72));
+        assertEquals(1, ImageLoader.calculateInSampleSize(500, 300, 0, 0));
+    }
+
+    /**
+     * Returns random bytes, the same for the same seed, which like a JPEG don't compress.
+     */
+    private static byte[] randomImage(int seed) {
+        byte[] image = new byte[IMAGE_BYTES];
+        new Random(seed).nextBytes(image);
+        return image;
+    }
+
+    private static String url(int number) {
+        return URL_PREFIX + number + "/500.jpg";
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the recording of Metrics and the accuracy of Histogram, and prints the cost of a disabled call.
+ */
+public class MetricsTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        Metrics.setEnabled(false);
+        Metrics.reset();
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        Metrics.increment("counter");
+        Metrics.record("histogram", 10);
+        long section = Metrics.beginSection("section");
+        Metrics.endSection("section", section);
+
+        assertEquals(0, section);
+        assertEquals(0, Metrics.getCount("counter"));
+        assertNull(Metrics.getHistogram("histogram"));
+        assertNull(Metrics.getTimer("section"));
+    }
+
+    @Test
+    public void enabled_recordsCountersTimersAndHistograms() throws InterruptedException {
+        Metrics.setEnabled(true);
+        Metrics.increment("counter");
+        Metrics.add("counter", 4);
+        Metrics.record("histogram", 10);
+        long start = Metrics.startTimer();
+        Thread.sleep(20);
+        Metrics.stopTimer("timer", start);
+
+        assertEquals(5, Metrics.getCount("counter"));
+        assertEquals(10, Metrics.getHistogram("histogram").getMax());
+        assertTrue(Metrics.getTimer("timer").getMax() >= 20000);
+    }
+
+    @Test
+    public void timerStartedWhileDisabled_isNotRecorded() {
+        long start = Metrics.startTimer();
+        Metrics.setEnabled(true);
+        Metrics.stopTimer("timer", start);
+
+        assertNull(Metrics.getTimer("timer"));
+    }
+
+    @Test
+    public void histogram_percentilesAreWithinTheBucketResolution() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(5000.5, histogram.getMean(), 0.001);
+        assertEquals(1, histogram.getMin());
+        assertEquals(10000, histogram.getMax());
+        assertWithin(5000, histogram.getPercentile(50));
+        assertWithin(9000, histogram.getPercentile(90));
+        assertWithin(9900, histogram.getPercentile(99));
+        assertEquals(10000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void histogram_bucketsCoverEveryValue() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >>> (1 + random.nextInt(63));
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(value <= Histogram.upperBoundOf(bucket));
+            assertTrue(bucket == 0 || value > Histogram.upperBoundOf(bucket - 1));
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.upperBoundOf(Histogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void export_writesTheTables() throws IOException {
+        Metrics.setEnabled(true);
+        Metrics.increment("http.downloaded");
+        Metrics.recordDuration("http.ttfb", 3000000);
+
+        File file = Metrics.export(mTemporaryFolder.newFolder());
+
+        String text = new String(Files.readAllBytes(file.toPath()), Charset.forName("UTF-8"));
+        assertTrue(text.contains("http.downloaded\t1\n"));
+        assertTrue(text.contains("http.ttfb\t1\t3000\t3000\t3000\t3000\t3000\n"));
+    }
+
+    @Test
+    public void requests_recordTheirPhases() throws IOException {
+        Metrics.setEnabled(true);
+        FaultInjectingServer server = new FaultInjectingServer(FaultInjectingServer.Fault.respond(200,
+                TestFixtures.readFixture("guardian_search_50.json")));
+        try {
+            assertEquals(50, QueryUtils.fetchArticlesData(server.getUrl()).size());
+        } finally {
+            server.stop();
+        }
+
+        assertEquals(1, Metrics.getCount("http.downloaded"));
+        assertNotNull(Metrics.getTimer("http.ttfb"));
+        assertNotNull(Metrics.getTimer("parse.stream"));
+    }
+
+    @Test
+    public void benchmark_disabledCallCost() {
+        int iterations = 10000000;
+        long blackhole = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                long section = Metrics.beginSection("benchmark");
+                blackhole += section;
+                Metrics.endSection("benchmark", section);
+                Metrics.increment("benchmark");
+            }
+            if (round == 1) {
+                double nsPerCall = (System.nanoTime() - start) / (double) iterations / 3;
+                System.out.println(String.format("Disabled metrics: %.2f ns/call", nsPerCall));
+            }
+        }
+        assertEquals(0, blackhole);
+    }
+
+    /**
+     * Assert that a percentile is at least the exact value and at most one bucket (12.5%) above it.
+     */
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual <= expected * 1.125);
+    }
+}
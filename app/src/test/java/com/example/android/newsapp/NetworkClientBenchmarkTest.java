@@ -0,0 +1,177 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import javax.net.ssl.X509TrustManager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the shared NetworkClient with the former connection per request (HttpURLConnection + disconnect())
+ * on repeated requests to a local HTTPS stand-in for the Guardian API.
+ */
+public class NetworkClientBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 20;
+    private static final int MEASURED_ITERATIONS = 100;
+    private static final char[] KEYSTORE_PASSWORD = "password".toCharArray();
+
+    private final ExecutorService mServerExecutor = Executors.newCachedThreadPool();
+    private final List<RequestMetrics> mMetrics = Collections.synchronizedList(new ArrayList<RequestMetrics>());
+    private final RequestMetrics.Listener mMetricsListener = new RequestMetrics.Listener() {
+        @Override
+        public void onRequestFinished(RequestMetrics metrics) {
+            mMetrics.add(metrics);
+        }
+    };
+
+    private HttpsServer mServer;
+    private SSLContext mSslContext;
+    private byte[] mGzippedResponse;
+
+    @Before
+    public void setUp() throws IOException, GeneralSecurityException {
+        mGzippedResponse = TestFixtures.gzip(TestFixtures.readFixture("guardian_search_10.json"));
+
+        // Self-signed certificate for 127.0.0.1, trusted by the clients of the test only
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getClassLoader().getResourceAsStream("localhost.jks");
+        try {
+            keyStore.load(keyStoreStream, KEYSTORE_PASSWORD);
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEYSTORE_PASSWORD);
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        mSslContext = SSLContext.getInstance("TLS");
+        mSslContext.init(keyManagerFactory.getKeyManagers(), trustManagerFactory.getTrustManagers(), null);
+
+        mServer = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setHttpsConfigurator(new HttpsConfigurator(mSslContext));
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, mGzippedResponse.length);
+                OutputStream output = exchange.getResponseBody();
+                output.write(mGzippedResponse);
+                output.close();
+            }
+        });
+        mServer.setExecutor(mServerExecutor);
+        mServer.start();
+
+        X509TrustManager trustManager = (X509TrustManager) trustManagerFactory.getTrustManagers()[0];
+        NetworkClient.setClient(NetworkClient.get().newBuilder()
+                .sslSocketFactory(mSslContext.getSocketFactory(), trustManager)
+                .build());
+        QueryUtils.addRequestMetricsListener(mMetricsListener);
+    }
+
+    @After
+    public void tearDown() {
+        QueryUtils.removeRequestMetricsListener(mMetricsListener);
+        NetworkClient.setClient(null);
+        mServer.stop(0);
+        mServerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void repeatedRequests_reuseThePooledConnection() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(10, QueryUtils.fetchArticlesData(url()).size());
+        }
+
+        RequestTimings first = mMetrics.get(0).getTimings();
+        assertFalse(first.isConnectionReused());
+        assertTrue(first.getTlsMs() >= 0);
+        for (int i = 1; i < 5; i++) {
+            RequestTimings timings = mMetrics.get(i).getTimings();
+            assertTrue("request " + i + ": " + timings, timings.isConnectionReused());
+            assertEquals(-1, timings.getTlsMs());
+            assertTrue(timings.getTotalMs() >= 0);
+        }
+        System.out.println("first request: " + first + "\nrepeated request: " + mMetrics.get(4).getTimings());
+    }
+
+    @Test
+    public void pooledClient_isFasterThanConnectionPerRequest() throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            fetchWithNewConnection();
+            QueryUtils.fetchArticlesData(url());
+        }
+
+        long[] newConnectionMicros = new long[MEASURED_ITERATIONS];
+        long[] pooledMicros = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            fetchWithNewConnection();
+            newConnectionMicros[i] = (System.nanoTime() - start) / 1000;
+
+            start = System.nanoTime();
+            QueryUtils.fetchArticlesData(url());
+            pooledMicros[i] = (System.nanoTime() - start) / 1000;
+        }
+        Arrays.sort(newConnectionMicros);
+        Arrays.sort(pooledMicros);
+        long newConnectionMedian = newConnectionMicros[MEASURED_ITERATIONS / 2];
+        long pooledMedian = pooledMicros[MEASURED_ITERATIONS / 2];
+
+        System.out.println(String.format("HTTPS request + parse, median of %d  connection per request: %,d us  pooled: %,d us",
+                MEASURED_ITERATIONS, newConnectionMedian, pooledMedian));
+
+        assertTrue(pooledMedian < newConnectionMedian);
+    }
+
+    /**
+     * The former request path: a new HttpURLConnection per request, disconnected at the end.
+     */
+    private List<Article> fetchWithNewConnection() throws IOException {
+        HttpsURLConnection urlConnection = (HttpsURLConnection) new URL(url()).openConnection();
+        urlConnection.setSSLSocketFactory(mSslContext.getSocketFactory());
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        try {
+            InputStream inputStream = urlConnection.getInputStream();
+            if ("gzip".equalsIgnoreCase(urlConnection.getContentEncoding())) {
+                inputStream = new GZIPInputStream(inputStream);
+            }
+            return QueryUtils.extractResultsFromStream(inputStream);
+        } finally {
+            urlConnection.disconnect();
+        }
+    }
+
+    private String url() {
+        return "https://127.0.0.1:" + mServer.getAddress().getPort() + "/search?q=test";
+    }
+}
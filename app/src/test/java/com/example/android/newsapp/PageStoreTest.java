@@ -0,0 +1,237 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that PageStore gives back the pages dropped from the list, and that scrolling through 100k articles
+ * in a PageWindow, which spills its pages to a PageStore, keeps the heap flat.
+ */
+public class PageStoreTest {
+
+    private static final int PAGE_SIZE = ArticleQueries.PAGE_SIZE;
+
+    /**
+     * Recorded response the pages are built from
+     */
+    private static final String FIXTURE = "guardian_search_50.json";
+
+    /**
+     * Same cap as the list of ArticleListViewModel, R.integer.max_retained_articles
+     */
+    private static final int MAX_RETAINED_ARTICLES = 100;
+
+    /**
+     * Largest heap the window and the page index may keep after scrolling, all articles would take ~30 MB
+     */
+    private static final long MAX_RETAINED_BYTES = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    /**
+     * Runs the writes to the store on the calling thread
+     */
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void get_returnsTheStoredPage() throws IOException {
+        List<Article> articles = TestFixtures.readArticles(FIXTURE);
+        PageStore store = new PageStore(mTemporaryFolder.newFolder());
+
+        assertNull(store.get(1));
+        store.put(1, page(articles, 1));
+        store.put(2, page(articles, 2));
+        store.put(1, page(articles, 3));
+
+        assertEquals(urlsOf(page(articles, 3)), urlsOf(store.get(1)));
+        assertEquals(urlsOf(page(articles, 2)), urlsOf(store.get(2)));
+        assertFalse(store.contains(3));
+
+        store.remove(2);
+        assertNull(store.get(2));
+    }
+
+    @Test
+    public void close_deletesTheFile() throws IOException {
+        File directory = mTemporaryFolder.newFolder();
+        PageStore store = new PageStore(directory);
+        store.put(1, page(TestFixtures.readArticles(FIXTURE), 1));
+        assertEquals(1, directory.list().length);
+        assertTrue(store.getFileBytes() > 0);
+
+        store.close();
+        store.put(2, page(TestFixtures.readArticles(FIXTURE), 2));
+
+        assertEquals(0, directory.list().length);
+        assertFalse(store.contains(1));
+        assertFalse(store.contains(2));
+    }
+
+    @Test
+    public void stress_scrollingThrough100kArticlesKeepsTheHeapFlat() throws Exception {
+        final List<Article> articles = TestFixtures.readArticles(FIXTURE);
+        final File directory = mTemporaryFolder.newFolder();
+        Benchmark benchmark = new Benchmark("page_store", 0, 1);
+        // Discarded, so the garbage of the earlier tests is not freed during the first measurement
+        new Benchmark("page_store.warmup", 0, 1).measureHeap("window.scroll_warmup", 1000, new Benchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                return scroll(articles, new File(directory, "warmup"), 1000 / PAGE_SIZE);
+            }
+        });
+
+        long retainedAfter10k = benchmark.measureHeap("window.scroll_10k", 10000, new Benchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                return scroll(articles, new File(directory, "10k"), 10000 / PAGE_SIZE);
+            }
+        });
+        long retainedAfter100k = benchmark.measureHeap("window.scroll_100k", 100000, new Benchmark.Operation() {
+            @Override
+            public Object run() throws Exception {
+                return scroll(articles, new File(directory, "100k"), 100000 / PAGE_SIZE);
+            }
+        });
+        benchmark.writeResults();
+
+        assertTrue("retained " + retainedAfter100k + " B", retainedAfter100k < MAX_RETAINED_BYTES);
+        // Only the page index grows with the list, a few bytes per page
+        assertTrue("retained " + retainedAfter10k + " B then " + retainedAfter100k + " B",
+                retainedAfter100k - retainedAfter10k < MAX_RETAINED_BYTES / 4);
+    }
+
+    @Test
+    public void replaceFirstPage_keepsTheLaterPages() throws IOException {
+        List<Article> articles = TestFixtures.readArticles(FIXTURE);
+        PageWindow window = new PageWindow(MAX_RETAINED_ARTICLES, mTemporaryFolder.newFolder(), DIRECT_EXECUTOR);
+        window.reset(page(articles, 1), PAGE_SIZE);
+        assertTrue(window.addPage(2, page(articles, 2), PAGE_SIZE));
+        // Neither the next page nor the previous one
+        assertFalse(window.addPage(4, page(articles, 4), PAGE_SIZE));
+
+        // The network copy of the cached first page
+        window.replaceFirstPage(page(articles, 3), PAGE_SIZE);
+
+        List<String> expected = urlsOf(page(articles, 3));
+        expected.addAll(urlsOf(page(articles, 2)));
+        assertEquals(expected, urlsOf(window.getArticles()));
+        assertEquals(3, window.getNextPage());
+    }
+
+    @Test
+    public void replaceFirstPage_replacesTheStoredCopyOnceDropped() throws IOException {
+        List<Article> articles = TestFixtures.readArticles(FIXTURE);
+        PageWindow window = new PageWindow(PAGE_SIZE, mTemporaryFolder.newFolder(), DIRECT_EXECUTOR);
+        window.reset(page(articles, 1), PAGE_SIZE);
+        window.addPage(2, page(articles, 2), PAGE_SIZE);
+        assertEquals(2, window.getFirstPage());
+        assertTrue(window.isStored(1));
+
+        window.replaceFirstPage(page(articles, 3), PAGE_SIZE);
+
+        assertEquals(urlsOf(page(articles, 2)), urlsOf(window.getArticles()));
+        assertEquals(urlsOf(page(articles, 3)), urlsOf(window.getPageStore().get(1)));
+    }
+
+    @Test
+    public void failedNextPage_isNotAddedAndCanBeLoadedAgain() throws IOException {
+        List<Article> articles = TestFixtures.readArticles(FIXTURE);
+        PageWindow window = new PageWindow(MAX_RETAINED_ARTICLES, mTemporaryFolder.newFolder(), DIRECT_EXECUTOR);
+        window.reset(page(articles, 1), PAGE_SIZE);
+
+        assertFalse(window.addPage(2, null, PAGE_SIZE));
+
+        assertEquals(urlsOf(page(articles, 1)), urlsOf(window.getArticles()));
+        assertEquals(2, window.getNextPage());
+        assertTrue(window.addPage(2, page(articles, 2), PAGE_SIZE));
+        assertEquals(3, window.getNextPage());
+    }
+
+    @Test
+    public void failedPreviousPage_isNotSkipped() throws IOException {
+        List<Article> articles = TestFixtures.readArticles(FIXTURE);
+        PageWindow window = new PageWindow(PAGE_SIZE, mTemporaryFolder.newFolder(), DIRECT_EXECUTOR);
+        window.reset(page(articles, 1), PAGE_SIZE);
+        window.addPage(2, page(articles, 2), PAGE_SIZE);
+        window.addPage(3, page(articles, 3), PAGE_SIZE);
+        assertEquals(3, window.getFirstPage());
+
+        assertFalse(window.addPage(2, null, PAGE_SIZE));
+
+        assertEquals(3, window.getFirstPage());
+        assertEquals(2, window.getPreviousPage());
+        assertTrue(window.addPage(2, page(articles, 2), PAGE_SIZE));
+        assertEquals(urlsOf(page(articles, 2)), urlsOf(window.getArticles()));
+        assertEquals(1, window.getPreviousPage());
+    }
+
+    /**
+     * Scroll down to the last page and back up to the first one, as ArticleListViewModel does, and return
+     * what stays in memory.
+     */
+    private static PageWindow scroll(List<Article> articles, File directory, int pageCount) {
+        PageWindow window = new PageWindow(MAX_RETAINED_ARTICLES, directory, DIRECT_EXECUTOR);
+        window.reset(page(articles, 1), PAGE_SIZE);
+        for (int number = 2; number <= pageCount; number++) {
+            assertTrue(window.addPage(window.getNextPage(), page(articles, number), PAGE_SIZE));
+            assertTrue(window.getArticleCount() <= MAX_RETAINED_ARTICLES);
+        }
+
+        while (window.getPreviousPage() > 0) {
+            int number = window.getPreviousPage();
+            assertTrue("page " + number, window.isStored(number));
+            List<Article> stored = window.getPageStore().get(number);
+            assertNotNull("page " + number, stored);
+            assertEquals(page(articles, number).get(0).getUrl(), stored.get(0).getUrl());
+            assertTrue(window.addPage(number, stored, PAGE_SIZE));
+            assertTrue(window.getArticleCount() <= MAX_RETAINED_ARTICLES);
+        }
+        assertEquals(1, window.getFirstPage());
+        return window;
+    }
+
+    /**
+     * Returns a page of distinct articles built from the fixture articles.
+     */
+    private static List<Article> page(List<Article> articles, int number) {
+        List<Article> page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Article article = articles.get((number * PAGE_SIZE + i) % articles.size());
+            int[] contributorIds = new int[article.getContributorCount()];
+            for (int j = 0; j < contributorIds.length; j++) {
+                contributorIds[j] = article.getContributorId(j);
+            }
+            page.add(new Article(article.getTitle() + " " + number, article.getSectionId(), article.getDate(),
+                    article.getTimeInMillis(), contributorIds, article.getUrl() + "?page=" + number + "&row=" + i,
+                    article.getThumbnailUrl()));
+        }
+        return page;
+    }
+
+    private static List<String> urlsOf(List<Article> articles) {
+        List<String> urls = new ArrayList<>();
+        for (Article article : articles) {
+            urls.add(article.getUrl());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.android.newsapp;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmarks of the stages of the article pipeline on the recorded Guardian responses: parsing, dates,
+ * merging, the binary cache format, the heap of 10k parsed articles, and whole loads through ArticleRepository
+ * over simulated networks.
+ * Each test writes its suite to build/benchmarks (see Benchmark), run them with
+ * ./gradlew testDebugUnitTest --tests '*PipelineBenchmarkTest'
+ */
+public class PipelineBenchmarkTest {
+
+    private static final String[] FIXTURES = {"guardian_search_10", "guardian_search_50", "guardian_search_200"};
+
+    private static final ReplayServer.Profile[] PROFILES = {ReplayServer.Profile.LOOPBACK,
+            ReplayServer.Profile.WIFI, ReplayServer.Profile.LTE, ReplayServer.Profile.SLOW_3G};
+
+    private static ReplayServer sServer;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        sServer = new ReplayServer();
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        sServer.stop();
+    }
+
+    @Test
+    public void parse() throws Exception {
+        Benchmark benchmark = new Benchmark("parse", 50, 200);
+        for (String fixture : FIXTURES) {
+            final byte[] response = TestFixtures.readFixture(fixture + ".json");
+            int count = QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response)).size();
+
+            benchmark.measure("parse.stream/" + fixture, count, new Benchmark.Operation() {
+                @Override
+                public Object run() throws IOException {
+                    return QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response));
+                }
+            });
+            benchmark.measure("parse.tree/" + fixture, count, new Benchmark.Operation() {
+                @Override
+                public Object run() throws IOException {
+                    return QueryUtils.extractResultsFromJson(QueryUtils.readFromStream(new ByteArrayInputStream(response)));
+                }
+            });
+        }
+        benchmark.writeResults();
+    }
+
+    @Test
+    public void dates() throws Exception {
+        final List<Article> articles = TestFixtures.readArticles("guardian_search_200.json");
+        Benchmark benchmark = new Benchmark("dates", 200, 1000);
+
+        benchmark.measure("dates.parse", articles.size(), new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                long sum = 0;
+                for (Article article : articles) {
+                    sum += ArticleDates.parseIsoDate(article.getDate());
+                }
+                return sum;
+            }
+        });
+        benchmark.measure("dates.formatDisplay", articles.size(), new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                int length = 0;
+                for (Article article : articles) {
+                    length += ArticleDates.formatDisplayDate(article.getTimeInMillis()).length();
+                }
+                return length;
+            }
+        });
+        benchmark.measure("dates.formatIso", articles.size(), new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                int length = 0;
+                for (Article article : articles) {
+                    length += ArticleDates.formatIsoDate(article.getTimeInMillis()).length();
+                }
+                return length;
+            }
+        });
+        benchmark.writeResults();
+    }
+
+    @Test
+    public void merge() throws Exception {
+        final List<Article> network = TestFixtures.readArticles("guardian_search_200.json");
+        // Local results that overlap half of the network results, like a search topped up from the index
+        final List<Article> local = new ArrayList<>(network.subList(100, 200));
+        local.addAll(TestFixtures.readArticles("guardian_search_50.json"));
+        Benchmark benchmark = new Benchmark("merge", 100, 500);
+
+        benchmark.measure("merge.newestFirst", network.size() + local.size(), new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return ArticleRepository.mergeNewestFirst(network, local);
+            }
+        });
+        assertTrue(ArticleRepository.mergeNewestFirst(network, local).size() <= network.size() + 50);
+        benchmark.writeResults();
+    }
+
+    @Test
+    public void serialization() throws Exception {
+        Benchmark benchmark = new Benchmark("serialization", 50, 200);
+        for (String fixture : FIXTURES) {
+            final List<Article> articles = TestFixtures.readArticles(fixture + ".json");
+            final byte[] encoded = ArticleCodec.encode(articles);
+
+            benchmark.measure("codec.encode/" + fixture, articles.size(), new Benchmark.Operation() {
+                @Override
+                public Object run() {
+                    return ArticleCodec.encode(articles);
+                }
+            });
+            benchmark.measure("codec.decode/" + fixture, articles.size(), new Benchmark.Operation() {
+                @Override
+                public Object run() throws IOException {
+                    return ArticleCodec.decode(encoded);
+                }
+            });
+        }
+        benchmark.writeResults();
+    }
+
+    @Test
+    public void heap() throws Exception {
+        byte[] tagsResponse = TestFixtures.readFixture("guardian_search_200.json");
+        byte[] bylineResponse = GuardianQueryTest.toBylineResponse(tagsResponse);
+        Benchmark benchmark = new Benchmark("heap", 0, 1);
+        // The list asks for the byline, the contributor tags are measured for comparison. The first measure also
+        // counts the interned names and the parser's own state, so it is thrown away.
+        measureHeap(new Benchmark("heap.warmup", 0, 1), "warmup", tagsResponse);
+        long tags = measureHeap(benchmark, "tags", tagsResponse);
+        long byline = measureHeap(benchmark, "byline", bylineResponse);
+        System.out.println(String.format("Byline articles retain %,d B/article, tag articles %,d B/article",
+                byline, tags));
+        assertTrue(byline > 0);
+        benchmark.writeResults();
+    }
+
+    /**
+     * Measure the heap of the articles of 50 parses of the response, and what they held on top when each one
+     * had its own section name and author string. Returns the retained bytes per article.
+     */
+    private static long measureHeap(Benchmark benchmark, String name, final byte[] response) throws Exception {
+        final int copies = 50;
+        final int count = QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response)).size() * copies;
+
+        // Separate parses, like the pages of a long session, so only the interned names are shared
+        long articles = benchmark.measureHeap("heap.articles." + name + "/" + count, count, new Benchmark.Operation() {
+            @Override
+            public Object run() throws IOException {
+                List<Article> articles = new ArrayList<>(count);
+                for (int i = 0; i < copies; i++) {
+                    articles.addAll(QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response)));
+                }
+                return articles;
+            }
+        });
+        long names = benchmark.measureHeap("heap.unsharedNames." + name + "/" + count, count, new Benchmark.Operation() {
+            @Override
+            public Object run() throws IOException {
+                List<String> names = new ArrayList<>(count * 2);
+                for (int i = 0; i < copies; i++) {
+                    for (Article article : QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response))) {
+                        names.add(new String(article.getSection()));
+                        if (article.getAuthor() != null) {
+                            names.add(new String(article.getAuthor()));
+                        }
+                    }
+                }
+                return names;
+            }
+        });
+        System.out.println(String.format("%s: interning saves %,d B/article", name, names / count));
+        return articles / count;
+    }
+
+    @Test
+    public void load() throws Exception {
+        ExecutorService io = Executors.newFixedThreadPool(2);
+        ExecutorService cpu = Executors.newFixedThreadPool(2);
+        Executor direct = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        };
+        Benchmark benchmark = new Benchmark("load", 3, 10);
+        try {
+            for (String fixture : new String[]{"guardian_search_10", "guardian_search_200"}) {
+                final String url = sServer.replay(fixture, TestFixtures.readFixture(fixture + ".json"));
+                final int count = TestFixtures.readArticles(fixture + ".json").size();
+                for (ReplayServer.Profile profile : PROFILES) {
+                    sServer.setProfile(profile);
+                    // Always stale, so every load reads the cache, fetches, parses and writes the cache again
+                    final ArticleRepository repository = new ArticleRepository(
+                            new ArticleCache(mTemporaryFolder.newFolder(), -1, 3600000, 1024 * 1024),
+                            null, null, new AppExecutors(io, cpu, direct, null));
+
+                    benchmark.measure("load.articles/" + fixture + "/" + profile.mName, count, new Benchmark.Operation() {
+                        @Override
+                        public Object run() throws InterruptedException {
+                            List<Article> articles = loadArticles(repository, url);
+                            assertNotNull(articles);
+                            assertEquals(count, articles.size());
+                            return articles;
+                        }
+                    });
+                }
+            }
+        } finally {
+            io.shutdownNow();
+            cpu.shutdownNow();
+        }
+        benchmark.writeResults();
+    }
+
+    /**
+     * Load the articles of the URL and wait for the complete result.
+     */
+    private static List<Article> loadArticles(ArticleRepository repository, String url) throws InterruptedException {
+        final BlockingQueue<List<Article>> results = new LinkedBlockingQueue<>();
+        repository.loadArticles(url, null, "", new ArticleRepository.Callback<List<Article>>() {
+            @Override
+            public void onResult(List<Article> articles, boolean complete) {
+                if (complete) {
+                    results.add(articles != null ? articles : new ArrayList<Article>());
+                }
+            }
+        });
+        return results.poll(30, TimeUnit.SECONDS);
+    }
+}
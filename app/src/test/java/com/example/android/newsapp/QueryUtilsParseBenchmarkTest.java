@@ -0,0 +1,117 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the whole-body String + org.json path with the streaming parser on recorded
+ * Guardian responses. Prints time and allocated bytes per article for both paths.
+ */
+public class QueryUtilsParseBenchmarkTest {
+
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int MEASURED_ITERATIONS = 200;
+
+    @Test
+    public void streamingParser_matchesTreeParser() throws IOException {
+        byte[] response = TestFixtures.readFixture("guardian_search_50.json");
+
+        List<Article> expected = QueryUtils.extractResultsFromJson(
+                QueryUtils.readFromStream(new ByteArrayInputStream(response)));
+        List<Article> actual = QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response));
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTitle(), actual.get(i).getTitle());
+            assertEquals(expected.get(i).getSection(), actual.get(i).getSection());
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+            assertEquals(expected.get(i).getAuthor(), actual.get(i).getAuthor());
+            assertEquals(expected.get(i).getUrl(), actual.get(i).getUrl());
+        }
+    }
+
+    @Test
+    public void streamingParser_internsSectionsAndContributors() throws IOException {
+        byte[] response = TestFixtures.readFixture("guardian_search_200.json");
+
+        List<Article> first = QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response));
+        List<Article> second = QueryUtils.extractResultsFromStream(new ByteArrayInputStream(response));
+
+        for (int i = 0; i < first.size(); i++) {
+            Article article = first.get(i);
+            // Separate parses share the entities, and so their names
+            assertEquals(article.getSectionId(), second.get(i).getSectionId());
+            assertSame(article.getSection(), second.get(i).getSection());
+            assertTrue(article.hasSameContributors(second.get(i)));
+
+            StringBuilder author = new StringBuilder();
+            for (Contributor contributor : article.getContributors()) {
+                assertTrue(article.hasContributor(contributor.getId()));
+                author.append(author.length() == 0 ? "" : " & ").append(contributor.getName());
+            }
+            assertEquals(author.length() == 0 ? null : author.toString(), article.getAuthor());
+        }
+        assertTrue(Section.count() < first.size());
+    }
+
+    @Test
+    public void streamingParser_allocatesLessPerArticle() throws IOException {
+        for (String fixture : new String[]{"guardian_search_10.json", "guardian_search_50.json", "guardian_search_200.json"}) {
+            byte[] response = TestFixtures.readFixture(fixture);
+
+            Result tree = measure(response, false);
+            Result stream = measure(response, true);
+
+            System.out.println(String.format("%s  tree: %,d ns/article %,d B/article  stream: %,d ns/article %,d B/article",
+                    fixture, tree.nanosPerArticle, tree.bytesPerArticle, stream.nanosPerArticle, stream.bytesPerArticle));
+
+            assertTrue(stream.bytesPerArticle < tree.bytesPerArticle);
+        }
+    }
+
+    private static Result measure(byte[] response, boolean streaming) throws IOException {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            parse(response, streaming);
+        }
+
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        int articleCount = 0;
+        long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            articleCount += parse(response, streaming).size();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+
+        Result result = new Result();
+        result.nanosPerArticle = elapsed / articleCount;
+        result.bytesPerArticle = allocated / articleCount;
+        return result;
+    }
+
+    private static List<Article> parse(byte[] response, boolean streaming) throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(response);
+        if (streaming) {
+            return QueryUtils.extractResultsFromStream(inputStream);
+        }
+        return QueryUtils.extractResultsFromJson(QueryUtils.readFromStream(inputStream));
+    }
+
+    private static class Result {
+        long nanosPerArticle;
+        long bytesPerArticle;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs QueryUtils against a local server that fails, rate limits and stalls, and checks the retries,
+ * the circuit breaker and the fallback to the cached copy.
+ */
+public class QueryUtilsRetryTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private byte[] mResponse;
+    private FaultInjectingServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mResponse = TestFixtures.readFixture("guardian_search_200.json");
+        mServer = new FaultInjectingServer(FaultInjectingServer.Fault.respond(200, mResponse));
+        // Short waits keep the test fast, the seed keeps the jitter the same on every run
+        QueryUtils.setRetryPolicy(new RetryPolicy(3, 20, 200, new Random(1)));
+        QueryUtils.setCircuitBreaker(new CircuitBreaker(3, 300));
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+        QueryUtils.setRetryPolicy(new RetryPolicy());
+        QueryUtils.setCircuitBreaker(new CircuitBreaker());
+        QueryUtils.setHttpCache(null);
+        NetworkClient.setTimeouts(NetworkClient.DEFAULT_CONNECT_TIMEOUT_MS, NetworkClient.DEFAULT_READ_TIMEOUT_MS);
+    }
+
+    @Test
+    public void serverErrorAndDroppedConnection_areRetried() {
+        mServer.enqueue(FaultInjectingServer.Fault.respond(503), FaultInjectingServer.Fault.disconnect());
+
+        List<Article> articles = QueryUtils.fetchArticlesData(mServer.getUrl());
+
+        assertEquals(200, articles.size());
+        // The client may retry the dropped connection itself, so count at least one request per scripted fault
+        assertTrue(mServer.getRequestCount() >= 3);
+    }
+
+    @Test
+    public void notFound_isNotRetried() {
+        mServer.enqueue(FaultInjectingServer.Fault.respond(404));
+
+        assertNull(QueryUtils.fetchArticlesData(mServer.getUrl()));
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void rateLimit_waitsForRetryAfter() {
+        QueryUtils.setRetryPolicy(new RetryPolicy(3, 20, 2000, new Random(1)));
+        mServer.enqueue(FaultInjectingServer.Fault.respond(RetryPolicy.TOO_MANY_REQUESTS).header("Retry-After", "1"));
+
+        long start = System.nanoTime();
+        List<Article> articles = QueryUtils.fetchArticlesData(mServer.getUrl());
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(200, articles.size());
+        assertEquals(2, mServer.getRequestCount());
+        assertTrue("Retried after " + elapsedMs + " ms", elapsedMs >= 1000);
+    }
+
+    @Test
+    public void longRateLimit_opensTheCircuit() {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, 300);
+        QueryUtils.setCircuitBreaker(circuitBreaker);
+        mServer.enqueue(FaultInjectingServer.Fault.respond(RetryPolicy.TOO_MANY_REQUESTS).header("Retry-After", "60"));
+
+        assertNull(QueryUtils.fetchArticlesData(mServer.getUrl()));
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // Nothing is sent until the server is ready
+        assertNull(QueryUtils.fetchArticlesData(mServer.getUrl()));
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    @Test
+    public void repeatedFailures_openTheCircuitUntilATrialSucceeds() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, 300);
+        QueryUtils.setCircuitBreaker(circuitBreaker);
+        mServer.setDefault(FaultInjectingServer.Fault.respond(500));
+
+        assertNull(QueryUtils.fetchArticlesData(mServer.getUrl()));
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        assertNull(QueryUtils.fetchArticlesData(mServer.getUrl()));
+        assertEquals(3, mServer.getRequestCount());
+
+        // Once the open time is over, a trial request goes through and closes the circuit
+        mServer.setDefault(FaultInjectingServer.Fault.respond(200, mResponse));
+        Thread.sleep(350);
+        assertEquals(200, QueryUtils.fetchArticlesData(mServer.getUrl()).size());
+        assertEquals(4, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void unexpectedExceptionInTheTrial_opensTheCircuitAgain() throws InterruptedException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, 300);
+        QueryUtils.setCircuitBreaker(circuitBreaker);
+        mServer.enqueue(FaultInjectingServer.Fault.respond(500));
+        QueryUtils.setRetryPolicy(new RetryPolicy(1, 20, 200, new Random(1)));
+        assertNull(QueryUtils.fetchArticlesData(mServer.getUrl()));
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // The trial request fails with a RuntimeException instead of an IOException
+        RequestMetrics.Listener failingListener = new RequestMetrics.Listener() {
+            @Override
+            public void onRequestFinished(RequestMetrics metrics) {
+                throw new IllegalArgumentException("Unexpected");
+            }
+        };
+        QueryUtils.addRequestMetricsListener(failingListener);
+        Thread.sleep(350);
+        try {
+            assertNull(QueryUtils.fetchArticlesData(mServer.getUrl()));
+        } finally {
+            QueryUtils.removeRequestMetricsListener(failingListener);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        // Not stuck in HALF_OPEN, the next trial goes through
+        Thread.sleep(350);
+        assertEquals(200, QueryUtils.fetchArticlesData(mServer.getUrl()).size());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void failedRequest_fallsBackToTheStaleCachedCopy() throws IOException {
+        QueryUtils.setHttpCache(new HttpCache(mTemporaryFolder.newFolder("http"), 1024 * 1024));
+        mServer.enqueue(FaultInjectingServer.Fault.respond(200, mResponse)
+                .header("ETag", "\"v1\"").header("Cache-Control", "max-age=0"));
+        assertEquals(200, QueryUtils.fetchArticlesData(mServer.getUrl()).size());
+
+        mServer.setDefault(FaultInjectingServer.Fault.respond(500));
+        List<Article> articles = QueryUtils.fetchArticlesData(mServer.getUrl());
+
+        assertEquals(200, articles.size());
+        assertEquals(4, mServer.getRequestCount());
+    }
+
+    @Test
+    public void truncatedBody_isRetried() {
+        mServer.enqueue(FaultInjectingServer.Fault.truncate(mResponse, mResponse.length / 2));
+
+        List<Article> articles = QueryUtils.fetchArticlesData(mServer.getUrl());
+
+        assertEquals(200, articles.size());
+        assertTrue(mServer.getRequestCount() >= 2);
+    }
+
+    @Test
+    public void truncatedBodies_failTheRequestAndAreNotCached() throws IOException {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, 300);
+        QueryUtils.setCircuitBreaker(circuitBreaker);
+        HttpCache httpCache = new HttpCache(mTemporaryFolder.newFolder("http"), 1024 * 1024);
+        QueryUtils.setHttpCache(httpCache);
+        mServer.setDefault(FaultInjectingServer.Fault.truncate(mResponse, mResponse.length / 2)
+                .header("ETag", "\"v1\"").header("Cache-Control", "max-age=60"));
+
+        // A partial page would pass for the last page of the query
+        assertNull(QueryUtils.fetchArticlesData(mServer.getUrl()));
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertNull(httpCache.get(mServer.getUrl()));
+    }
+
+    @Test
+    public void readTimeout_isRetried() {
+        NetworkClient.setTimeouts(NetworkClient.DEFAULT_CONNECT_TIMEOUT_MS, 200);
+        mServer.enqueue(FaultInjectingServer.Fault.respond(200, mResponse).delay(500));
+
+        List<Article> articles = QueryUtils.fetchArticlesData(mServer.getUrl());
+
+        assertEquals(200, articles.size());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void getDelayMs_isJitteredBelowTheExponentialBound() {
+        RetryPolicy retryPolicy = new RetryPolicy(5, 100, 300, new Random(1));
+
+        for (int i = 0; i < 100; i++) {
+            long first = retryPolicy.getDelayMs(1, -1);
+            long third = retryPolicy.getDelayMs(3, -1);
+            assertTrue(first >= 0 && first < 100);
+            // 100 << 2 is capped at 300
+            assertTrue(third >= 0 && third < 300);
+        }
+        assertEquals(-1, retryPolicy.getDelayMs(5, -1));
+        assertEquals(250, retryPolicy.getDelayMs(1, 250));
+        assertEquals(-1, retryPolicy.getDelayMs(1, 301));
+    }
+
+    @Test
+    public void parseRetryAfter_readsSecondsAndDates() {
+        long now = 1445412480000L; // Wed, 21 Oct 2015 07:28:00 GMT
+        assertEquals(120000, RetryPolicy.parseRetryAfter("120", now));
+        assertEquals(60000, RetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:29:00 GMT", now));
+        assertEquals(0, RetryPolicy.parseRetryAfter("Wed, 21 Oct 2015 07:27:00 GMT", now));
+        assertEquals(-1, RetryPolicy.parseRetryAfter("soon", now));
+        assertEquals(-1, RetryPolicy.parseRetryAfter(null, now));
+    }
+}
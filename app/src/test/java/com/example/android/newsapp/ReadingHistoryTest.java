@@ -0,0 +1,330 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that ReadingHistory writes its events in batches off the calling thread, that committed batches survive
+ * a killed process and a torn write, and that its read lookups don't allocate.
+ */
+public class ReadingHistoryTest {
+
+    private static final String URL_PREFIX = "https://www.theguardian.com/technology/2018/may/24/article-";
+
+    private static final long MAX_LOG_BYTES = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    /**
+     * Runs the listeners on the calling thread
+     */
+    private final Executor mDirectExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    /**
+     * Writer threads of the histories of the test
+     */
+    private final List<ScheduledExecutorService> mWriters = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (ScheduledExecutorService writer : mWriters) {
+            writer.shutdownNow();
+        }
+    }
+
+    @Test
+    public void recordOpen_marksTheArticleReadBeforeItIsWritten() throws Exception {
+        File logFile = new File(mTemporaryFolder.getRoot(), "history.log");
+        ReadingHistory history = open(logFile, MAX_LOG_BYTES);
+
+        history.recordOpen(article(1, "Technology"));
+        history.recordOpen(article(2, "Technology"));
+        awaitWriter();
+
+        assertTrue(history.isRead(url(1)));
+        assertTrue(history.isRead(url(2)));
+        assertFalse(history.isRead(url(3)));
+        assertEquals(2, history.getOpenCount("Technology"));
+        // Buffered until the delay, a full batch or a flush
+        assertFalse(logFile.exists());
+    }
+
+    @Test
+    public void committedBatches_surviveAKilledProcess() throws Exception {
+        File logFile = new File(mTemporaryFolder.getRoot(), "history.log");
+        ReadingHistory history = open(logFile, MAX_LOG_BYTES);
+        history.recordOpen(article(1, "Technology"));
+        history.recordOpen(article(2, "Science"));
+        history.flush();
+        awaitWriter();
+        // Never written, the process is killed before the delay
+        history.recordOpen(article(3, "Science"));
+        kill();
+
+        ReadingHistory restarted = open(logFile, MAX_LOG_BYTES);
+        awaitWriter();
+
+        assertTrue(restarted.isRead(url(1)));
+        assertTrue(restarted.isRead(url(2)));
+        assertFalse(restarted.isRead(url(3)));
+        assertEquals(1, restarted.getOpenCount("Science"));
+    }
+
+    @Test
+    public void fullBatch_isWrittenWithoutAFlush() throws Exception {
+        File logFile = new File(mTemporaryFolder.getRoot(), "history.log");
+        ReadingHistory history = open(logFile, MAX_LOG_BYTES);
+        for (int i = 0; i < ReadingHistory.BATCH_SIZE; i++) {
+            history.recordOpen(article(i, "Technology"));
+        }
+        awaitWriter();
+        kill();
+
+        ReadingHistory restarted = open(logFile, MAX_LOG_BYTES);
+        awaitWriter();
+
+        assertEquals(ReadingHistory.BATCH_SIZE, restarted.getOpenCount("Technology"));
+    }
+
+    @Test
+    public void tornBatch_isDroppedAndTheNextBatchesFollowTheCommittedOnes() throws Exception {
+        File logFile = new File(mTemporaryFolder.getRoot(), "history.log");
+        ReadingHistory history = open(logFile, MAX_LOG_BYTES);
+        history.recordOpen(article(1, "Technology"));
+        history.flush();
+        awaitWriter();
+        long committedBytes = logFile.length();
+        history.recordOpen(article(2, "Technology"));
+        history.flush();
+        awaitWriter();
+        kill();
+
+        // The process was killed in the middle of the second batch
+        RandomAccessFile log = new RandomAccessFile(logFile, "rw");
+        log.setLength(log.length() - 3);
+        log.close();
+
+        ReadingHistory restarted = open(logFile, MAX_LOG_BYTES);
+        restarted.recordOpen(article(3, "Technology"));
+        restarted.flush();
+        awaitWriter();
+        kill();
+        assertTrue(logFile.length() > committedBytes);
+
+        ReadingHistory again = open(logFile, MAX_LOG_BYTES);
+        awaitWriter();
+        assertTrue(again.isRead(url(1)));
+        assertFalse(again.isRead(url(2)));
+        assertTrue(again.isRead(url(3)));
+        assertEquals(2, again.getOpenCount("Technology"));
+    }
+
+    @Test
+    public void corruptBatch_isDropped() throws Exception {
+        File logFile = new File(mTemporaryFolder.getRoot(), "history.log");
+        ReadingHistory history = open(logFile, MAX_LOG_BYTES);
+        history.recordOpen(article(1, "Technology"));
+        history.flush();
+        awaitWriter();
+        history.recordOpen(article(2, "Technology"));
+        history.flush();
+        awaitWriter();
+        kill();
+
+        // Flip a byte of the last event
+        RandomAccessFile log = new RandomAccessFile(logFile, "rw");
+        log.seek(log.length() - 1);
+        int last = log.read();
+        log.seek(log.length() - 1);
+        log.write(last ^ 0xff);
+        log.close();
+
+        ReadingHistory restarted = open(logFile, MAX_LOG_BYTES);
+        awaitWriter();
+        assertTrue(restarted.isRead(url(1)));
+        assertFalse(restarted.isRead(url(2)));
+    }
+
+    @Test
+    public void largeLog_isRewrittenCompactly() throws Exception {
+        File logFile = new File(mTemporaryFolder.getRoot(), "history.log");
+        long maxLogBytes = 2048;
+        ReadingHistory history = open(logFile, maxLogBytes);
+        for (int i = 0; i < 200; i++) {
+            // Every article is opened twice
+            history.recordOpen(article(i % 100, i % 2 == 0 ? "Technology" : "Science"));
+            history.flush();
+            // One event per batch, a writer falling behind would write them all in a single large batch
+            awaitWriter();
+        }
+        kill();
+        assertTrue(logFile.length() < 2 * maxLogBytes);
+        assertFalse(new File(logFile.getPath() + ".tmp").exists());
+
+        ReadingHistory restarted = open(logFile, maxLogBytes);
+        awaitWriter();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(restarted.isRead(url(i)));
+        }
+        assertEquals(100, restarted.getOpenCount("Technology"));
+        assertEquals(100, restarted.getOpenCount("Science"));
+    }
+
+    @Test
+    public void listener_isToldOfNewReadsAndOfTheLoadedLog() throws Exception {
+        File logFile = new File(mTemporaryFolder.getRoot(), "history.log");
+        ReadingHistory history = open(logFile, MAX_LOG_BYTES);
+        history.recordOpen(article(1, "Technology"));
+        history.flush();
+        awaitWriter();
+        kill();
+
+        final int[] changes = new int[1];
+        ReadingHistory.Listener listener = new ReadingHistory.Listener() {
+            @Override
+            public void onReadingHistoryChanged() {
+                changes[0]++;
+            }
+        };
+        // Hold the writer thread so the listener is added before the log is read
+        final CountDownLatch listenerAdded = new CountDownLatch(1);
+        ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+        mWriters.add(writer);
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    listenerAdded.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        ReadingHistory restarted = new ReadingHistory(logFile, MAX_LOG_BYTES, writer, mDirectExecutor);
+        restarted.addListener(listener);
+        listenerAdded.countDown();
+        awaitWriter();
+        assertEquals(1, changes[0]);
+
+        restarted.recordOpen(article(1, "Technology"));
+        assertEquals(1, changes[0]);
+        restarted.recordOpen(article(2, "Technology"));
+        assertEquals(2, changes[0]);
+    }
+
+    @Test
+    public void isRead_doesNotAllocate() throws Exception {
+        ReadingHistory history = open(new File(mTemporaryFolder.getRoot(), "history.log"), MAX_LOG_BYTES);
+        String[] urls = new String[1000];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = url(i);
+            if (i % 2 == 0) {
+                history.recordOpen(article(i, "Technology"));
+            }
+        }
+        awaitWriter();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        int readCount = 0;
+        for (int i = 0; i < 100000; i++) {
+            readCount += history.isRead(urls[i % urls.length]) ? 1 : 0;
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++) {
+            readCount += history.isRead(urls[i % urls.length]) ? 1 : 0;
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(100000, readCount);
+        // Only the bookkeeping of getThreadAllocatedBytes() itself
+        assertTrue("allocated " + allocated + " B", allocated < 1024);
+    }
+
+    @Test
+    public void longHashSet_matchesAHashSet() {
+        LongHashSet set = new LongHashSet(4);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        long[] special = {0, -1, Long.MIN_VALUE, Long.MAX_VALUE, 1L << 32, 2L << 32};
+        for (long value : special) {
+            assertEquals(expected.add(value), set.add(value));
+        }
+        for (int i = 0; i < 100000; i++) {
+            // Few distinct high bits, so the values collide unless the hash mixes them
+            long value = random.nextBoolean() ? random.nextLong() : (long) random.nextInt(5000) << 40;
+            assertEquals(expected.add(value), set.add(value));
+        }
+
+        assertEquals(expected.size(), set.size());
+        for (long value : expected) {
+            assertTrue(set.contains(value));
+        }
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong();
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+        Set<Long> values = new HashSet<>();
+        for (long value : set.toArray()) {
+            values.add(value);
+        }
+        assertEquals(expected, values);
+    }
+
+    private ReadingHistory open(File logFile, long maxLogBytes) {
+        ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+        mWriters.add(writer);
+        return new ReadingHistory(logFile, maxLogBytes, writer, mDirectExecutor);
+    }
+
+    /**
+     * Wait until the writer thread of the last history ran the work queued so far.
+     */
+    private void awaitWriter() throws Exception {
+        mWriters.get(mWriters.size() - 1).submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
+    /**
+     * Stop the writer thread of the last history as a killed process would, dropping the delayed writes.
+     */
+    private void kill() {
+        mWriters.get(mWriters.size() - 1).shutdownNow();
+    }
+
+    private static Article article(int index, String section) {
+        return new Article("Article " + index, section, "2018-05-24T10:00:00Z", "Alex Hern", url(index));
+    }
+
+    private static String url(int index) {
+        return URL_PREFIX + index;
+    }
+}
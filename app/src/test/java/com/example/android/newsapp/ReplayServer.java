@@ -0,0 +1,157 @@
+package com.example.android.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for the Guardian API that replays recorded responses over a simulated network:
+ * a latency before the response headers, and a throughput limit on the body. Bodies are gzipped
+ * when the client asks for it, like the real API, and the throughput applies to the bytes on the wire.
+ */
+class ReplayServer {
+
+    /**
+     * Size of the writes of a throttled body
+     */
+    private static final int CHUNK_BYTES = 1024;
+
+    /**
+     * A simulated network.
+     */
+    static class Profile {
+
+        /**
+         * Loopback speed, to measure the app without the network
+         */
+        static final Profile LOOPBACK = new Profile("loopback", 0, 0);
+
+        /**
+         * Good Wi-Fi
+         */
+        static final Profile WIFI = new Profile("wifi", 20, 2500000);
+
+        /**
+         * Typical 4G
+         */
+        static final Profile LTE = new Profile("4g", 60, 1000000);
+
+        /**
+         * Slow 3G
+         */
+        static final Profile SLOW_3G = new Profile("3g", 200, 50000);
+
+        final String mName;
+        final long mLatencyMs;
+        final long mBytesPerSecond;
+
+        /**
+         * Constructs a new Profile
+         *
+         * @param name           is the name in the benchmark results
+         * @param latencyMs      is the wait before the response headers
+         * @param bytesPerSecond is the throughput of the body, 0 for no limit
+         */
+        Profile(String name, long latencyMs, long bytesPerSecond) {
+            mName = name;
+            mLatencyMs = latencyMs;
+            mBytesPerSecond = bytesPerSecond;
+        }
+    }
+
+    static {
+        // Send the headers and the body without waiting for an ACK (Nagle), which would add ~40 ms to every
+        // response on loopback. The JDK reads it once, so the build also sets it for the whole test JVM.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer mServer;
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+
+    private volatile Profile mProfile = Profile.LOOPBACK;
+
+    /**
+     * Starts a server on a free local port.
+     */
+    ReplayServer() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    /**
+     * Replay a recorded response at /name and return its URL.
+     */
+    String replay(String name, byte[] response) throws IOException {
+        final byte[] plain = response;
+        final byte[] gzipped = TestFixtures.gzip(response);
+        mServer.createContext("/" + name, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                Profile profile = mProfile;
+                try {
+                    if (profile.mLatencyMs > 0) {
+                        Thread.sleep(profile.mLatencyMs);
+                    }
+                    byte[] body = plain;
+                    String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                        body = gzipped;
+                        exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                    }
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, body.length);
+                    write(exchange.getResponseBody(), body, profile.mBytesPerSecond);
+                } catch (InterruptedException | IOException e) {
+                    // The client went away or the server is stopping
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/" + name + "?q=test";
+    }
+
+    /**
+     * Use a simulated network for the next responses.
+     */
+    void setProfile(Profile profile) {
+        mProfile = profile;
+    }
+
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * Write the body, sleeping between the chunks to keep to the throughput.
+     */
+    private static void write(OutputStream output, byte[] body, long bytesPerSecond)
+            throws IOException, InterruptedException {
+        if (bytesPerSecond <= 0) {
+            output.write(body);
+            output.close();
+            return;
+        }
+        long start = System.nanoTime();
+        for (int offset = 0; offset < body.length; offset += CHUNK_BYTES) {
+            int length = Math.min(CHUNK_BYTES, body.length - offset);
+            output.write(body, offset, length);
+            output.flush();
+            long dueNanos = (offset + length) * 1000000000L / bytesPerSecond;
+            long aheadNanos = dueNanos - (System.nanoTime() - start);
+            if (aheadNanos > 0) {
+                Thread.sleep(aheadNanos / 1000000, (int) (aheadNanos % 1000000));
+            }
+        }
+        output.close();
+    }
+}
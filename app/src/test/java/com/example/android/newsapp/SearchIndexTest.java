@@ -0,0 +1,162 @@
+package com.example.android.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the matching rules of SearchIndex and measures the query latency on a 50k article corpus.
+ */
+public class SearchIndexTest {
+
+    private static final int CORPUS_SIZE = 50000;
+    private static final int WARMUP_QUERIES = 2000;
+    private static final int MEASURED_QUERIES = 5000;
+    private static final int RESULT_LIMIT = 20;
+
+    /**
+     * 95th percentile latency target for a query on the corpus, in microseconds
+     */
+    private static final long P95_TARGET_MICROS = 10000;
+
+    private static final String[] WORDS = {
+            "election", "government", "climate", "football", "economy", "market", "science", "space",
+            "energy", "health", "police", "court", "brexit", "europe", "china", "america", "film",
+            "music", "review", "games", "technology", "startup", "bank", "vote", "minister", "storm",
+            "report", "crisis", "deal", "trade", "school", "budget", "league", "cup", "festival",
+            "artificial", "intelligence", "privacy", "data", "planet", "ocean", "forest", "virus"};
+
+    private static final String[] SECTIONS = {"World news", "Technology", "Business", "Science", "Games", "Film"};
+
+    private static final String[] NAMES = {"Alex Hern", "Damian Carrington", "Hannah Ellis-Petersen",
+            "Keza MacDonald", "Peter Bradshaw", "Larry Elliott", "Ian Sample", "Zoë Williams"};
+
+    @Test
+    public void search_matchesPrefixesOfEveryWord() {
+        SearchIndex index = SearchIndex.build(Arrays.asList(
+                article("a", "Government wins the election", "Politics", null, "2018-05-20T10:00:00Z"),
+                article("b", "Election results", "Politics", null, "2018-05-21T10:00:00Z"),
+                article("c", "Climate report", "Environment", null, "2018-05-22T10:00:00Z")));
+
+        assertEquals(urls("b", "a"), urlsOf(index.search("elec", "", 10)));
+        assertEquals(urls("a"), urlsOf(index.search("ELEC gov", "", 10)));
+        assertEquals(urls(), urlsOf(index.search("elec climate", "", 10)));
+        assertEquals(urls(), urlsOf(index.search("xyz", "", 10)));
+    }
+
+    @Test
+    public void search_matchesSectionsAndContributors() {
+        SearchIndex index = SearchIndex.build(Arrays.asList(
+                article("a", "New phone", "Technology", "Alex Hern & Samuel Gibbs", "2018-05-20T10:00:00Z"),
+                article("b", "Café culture", "World news", "Zoë Williams", "2018-05-21T10:00:00Z")));
+
+        assertEquals(urls("a"), urlsOf(index.search("gibbs", "", 10)));
+        assertEquals(urls("a"), urlsOf(index.search("tech phone", "", 10)));
+        assertEquals(urls("b"), urlsOf(index.search("cafe zoe", "", 10)));
+    }
+
+    @Test
+    public void search_filtersBySectionAndLimitsNewestFirst() {
+        SearchIndex index = SearchIndex.build(Arrays.asList(
+                article("a", "Storm", "World news", null, "2018-05-20T10:00:00Z"),
+                article("b", "Storm", "Science", null, "2018-05-22T10:00:00Z"),
+                article("c", "Storm", "World news", null, "2018-05-23T10:00:00Z"),
+                article("d", "Storm", "World news", null, "2018-05-21T10:00:00Z")));
+
+        assertEquals(urls("c", "d"), urlsOf(index.search("storm", "world", 2)));
+        // An empty query lists all articles of the section
+        assertEquals(urls("b"), urlsOf(index.search("", "science", 10)));
+    }
+
+    @Test
+    public void build_indexesArticlesWithTheSameUrlOnce() {
+        SearchIndex index = SearchIndex.build(Arrays.asList(
+                article("a", "Storm", "World news", null, "2018-05-20T10:00:00Z"),
+                article("a", "Storm", "World news", null, "2018-05-20T10:00:00Z")));
+
+        assertEquals(1, index.size());
+        assertEquals(urls("a"), urlsOf(index.search("storm", "", 10)));
+    }
+
+    @Test
+    public void search_meetsLatencyTargetOn50kArticles() {
+        Random random = new Random(42);
+        List<Article> corpus = new ArrayList<>(CORPUS_SIZE);
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                    + WORDS[random.nextInt(WORDS.length)] + " " + Integer.toString(random.nextInt(100000), 36);
+            String date = String.format("2018-%02d-%02dT%02d:%02d:00Z", 1 + random.nextInt(12),
+                    1 + random.nextInt(28), random.nextInt(24), random.nextInt(60));
+            corpus.add(article("https://www.theguardian.com/" + i, title, SECTIONS[random.nextInt(SECTIONS.length)],
+                    NAMES[random.nextInt(NAMES.length)], date));
+        }
+
+        long buildStart = System.nanoTime();
+        SearchIndex index = SearchIndex.build(corpus);
+        long buildMs = (System.nanoTime() - buildStart) / 1000000;
+
+        String[] queries = new String[MEASURED_QUERIES];
+        for (int i = 0; i < queries.length; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            switch (i % 4) {
+                case 0:
+                    // Short prefix, matches many words
+                    queries[i] = word.substring(0, 1);
+                    break;
+                case 1:
+                    queries[i] = word.substring(0, 3);
+                    break;
+                case 2:
+                    queries[i] = word + " " + WORDS[random.nextInt(WORDS.length)].substring(0, 2);
+                    break;
+                default:
+                    queries[i] = word + " " + NAMES[random.nextInt(NAMES.length)].split(" ")[0].toLowerCase();
+                    break;
+            }
+        }
+
+        for (int i = 0; i < WARMUP_QUERIES; i++) {
+            index.search(queries[i % queries.length], "", RESULT_LIMIT);
+        }
+
+        long[] micros = new long[queries.length];
+        int resultCount = 0;
+        for (int i = 0; i < queries.length; i++) {
+            String section = i % 2 == 0 ? "" : "world";
+            long start = System.nanoTime();
+            resultCount += index.search(queries[i], section, RESULT_LIMIT).size();
+            micros[i] = (System.nanoTime() - start) / 1000;
+        }
+        Arrays.sort(micros);
+        long median = micros[micros.length / 2];
+        long p95 = micros[micros.length * 95 / 100];
+
+        System.out.println(String.format("SearchIndex %,d articles  build: %,d ms  query median: %,d us  p95: %,d us  max: %,d us",
+                index.size(), buildMs, median, p95, micros[micros.length - 1]));
+
+        assertTrue(resultCount > 0);
+        assertTrue("p95 " + p95 + " us", p95 < P95_TARGET_MICROS);
+    }
+
+    private static Article article(String url, String title, String section, String author, String date) {
+        return new Article(title, section, date, author, url);
+    }
+
+    private static List<String> urls(String... urls) {
+        return Arrays.asList(urls);
+    }
+
+    private static List<String> urlsOf(List<Article> articles) {
+        List<String> urls = new ArrayList<>();
+        for (Article article : articles) {
+            urls.add(article.getUrl());
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.android.newsapp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Types into SearchPipeline faster than the debounce delay and checks which searches run and which are delivered.
+ */
+public class SearchPipelineTest {
+
+    private static final long DEBOUNCE_MS = 100;
+
+    private final ScheduledExecutorService mExecutor = Executors.newScheduledThreadPool(2);
+
+    /**
+     * The searches started by the pipeline, in order
+     */
+    private final List<String> mSearched = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * The cancelled searches
+     */
+    private final List<String> mCancelled = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * The delivered queries, in order
+     */
+    private final List<String> mDelivered = Collections.synchronizedList(new ArrayList<String>());
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void fastTyping_startsOneSearch() throws InterruptedException {
+        SearchPipeline pipeline = newPipeline(new DelayedSource(0));
+
+        for (String query : new String[]{"c", "cl", "cli", "clim", "climate"}) {
+            pipeline.setQuery(query);
+            Thread.sleep(DEBOUNCE_MS / 5);
+        }
+        Thread.sleep(DEBOUNCE_MS * 3);
+
+        assertEquals(Collections.singletonList("climate"), mSearched);
+        assertEquals(Collections.singletonList("climate"), mDelivered);
+    }
+
+    @Test
+    public void newQuery_cancelsRunningSearch() throws InterruptedException {
+        SearchPipeline pipeline = newPipeline(new DelayedSource(500));
+
+        pipeline.setQuery("storm");
+        Thread.sleep(DEBOUNCE_MS * 2);
+        pipeline.setQuery("election");
+        Thread.sleep(DEBOUNCE_MS * 3);
+
+        assertEquals(Arrays.asList("storm", "election"), mSearched);
+        assertEquals(Collections.singletonList("storm"), mCancelled);
+        Thread.sleep(500);
+        assertEquals(Collections.singletonList("election"), mDelivered);
+    }
+
+    @Test
+    public void queryTypedBackWhileRunning_isCoalesced() throws InterruptedException {
+        SearchPipeline pipeline = newPipeline(new DelayedSource(400));
+
+        pipeline.setQuery("storm");
+        Thread.sleep(DEBOUNCE_MS * 2);
+        // Typed one more letter and deleted it before the debounce delay ended
+        pipeline.setQuery("storms");
+        Thread.sleep(DEBOUNCE_MS / 5);
+        pipeline.setQuery("storm");
+        Thread.sleep(600);
+
+        assertEquals(Collections.singletonList("storm"), mSearched);
+        assertEquals(Collections.singletonList("storm"), mDelivered);
+    }
+
+    @Test
+    public void lateResult_isNeverDelivered() throws InterruptedException {
+        // The first search ignores its cancellation and completes after the second one
+        final CountDownLatch secondDone = new CountDownLatch(1);
+        SearchPipeline pipeline = newPipeline(new SearchPipeline.Source() {
+            @Override
+            public List<Article> search(String query, CancellationToken cancellationToken) {
+                mSearched.add(query);
+                if (query.equals("slow")) {
+                    try {
+                        secondDone.await(2, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                } else {
+                    secondDone.countDown();
+                }
+                return Collections.emptyList();
+            }
+        });
+
+        pipeline.submitQuery("slow");
+        Thread.sleep(DEBOUNCE_MS / 2);
+        pipeline.submitQuery("fast");
+        Thread.sleep(DEBOUNCE_MS * 3);
+
+        assertEquals(Arrays.asList("slow", "fast"), mSearched);
+        assertEquals(Collections.singletonList("fast"), mDelivered);
+    }
+
+    @Test
+    public void cancel_dropsPendingAndRunningSearches() throws InterruptedException {
+        SearchPipeline pipeline = newPipeline(new DelayedSource(300));
+
+        pipeline.setQuery("storm");
+        Thread.sleep(DEBOUNCE_MS * 2);
+        pipeline.setQuery("election");
+        pipeline.cancel();
+        Thread.sleep(500);
+
+        assertEquals(Collections.singletonList("storm"), mSearched);
+        assertTrue(mDelivered.isEmpty());
+    }
+
+    @Test
+    public void failedSearch_canBeSearchedAgain() throws InterruptedException {
+        // The first search throws, i.e. the cache or the index failed
+        SearchPipeline pipeline = newPipeline(new SearchPipeline.Source() {
+            @Override
+            public List<Article> search(String query, CancellationToken cancellationToken) {
+                mSearched.add(query);
+                if (mSearched.size() == 1) {
+                    throw new IllegalStateException("Broken index");
+                }
+                return Collections.emptyList();
+            }
+        });
+
+        pipeline.submitQuery("storm");
+        Thread.sleep(DEBOUNCE_MS);
+        pipeline.submitQuery("storm");
+        Thread.sleep(DEBOUNCE_MS);
+
+        assertEquals(Arrays.asList("storm", "storm"), mSearched);
+        assertEquals(Collections.singletonList("storm"), mDelivered);
+    }
+
+    private SearchPipeline newPipeline(SearchPipeline.Source source) {
+        return new SearchPipeline(mExecutor, mExecutor, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, source, new SearchPipeline.Listener() {
+            @Override
+            public void onSearchResult(String query, List<Article> articles) {
+                mDelivered.add(query);
+            }
+        }, DEBOUNCE_MS);
+    }
+
+    /**
+     * Answers after a delay, or right away with null when cancelled.
+     */
+    private class DelayedSource implements SearchPipeline.Source {
+
+        private final long mDelayMs;
+
+        DelayedSource(long delayMs) {
+            mDelayMs = delayMs;
+        }
+
+        @Override
+        public List<Article> search(String query, CancellationToken cancellationToken) {
+            mSearched.add(query);
+            final CountDownLatch cancelled = new CountDownLatch(1);
+            cancellationToken.setOnCancelListener(new Runnable() {
+                @Override
+                public void run() {
+                    cancelled.countDown();
+                }
+            });
+            try {
+                if (cancelled.await(mDelayMs, TimeUnit.MILLISECONDS)) {
+                    mCancelled.add(query);
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            return Collections.singletonList(new Article(query, "Section", "2018-05-20T10:00:00Z", null, query));
+        }
+    }
+}
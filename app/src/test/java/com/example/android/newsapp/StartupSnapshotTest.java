@@ -0,0 +1,87 @@
+package com.example.android.newsapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks that StartupSnapshot keeps the top rows of the list for its settings only, and prints the time
+ * to read it back, the work left before the first rows of a launch.
+ */
+public class StartupSnapshotTest {
+
+    private static final String KEY = "https://content.guardianapis.com/search?section=technology&page=1";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void read_returnsTheTopRowsOfTheSameSettings() throws IOException {
+        List<Article> articles = TestFixtures.readArticles("guardian_search_50.json");
+        StartupSnapshot snapshot = new StartupSnapshot(new File(mTemporaryFolder.newFolder(), "snapshot"));
+
+        snapshot.write(KEY, articles);
+        List<Article> rows = snapshot.read(KEY);
+
+        assertEquals(StartupSnapshot.MAX_ROWS, rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(articles.get(i).getUrl(), rows.get(i).getUrl());
+            assertEquals(articles.get(i).getTitle(), rows.get(i).getTitle());
+            assertEquals(articles.get(i).getSectionId(), rows.get(i).getSectionId());
+            assertEquals(articles.get(i).getDisplayDate(), rows.get(i).getDisplayDate());
+            assertEquals(articles.get(i).getAuthor(), rows.get(i).getAuthor());
+            assertEquals(articles.get(i).getThumbnailUrl(), rows.get(i).getThumbnailUrl());
+        }
+    }
+
+    @Test
+    public void read_returnsNothingForOtherSettings() throws IOException {
+        StartupSnapshot snapshot = new StartupSnapshot(new File(mTemporaryFolder.newFolder(), "snapshot"));
+
+        assertNull(snapshot.read(KEY));
+        snapshot.write(KEY, TestFixtures.readArticles("guardian_search_50.json"));
+
+        assertNull(snapshot.read(KEY.replace("technology", "science")));
+    }
+
+    @Test
+    public void read_deletesACorruptSnapshot() throws IOException {
+        File file = new File(mTemporaryFolder.newFolder(), "snapshot");
+        StartupSnapshot snapshot = new StartupSnapshot(file);
+        snapshot.write(KEY, TestFixtures.readArticles("guardian_search_50.json"));
+
+        // Cut the file in the middle of the articles
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(bytes, 0, bytes.length / 2);
+        output.close();
+
+        assertNull(snapshot.read(KEY));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void benchmark_read() throws Exception {
+        final StartupSnapshot snapshot = new StartupSnapshot(new File(mTemporaryFolder.newFolder(), "snapshot"));
+        snapshot.write(KEY, TestFixtures.readArticles("guardian_search_50.json"));
+        Benchmark benchmark = new Benchmark("snapshot", 200, 1000);
+
+        benchmark.measure("snapshot.read", StartupSnapshot.MAX_ROWS, new Benchmark.Operation() {
+            @Override
+            public Object run() {
+                return snapshot.read(KEY);
+            }
+        });
+        benchmark.writeResults();
+    }
+}
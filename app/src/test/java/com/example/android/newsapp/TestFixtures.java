@@ -0,0 +1,53 @@
+package com.example.android.newsapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Loads the recorded Guardian responses of the test resources, and encodes them the way the API sends them.
+ */
+final class TestFixtures {
+
+    private TestFixtures() {
+    }
+
+    /**
+     * Returns the bytes of a recorded response, i.e. "guardian_search_50.json".
+     */
+    static byte[] readFixture(String name) throws IOException {
+        InputStream inputStream = TestFixtures.class.getClassLoader().getResourceAsStream(name);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try {
+            while ((read = inputStream.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        } finally {
+            inputStream.close();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Returns the articles of a recorded response, parsed like a network response.
+     */
+    static List<Article> readArticles(String name) throws IOException {
+        return QueryUtils.extractResultsFromStream(new ByteArrayInputStream(readFixture(name)));
+    }
+
+    /**
+     * Returns the data gzip-compressed, as the API sends a body to a client that accepts it.
+     */
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutput = new GZIPOutputStream(output);
+        gzipOutput.write(data);
+        gzipOutput.close();
+        return output.toByteArray();
+    }
+}